@@ -1,16 +1,37 @@
 package org.tanzu.boshpulse;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.modelcontextprotocol.server.McpServerFeatures.SyncResourceSpecification;
+import io.modelcontextprotocol.server.McpServerFeatures.SyncResourceTemplateSpecification;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.support.ToolCallbacks;
 import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.tanzu.boshpulse.bosh.*;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Configuration
 public class McpServerConfig {
 
+    private static final ObjectMapper resourceMapper = new ObjectMapper().findAndRegisterModules();
+    static final String DEADLINE_PARAM = "deadlineSeconds";
+
     @Bean
     public List<ToolCallback> registerTools(
             BoshDeploymentService boshDeploymentService,
@@ -20,9 +41,11 @@ public class McpServerConfig {
             BoshReleaseService boshReleaseService,
             BoshErrandService boshErrandService,
             BoshCloudConfigService boshCloudConfigService,
-            BoshSshService boshSshService) {
+            BoshSshService boshSshService,
+            BoshTaskService boshTaskService,
+            ObservationRegistry observationRegistry) {
 
-        return List.of(ToolCallbacks.from(
+        return Arrays.stream(ToolCallbacks.from(
                 boshDeploymentService,
                 boshVmService,
                 boshLogService,
@@ -30,25 +53,180 @@ public class McpServerConfig {
                 boshReleaseService,
                 boshErrandService,
                 boshCloudConfigService,
-                boshSshService));
+                boshSshService,
+                boshTaskService))
+                .<ToolCallback>map(callback -> new ObservedToolCallback(callback,
+                        withDeadlineParameter(callback.getToolDefinition()), observationRegistry))
+                .toList();
+    }
+
+    /**
+     * Add the optional {@value #DEADLINE_PARAM} argument, which every tool accepts, to a tool's input schema.
+     */
+    static ToolDefinition withDeadlineParameter(ToolDefinition definition) {
+        try {
+            ObjectNode schema = (ObjectNode) resourceMapper.readTree(definition.inputSchema());
+            ObjectNode properties = schema.has("properties")
+                    ? (ObjectNode) schema.get("properties") : schema.putObject("properties");
+            properties.putObject(DEADLINE_PARAM)
+                    .put("type", "number")
+                    .put("description", "Seconds this call may take, retries included; the call fails "
+                            + "with a DEADLINE error instead of running longer (optional, default the timeout of each BOSH command)");
+            return ToolDefinition.builder()
+                    .name(definition.name())
+                    .description(definition.description())
+                    .inputSchema(resourceMapper.writeValueAsString(schema))
+                    .build();
+        } catch (JsonProcessingException | ClassCastException e) {
+            return definition;
+        }
+    }
+
+    /**
+     * Get the caller's deadline from the tool arguments, or null if it did not set one.
+     */
+    static Duration deadline(String toolInput) {
+        try {
+            JsonNode seconds = resourceMapper.readTree(toolInput).path(DEADLINE_PARAM);
+            return seconds.isNumber() && seconds.asDouble() > 0
+                    ? Duration.ofMillis(Math.round(seconds.asDouble() * 1000)) : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Observes each tool call as the root {@code bosh.tool} span of its trace, and runs it
+     * within a {@link BoshDeadline} carrying the caller's {@value #DEADLINE_PARAM}, if any.
+     */
+    private record ObservedToolCallback(ToolCallback delegate, ToolDefinition definition,
+                                        ObservationRegistry observationRegistry) implements ToolCallback {
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return definition;
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return observation().observe(() -> BoshDeadline.within(deadline(toolInput), () -> delegate.call(toolInput)));
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            return observation().observe(() -> BoshDeadline.within(deadline(toolInput),
+                    () -> delegate.call(toolInput, toolContext)));
+        }
+
+        private Observation observation() {
+            String name = delegate.getToolDefinition().name();
+            return Observation.createNotStarted("bosh.tool", observationRegistry)
+                    .lowCardinalityKeyValue("tool", name)
+                    .contextualName(name);
+        }
     }
     
     /**
-     * Wire the CLI installer to the executor after both are created.
+     * Expose the inventory snapshots and the change log as MCP resources.
+     * {@link BoshChangeFeed} sends resource-updated notifications for them when the inventory changes.
+     * Without the inventory there is nothing to read, so they are only registered when it is enabled.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "bosh.inventory.enabled", havingValue = "true")
+    public List<SyncResourceSpecification> inventoryResources(BoshChangeFeed changeFeed, BoshInventory inventory) {
+        List<SyncResourceSpecification> resources = new ArrayList<>();
+        resources.add(new SyncResourceSpecification(
+                resource(BoshChangeFeed.CHANGES_URI, "inventory-changes", "Recent BOSH inventory changes: VM state and CID changes, new and removed deployments, stemcells and releases"),
+                (exchange, request) -> json(request.uri(), changeFeed.latest(0))));
+        for (Region region : List.of(Region.DEPLOYMENTS, Region.STEMCELLS, Region.RELEASES)) {
+            resources.add(new SyncResourceSpecification(
+                    resource(BoshChangeFeed.INVENTORY_URI + region.getTag(), region.getTag(), "BOSH " + region.getTag() + " from the inventory snapshot"),
+                    (exchange, request) -> json(request.uri(), snapshot(inventory, region, ""))));
+        }
+        return resources;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "bosh.inventory.enabled", havingValue = "true")
+    public List<SyncResourceTemplateSpecification> inventoryResourceTemplates(BoshInventory inventory) {
+        return List.of(new SyncResourceTemplateSpecification(
+                McpSchema.ResourceTemplate.builder()
+                        .uriTemplate(BoshChangeFeed.VMS_URI_PREFIX + "{deployment}")
+                        .name("deployment-vms")
+                        .description("VMs of a BOSH deployment from the inventory snapshot")
+                        .mimeType("application/json")
+                        .build(),
+                (exchange, request) -> json(request.uri(), snapshot(inventory, Region.VMS,
+                        request.uri().substring(BoshChangeFeed.VMS_URI_PREFIX.length())))));
+    }
+
+    private static McpSchema.Resource resource(String uri, String name, String description) {
+        return McpSchema.Resource.builder().uri(uri).name(name).description(description).mimeType("application/json").build();
+    }
+
+    private static Object snapshot(BoshInventory inventory, Region region, String key) {
+        Object listing = inventory.get(region, key).orElseGet(() -> inventory.refresh(region, key));
+        if (listing == null) {
+            throw new IllegalStateException("The BOSH inventory is disabled (bosh.inventory.enabled=false)");
+        }
+        return listing;
+    }
+
+    private static McpSchema.ReadResourceResult json(String uri, Object value) {
+        try {
+            return new McpSchema.ReadResourceResult(List.of(new McpSchema.TextResourceContents(
+                    uri, "application/json", resourceMapper.writeValueAsString(value))));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize resource " + uri, e);
+        }
+    }
+
+    /**
+     * Wire the CLI installer, scheduler, metrics, hedger, timeout classes, observation registry, optional Director HTTP backend and optional managed CLI config to the executor after they are created.
      */
     @Bean
     public BoshCliExecutorConfigurer boshCliExecutorConfigurer(
             BoshCliExecutor cliExecutor,
-            BoshCliInstaller cliInstaller) {
-        return new BoshCliExecutorConfigurer(cliExecutor, cliInstaller);
+            BoshCliInstaller cliInstaller,
+            BoshCommandScheduler commandScheduler,
+            BoshCliMetrics metrics,
+            BoshHedger hedger,
+            BoshTimeouts timeouts,
+            ObservationRegistry observationRegistry,
+            ObjectProvider<BoshDirectorHttpClient> directorHttpClient,
+            ObjectProvider<BoshCliConfig> cliConfig) {
+        return new BoshCliExecutorConfigurer(cliExecutor, cliInstaller, commandScheduler, metrics, hedger,
+                timeouts, observationRegistry, directorHttpClient.getIfAvailable(), cliConfig.getIfAvailable());
     }
     
     /**
-     * Helper class to configure the executor with the installer.
+     * Helper class to configure the executor with its collaborators.
      */
     private static class BoshCliExecutorConfigurer {
-        public BoshCliExecutorConfigurer(BoshCliExecutor executor, BoshCliInstaller installer) {
+        public BoshCliExecutorConfigurer(BoshCliExecutor executor, BoshCliInstaller installer,
+                                         BoshCommandScheduler commandScheduler,
+                                         BoshCliMetrics metrics,
+                                         BoshHedger hedger,
+                                         BoshTimeouts timeouts,
+                                         ObservationRegistry observationRegistry,
+                                         BoshDirectorHttpClient directorHttpClient,
+                                         BoshCliConfig cliConfig) {
             executor.setCliInstaller(installer);
+            executor.setCommandScheduler(commandScheduler);
+            executor.setMetrics(metrics);
+            executor.setHedger(hedger);
+            executor.setTimeouts(timeouts);
+            executor.setObservationRegistry(observationRegistry);
+            executor.setDirectorHttpClient(directorHttpClient);
+            executor.setCliConfig(cliConfig);
+            if (directorHttpClient != null) {
+                directorHttpClient.setTimeouts(timeouts);
+            }
         }
     }
 }
@@ -1,10 +1,21 @@
 package org.tanzu.boshpulse.bosh;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.tanzu.boshpulse.bosh.BoshPaginator.Page;
+import org.tanzu.boshpulse.bosh.BoshTaskTracker.TaskStatus;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public abstract class BoshBaseService {
@@ -14,12 +25,25 @@ public abstract class BoshBaseService {
     protected final BoshCliExecutor cliExecutor;
     protected final int maxRetries;
     protected final Duration retryDelay;
+    private BoshResultCache resultCache;
+    private BoshTaskTracker taskTracker;
+    private BoshPaginator paginator;
+    private BoshInventory inventory;
+    private BoshCliMetrics metrics;
+    private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+    private BoshResilience resilience;
 
     protected static final String DEPLOYMENT_PARAM = "Name of the BOSH deployment";
     protected static final String VM_PARAM = "Name or ID of the BOSH VM";
     protected static final String RELEASE_PARAM = "Name of the BOSH release";
     protected static final String STEMCELL_PARAM = "Name of the BOSH stemcell";
     protected static final String TASK_PARAM = "ID of the BOSH task";
+    protected static final String CURSOR_PARAM = "Cursor returned as nextCursor by the previous call, to fetch the next page (optional)";
+    protected static final String PAGE_SIZE_PARAM = "Maximum number of items per page (optional, default 100)";
+    protected static final String FIELDS_PARAM = "Comma separated columns to return, e.g. instance,process_state,ips (optional, default all columns)";
+    protected static final String WHERE_PARAM = "Only return rows matching every clause, e.g. process_state!=running,az=z1; operators are =, !=, ~ (regex) and !~ (optional)";
+    protected static final String FRESH_PARAM = "Read from the Director now instead of the background inventory snapshot (optional, default false)";
+    protected static final String ASYNC_PARAM = "Return the Director task ID right away instead of waiting for the task to finish (optional, default false)";
 
     public BoshBaseService(BoshCliExecutor cliExecutor,
                           @Value("${bosh.retry.maxAttempts:3}") int maxRetries,
@@ -29,8 +53,226 @@ public abstract class BoshBaseService {
         this.retryDelay = Duration.ofSeconds(retryDelaySeconds);
     }
 
+    /**
+     * Set the result cache used by read-only tools (absent when services are constructed directly).
+     */
+    @Autowired(required = false)
+    public void setResultCache(BoshResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Set the tracker for tasks started in asynchronous mode (absent when services are constructed directly).
+     */
+    @Autowired(required = false)
+    public void setTaskTracker(BoshTaskTracker taskTracker) {
+        this.taskTracker = taskTracker;
+    }
+
+    /**
+     * Set the paginator used by tools with large results (absent when services are constructed directly).
+     */
+    @Autowired(required = false)
+    public void setPaginator(BoshPaginator paginator) {
+        this.paginator = paginator;
+    }
+
+    /**
+     * Set the inventory snapshot that answers listings without calling the Director (absent when services are constructed directly).
+     */
+    @Autowired(required = false)
+    public void setInventory(BoshInventory inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * Set the Micrometer instrumentation of the retry loop (absent when services are constructed directly).
+     */
+    @Autowired(required = false)
+    public void setMetrics(BoshCliMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set the registry for the per-attempt observations of the retry loop (absent when services are constructed directly).
+     */
+    @Autowired(required = false)
+    public void setObservationRegistry(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Set the shared retry budget, backoff and Director circuit breaker (absent when services are constructed directly).
+     */
+    @Autowired(required = false)
+    public void setResilience(BoshResilience resilience) {
+        this.resilience = resilience;
+    }
+
+    /**
+     * The observation of the running tool call, for work handed to other threads
+     * with {@link Observation#tryScoped(Observation, Supplier)}.
+     */
+    protected Observation currentObservation() {
+        return observationRegistry.getCurrentObservation();
+    }
+
+    /**
+     * Answer a listing from the inventory snapshot when it is within the staleness bound.
+     * With {@code fresh}, the listing is fetched from the Director now, which also updates the snapshot.
+     * Falls back to the loader when the listing is not in the inventory or its snapshot is too old.
+     *
+     * @param region The cache region of the listing
+     * @param key The key within the region, or "" for singletons
+     * @param fresh Whether the caller asked for a fresh read
+     * @param view Derives the tool result from the CLI-shaped JSON listing
+     * @param loader Loads the result without the inventory
+     * @param <T> The result type
+     * @return The result
+     */
+    protected <T> T fromInventory(BoshResultCache.Region region, String key, Boolean fresh,
+                                  Function<JsonNode, T> view, Supplier<T> loader) {
+        if (inventory != null) {
+            if (Boolean.TRUE.equals(fresh)) {
+                JsonNode listing = executeWithRetry(() -> inventory.refresh(region, key), "refresh " + region.getTag());
+                if (listing != null) {
+                    return view.apply(listing);
+                }
+            } else {
+                Optional<JsonNode> snapshot = inventory.get(region, key);
+                if (snapshot.isPresent()) {
+                    return view.apply(snapshot.get());
+                }
+            }
+        }
+        if (Boolean.TRUE.equals(fresh) && resultCache != null) {
+            resultCache.invalidate(region, key);
+        }
+        return loader.get();
+    }
+
+    /**
+     * Serve a result one page at a time.
+     *
+     * @param scope Identifies the call (tool name and arguments) the cursor belongs to
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @param pageSize Requested items per page, or null for the default
+     * @param loader Loads the full result for the first page
+     * @param <T> The item type
+     * @return The page; everything in one page when no paginator is configured
+     */
+    protected <T> Page<T> paged(String scope, String cursor, Integer pageSize, Supplier<List<T>> loader) {
+        if (paginator == null) {
+            List<T> items = loader.get();
+            return new Page<>(items, 0, items.size(), false, null);
+        }
+        return paginator.page(scope, cursor, pageSize, loader);
+    }
+
+    /**
+     * Serve the projected, filtered rows of a table command from the cache.
+     * Entries are keyed under {@code key?query}, so invalidating {@code key} drops them too.
+     *
+     * @param region The cache region
+     * @param key The key of the unfiltered result within the region
+     * @param command The BOSH command producing the table
+     * @param query The parsed {@code fields} and {@code where} parameters
+     * @param operationName Name used in retry logging
+     * @return The matching rows, holding only the projected columns
+     */
+    protected List<Map<String, String>> queried(BoshResultCache.Region region, String key, String command,
+                                                BoshRowQuery query, String operationName) {
+        return cached(region, key + "?" + query.key(), () -> executeWithRetry(() -> {
+            List<Map<String, String>> rows = query.project(
+                    cliExecutor.executeTableRows(command, query.readFields(), query.filter()));
+            logger.debug("{} returned {} rows for query {}", operationName, rows.size(), query.key());
+            return rows;
+        }, operationName));
+    }
+
+    /**
+     * Serve a read-only result from the cache, loading it on a miss.
+     * 
+     * @param region The cache region
+     * @param key The key within the region, or "" for singletons
+     * @param loader Loads the value on a miss
+     * @param <T> The value type
+     * @return The cached or freshly loaded value
+     */
+    protected <T> T cached(BoshResultCache.Region region, String key, Supplier<T> loader) {
+        return resultCache != null ? resultCache.get(region, key, loader) : loader.get();
+    }
+
+    /**
+     * Invalidate cached results and inventory snapshots for a key after a mutation.
+     */
+    protected void invalidate(BoshResultCache.Region region, String key) {
+        if (resultCache != null) {
+            resultCache.invalidate(region, key);
+        }
+        if (inventory != null) {
+            inventory.invalidate(region, key);
+        }
+    }
+
+    /**
+     * Invalidate every cached result and inventory snapshot in a region after a mutation.
+     */
+    protected void invalidate(BoshResultCache.Region region) {
+        if (resultCache != null) {
+            resultCache.invalidate(region);
+        }
+        if (inventory != null) {
+            inventory.invalidate(region, null);
+        }
+    }
+
+    /**
+     * Start a mutation as a Director task and return as soon as the Director has accepted it.
+     * Affected cache regions are invalidated now and again once the tracker sees the task finish.
+     *
+     * @param command The BOSH command
+     * @param description Human-readable description of the operation
+     * @param operationName A descriptive name for logging purposes
+     * @param invalidation Invalidates the cache regions the mutation affects
+     * @return The status of the started task
+     */
+    protected TaskStatus startTask(String command, String description, String operationName, Runnable invalidation) {
+        if (taskTracker == null) {
+            throw new IllegalStateException("Asynchronous task mode is not available");
+        }
+        invalidation.run();
+        return executeWithRetry(() -> taskTracker.start(command, description, invalidation), operationName);
+    }
+
+    /**
+     * Describe a task that a synchronous mutation ran to completion.
+     *
+     * The command's own task is the last one in the output; a {@code deploy} may upload releases first.
+     *
+     * @param output The CLI output, which names the tasks it ran
+     * @param description Human-readable description of the operation
+     * @param deployment The affected deployment, or null
+     * @return A finished task status, in the state the CLI reported for the last task
+     */
+    protected static TaskStatus completedTask(String output, String description, String deployment) {
+        BoshCliExecutor.TaskOutcome outcome = BoshCliExecutor.parseTaskOutcome(output);
+        // The CLI exited successfully, so a task it did not report a state for is done
+        return new TaskStatus(outcome.taskId(), outcome.state() != null ? outcome.state() : "done",
+                description, deployment, null, Instant.now().toString(), null);
+    }
+
     /**
      * Execute a BOSH operation with retry logic for transient failures.
+     * Only failures whose {@link BoshCommandException.Category} is retryable are retried, each retry takes a
+     * token from the shared budget, and the delay grows with decorrelated jitter from {@code bosh.retry.delay}.
+     * Every attempt passes the Director circuit breaker, so an unhealthy Director fails calls fast, but the
+     * call counts as one success or failure however many attempts it took.
+     * Each attempt is timed and each retry counted when metrics are set, and each attempt is observed
+     * as a {@code bosh.attempt} span, the parent of the CLI invocations it makes.
+     * All attempts run within one {@link BoshDeadline}, so a retried command only gets what is left of
+     * its timeout: a command that timed out is not retried, and no retry is attempted once the back-off
+     * would outlast the caller's deadline.
      * 
      * @param operation The operation to execute
      * @param operationName A descriptive name for logging purposes
@@ -39,56 +281,92 @@ public abstract class BoshBaseService {
      * @throws RuntimeException if all retry attempts fail
      */
     protected <T> T executeWithRetry(Supplier<T> operation, String operationName) {
+        return BoshDeadline.within(null, () -> attempt(operation, operationName));
+    }
+
+    private <T> T attempt(Supplier<T> operation, String operationName) {
+        Duration delay = retryDelay;
         for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            BoshResilience.Permit permit = resilience != null ? resilience.admit() : null;
+            long startNanos = System.nanoTime();
             try {
-                return operation.get();
-            } catch (Exception e) {
-                if (attempt == maxRetries) {
-                    logger.error("{} failed after {} attempts: {}", operationName, maxRetries, e.getMessage());
-                    throw e;
+                T result = Observation.createNotStarted("bosh.attempt", observationRegistry)
+                        .lowCardinalityKeyValue("operation", operationName)
+                        .highCardinalityKeyValue("attempt", Integer.toString(attempt))
+                        .contextualName(operationName + " #" + attempt)
+                        .observe(operation);
+                recordAttempt(operationName, BoshCliMetrics.Outcome.SUCCESS, startNanos);
+                if (permit != null) {
+                    resilience.onSuccess(permit);
                 }
-                
-                // Check if this is a retryable error
-                if (isRetryableError(e)) {
-                    logger.warn("{} failed (attempt {}/{}), retrying in {}: {}", 
-                               operationName, attempt, maxRetries, retryDelay, e.getMessage());
-                    try {
-                        Thread.sleep(retryDelay.toMillis());
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException("Interrupted during retry", ie);
+                return result;
+            } catch (RuntimeException e) {
+                recordAttempt(operationName, BoshCliMetrics.Outcome.FAILURE, startNanos);
+                BoshCommandException.Category category = BoshCommandException.categorize(e);
+                delay = resilience != null ? resilience.backoff(retryDelay, delay) : retryDelay;
+                if (!shouldRetry(e, category, attempt, delay, operationName)) {
+                    if (permit != null) {
+                        resilience.onFailure(permit, e);
                     }
-                } else {
-                    // Non-retryable error, fail immediately
-                    logger.error("{} failed with non-retryable error: {}", operationName, e.getMessage());
                     throw e;
                 }
+                if (permit != null) {
+                    // Only the attempt that ends the call counts towards the circuit
+                    resilience.release(permit);
+                }
+
+                logger.warn("{} failed with {} error (attempt {}/{}), retrying in {}: {}",
+                           operationName, category, attempt, maxRetries, delay, e.getMessage());
+                if (metrics != null) {
+                    metrics.retried(operationName);
+                }
+                try {
+                    // Tool calls run on virtual threads, so the back-off parks instead of holding a platform thread
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted during retry", ie);
+                }
             }
         }
         throw new RuntimeException("All retry attempts failed for: " + operationName);
     }
 
     /**
-     * Determine if an error is retryable based on the exception type and message.
-     * 
-     * @param e The exception to check
-     * @return true if the error is retryable, false otherwise
+     * Decide whether a failed attempt is retried, logging why not. Takes a token from the retry budget
+     * only when everything else allows the retry.
      */
-    private boolean isRetryableError(Exception e) {
-        String message = e.getMessage();
-        if (message == null) {
+    private boolean shouldRetry(RuntimeException e, BoshCommandException.Category category, int attempt,
+                                Duration delay, String operationName) {
+        if (attempt == maxRetries) {
+            logger.error("{} failed after {} attempts: {}", operationName, maxRetries, e.getMessage());
+            return false;
+        }
+        if (!category.isRetryable()) {
+            logger.error("{} failed with non-retryable {} error: {}", operationName, category, e.getMessage());
+            return false;
+        }
+        if (category == BoshCommandException.Category.TIMEOUT
+                && BoshDeadline.commandDeadlinePassed(BoshCommandException.timedOutCommand(e))) {
+            // Command deadlines are fixed for the whole call, so the retry would time out before it starts
+            logger.error("{} timed out and its command timeout is used up: {}", operationName, e.getMessage());
+            return false;
+        }
+        Duration remaining = BoshDeadline.remaining();
+        if (remaining != null && remaining.compareTo(delay) <= 0) {
+            logger.error("{} failed and the tool call deadline leaves no time to retry: {}", operationName, e.getMessage());
+            return false;
+        }
+        if (resilience != null && !resilience.tryAcquireRetry()) {
+            logger.error("{} failed and the retry budget is exhausted: {}", operationName, e.getMessage());
             return false;
         }
-        
-        // Retry on network-related errors
-        return message.contains("timeout") ||
-               message.contains("connection") ||
-               message.contains("network") ||
-               message.contains("unavailable") ||
-               message.contains("temporary") ||
-               message.contains("retry") ||
-               e instanceof java.net.ConnectException ||
-               e instanceof java.net.SocketTimeoutException ||
-               e instanceof java.util.concurrent.TimeoutException;
+        return true;
+    }
+
+    private void recordAttempt(String operationName, BoshCliMetrics.Outcome outcome, long startNanos) {
+        if (metrics != null) {
+            metrics.attempt(operationName, outcome, System.nanoTime() - startNanos);
+        }
     }
 }
@@ -0,0 +1,254 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.modelcontextprotocol.server.McpSyncServer;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Turns successive inventory fetches into compact change events: VM process state transitions,
+ * VM CID changes, instances coming and going, and deployments, stemcell versions and release
+ * versions being added or removed.
+ * Recent events are kept in a bounded log that clients read with {@code getChangesSince} or as the
+ * {@value #CHANGES_URI} MCP resource; each batch of changes also sends MCP resource-updated
+ * notifications, so subscribed clients do not have to poll the listings.
+ */
+@Component
+public class BoshChangeFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshChangeFeed.class);
+
+    public static final String CHANGES_URI = "bosh://inventory/changes";
+    public static final String INVENTORY_URI = "bosh://inventory/";
+    public static final String VMS_URI_PREFIX = INVENTORY_URI + "vms/";
+
+    private static final Set<String> VM_FIELDS = Set.of("instance", "process_state", "vm_cid");
+    private static final Set<String> VERSION_FIELDS = Set.of("name", "version");
+
+    /**
+     * One inventory change.
+     *
+     * @param sequence Position in the change log; pass it as the cursor to get later changes
+     * @param time When the change was observed
+     * @param type vm_state, vm_cid, instance_added, instance_removed, deployment_added, deployment_removed,
+     *             stemcell_added, stemcell_removed, release_added or release_removed
+     * @param deployment The deployment, for VM and instance changes
+     * @param subject The instance, deployment, or name/version that changed
+     * @param from The previous value, for state and CID changes
+     * @param to The new value, for state and CID changes
+     */
+    public record ChangeEvent(long sequence, Instant time, String type, String deployment, String subject,
+                              String from, String to) {
+    }
+
+    /**
+     * Changes after a cursor.
+     *
+     * @param changes The changes, oldest first
+     * @param cursor Cursor for the next call
+     * @param truncated Whether older changes after the given cursor were already dropped from the log
+     */
+    public record ChangePage(List<ChangeEvent> changes, long cursor, boolean truncated) {
+    }
+
+    private final int maxEvents;
+    private final int pageEvents;
+    private final ObjectProvider<McpSyncServer> mcpServer;
+    private final Deque<ChangeEvent> events = new ArrayDeque<>();
+    private long lastSequence;
+
+    public BoshChangeFeed(@Value("${bosh.changes.maxEvents:1000}") int maxEvents,
+                          @Value("${bosh.changes.pageEvents:200}") int pageEvents,
+                          ObjectProvider<McpSyncServer> mcpServer) {
+        this.maxEvents = maxEvents;
+        this.pageEvents = pageEvents;
+        this.mcpServer = mcpServer;
+    }
+
+    /**
+     * Record the differences between two fetches of an inventory listing and notify clients.
+     *
+     * @param region The listing's region
+     * @param key The deployment for {@code VMS}, otherwise ""
+     * @param before The previous listing
+     * @param after The new listing
+     */
+    public void publish(Region region, String key, JsonNode before, JsonNode after) {
+        List<ChangeEvent> changes = diff(region, key, before, after);
+        if (changes.isEmpty()) {
+            return;
+        }
+        synchronized (events) {
+            for (ChangeEvent change : changes) {
+                events.addLast(new ChangeEvent(++lastSequence, change.time(), change.type(), change.deployment(),
+                        change.subject(), change.from(), change.to()));
+                if (events.size() > maxEvents) {
+                    events.removeFirst();
+                }
+            }
+        }
+        logger.info("Observed {} inventory change(s) in {}", changes.size(), key.isEmpty() ? region.getTag() : key);
+        notifyClients(region == Region.VMS ? VMS_URI_PREFIX + key : INVENTORY_URI + region.getTag());
+    }
+
+    /**
+     * Get changes recorded after a cursor.
+     *
+     * @param cursor The cursor from the previous call, or 0 for every retained change
+     * @param maxChanges Maximum number of changes to return, capped at {@code bosh.changes.pageEvents}
+     * @return The changes and the next cursor
+     */
+    public ChangePage since(long cursor, int maxChanges) {
+        int limit = maxChanges > 0 ? Math.min(maxChanges, pageEvents) : pageEvents;
+        List<ChangeEvent> page = new ArrayList<>();
+        synchronized (events) {
+            boolean truncated = !events.isEmpty() && events.peekFirst().sequence() > cursor + 1;
+            long next = Math.max(cursor, 0);
+            for (ChangeEvent event : events) {
+                if (event.sequence() > cursor) {
+                    if (page.size() == limit) {
+                        break;
+                    }
+                    page.add(event);
+                    next = event.sequence();
+                }
+            }
+            if (cursor > lastSequence) {
+                // The server restarted since the cursor was issued
+                truncated = true;
+                next = lastSequence;
+            }
+            return new ChangePage(page, next, truncated);
+        }
+    }
+
+    /**
+     * Get the most recent changes, for clients that have no cursor yet.
+     *
+     * @param maxChanges Maximum number of changes to return, capped at {@code bosh.changes.pageEvents}
+     * @return The newest changes, oldest first, with a cursor at the end of the log;
+     *         {@code truncated} when earlier changes were left out
+     */
+    public ChangePage latest(int maxChanges) {
+        int limit = maxChanges > 0 ? Math.min(maxChanges, pageEvents) : pageEvents;
+        List<ChangeEvent> page = new ArrayList<>();
+        synchronized (events) {
+            Iterator<ChangeEvent> newestFirst = events.descendingIterator();
+            while (newestFirst.hasNext() && page.size() < limit) {
+                page.addFirst(newestFirst.next());
+            }
+            boolean truncated = !page.isEmpty() && page.getFirst().sequence() > 1;
+            return new ChangePage(page, lastSequence, truncated);
+        }
+    }
+
+    /**
+     * Compare two fetches of a listing.
+     *
+     * @return The changes, without sequence numbers
+     */
+    static List<ChangeEvent> diff(Region region, String key, JsonNode before, JsonNode after) {
+        Instant now = Instant.now();
+        List<ChangeEvent> changes = new ArrayList<>();
+        switch (region) {
+            case VMS -> {
+                Map<String, Map<String, String>> old = index(before, VM_FIELDS, "instance");
+                Map<String, Map<String, String>> current = index(after, VM_FIELDS, "instance");
+                for (Map.Entry<String, Map<String, String>> entry : current.entrySet()) {
+                    Map<String, String> previous = old.get(entry.getKey());
+                    if (previous == null) {
+                        changes.add(new ChangeEvent(0, now, "instance_added", key, entry.getKey(), null,
+                                entry.getValue().get("process_state")));
+                        continue;
+                    }
+                    compare(changes, now, "vm_state", key, entry.getKey(), previous, entry.getValue(), "process_state");
+                    compare(changes, now, "vm_cid", key, entry.getKey(), previous, entry.getValue(), "vm_cid");
+                }
+                for (Map.Entry<String, Map<String, String>> entry : old.entrySet()) {
+                    if (!current.containsKey(entry.getKey())) {
+                        changes.add(new ChangeEvent(0, now, "instance_removed", key, entry.getKey(),
+                                entry.getValue().get("process_state"), null));
+                    }
+                }
+            }
+            case DEPLOYMENTS -> added(changes, now, "deployment", index(before, Set.of("name"), "name").keySet(),
+                    index(after, Set.of("name"), "name").keySet());
+            case STEMCELLS, RELEASES -> {
+                String kind = region == Region.STEMCELLS ? "stemcell" : "release";
+                added(changes, now, kind, index(before, VERSION_FIELDS, null).keySet(),
+                        index(after, VERSION_FIELDS, null).keySet());
+            }
+            default -> {
+            }
+        }
+        return changes;
+    }
+
+    private void notifyClients(String uri) {
+        McpSyncServer server = mcpServer.getIfAvailable();
+        if (server == null) {
+            return;
+        }
+        try {
+            server.notifyResourcesUpdated(new McpSchema.ResourcesUpdatedNotification(uri));
+            server.notifyResourcesUpdated(new McpSchema.ResourcesUpdatedNotification(CHANGES_URI));
+        } catch (RuntimeException e) {
+            // A client that went away must not break inventory refresh
+            logger.debug("Failed to send resource update notifications for {}: {}", uri, e.getMessage());
+        }
+    }
+
+    private static void compare(List<ChangeEvent> changes, Instant now, String type, String deployment, String instance,
+                                Map<String, String> before, Map<String, String> after, String field) {
+        String from = before.get(field);
+        String to = after.get(field);
+        if (!Objects.equals(from, to)) {
+            changes.add(new ChangeEvent(0, now, type, deployment, instance, from, to));
+        }
+    }
+
+    private static void added(List<ChangeEvent> changes, Instant now, String kind, Set<String> before, Set<String> after) {
+        for (String subject : after) {
+            if (!before.contains(subject)) {
+                changes.add(new ChangeEvent(0, now, kind + "_added", null, subject, null, null));
+            }
+        }
+        for (String subject : before) {
+            if (!after.contains(subject)) {
+                changes.add(new ChangeEvent(0, now, kind + "_removed", null, subject, null, null));
+            }
+        }
+    }
+
+    /**
+     * Index rows by a key column, or by name/version when {@code keyField} is null.
+     * The CLI marks deployed versions with a trailing '*', which is not a change of version.
+     */
+    private static Map<String, Map<String, String>> index(JsonNode listing, Set<String> fields, String keyField) {
+        Map<String, Map<String, String>> rows = new LinkedHashMap<>();
+        for (Map<String, String> row : BoshJsonRowExtractor.extractRows(listing, fields, null)) {
+            String key = keyField != null ? row.get(keyField)
+                    : row.get("name") + "/" + row.getOrDefault("version", "").replace("*", "");
+            if (key != null) {
+                rows.put(key, row);
+            }
+        }
+        return rows;
+    }
+}
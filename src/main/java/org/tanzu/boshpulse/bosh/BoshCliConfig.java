@@ -0,0 +1,320 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Managed BOSH CLI config directory holding a UAA access token, so CLI invocations skip the
+ * client-credentials exchange they would otherwise make on every run.
+ * <p>
+ * The token is fetched with the configured client and secret and written, with the Director URL
+ * and CA, to a CLI config file in {@code bosh.cliConfig.dir}. Invocations then run with
+ * {@code BOSH_CONFIG} pointing at it and without {@code BOSH_CLIENT}/{@code BOSH_CLIENT_SECRET}.
+ * A background refresher renews the token {@code bosh.cliConfig.refreshMargin} seconds before it
+ * expires. Whenever no valid token is at hand (not fetched yet, expiring before the command may finish,
+ * credentials reloaded, rejected by the Director) invocations fall back to passing the client credentials
+ * as before. Streaming commands such as {@code logs --follow} have no end, so they always keep the client
+ * credentials and let the CLI renew its own token.
+ * Directors that do not use UAA are left alone. Enabled with {@code bosh.cliConfig.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "bosh.cliConfig.enabled", havingValue = "true")
+public class BoshCliConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshCliConfig.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Duration RETRY_INTERVAL = Duration.ofSeconds(30);
+    // A token closer than this to expiry is not handed to the CLI, which may take a while to use it
+    private static final Duration MIN_REMAINING = Duration.ofSeconds(30);
+
+    /**
+     * An access token and the configuration it was issued for.
+     */
+    private record Token(BoshCliExecutor.InvocationTemplate template, long expiresAtNanos) {
+    }
+
+    private final BoshCliExecutor cliExecutor;
+    private final Path configFile;
+    private final Duration refreshMargin;
+    private final Duration requestTimeout;
+    private final Timer fetchSuccess;
+    private final Timer fetchFailure;
+    private final Counter reused;
+    private final Counter missed;
+    private final ScheduledExecutorService refresher =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("bosh-token-refresher").factory());
+    private ScheduledFuture<?> nextRefresh;
+    private volatile Token token;
+    private volatile boolean uaa = true;
+
+    public BoshCliConfig(BoshCliExecutor cliExecutor,
+                         @Value("${bosh.cliConfig.dir:${java.io.tmpdir}/bosh-mcp-config}") String dir,
+                         @Value("${bosh.cliConfig.refreshMargin:120}") int refreshMarginSeconds,
+                         @Value("${bosh.timeout.fast:15}") int requestTimeoutSeconds,
+                         MeterRegistry meterRegistry) {
+        this.cliExecutor = cliExecutor;
+        this.configFile = Path.of(dir).toAbsolutePath().resolve("config");
+        this.refreshMargin = Duration.ofSeconds(Math.max(0, refreshMarginSeconds));
+        this.requestTimeout = Duration.ofSeconds(requestTimeoutSeconds);
+        this.fetchSuccess = fetchTimer(meterRegistry, "success");
+        this.fetchFailure = fetchTimer(meterRegistry, "failure");
+        this.reused = Counter.builder("bosh.uaa.token.reused")
+                .description("CLI invocations that used the cached access token instead of exchanging client credentials with UAA")
+                .register(meterRegistry);
+        this.missed = Counter.builder("bosh.uaa.token.missed")
+                .description("CLI invocations that exchanged client credentials themselves because no valid cached token was available")
+                .register(meterRegistry);
+        Gauge.builder("bosh.uaa.token.remaining", this, c -> c.remaining().toSeconds())
+                .description("Seconds until the cached access token expires")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Fetch the first token once the application is ready; refreshes are scheduled from then on.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(6)
+    public void start() {
+        scheduleRefresh(Duration.ZERO);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Point an invocation at the managed config if a token for its configuration is cached that stays
+     * valid for as long as the command may run. Called for every CLI process, so it only looks at memory.
+     *
+     * @param template The invocation template the process was built from
+     * @param maxRuntime How long the command may run before it is killed, or null if it runs until stopped
+     * @param environment The process environment, updated in place
+     * @return true if the invocation uses the cached token
+     */
+    boolean apply(BoshCliExecutor.InvocationTemplate template, Duration maxRuntime, Map<String, String> environment) {
+        if (!uaa || maxRuntime == null) {
+            return false;
+        }
+        Token current = token;
+        long needed = Math.max(MIN_REMAINING.toNanos(), maxRuntime.toNanos());
+        if (current == null || current.template() != template
+                || current.expiresAtNanos() - System.nanoTime() < needed) {
+            missed.increment();
+            if (current != null && current.template() != template) {
+                // Credentials were reloaded; the token belongs to the old ones
+                scheduleRefresh(Duration.ZERO);
+            }
+            return false;
+        }
+        environment.remove("BOSH_CLIENT");
+        environment.remove("BOSH_CLIENT_SECRET");
+        environment.put("BOSH_CONFIG", configFile.toString());
+        reused.increment();
+        return true;
+    }
+
+    /**
+     * Drop the cached token after the Director rejected it, and fetch a new one.
+     */
+    void invalidate() {
+        if (token != null) {
+            logger.warn("BOSH CLI was refused with the cached access token, fetching a new one");
+            token = null;
+            scheduleRefresh(Duration.ZERO);
+        }
+    }
+
+    /**
+     * Whether a process environment points at the managed config.
+     */
+    boolean isUsedBy(Map<String, String> environment) {
+        return configFile.toString().equals(environment.get("BOSH_CONFIG"));
+    }
+
+    /**
+     * Fetch a token now and write the config file.
+     *
+     * @return When to refresh next, or null to stop refreshing
+     */
+    Duration refresh() {
+        BoshCliExecutor.InvocationTemplate template = cliExecutor.getInvocationTemplate();
+        long started = System.nanoTime();
+        try {
+            String director = BoshDirectorHttpClient.directorUrl(template.director());
+            HttpClient httpClient = httpClient(template.caCertPath());
+            JsonNode auth = send(httpClient, HttpRequest.newBuilder(URI.create(director + "/info"))
+                    .timeout(requestTimeout).GET().build()).path("user_authentication");
+            if (!"uaa".equals(auth.path("type").asText())) {
+                logger.info("BOSH Director {} does not use UAA, the CLI keeps its own authentication", director);
+                uaa = false;
+                return null;
+            }
+            uaa = true;
+            String form = "grant_type=client_credentials&client_id=" + encode(template.client())
+                    + "&client_secret=" + encode(template.clientSecret());
+            JsonNode response = send(httpClient, HttpRequest.newBuilder(
+                            URI.create(auth.path("options").path("url").asText() + "/oauth/token"))
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .header("Accept", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(form))
+                    .build());
+            String accessToken = response.path("access_token").asText(null);
+            if (accessToken == null) {
+                throw new IllegalStateException("UAA token response did not contain an access token");
+            }
+            Duration lifetime = Duration.ofSeconds(response.path("expires_in").asLong(0));
+            write(template, director, accessToken);
+            token = new Token(template, started + lifetime.toNanos());
+            fetchSuccess.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            logger.debug("Cached UAA access token for BOSH client {} (expires in {})", template.client(), lifetime);
+            Duration next = lifetime.minus(refreshMargin);
+            return next.compareTo(MIN_REMAINING) > 0 ? next : MIN_REMAINING;
+        } catch (IOException | RuntimeException e) {
+            fetchFailure.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            logger.warn("Failed to fetch a UAA access token for the BOSH CLI, retrying in {}: {}", RETRY_INTERVAL, e.getMessage());
+            return RETRY_INTERVAL;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * The path of the managed config file.
+     */
+    Path getConfigFile() {
+        return configFile;
+    }
+
+    private Duration remaining() {
+        Token current = token;
+        return current == null ? Duration.ZERO : Duration.ofNanos(Math.max(0, current.expiresAtNanos() - System.nanoTime()));
+    }
+
+    /**
+     * Schedule a refresh, unless one is already due sooner.
+     */
+    private synchronized void scheduleRefresh(Duration delay) {
+        if (nextRefresh != null) {
+            if (nextRefresh.getDelay(TimeUnit.MILLISECONDS) <= delay.toMillis()) {
+                return;
+            }
+            nextRefresh.cancel(false);
+        }
+        nextRefresh = refresher.schedule(this::refreshAndReschedule, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshAndReschedule() {
+        synchronized (this) {
+            nextRefresh = null;
+        }
+        Duration next = refresh();
+        if (next != null) {
+            scheduleRefresh(next);
+        }
+    }
+
+    /**
+     * Write the CLI config atomically, readable only by this user. The CLI reads YAML, of which JSON is a subset.
+     * The {@code -e} value is the alias, so the CLI resolves it to this entry whatever form it has.
+     */
+    private void write(BoshCliExecutor.InvocationTemplate template, String directorUrl, String accessToken) throws IOException {
+        Path dir = configFile.getParent();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (!Files.isDirectory(dir)) {
+            if (posix) {
+                Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(dir);
+            }
+        }
+        ObjectNode config = objectMapper.createObjectNode();
+        ObjectNode environment = config.putArray("environments").addObject();
+        environment.put("url", directorUrl);
+        environment.put("alias", template.director());
+        if (template.caCert() != null) {
+            environment.put("ca_cert", template.caCert());
+        }
+        environment.put("access_token", accessToken);
+        environment.put("access_token_type", "bearer");
+
+        Path staged = posix
+                ? Files.createTempFile(dir, "config", ".tmp", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : Files.createTempFile(dir, "config", ".tmp");
+        try {
+            Files.writeString(staged, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(config));
+            // Running invocations keep the file they opened; new ones see the new token
+            Files.move(staged, configFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    private HttpClient httpClient(String caCertPath) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(requestTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER);
+        SSLContext sslContext = BoshDirectorHttpClient.buildSslContext(caCertPath);
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        }
+        return builder.build();
+    }
+
+    private static JsonNode send(HttpClient httpClient, HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw BoshCommandException.forStatus(response.statusCode(),
+                    "Request to " + request.uri() + " failed with HTTP " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8);
+    }
+
+    private static Timer fetchTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("bosh.uaa.token.fetches")
+                .tag("outcome", outcome)
+                .description("UAA client-credentials token fetches for the BOSH CLI config")
+                .register(meterRegistry);
+    }
+}
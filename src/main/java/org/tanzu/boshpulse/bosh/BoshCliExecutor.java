@@ -1,38 +1,102 @@
 package org.tanzu.boshpulse.bosh;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 public class BoshCliExecutor {
 
     private static final Logger logger = LoggerFactory.getLogger(BoshCliExecutor.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ExecutorService ioExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bosh-cli-io-", 0).factory());
+    private static final Pattern TASK_ID_PATTERN = Pattern.compile("(?m)^\\s*Task (\\d+)");
+    private static final Pattern TASK_STATE_PATTERN = Pattern.compile("(?m)^\\s*Task (\\d+) (done|error|cancelled|timeout)\\s*$");
 
-    private final String director;
-    private final String client;
-    private final String clientSecret;
-    private final String caCertPath;
+    /**
+     * Subcommands whose CLI may run several Director tasks, its own task last:
+     * {@code deploy} first uploads the releases and stemcells the manifest references by URL.
+     */
+    private static final Set<String> MULTI_TASK_SUBCOMMANDS = Set.of("deploy");
+
+    static final String INVOCATION_OBSERVATION = "bosh.cli";
+    static final String PHASE_OBSERVATION = "bosh.cli.phase";
+
+    /**
+     * Everything an invocation needs besides the CLI path and the command: the arguments that select
+     * the Director and its CA, and the authentication environment. Built once per configuration change
+     * and swapped atomically, so invocations never touch the filesystem to assemble it.
+     *
+     * @param caCert The CA certificate content, or null
+     * @param arguments Arguments placed before the command
+     * @param environment Variables added to the CLI's environment
+     */
+    record InvocationTemplate(String director, String client, String clientSecret, String caCertPath,
+                              String caCert, List<String> arguments, Map<String, String> environment) {
+    }
+
+    private final String configuredDirector;
+    private final String configuredClient;
+    private final String configuredClientSecret;
+    private final String configuredCaCert;
+    private final String configuredCaCertPath;
     private final String cliPath;
     private final int timeoutSeconds;
     private BoshCliInstaller cliInstaller;
+    private BoshDirectorHttpClient directorHttpClient;
+    private BoshCommandScheduler commandScheduler;
+    private BoshCliMetrics metrics;
+    private BoshHedger hedger;
+    private BoshTimeouts timeouts;
+    private BoshCliConfig cliConfig;
+    private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
     private final BoshEnvConfigReader envConfigReader;
+    private final BoshSingleFlight singleFlight = new BoshSingleFlight();
+    private final AtomicLong invocationCount = new AtomicLong();
+    private final AtomicLong killedProcessCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicReference<InvocationTemplate> template = new AtomicReference<>();
+    private Path caCertFile;
 
     public BoshCliExecutor(
             @Value("${bosh.director:}") String director,
@@ -44,58 +108,134 @@ public class BoshCliExecutor {
             @Value("${bosh.connection.timeout:60}") int timeoutSeconds,
             BoshEnvConfigReader envConfigReader) {
         this.envConfigReader = envConfigReader;
+        this.configuredDirector = director;
+        this.configuredClient = client;
+        this.configuredClientSecret = clientSecret;
+        this.configuredCaCert = caCert;
+        this.configuredCaCertPath = caCertPath;
+        this.cliPath = cliPath;
+        this.timeoutSeconds = timeoutSeconds;
         
         // Initialize .env config reader
         envConfigReader.initialize();
-        
+        template.set(buildTemplate(null));
+    }
+
+    /**
+     * Re-read the .env folder and the CA certificate and swap in a new invocation template if anything
+     * changed. Invocations already running keep the template they started with.
+     *
+     * @return true if the configuration changed
+     */
+    public synchronized boolean reload() {
+        envConfigReader.reload();
+        InvocationTemplate previous = template.get();
+        InvocationTemplate next = buildTemplate(previous);
+        if (next.equals(previous)) {
+            logger.debug("BOSH configuration unchanged");
+            return false;
+        }
+        template.set(next);
+        logger.info("BOSH configuration reloaded (director {}, client {})", next.director(), next.client());
+        return true;
+    }
+
+    /**
+     * Build the invocation template from the properties, falling back to the .env folder.
+     *
+     * @param previous The current template, whose CA temp file is reused if the certificate is unchanged
+     */
+    private InvocationTemplate buildTemplate(InvocationTemplate previous) {
         // Use environment variables first, fallback to .env folder
-        this.director = (director != null && !director.trim().isEmpty()) 
-            ? director 
-            : envConfigReader.getDirector();
-        this.client = (client != null && !client.trim().isEmpty()) 
-            ? client 
-            : envConfigReader.getClient();
-        this.clientSecret = (clientSecret != null && !clientSecret.trim().isEmpty()) 
-            ? clientSecret 
-            : envConfigReader.getClientSecret();
-        this.cliPath = cliPath;
-        this.timeoutSeconds = timeoutSeconds;
+        String director = hasText(configuredDirector) ? configuredDirector : envConfigReader.getDirector();
+        String client = hasText(configuredClient) ? configuredClient : envConfigReader.getClient();
+        String clientSecret = hasText(configuredClientSecret) ? configuredClientSecret : envConfigReader.getClientSecret();
         
         // Handle CA certificate - support both file path and content
         // Priority: Environment variables > .env folder
         // If BOSH_CA_CERT (content) is provided, use it even if BOSH_CA_CERT_PATH is set
-        String finalCaCert = (caCert != null && !caCert.trim().isEmpty()) 
-            ? caCert 
-            : envConfigReader.getCaCert();
-        String finalCaCertPath = caCertPath;
+        String caCert = hasText(configuredCaCert) ? configuredCaCert : envConfigReader.getCaCert();
+        String caCertPath = null;
         
         logger.info("Certificate configuration - caCertPath: '{}', caCert provided: {}, .env available: {}", 
-                   caCertPath, (finalCaCert != null && !finalCaCert.trim().isEmpty()), 
-                   envConfigReader.isAvailable());
+                   configuredCaCertPath, hasText(caCert), envConfigReader.isAvailable());
         
         // If certificate content is provided, always use it (create temp file)
         // This takes precedence over caCertPath to allow overriding via BOSH_CA_CERT
-        if (finalCaCert != null && !finalCaCert.trim().isEmpty()) {
-            // Write certificate content to temporary file
-            try {
-                Path tempFile = Files.createTempFile("bosh-ca-cert", ".pem");
-                try (FileWriter writer = new FileWriter(tempFile.toFile())) {
-                    writer.write(finalCaCert);
+        if (hasText(caCert)) {
+            if (previous != null && caCert.equals(previous.caCert()) && previous.caCertPath() != null) {
+                caCertPath = previous.caCertPath();
+            } else {
+                // Write certificate content to the managed temporary file
+                try {
+                    caCertPath = writeCaCert(caCert).toString();
+                    logger.info("Wrote temporary CA certificate file: {} (size: {} bytes)", 
+                               caCertPath, caCert.length());
+                } catch (IOException e) {
+                    logger.error("Failed to create temporary CA certificate file", e);
+                    throw new IllegalStateException("Failed to create temporary CA certificate file", e);
                 }
-                finalCaCertPath = tempFile.toString();
-                tempFile.toFile().deleteOnExit();
-                logger.info("Created temporary CA certificate file: {} (size: {} bytes)", 
-                           finalCaCertPath, finalCaCert.length());
-            } catch (IOException e) {
-                logger.error("Failed to create temporary CA certificate file", e);
-                throw new IllegalStateException("Failed to create temporary CA certificate file", e);
             }
-        } else if (caCertPath != null && !caCertPath.trim().isEmpty()) {
-            logger.info("Using provided CA certificate path: {}", caCertPath);
+        } else if (hasText(configuredCaCertPath)) {
+            logger.info("Using provided CA certificate path: {}", configuredCaCertPath);
+            Path certFile = Paths.get(configuredCaCertPath);
+            if (Files.exists(certFile)) {
+                try {
+                    // BOSH CLI expects BOSH_CA_CERT to be the certificate content
+                    caCert = Files.readString(certFile).trim();
+                    caCertPath = configuredCaCertPath;
+                } catch (IOException e) {
+                    logger.warn("Failed to read CA certificate from {}: {}", configuredCaCertPath, e.getMessage());
+                }
+            } else {
+                logger.warn("CA certificate file not found: {}", configuredCaCertPath);
+            }
         } else {
             logger.warn("No CA certificate configured (neither caCertPath nor caCert provided)");
         }
-        this.caCertPath = finalCaCertPath;
+
+        List<String> arguments = new ArrayList<>(List.of("-e", String.valueOf(director)));
+        Map<String, String> environment = new LinkedHashMap<>();
+        putIfPresent(environment, "BOSH_ENVIRONMENT", director);
+        putIfPresent(environment, "BOSH_CLIENT", client);
+        putIfPresent(environment, "BOSH_CLIENT_SECRET", clientSecret);
+        if (caCertPath != null) {
+            arguments.add("--ca-cert");
+            arguments.add(caCertPath);
+            environment.put("BOSH_CA_CERT", caCert.trim());
+        }
+        return new InvocationTemplate(director, client, clientSecret, caCertPath, caCert,
+                List.copyOf(arguments), Collections.unmodifiableMap(environment));
+    }
+
+    /**
+     * Write certificate content to the one temporary file this executor manages, creating it on first
+     * use. A rotated certificate is staged beside it and renamed over it, so no CA file is left behind
+     * per rotation and an invocation never reads a half-written certificate.
+     */
+    private Path writeCaCert(String caCert) throws IOException {
+        if (caCertFile == null) {
+            caCertFile = Files.createTempFile("bosh-ca-cert", ".pem");
+            caCertFile.toFile().deleteOnExit();
+        }
+        Path staged = Files.createTempFile(caCertFile.getParent(), "bosh-ca-cert", ".pem.tmp");
+        try {
+            Files.writeString(staged, caCert);
+            Files.move(staged, caCertFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+        return caCertFile;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    private static void putIfPresent(Map<String, String> environment, String name, String value) {
+        if (value != null) {
+            environment.put(name, value);
+        }
     }
     
     /**
@@ -105,6 +245,79 @@ public class BoshCliExecutor {
         this.cliInstaller = cliInstaller;
     }
     
+    /**
+     * Set the Director HTTP backend (only present when {@code bosh.backend=http}).
+     * Commands it supports are served from the Director REST API instead of the CLI.
+     */
+    public void setDirectorHttpClient(BoshDirectorHttpClient directorHttpClient) {
+        this.directorHttpClient = directorHttpClient;
+    }
+
+    /**
+     * Set the scheduler that bounds concurrent CLI processes.
+     */
+    public void setCommandScheduler(BoshCommandScheduler commandScheduler) {
+        this.commandScheduler = commandScheduler;
+    }
+
+    /**
+     * Set the Micrometer instrumentation of CLI invocations.
+     */
+    public void setMetrics(BoshCliMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set the per-subcommand timeout classes; without them every command gets {@code bosh.connection.timeout}.
+     */
+    public void setTimeouts(BoshTimeouts timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * Set the managed CLI config with a cached UAA token (absent unless {@code bosh.cliConfig.enabled}).
+     */
+    public void setCliConfig(BoshCliConfig cliConfig) {
+        this.cliConfig = cliConfig;
+    }
+
+    /**
+     * Set the hedger that races a second call against slow reads.
+     */
+    public void setHedger(BoshHedger hedger) {
+        this.hedger = hedger;
+    }
+
+    /**
+     * Set the registry for the invocation and per-phase (queue, spawn, wait, parse) observations.
+     */
+    public void setObservationRegistry(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    String getDirector() {
+        return template.get().director();
+    }
+
+    String getClient() {
+        return template.get().client();
+    }
+
+    String getClientSecret() {
+        return template.get().clientSecret();
+    }
+
+    String getCaCertPath() {
+        return template.get().caCertPath();
+    }
+
+    /**
+     * The current invocation template; a new instance after every configuration change.
+     */
+    InvocationTemplate getInvocationTemplate() {
+        return template.get();
+    }
+
     /**
      * Get the effective CLI path, using the installed path if available.
      */
@@ -126,13 +339,38 @@ public class BoshCliExecutor {
      * @throws RuntimeException if command fails
      */
     public JsonNode executeJson(String command) {
-        String output = execute(command + " --json");
-        try {
-            return objectMapper.readTree(output);
-        } catch (Exception e) {
-            logger.error("Failed to parse JSON output: {}", output);
-            throw new RuntimeException("Failed to parse BOSH CLI JSON output", e);
+        if (directorHttpClient != null && directorHttpClient.supports(command)) {
+            return coalesced("json", command, () -> hedged(command, () -> directorHttpClient.executeJson(command)));
         }
+        return coalesced("json", command, () -> hedged(command, () -> execute(command + " --json", stdout -> {
+            try {
+                return objectMapper.readTree(stdout);
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to parse JSON output of '{}': {}", command, e.getOriginalMessage());
+                throw new BoshCommandException(BoshCommandException.Category.INTERNAL, "Failed to parse BOSH CLI JSON output", e);
+            }
+        })));
+    }
+
+    /**
+     * Execute a BOSH CLI command and extract table rows from its JSON output while it streams.
+     * Only the requested fields of matching rows are materialized.
+     * 
+     * @param command The BOSH command (e.g., "deployments", "releases")
+     * @param fields Row fields to keep, or null to keep every field
+     * @param filter Predicate a row must satisfy to be kept, or null to keep every row
+     * @return The matching rows
+     * @throws RuntimeException if command fails
+     */
+    public List<Map<String, String>> executeTableRows(String command, Set<String> fields,
+                                                      Predicate<Map<String, String>> filter) {
+        if (directorHttpClient != null && directorHttpClient.supports(command)) {
+            return BoshJsonRowExtractor.extractRows(executeJson(command), fields, filter);
+        }
+        Supplier<List<Map<String, String>>> call = () -> hedged(command, () -> execute(command + " --json",
+                stdout -> BoshJsonRowExtractor.extractRows(stdout, fields, filter)));
+        // A filter is opaque, so only unfiltered projections can be shared between callers
+        return filter == null ? coalesced("rows:" + (fields == null ? "*" : new TreeSet<>(fields)), command, call) : call.get();
     }
 
     /**
@@ -143,111 +381,523 @@ public class BoshCliExecutor {
      * @throws RuntimeException if command fails
      */
     public String execute(String command) {
-        List<String> commandParts = new ArrayList<>();
-        commandParts.add(getEffectiveCliPath());
-        commandParts.add("-e");
-        commandParts.add(director);
-        
-        // Add CA certificate as command flag if available
-        if (caCertPath != null && !caCertPath.trim().isEmpty()) {
-            try {
-                // Verify the certificate file exists
-                Path certFile = Paths.get(caCertPath);
-                if (Files.exists(certFile)) {
-                    commandParts.add("--ca-cert");
-                    commandParts.add(caCertPath);
-                    logger.debug("Using CA certificate from file: {}", caCertPath);
-                } else {
-                    logger.warn("CA certificate file not found: {}", caCertPath);
+        return coalesced("raw", command,
+                () -> execute(command, stdout -> new String(stdout.readAllBytes(), StandardCharsets.UTF_8).trim()));
+    }
+
+    /**
+     * Run a read through the hedger, below coalescing so the hedge is not merged into the call it races.
+     * The caller's observation and deadline are carried onto the hedger's threads.
+     */
+    private <T> T hedged(String command, Supplier<T> call) {
+        if (hedger == null) {
+            return call.get();
+        }
+        Observation parent = observationRegistry.getCurrentObservation();
+        return hedger.execute(BoshCommand.parse(command), BoshDeadline.propagate(() -> Observation.tryScoped(parent, call)));
+    }
+
+    /**
+     * Share one invocation between concurrent identical read-only calls.
+     * Mutations always run on their own.
+     */
+    private <T> T coalesced(String mode, String command, Supplier<T> call) {
+        BoshCommand parsed = BoshCommand.parse(command);
+        if (!parsed.isReadOnly()) {
+            return call.get();
+        }
+        return singleFlight.execute(mode + " " + parsed.normalized(), call);
+    }
+
+    /**
+     * Execute a BOSH CLI command, handing its stdout to the given handler as it is produced.
+     * stdout and stderr are drained concurrently on virtual threads, and the whole invocation
+     * (spawn, output, exit) is bounded by the timeout of the command's {@link BoshTimeouts} class,
+     * counted from the first run of the command in the tool call so retries share it, and by the
+     * caller's {@link BoshDeadline}. When the deadline expires the process and all of its descendants
+     * are killed. When a scheduler is set the process only starts once its lane has a free slot.
+     * 
+     * @param command The BOSH command
+     * @param outputHandler Consumes the process stdout and produces the result
+     * @param <T> The result type
+     * @return The handler result
+     * @throws RuntimeException if the command fails, times out or its output cannot be handled
+     */
+    <T> T execute(String command, OutputHandler<T> outputHandler) {
+        return execute(command, outputHandler, false);
+    }
+
+    /**
+     * The last Director task a command ran and the state the CLI reported for it.
+     *
+     * @param taskId The task ID, or null if the command did not run a task
+     * @param state done, error, cancelled or timeout, or null if the CLI did not report one
+     */
+    public record TaskOutcome(String taskId, String state) {
+    }
+
+    /**
+     * Check whether a command may run several Director tasks, so its first reported task is not its own.
+     */
+    static boolean runsSeveralTasks(String command) {
+        return MULTI_TASK_SUBCOMMANDS.contains(BoshCommand.parse(command).subcommand());
+    }
+
+    /**
+     * Start a BOSH command that runs as a Director task and return as soon as the CLI reports the task ID.
+     * The CLI is then detached (killed) and the Director keeps running the task on its own, so the
+     * execution slot is released right away. Progress has to be followed through the task ID.
+     * Only for commands that run a single task; killing a multi-task command such as {@code deploy}
+     * at its first task would stop it before its own task is created, so those go through {@link #runTask}.
+     *
+     * @param command The BOSH command (e.g., "recreate -d cf")
+     * @return The Director task ID
+     * @throws RuntimeException if the command fails or exits without starting a task
+     */
+    public String startTask(String command) {
+        if (runsSeveralTasks(command)) {
+            throw new IllegalArgumentException("BOSH command '" + BoshCommand.parse(command).subcommand()
+                    + "' may run several Director tasks and cannot be detached at the first one");
+        }
+        String taskId = execute(command, stdout -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String reported = parseTaskId(line);
+                if (reported != null) {
+                    return reported;
                 }
-            } catch (Exception e) {
-                logger.warn("Error processing CA certificate path {}: {}", caCertPath, e.getMessage());
             }
+            return null;
+        }, true);
+        if (taskId == null) {
+            throw new RuntimeException("BOSH CLI command '" + BoshCommand.parse(command).subcommand()
+                    + "' finished without starting a Director task");
         }
-        
-        // Add command parts
-        String[] parts = command.split("\\s+");
-        for (String part : parts) {
-            if (!part.trim().isEmpty()) {
-                commandParts.add(part.trim());
+        logger.info("BOSH command '{}' started Director task {}", command, taskId);
+        return taskId;
+    }
+
+    /**
+     * Run a BOSH command attached until the CLI exits, reporting every Director task it starts.
+     *
+     * @param command The BOSH command (e.g., "deploy -d cf manifest.yml")
+     * @param onTaskStarted Called with the ID of each task as the CLI reports it, in order
+     * @return The last task and its state
+     * @throws RuntimeException if the command fails
+     */
+    public TaskOutcome runTask(String command, Consumer<String> onTaskStarted) {
+        return execute(command, stdout -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8));
+            String taskId = null;
+            String state = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String reported = parseTaskId(line);
+                if (reported != null && !reported.equals(taskId)) {
+                    taskId = reported;
+                    state = null;
+                    onTaskStarted.accept(taskId);
+                }
+                Matcher finished = TASK_STATE_PATTERN.matcher(line);
+                if (finished.find() && finished.group(1).equals(taskId)) {
+                    state = finished.group(2);
+                }
             }
+            return new TaskOutcome(taskId, state);
+        });
+    }
+
+    /**
+     * Find the last Director task in CLI output and the state the CLI reported for it
+     * (the {@code Task 123 done} line printed when a task finishes).
+     *
+     * @return The outcome; both fields are null if the output does not mention a task
+     */
+    static TaskOutcome parseTaskOutcome(String output) {
+        if (output == null) {
+            return new TaskOutcome(null, null);
+        }
+        String taskId = null;
+        Matcher started = TASK_ID_PATTERN.matcher(output);
+        while (started.find()) {
+            taskId = started.group(1);
         }
+        String state = null;
+        Matcher finished = TASK_STATE_PATTERN.matcher(output);
+        while (finished.find()) {
+            if (finished.group(1).equals(taskId)) {
+                state = finished.group(2);
+            }
+        }
+        return new TaskOutcome(taskId, state);
+    }
 
-        ProcessBuilder processBuilder = new ProcessBuilder(commandParts);
-        
-        // Set environment variables for BOSH authentication
-        Map<String, String> env = processBuilder.environment();
-        env.put("BOSH_ENVIRONMENT", director);
-        env.put("BOSH_CLIENT", client);
-        env.put("BOSH_CLIENT_SECRET", clientSecret);
-        
-        // Set BOSH_CA_CERT environment variable if certificate path is available
-        if (caCertPath != null && !caCertPath.trim().isEmpty()) {
+    /**
+     * Find the Director task ID in CLI output (the {@code Task 123} line printed when a task starts).
+     *
+     * @return The first task ID, or null if the output does not mention one
+     */
+    static String parseTaskId(String output) {
+        if (output == null) {
+            return null;
+        }
+        Matcher matcher = TASK_ID_PATTERN.matcher(output);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private <T> T execute(String command, OutputHandler<T> outputHandler, boolean detach) {
+        BoshCommand parsed = BoshCommand.parse(command);
+        Observation invocation = Observation.createNotStarted(INVOCATION_OBSERVATION, observationRegistry)
+                .lowCardinalityKeyValue("subcommand", parsed.subcommand())
+                .contextualName("bosh " + parsed.subcommand());
+        return invocation.observe(() -> {
+            if (commandScheduler == null) {
+                return spawn(command, outputHandler, detach, invocation);
+            }
+            // Time spent waiting for a lane slot; the phase ends once the slot is held or the command is rejected
+            Observation queue = phase("queue", parsed.subcommand(), invocation).start();
+            AtomicBoolean admitted = new AtomicBoolean();
             try {
-                Path certFile = Paths.get(caCertPath);
-                if (Files.exists(certFile)) {
-                    // BOSH CLI expects BOSH_CA_CERT to be the certificate content
-                    String certContent = Files.readString(certFile).trim();
-                    env.put("BOSH_CA_CERT", certContent);
-                    logger.info("Set BOSH_CA_CERT environment variable from file: {} (content length: {} chars)", caCertPath, certContent.length());
+                return commandScheduler.run(parsed, () -> {
+                    admitted.set(true);
+                    queue.stop();
+                    return spawn(command, outputHandler, detach, invocation);
+                });
+            } catch (RuntimeException e) {
+                if (!admitted.get()) {
+                    queue.error(e);
+                    queue.stop();
                 }
-            } catch (Exception e) {
-                logger.warn("Failed to read CA certificate from {}: {}", caCertPath, e.getMessage());
+                throw e;
             }
+        });
+    }
+
+    private Observation phase(String phase, String subcommand, Observation invocation) {
+        return Observation.createNotStarted(PHASE_OBSERVATION, observationRegistry)
+                .parentObservation(invocation)
+                .lowCardinalityKeyValue("phase", phase)
+                .lowCardinalityKeyValue("subcommand", subcommand)
+                .contextualName(subcommand + " " + phase);
+    }
+
+    /**
+     * Run a CLI process. With {@code detach}, a non-null handler result is returned as soon as it is
+     * available and the process is killed instead of awaited; a null result falls back to the normal
+     * exit code handling.
+     * The spawn phase covers building the argv and starting the process, the parse phase runs the handler
+     * on the stdout reader thread, and the wait phase lasts from start until exit, overlapping parse.
+     */
+    private <T> T spawn(String command, OutputHandler<T> outputHandler, boolean detach, Observation invocation) {
+        BoshCommand parsed = BoshCommand.parse(command);
+        String subcommand = parsed.subcommand();
+        Duration timeout = timeouts != null ? timeouts.timeout(parsed) : Duration.ofSeconds(timeoutSeconds);
+        long deadlineNanos = BoshDeadline.deadlineNanos(parsed, timeout);
+        if (remainingNanos(deadlineNanos) == 0) {
+            // A retry or a queue wait used up the budget; starting the process would only kill it
+            throw timedOut(null, command, timeout, deadlineNanos);
         }
+        Observation spawnPhase = phase("spawn", subcommand, invocation).start();
+        ProcessBuilder processBuilder = processBuilder(command, Duration.ofNanos(remainingNanos(deadlineNanos)));
+        List<String> commandParts = processBuilder.command();
 
+        long startNanos = System.nanoTime();
+        Process process = null;
+        Observation waitPhase = null;
+        BoshCliMetrics.CountingInputStream stdout = null;
+        BoshCliMetrics.Outcome outcome = BoshCliMetrics.Outcome.ERROR;
+        Integer exitCode = null;
         try {
             logger.debug("Executing BOSH command: {}", String.join(" ", commandParts));
-            Process process = processBuilder.start();
-
-            // Read output
-            StringBuilder output = new StringBuilder();
-            StringBuilder errorOutput = new StringBuilder();
-
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
+            try {
+                process = processBuilder.start();
+            } finally {
+                spawnPhase.stop();
+            }
+            waitPhase = phase("wait", subcommand, invocation).start();
+            invocationCount.incrementAndGet();
+            if (metrics != null) {
+                metrics.started();
             }
 
-            try (BufferedReader errorReader = new BufferedReader(
-                    new InputStreamReader(process.getErrorStream()))) {
-                String line;
-                while ((line = errorReader.readLine()) != null) {
-                    errorOutput.append(line).append("\n");
+            // Drain both pipes concurrently so a chatty stderr can never block the child
+            Process running = process;
+            BoshCliMetrics.CountingInputStream counted = stdout = BoshCliMetrics.counting(process.getInputStream());
+            Observation parsePhase = phase("parse", subcommand, invocation);
+            Future<T> output = ioExecutor.submit(() -> parsePhase.observeChecked(() -> detach
+                    ? outputHandler.handle(counted)
+                    : handleOutput(counted, outputHandler)));
+            Future<String> errorOutput = ioExecutor.submit(
+                    () -> new String(running.getErrorStream().readAllBytes(), StandardCharsets.UTF_8));
+
+            if (detach) {
+                try {
+                    T result = output.get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+                    if (result != null) {
+                        // The process tree is killed in finally; the handler has everything it needs
+                        logger.debug("Detached from BOSH CLI command after {} ms", elapsedMillis(startNanos));
+                        outcome = BoshCliMetrics.Outcome.DETACHED;
+                        return result;
+                    }
+                } catch (TimeoutException e) {
+                    outcome = BoshCliMetrics.Outcome.TIMEOUT;
+                    throw timedOut(process, command, timeout, deadlineNanos);
                 }
             }
 
-            // Wait for process with timeout
-            boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+            // Wait for process with a deadline covering the whole invocation
+            boolean finished = awaitExit(process, remainingNanos(deadlineNanos));
             if (!finished) {
-                process.destroyForcibly();
-                throw new RuntimeException("BOSH CLI command timed out after " + timeoutSeconds + " seconds");
+                outcome = BoshCliMetrics.Outcome.TIMEOUT;
+                throw timedOut(process, command, timeout, deadlineNanos);
             }
 
-            int exitCode = process.exitValue();
-            if (exitCode != 0) {
-                String errorMsg = errorOutput.length() > 0 ? errorOutput.toString() : output.toString();
-                logger.error("BOSH CLI command failed with exit code {}: {}", exitCode, errorMsg);
-                throw new RuntimeException("BOSH CLI command failed: " + errorMsg);
+            T result;
+            try {
+                String errors = errorOutput.get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+                exitCode = process.exitValue();
+                if (exitCode != 0) {
+                    outcome = BoshCliMetrics.Outcome.FAILURE;
+                    String errorMsg = !errors.isBlank() ? errors : describeOutput(output);
+                    logger.error("BOSH CLI command failed with exit code {}: {}", exitCode, errorMsg);
+                    BoshCommandException.Category category = BoshCommandException.classifyExit(exitCode, errorMsg);
+                    if (category == BoshCommandException.Category.AUTH && cliConfig != null
+                            && cliConfig.isUsedBy(processBuilder.environment())) {
+                        cliConfig.invalidate();
+                    }
+                    throw new BoshCommandException(category, exitCode, "BOSH CLI command failed: " + errorMsg, null);
+                }
+                result = output.get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Exited, but a leftover descendant still holds the pipes open
+                outcome = BoshCliMetrics.Outcome.TIMEOUT;
+                throw timedOut(process, command, timeout, deadlineNanos);
             }
 
-            String result = output.toString().trim();
-            logger.debug("BOSH CLI command succeeded, output length: {}", result.length());
+            logger.debug("BOSH CLI command succeeded in {} ms", elapsedMillis(startNanos));
+            outcome = BoshCliMetrics.Outcome.SUCCESS;
             return result;
 
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            logger.error("Failed to read BOSH CLI command output", cause);
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BoshCommandException(BoshCommandException.Category.INTERNAL,
+                    "Failed to read BOSH CLI command output: " + cause.getMessage(), cause);
         } catch (IOException e) {
             logger.error("Failed to execute BOSH CLI command", e);
-            throw new RuntimeException("Failed to execute BOSH CLI command: " + e.getMessage(), e);
+            throw new BoshCommandException(BoshCommandException.Category.INTERNAL,
+                    "Failed to execute BOSH CLI command: " + e.getMessage(), e);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.error("BOSH CLI command interrupted", e);
-            throw new RuntimeException("BOSH CLI command interrupted", e);
+            throw new BoshCommandException(BoshCommandException.Category.INTERNAL, "BOSH CLI command interrupted", e);
+        } finally {
+            if (waitPhase != null) {
+                waitPhase.stop();
+            }
+            invocation.lowCardinalityKeyValue("outcome", outcome.getTag());
+            if (process != null) {
+                if (process.isAlive()) {
+                    killProcessTree(process);
+                }
+                long latencyNanos = System.nanoTime() - startNanos;
+                totalLatencyNanos.addAndGet(latencyNanos);
+                logger.debug("BOSH CLI invocation '{}' took {} ms", command, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+                if (metrics != null) {
+                    metrics.finished(subcommand, outcome, exitCode, latencyNanos,
+                            stdout != null ? stdout.getCount() : 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a long-running streaming command such as {@code logs --follow} and hand the process to the caller.
+     * Streaming commands bypass the scheduler lanes and the invocation deadline, so the caller must drain
+     * stdout and stderr and stop the process with {@link #killProcessTree(Process)}.
+     *
+     * @param command The BOSH command
+     * @return The running process
+     * @throws IOException if the process cannot be started
+     */
+    Process startStreaming(String command) throws IOException {
+        ProcessBuilder processBuilder = processBuilder(command, null);
+        logger.debug("Starting streaming BOSH command: {}", String.join(" ", processBuilder.command()));
+        Process process = processBuilder.start();
+        invocationCount.incrementAndGet();
+        return process;
+    }
+
+    /**
+     * Build the CLI argv and authentication environment for a command from the invocation template.
+     *
+     * @param maxRuntime How long the command may run, or null for streaming commands that run until stopped
+     */
+    private ProcessBuilder processBuilder(String command, Duration maxRuntime) {
+        InvocationTemplate current = template.get();
+        List<String> commandParts = new ArrayList<>();
+        commandParts.add(getEffectiveCliPath());
+        commandParts.addAll(current.arguments());
+        
+        // Add command parts
+        String[] parts = command.split("\\s+");
+        for (String part : parts) {
+            if (!part.trim().isEmpty()) {
+                commandParts.add(part.trim());
+            }
+        }
+
+        ProcessBuilder processBuilder = new ProcessBuilder(commandParts);
+        
+        // Set environment variables for BOSH authentication
+        processBuilder.environment().putAll(current.environment());
+        if (cliConfig != null) {
+            cliConfig.apply(current, maxRuntime, processBuilder.environment());
+        }
+        return processBuilder;
+    }
+
+    /**
+     * Best-effort description of stdout for error messages when stderr is empty.
+     */
+    private static String describeOutput(Future<?> output) {
+        try {
+            return String.valueOf(output.get(1, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * Run the output handler and drain whatever it leaves unread, so the child never blocks
+     * on a full stdout pipe after the handler has returned or failed.
+     */
+    private static <T> T handleOutput(InputStream stdout, OutputHandler<T> outputHandler) throws IOException {
+        try {
+            return outputHandler.handle(stdout);
+        } finally {
+            drainQuietly(stdout);
+            closeQuietly(stdout);
+        }
+    }
+
+    private static void drainQuietly(InputStream stream) {
+        try {
+            stream.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException ignored) {
+            // Stream already closed by the handler or the process
+        }
+    }
+
+    private RuntimeException timedOut(Process process, String command, Duration timeout, long deadlineNanos) {
+        int killed = 0;
+        if (process != null) {
+            killed = killProcessTree(process);
+            closeQuietly(process.getInputStream());
+            closeQuietly(process.getErrorStream());
+        }
+        if (BoshDeadline.isCallerDeadline(deadlineNanos)) {
+            logger.error("BOSH CLI command '{}' ran past the tool call deadline, killed {} process(es)", command, killed);
+            return BoshDeadline.expired();
+        }
+        logger.error("BOSH CLI command '{}' timed out after {} seconds, killed {} process(es)",
+                command, timeout.toSeconds(), killed);
+        return BoshCommandException.timedOut(BoshCommand.parse(command),
+                "BOSH CLI command timed out after " + timeout.toSeconds() + " seconds");
+    }
+
+    /**
+     * Forcibly kill a process and all of its descendants.
+     * 
+     * @return The number of processes that were killed
+     */
+    int killProcessTree(Process process) {
+        List<ProcessHandle> victims = new ArrayList<>(process.descendants().toList());
+        victims.add(process.toHandle());
+        int killed = 0;
+        for (ProcessHandle victim : victims) {
+            if (victim.isAlive() && victim.destroyForcibly()) {
+                killed++;
+            }
+        }
+        killedProcessCount.addAndGet(killed);
+        return killed;
+    }
+
+    /**
+     * Wait for a process to exit. Unlike {@link Process#waitFor(long, TimeUnit)}, which blocks in
+     * {@code Object.wait()} and pins a virtual thread to its carrier, this parks on the exit future.
+     *
+     * @return true if the process exited within the timeout
+     */
+    static boolean awaitExit(Process process, long timeoutNanos) throws InterruptedException {
+        try {
+            process.onExit().get(timeoutNanos, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return !process.isAlive();
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
         }
     }
 
+    private static long remainingNanos(long deadlineNanos) {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Get the number of CLI processes started so far.
+     */
+    public long getInvocationCount() {
+        return invocationCount.get();
+    }
+
+    /**
+     * Get the number of CLI processes (including descendants) killed on deadline expiry, abandonment or detachment.
+     */
+    public long getKilledProcessCount() {
+        return killedProcessCount.get();
+    }
+
+    /**
+     * Get the number of read-only calls that shared an identical in-flight invocation instead of starting their own.
+     */
+    public long getCoalescedCount() {
+        return singleFlight.getCoalescedCount();
+    }
+
+    /**
+     * Get the mean wall-clock latency added by a CLI invocation, or zero if none has run yet.
+     */
+    public Duration getAverageInvocationLatency() {
+        long invocations = invocationCount.get();
+        return invocations == 0 ? Duration.ZERO : Duration.ofNanos(totalLatencyNanos.get() / invocations);
+    }
+
+    /**
+     * Consumes the stdout of a BOSH CLI process.
+     */
+    @FunctionalInterface
+    interface OutputHandler<T> {
+        T handle(InputStream stdout) throws IOException;
+    }
+
     /**
      * Check if BOSH CLI is available.
      * 
@@ -257,7 +907,7 @@ public class BoshCliExecutor {
         try {
             ProcessBuilder processBuilder = new ProcessBuilder(getEffectiveCliPath(), "--version");
             Process process = processBuilder.start();
-            boolean finished = process.waitFor(5, TimeUnit.SECONDS);
+            boolean finished = awaitExit(process, TimeUnit.SECONDS.toNanos(5));
             if (!finished) {
                 process.destroyForcibly();
                 return false;
@@ -0,0 +1,178 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer instrumentation of BOSH CLI invocations and of the retry loop around tool operations.
+ * Timers publish percentile histograms, so {@code /actuator/prometheus} can derive latency quantiles
+ * per subcommand. Tags are limited to the subcommand, operation name, outcome and exit code, never
+ * deployment or VM names, to keep the number of series bounded.
+ */
+@Component
+public class BoshCliMetrics {
+
+    /**
+     * Outcome of a CLI invocation or tool operation.
+     */
+    public enum Outcome {
+        SUCCESS("success"),
+        FAILURE("failure"),
+        TIMEOUT("timeout"),
+        ERROR("error"),
+        DETACHED("detached");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public BoshCliMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("bosh.cli.inflight", inFlight, AtomicInteger::get)
+                .description("BOSH CLI processes currently running, excluding streaming commands")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Note that a CLI process started; pair with {@link #finished}.
+     */
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Record a finished CLI invocation.
+     *
+     * @param subcommand The BOSH subcommand, e.g. {@code vms}
+     * @param outcome How the invocation ended
+     * @param exitCode The process exit code, or null if the process did not exit on its own
+     * @param latencyNanos Wall-clock time from spawn to completion
+     * @param stdoutBytes Bytes read from stdout
+     */
+    void finished(String subcommand, Outcome outcome, Integer exitCode, long latencyNanos, long stdoutBytes) {
+        inFlight.decrementAndGet();
+        Timer.builder("bosh.cli.invocations")
+                .tag("subcommand", subcommand).tag("outcome", outcome.getTag())
+                .description("BOSH CLI invocation latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("bosh.cli.stdout")
+                .tag("subcommand", subcommand)
+                .baseUnit("bytes")
+                .description("Size of BOSH CLI stdout")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(stdoutBytes);
+        if (exitCode != null) {
+            Counter.builder("bosh.cli.exits")
+                    .tag("subcommand", subcommand).tag("code", Integer.toString(exitCode))
+                    .description("BOSH CLI process exits by exit code")
+                    .register(meterRegistry)
+                    .increment();
+        }
+        if (outcome == Outcome.TIMEOUT) {
+            Counter.builder("bosh.cli.timeouts")
+                    .tag("subcommand", subcommand)
+                    .description("BOSH CLI invocations killed at the deadline")
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Record one attempt of a tool operation run through the retry loop.
+     *
+     * @param operation The operation name, e.g. {@code listVms}
+     * @param outcome {@code SUCCESS}, or {@code FAILURE} for an attempt that threw
+     * @param latencyNanos Duration of the attempt
+     */
+    void attempt(String operation, Outcome outcome, long latencyNanos) {
+        Timer.builder("bosh.operation.attempts")
+                .tag("operation", operation).tag("outcome", outcome.getTag())
+                .description("BOSH tool operation attempt latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record that a failed attempt is retried.
+     *
+     * @param operation The operation name
+     */
+    void retried(String operation) {
+        Counter.builder("bosh.operation.retries")
+                .tag("operation", operation)
+                .description("BOSH tool operation attempts retried after a transient failure")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Wrap stdout so the bytes the handler reads are counted.
+     */
+    static CountingInputStream counting(InputStream stdout) {
+        return new CountingInputStream(stdout);
+    }
+
+    /**
+     * An input stream that counts the bytes read through it; safe to read from another thread.
+     */
+    static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
 
 @Service
 public class BoshCloudConfigService extends BoshBaseService {
@@ -26,12 +27,12 @@ public class BoshCloudConfigService extends BoshBaseService {
 
     @Tool(description = GET_CLOUD_CONFIG)
     public String getCloudConfig() {
-        return executeWithRetry(() -> {
+        return cached(Region.CLOUD_CONFIG, "", () -> executeWithRetry(() -> {
             logger.info("Getting BOSH cloud config");
             String config = cliExecutor.execute("cloud-config");
             logger.info("Retrieved BOSH cloud config");
             return config;
-        }, "getCloudConfig");
+        }, "getCloudConfig"));
     }
 
     @Tool(description = UPDATE_CLOUD_CONFIG)
@@ -40,12 +41,16 @@ public class BoshCloudConfigService extends BoshBaseService {
             throw new IllegalArgumentException("Cloud config path is required");
         }
         
-        executeWithRetry(() -> {
-            logger.info("Updating BOSH cloud config from: {}", configPath);
-            cliExecutor.execute("update-cloud-config " + configPath);
-            logger.info("BOSH cloud config updated successfully");
-            return null;
-        }, "updateCloudConfig");
+        try {
+            executeWithRetry(() -> {
+                logger.info("Updating BOSH cloud config from: {}", configPath);
+                cliExecutor.execute("update-cloud-config " + configPath);
+                logger.info("BOSH cloud config updated successfully");
+                return null;
+            }, "updateCloudConfig");
+        } finally {
+            invalidate(Region.CLOUD_CONFIG);
+        }
     }
 
     @Tool(description = GET_CLOUD_CONFIG_DIFF)
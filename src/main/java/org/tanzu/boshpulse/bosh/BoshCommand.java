@@ -0,0 +1,67 @@
+package org.tanzu.boshpulse.bosh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A parsed BOSH CLI command line (without the global {@code -e}/{@code --ca-cert} flags).
+ * Classifies the subcommand as read-only or mutating and extracts the target deployment.
+ */
+public record BoshCommand(String subcommand, String deployment, List<String> arguments) {
+
+    /**
+     * Subcommands that only read Director state and can safely be shared or repeated.
+     */
+    private static final Set<String> READ_ONLY_SUBCOMMANDS = Set.of(
+            "deployments", "deployment", "vms", "instances", "stemcells", "releases",
+            "tasks", "task", "cloud-config", "runtime-config", "cpi-config", "configs", "config",
+            "errands", "events", "event", "locks", "manifest", "environment", "env",
+            "inspect-release", "disks", "variables", "networks", "logs");
+
+    public BoshCommand {
+        arguments = Collections.unmodifiableList(arguments);
+    }
+
+    /**
+     * Parse a command string such as {@code "vms -d cf --details"}.
+     *
+     * @param command The BOSH command
+     * @return The parsed command
+     */
+    public static BoshCommand parse(String command) {
+        List<String> arguments = new ArrayList<>();
+        for (String part : command.trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                arguments.add(part);
+            }
+        }
+        String subcommand = arguments.isEmpty() ? "" : arguments.get(0);
+        String deployment = null;
+        for (int i = 0; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ((argument.equals("-d") || argument.equals("--deployment")) && i + 1 < arguments.size()) {
+                deployment = arguments.get(i + 1);
+            } else if (argument.startsWith("--deployment=")) {
+                deployment = argument.substring("--deployment=".length());
+            }
+        }
+        return new BoshCommand(subcommand, deployment, arguments);
+    }
+
+    /**
+     * Check whether the command only reads Director state.
+     * Streaming commands such as {@code logs --follow} and anything unknown count as mutations.
+     */
+    public boolean isReadOnly() {
+        return READ_ONLY_SUBCOMMANDS.contains(subcommand) && !arguments.contains("--follow");
+    }
+
+    /**
+     * The command with whitespace normalized, suitable as a key for identical invocations.
+     */
+    public String normalized() {
+        return String.join(" ", arguments);
+    }
+}
@@ -0,0 +1,233 @@
+package org.tanzu.boshpulse.bosh;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * A failed BOSH command, classified where the failure is first seen (CLI exit code and stderr,
+ * Director HTTP status, transport exception) so the retry loop and circuit breaker can decide on
+ * the category, and on whether the Director itself answered.
+ */
+public class BoshCommandException extends RuntimeException {
+
+    /**
+     * Why a command failed.
+     */
+    public enum Category {
+        /** The Director, or the network to it, could not serve the request. */
+        UNAVAILABLE(true, true),
+        /** The command did not finish within the timeout of its class. */
+        TIMEOUT(true, true),
+        /** The deadline the caller set for the tool call expired; says nothing about the Director. */
+        DEADLINE(false, false),
+        /** The credentials were refused. */
+        AUTH(false, false),
+        /** The deployment, VM, release, stemcell or task does not exist. */
+        NOT_FOUND(false, false),
+        /** This server is saturated: no scheduler slot was free. */
+        REJECTED(false, false),
+        /** The Director refused the request as invalid, or the command itself failed. */
+        INVALID(false, false),
+        /** The circuit breaker is open, so the Director was not called. */
+        CIRCUIT_OPEN(false, false),
+        /** The CLI could not be run or its output could not be handled. */
+        INTERNAL(false, false);
+
+        private final boolean retryable;
+        private final boolean directorFault;
+
+        Category(boolean retryable, boolean directorFault) {
+            this.retryable = retryable;
+            this.directorFault = directorFault;
+        }
+
+        /**
+         * Whether another attempt may succeed.
+         */
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        /**
+         * Whether the failure says the Director is unhealthy, and so counts towards opening the circuit.
+         */
+        public boolean isDirectorFault() {
+            return directorFault;
+        }
+    }
+
+    // The CLI exits 1 for every Director error, so its message is classified once, here
+    private static final Pattern UNAVAILABLE_PATTERN = Pattern.compile(
+            "(?i)connection refused|connection reset|no such host|no route to host|dial tcp|unexpected EOF"
+                    + "|TLS handshake|i/o timeout|Service Unavailable|Bad Gateway|Gateway Timeout|status code '?5\\d\\d");
+    private static final Pattern AUTH_PATTERN = Pattern.compile(
+            "(?i)unauthorized|invalid_token|invalid_client|bad credentials|status code '?40[13]");
+    private static final Pattern NOT_FOUND_PATTERN = Pattern.compile(
+            "(?i)doesn't exist|does not exist|not found|status code '?404");
+
+    private final Category category;
+    private final Integer exitCode;
+    private final Integer status;
+    private final String command;
+
+    public BoshCommandException(Category category, String message) {
+        this(category, null, message, null);
+    }
+
+    public BoshCommandException(Category category, String message, Throwable cause) {
+        this(category, null, message, cause);
+    }
+
+    public BoshCommandException(Category category, Integer exitCode, String message, Throwable cause) {
+        this(category, exitCode, null, null, message, cause);
+    }
+
+    private BoshCommandException(Category category, Integer exitCode, Integer status, String command,
+                                 String message, Throwable cause) {
+        super(message, cause);
+        this.category = category;
+        this.exitCode = exitCode;
+        this.status = status;
+        this.command = command;
+    }
+
+    /**
+     * A failure the Director answered with a non-2xx HTTP status, classified with {@link #classifyStatus(int)}.
+     */
+    static BoshCommandException forStatus(int status, String message) {
+        return new BoshCommandException(classifyStatus(status), null, status, null, message, null);
+    }
+
+    /**
+     * A Director task that ended in {@code error}, {@code cancelled} or {@code timeout}: the Director
+     * answered the request, and the command itself failed.
+     */
+    static BoshCommandException taskFailed(String message) {
+        return new BoshCommandException(Category.INVALID, null, 200, null, message, null);
+    }
+
+    /**
+     * A command that ran past its own timeout, as opposed to the caller's deadline.
+     */
+    static BoshCommandException timedOut(BoshCommand command, String message) {
+        return new BoshCommandException(Category.TIMEOUT, null, null, command.normalized(), message, null);
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * The CLI exit code, or null if the failure did not come from a CLI process exit.
+     */
+    public Integer getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * The Director HTTP status, or null if the failure did not come from a Director response.
+     */
+    public Integer getStatus() {
+        return status;
+    }
+
+    /**
+     * The normalized command that timed out, or null if the failure is not a command timeout.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Get the command that timed out anywhere in a failure's causes.
+     *
+     * @param failure The failure
+     * @return The normalized command, or null if none is known
+     */
+    public static String timedOutCommand(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof BoshCommandException commandException) {
+                return commandException.command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a failure is an answer from the Director: an HTTP status, or an exit of a CLI that talked
+     * to it. Local failures, such as an invalid argument or a rejected queue slot, are not.
+     *
+     * @param failure The failure
+     * @return true if the Director answered
+     */
+    public static boolean isDirectorAnswer(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof BoshCommandException commandException) {
+                return commandException.status != null
+                        || (commandException.exitCode != null && commandException.exitCode < 126);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Classify a non-zero CLI exit.
+     *
+     * @param exitCode The exit code
+     * @param errors stderr, or stdout when stderr was empty
+     * @return The category
+     */
+    static Category classifyExit(int exitCode, String errors) {
+        if (exitCode >= 126) {
+            // Not executable, not found, or killed by a signal: the CLI never talked to the Director
+            return Category.INTERNAL;
+        }
+        if (UNAVAILABLE_PATTERN.matcher(errors).find()) {
+            return Category.UNAVAILABLE;
+        }
+        if (AUTH_PATTERN.matcher(errors).find()) {
+            return Category.AUTH;
+        }
+        if (NOT_FOUND_PATTERN.matcher(errors).find()) {
+            return Category.NOT_FOUND;
+        }
+        return Category.INVALID;
+    }
+
+    /**
+     * Classify a non-2xx Director HTTP status.
+     */
+    static Category classifyStatus(int status) {
+        return switch (status) {
+            case 401, 403 -> Category.AUTH;
+            case 404 -> Category.NOT_FOUND;
+            case 408, 429 -> Category.UNAVAILABLE;
+            default -> status >= 500 ? Category.UNAVAILABLE : Category.INVALID;
+        };
+    }
+
+    /**
+     * Get the category of any failure, looking through causes for transport exceptions.
+     *
+     * @param failure The failure
+     * @return Its category; {@code INTERNAL} when nothing more specific is known
+     */
+    public static Category categorize(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof BoshCommandException commandException) {
+                return commandException.getCategory();
+            }
+            if (t instanceof HttpTimeoutException || t instanceof TimeoutException
+                    || t instanceof SocketTimeoutException) {
+                return Category.TIMEOUT;
+            }
+            if (t instanceof IOException) {
+                return Category.UNAVAILABLE;
+            }
+        }
+        return failure instanceof IllegalArgumentException ? Category.INVALID : Category.INTERNAL;
+    }
+}
@@ -0,0 +1,175 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many BOSH CLI processes run against the Director at once.
+ * Reads and mutations get separate lanes, each with its own concurrency limit and bounded
+ * wait queue, so a slow deploy can never starve listings. Slots are handed out in FIFO order;
+ * callers that find the queue full or wait longer than {@code bosh.scheduler.maxWait} are rejected.
+ */
+@Component
+public class BoshCommandScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshCommandScheduler.class);
+
+    /**
+     * Scheduling lanes.
+     */
+    public enum Lane {
+        READ("read"),
+        MUTATION("mutation");
+
+        private final String tag;
+
+        Lane(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private static final class LaneState {
+        private final Semaphore slots;
+        private final int maxConcurrent;
+        private final int maxQueue;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final Timer waitTimer;
+        private final Counter rejections;
+
+        private LaneState(Lane lane, int maxConcurrent, int maxQueue, MeterRegistry meterRegistry) {
+            this.slots = new Semaphore(maxConcurrent, true);
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueue = maxQueue;
+            this.waitTimer = Timer.builder("bosh.scheduler.wait")
+                    .tag("lane", lane.getTag())
+                    .description("Time BOSH commands waited for an execution slot")
+                    .register(meterRegistry);
+            this.rejections = Counter.builder("bosh.scheduler.rejected")
+                    .tag("lane", lane.getTag())
+                    .description("BOSH commands rejected because the lane was saturated")
+                    .register(meterRegistry);
+            Gauge.builder("bosh.scheduler.queue.depth", waiting, AtomicInteger::get)
+                    .tag("lane", lane.getTag())
+                    .description("BOSH commands waiting for an execution slot")
+                    .register(meterRegistry);
+            Gauge.builder("bosh.scheduler.running", running, AtomicInteger::get)
+                    .tag("lane", lane.getTag())
+                    .description("BOSH commands currently holding an execution slot")
+                    .register(meterRegistry);
+        }
+    }
+
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private final Duration maxWait;
+
+    public BoshCommandScheduler(@Value("${bosh.scheduler.read.maxConcurrent:8}") int readMaxConcurrent,
+                                @Value("${bosh.scheduler.read.maxQueue:32}") int readMaxQueue,
+                                @Value("${bosh.scheduler.mutation.maxConcurrent:2}") int mutationMaxConcurrent,
+                                @Value("${bosh.scheduler.mutation.maxQueue:8}") int mutationMaxQueue,
+                                @Value("${bosh.scheduler.maxWait:30}") int maxWaitSeconds,
+                                MeterRegistry meterRegistry) {
+        lanes.put(Lane.READ, new LaneState(Lane.READ, readMaxConcurrent, readMaxQueue, meterRegistry));
+        lanes.put(Lane.MUTATION, new LaneState(Lane.MUTATION, mutationMaxConcurrent, mutationMaxQueue, meterRegistry));
+        this.maxWait = Duration.ofSeconds(maxWaitSeconds);
+        logger.info("BOSH command scheduler: read lane {}/{} (concurrent/queue), mutation lane {}/{}, max wait {}",
+                readMaxConcurrent, readMaxQueue, mutationMaxConcurrent, mutationMaxQueue, maxWait);
+    }
+
+    /**
+     * Run a command once a slot in its lane is free.
+     *
+     * @param command The command, used to pick the lane and for error messages
+     * @param task Spawns and runs the process while the slot is held
+     * @param <T> The result type
+     * @return The task result
+     * @throws RuntimeException if the lane queue is full or no slot frees up within the max wait
+     */
+    public <T> T run(BoshCommand command, Supplier<T> task) {
+        Lane lane = command.isReadOnly() ? Lane.READ : Lane.MUTATION;
+        LaneState state = lanes.get(lane);
+
+        acquire(command, lane, state);
+        state.running.incrementAndGet();
+        try {
+            return task.get();
+        } finally {
+            state.running.decrementAndGet();
+            state.slots.release();
+        }
+    }
+
+    private void acquire(BoshCommand command, Lane lane, LaneState state) {
+        try {
+            // A zero-timeout acquire honours fairness, so it never barges ahead of queued callers
+            if (state.slots.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                state.waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a BOSH command slot", e);
+        }
+
+        if (state.waiting.incrementAndGet() > state.maxQueue) {
+            state.waiting.decrementAndGet();
+            state.rejections.increment();
+            throw new BoshCommandException(BoshCommandException.Category.REJECTED, "BOSH command '"
+                    + command.subcommand() + "' rejected: " + lane.getTag() + " lane is saturated ("
+                    + state.maxConcurrent + " running, " + state.maxQueue + " queued)");
+        }
+
+        long start = System.nanoTime();
+        try {
+            // Never queue past the caller's deadline
+            Duration wait = BoshDeadline.bound(maxWait);
+            if (!state.slots.tryAcquire(wait.toNanos(), TimeUnit.NANOSECONDS)) {
+                if (wait.compareTo(maxWait) < 0) {
+                    throw BoshDeadline.expired();
+                }
+                state.rejections.increment();
+                throw new BoshCommandException(BoshCommandException.Category.REJECTED, "BOSH command '"
+                        + command.subcommand() + "' rejected: no " + lane.getTag() + " slot became free within "
+                        + maxWait.toSeconds() + " seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a BOSH command slot", e);
+        } finally {
+            state.waiting.decrementAndGet();
+            state.waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Get the number of commands waiting for a slot in a lane.
+     */
+    public int getQueueDepth(Lane lane) {
+        return lanes.get(lane).waiting.get();
+    }
+
+    /**
+     * Get the number of commands currently running in a lane.
+     */
+    public int getRunningCount(Lane lane) {
+        return lanes.get(lane).running.get();
+    }
+}
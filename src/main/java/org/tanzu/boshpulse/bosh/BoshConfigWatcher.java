@@ -0,0 +1,150 @@
+package org.tanzu.boshpulse.bosh;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the BOSH configuration when {@code .env/bosh-env.ini}, {@code .env/bosh.pem} or the file at
+ * {@code bosh.caCertPath} changes, so credentials can be rotated without a restart.
+ * <p>
+ * The parent directories are watched, since editors and secret mounts replace files rather than
+ * writing them in place. Events are settled for {@code bosh.credentials.settleMillis} so a burst of
+ * writes causes one reload.
+ */
+@Component
+public class BoshConfigWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshConfigWatcher.class);
+
+    private final BoshCliExecutor cliExecutor;
+    private final boolean enabled;
+    private final Duration settle;
+    private final List<Path> files = new ArrayList<>();
+    private WatchService watchService;
+    private Thread watcher;
+
+    public BoshConfigWatcher(BoshCliExecutor cliExecutor,
+                             BoshEnvConfigReader envConfigReader,
+                             @Value("${bosh.caCertPath:}") String caCertPath,
+                             @Value("${bosh.credentials.watch:true}") boolean enabled,
+                             @Value("${bosh.credentials.settleMillis:500}") int settleMillis) {
+        this.cliExecutor = cliExecutor;
+        this.enabled = enabled;
+        this.settle = Duration.ofMillis(Math.max(0, settleMillis));
+        for (Path file : envConfigReader.getFiles()) {
+            files.add(file.toAbsolutePath().normalize());
+        }
+        if (caCertPath != null && !caCertPath.isBlank()) {
+            files.add(Path.of(caCertPath).toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Start watching once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(5)
+    public synchronized void start() {
+        if (!enabled || watcher != null) {
+            return;
+        }
+        Map<Path, Set<String>> directories = new HashMap<>();
+        for (Path file : files) {
+            if (Files.isDirectory(file.getParent())) {
+                directories.computeIfAbsent(file.getParent(), k -> new HashSet<>()).add(file.getFileName().toString());
+            }
+        }
+        if (directories.isEmpty()) {
+            logger.debug("No BOSH configuration files to watch");
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Map<WatchKey, Set<String>> keys = new HashMap<>();
+            for (Map.Entry<Path, Set<String>> directory : directories.entrySet()) {
+                keys.put(directory.getKey().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), directory.getValue());
+            }
+            watcher = Thread.ofPlatform().daemon().name("bosh-config-watcher").start(() -> watch(keys));
+            logger.info("Watching {} for BOSH credential changes", directories.keySet());
+        } catch (IOException e) {
+            logger.warn("Cannot watch BOSH configuration files, credential changes need a restart: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // The watcher thread ends either way
+            }
+        }
+    }
+
+    private void watch(Map<WatchKey, Set<String>> keys) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean relevant = false;
+                // Settle, then drain everything that arrived meanwhile into this one reload
+                while (key != null) {
+                    relevant |= relevant(key, keys.getOrDefault(key, Set.of()));
+                    key.reset();
+                    key = watchService.poll(settle.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                if (relevant) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("BOSH configuration watcher stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean relevant(WatchKey key, Set<String> names) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            String name = String.valueOf(event.context());
+            // Kubernetes secret volumes swap files through the ..data symlink
+            relevant |= event.kind() == StandardWatchEventKinds.OVERFLOW || names.contains(name) || name.startsWith("..");
+        }
+        return relevant;
+    }
+
+    private void reload() {
+        try {
+            cliExecutor.reload();
+        } catch (RuntimeException e) {
+            // Keep the current configuration; the next change will try again
+            logger.error("Failed to reload the BOSH configuration: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.tanzu.boshpulse.bosh;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The time budget of one tool call, bound to the threads working on it.
+ * <p>
+ * A call may carry a caller deadline that bounds everything it does. Independently, the first run of
+ * each command in the call fixes that command's deadline from its timeout class, so a retry of the same
+ * command gets only what is left of the budget instead of a fresh timeout, and one that timed out is not
+ * retried at all. Work handed to other threads
+ * keeps the budget through {@link #propagate(Supplier)}.
+ */
+public final class BoshDeadline {
+
+    private static final ThreadLocal<BoshDeadline> current = new ThreadLocal<>();
+
+    private final long callerDeadlineNanos;
+    private final boolean hasCallerDeadline;
+    private final Map<String, Long> commandDeadlines = new ConcurrentHashMap<>();
+
+    private BoshDeadline(Duration callerBudget) {
+        this.hasCallerDeadline = callerBudget != null;
+        this.callerDeadlineNanos = callerBudget != null ? System.nanoTime() + callerBudget.toNanos() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Run a tool call within a new budget, or within the enclosing one when a call is already in progress.
+     *
+     * @param callerBudget The time the caller allows, or null for none
+     * @param call The tool call
+     * @param <T> The result type
+     * @return The result of the call
+     */
+    public static <T> T within(Duration callerBudget, Supplier<T> call) {
+        if (current.get() != null) {
+            return call.get();
+        }
+        return new BoshDeadline(callerBudget).run(call);
+    }
+
+    /**
+     * Wrap work for another thread so it runs within the current budget.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> call) {
+        BoshDeadline deadline = current.get();
+        return deadline == null ? call : () -> deadline.run(call);
+    }
+
+    /**
+     * The absolute deadline for a command, in {@link System#nanoTime()} terms.
+     * Fixed the first time the command runs in this call and capped by the caller deadline.
+     *
+     * @param command The command
+     * @param timeout The timeout of the command's class
+     * @return The deadline
+     */
+    static long deadlineNanos(BoshCommand command, Duration timeout) {
+        BoshDeadline deadline = current.get();
+        if (deadline == null) {
+            return System.nanoTime() + timeout.toNanos();
+        }
+        long commandDeadline = deadline.commandDeadlines.computeIfAbsent(command.normalized(),
+                k -> System.nanoTime() + timeout.toNanos());
+        return Math.min(commandDeadline, deadline.callerDeadlineNanos);
+    }
+
+    /**
+     * Whether a command run in the current call has passed its deadline, so running it again would
+     * time out at once. Other commands of the call keep their own deadlines.
+     *
+     * @param command The normalized command, or null when the failed command is not known
+     */
+    static boolean commandDeadlinePassed(String command) {
+        BoshDeadline deadline = current.get();
+        Long commandDeadline = deadline != null && command != null ? deadline.commandDeadlines.get(command) : null;
+        return commandDeadline != null && System.nanoTime() - commandDeadline >= 0;
+    }
+
+    /**
+     * Whether the caller deadline is the one that ends at the given time.
+     */
+    static boolean isCallerDeadline(long deadlineNanos) {
+        BoshDeadline deadline = current.get();
+        return deadline != null && deadline.hasCallerDeadline && deadline.callerDeadlineNanos == deadlineNanos;
+    }
+
+    /**
+     * Time left before the caller deadline; {@code max} when there is none or it is further away.
+     *
+     * @throws BoshCommandException with {@code DEADLINE} when the caller deadline has passed
+     */
+    static Duration bound(Duration max) {
+        BoshDeadline deadline = current.get();
+        if (deadline == null || !deadline.hasCallerDeadline) {
+            return max;
+        }
+        long remaining = deadline.callerDeadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            throw expired();
+        }
+        return remaining < max.toNanos() ? Duration.ofNanos(remaining) : max;
+    }
+
+    /**
+     * Time left before the caller deadline, or null when the call has none.
+     */
+    static Duration remaining() {
+        BoshDeadline deadline = current.get();
+        if (deadline == null || !deadline.hasCallerDeadline) {
+            return null;
+        }
+        return Duration.ofNanos(Math.max(0, deadline.callerDeadlineNanos - System.nanoTime()));
+    }
+
+    static BoshCommandException expired() {
+        return new BoshCommandException(BoshCommandException.Category.DEADLINE,
+                "The deadline of the tool call expired before BOSH answered");
+    }
+
+    private <T> T run(Supplier<T> call) {
+        BoshDeadline previous = current.get();
+        current.set(this);
+        try {
+            return call.get();
+        } finally {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+}
@@ -5,12 +5,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.tanzu.boshpulse.bosh.BoshChangeFeed.ChangePage;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+import org.tanzu.boshpulse.bosh.BoshTaskTracker.TaskStatus;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class BoshDeploymentService extends BoshBaseService {
@@ -23,6 +29,9 @@ public class BoshDeploymentService extends BoshBaseService {
     private static final String DELETE_DEPLOYMENT = "Delete a BOSH deployment";
     private static final String RECREATE_DEPLOYMENT = "Recreate all VMs in a BOSH deployment";
     private static final String UPDATE_DEPLOYMENT = "Update a BOSH deployment configuration";
+    private static final String GET_CHANGES_SINCE = "Get BOSH inventory changes observed after a cursor: VM process state transitions, VM CID changes, instances, deployments, stemcell and release versions added or removed. Pass the returned cursor on the next call to get only newer changes";
+
+    private BoshChangeFeed changeFeed;
 
     public BoshDeploymentService(BoshCliExecutor cliExecutor,
                                 @Value("${bosh.retry.maxAttempts:3}") int maxRetries,
@@ -30,28 +39,32 @@ public class BoshDeploymentService extends BoshBaseService {
         super(cliExecutor, maxRetries, retryDelaySeconds);
     }
 
+    /**
+     * Set the inventory change feed (absent when the service is constructed directly).
+     */
+    @Autowired(required = false)
+    public void setChangeFeed(BoshChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
     @Tool(description = LIST_DEPLOYMENTS)
-    public List<String> listDeployments() {
-        return executeWithRetry(() -> {
-            logger.info("Listing BOSH deployments");
-            JsonNode result = cliExecutor.executeJson("deployments");
-            List<String> deployments = new ArrayList<>();
-            
-            if (result.has("Tables") && result.get("Tables").isArray()) {
-                for (JsonNode table : result.get("Tables")) {
-                    if (table.has("Rows") && table.get("Rows").isArray()) {
-                        for (JsonNode row : table.get("Rows")) {
-                            if (row.has("name")) {
-                                deployments.add(row.get("name").asText());
-                            }
-                        }
-                    }
-                }
-            }
-            
-            logger.info("Found {} deployments", deployments.size());
-            return deployments;
-        }, "listDeployments");
+    public List<String> listDeployments(@ToolParam(description = FRESH_PARAM, required = false) Boolean fresh) {
+        return fromInventory(Region.DEPLOYMENTS, "", fresh,
+                listing -> names(BoshJsonRowExtractor.extractRows(listing, Set.of("name"), null)),
+                () -> cached(Region.DEPLOYMENTS, "", () -> executeWithRetry(() -> {
+                    logger.info("Listing BOSH deployments");
+                    List<String> deployments = names(cliExecutor.executeTableRows("deployments", Set.of("name"), null));
+                    logger.info("Found {} deployments", deployments.size());
+                    return deployments;
+                }, "listDeployments")));
+    }
+
+    private static List<String> names(List<Map<String, String>> rows) {
+        List<String> names = new ArrayList<>(rows.size());
+        for (Map<String, String> row : rows) {
+            names.add(row.get("name"));
+        }
+        return names;
     }
 
     @Tool(description = GET_DEPLOYMENT)
@@ -69,9 +82,10 @@ public class BoshDeploymentService extends BoshBaseService {
     }
 
     @Tool(description = DEPLOY_DEPLOYMENT)
-    public void deployDeployment(
+    public TaskStatus deployDeployment(
             @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
-            @ToolParam(description = "Path to the BOSH deployment manifest file") String manifestPath) {
+            @ToolParam(description = "Path to the BOSH deployment manifest file") String manifestPath,
+            @ToolParam(description = ASYNC_PARAM, required = false) Boolean async) {
         
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
@@ -80,12 +94,28 @@ public class BoshDeploymentService extends BoshBaseService {
             throw new IllegalArgumentException("Manifest path is required");
         }
         
-        executeWithRetry(() -> {
-            logger.info("Deploying deployment: {} with manifest: {}", deploymentName, manifestPath);
-            cliExecutor.execute("deploy -d " + deploymentName + " " + manifestPath);
-            logger.info("Deployment {} deployed successfully", deploymentName);
-            return null;
-        }, "deployDeployment");
+        String command = "deploy -d " + deploymentName + " " + manifestPath;
+        String description = "Deploy " + deploymentName + " from " + manifestPath;
+        Runnable invalidation = () -> {
+            invalidate(Region.DEPLOYMENTS);
+            invalidate(Region.VMS, deploymentName);
+            invalidate(Region.ERRANDS, deploymentName);
+        };
+        if (Boolean.TRUE.equals(async)) {
+            logger.info("Starting deployment: {} with manifest: {}", deploymentName, manifestPath);
+            return startTask(command, description, "deployDeployment", invalidation);
+        }
+        
+        try {
+            return executeWithRetry(() -> {
+                logger.info("Deploying deployment: {} with manifest: {}", deploymentName, manifestPath);
+                String output = cliExecutor.execute(command);
+                logger.info("Deployment {} deployed successfully", deploymentName);
+                return completedTask(output, description, deploymentName);
+            }, "deployDeployment");
+        } finally {
+            invalidation.run();
+        }
     }
 
     @Tool(description = DELETE_DEPLOYMENT)
@@ -94,26 +124,48 @@ public class BoshDeploymentService extends BoshBaseService {
             throw new IllegalArgumentException("Deployment name is required");
         }
         
-        executeWithRetry(() -> {
-            logger.warn("Deleting deployment: {}", deploymentName);
-            cliExecutor.execute("delete-deployment -d " + deploymentName + " --force");
-            logger.info("Deployment {} deleted successfully", deploymentName);
-            return null;
-        }, "deleteDeployment");
+        try {
+            executeWithRetry(() -> {
+                logger.warn("Deleting deployment: {}", deploymentName);
+                cliExecutor.execute("delete-deployment -d " + deploymentName + " --force");
+                logger.info("Deployment {} deleted successfully", deploymentName);
+                return null;
+            }, "deleteDeployment");
+        } finally {
+            invalidate(Region.DEPLOYMENTS);
+            invalidate(Region.VMS, deploymentName);
+            invalidate(Region.ERRANDS, deploymentName);
+            invalidate(Region.STEMCELLS);
+            invalidate(Region.RELEASES);
+        }
     }
 
     @Tool(description = RECREATE_DEPLOYMENT)
-    public void recreateDeployment(@ToolParam(description = DEPLOYMENT_PARAM) String deploymentName) {
+    public TaskStatus recreateDeployment(
+            @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
+            @ToolParam(description = ASYNC_PARAM, required = false) Boolean async) {
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
         }
         
-        executeWithRetry(() -> {
-            logger.info("Recreating deployment: {}", deploymentName);
-            cliExecutor.execute("recreate -d " + deploymentName);
-            logger.info("Deployment {} recreated successfully", deploymentName);
-            return null;
-        }, "recreateDeployment");
+        String command = "recreate -d " + deploymentName;
+        String description = "Recreate deployment " + deploymentName;
+        Runnable invalidation = () -> invalidate(Region.VMS, deploymentName);
+        if (Boolean.TRUE.equals(async)) {
+            logger.info("Starting recreate of deployment: {}", deploymentName);
+            return startTask(command, description, "recreateDeployment", invalidation);
+        }
+        
+        try {
+            return executeWithRetry(() -> {
+                logger.info("Recreating deployment: {}", deploymentName);
+                String output = cliExecutor.execute(command);
+                logger.info("Deployment {} recreated successfully", deploymentName);
+                return completedTask(output, description, deploymentName);
+            }, "recreateDeployment");
+        } finally {
+            invalidation.run();
+        }
     }
 
     @Tool(description = UPDATE_DEPLOYMENT)
@@ -128,11 +180,27 @@ public class BoshDeploymentService extends BoshBaseService {
             throw new IllegalArgumentException("Manifest path is required");
         }
         
-        executeWithRetry(() -> {
-            logger.info("Updating deployment: {} with manifest: {}", deploymentName, manifestPath);
-            cliExecutor.execute("deploy -d " + deploymentName + " " + manifestPath);
-            logger.info("Deployment {} updated successfully", deploymentName);
-            return null;
-        }, "updateDeployment");
+        try {
+            executeWithRetry(() -> {
+                logger.info("Updating deployment: {} with manifest: {}", deploymentName, manifestPath);
+                cliExecutor.execute("deploy -d " + deploymentName + " " + manifestPath);
+                logger.info("Deployment {} updated successfully", deploymentName);
+                return null;
+            }, "updateDeployment");
+        } finally {
+            invalidate(Region.DEPLOYMENTS);
+            invalidate(Region.VMS, deploymentName);
+            invalidate(Region.ERRANDS, deploymentName);
+        }
+    }
+
+    @Tool(description = GET_CHANGES_SINCE)
+    public ChangePage getChangesSince(
+            @ToolParam(description = "Cursor returned by the previous call; omit to get every retained change", required = false) Long cursor,
+            @ToolParam(description = "Maximum number of changes to return (optional, default 200)", required = false) Integer maxChanges) {
+        if (changeFeed == null) {
+            throw new IllegalStateException("The inventory change feed is not available");
+        }
+        return changeFeed.since(cursor != null ? cursor : 0, maxChanges != null ? maxChanges : 0);
     }
 }
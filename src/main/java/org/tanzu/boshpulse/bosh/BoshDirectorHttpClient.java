@@ -0,0 +1,707 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * BOSH Director REST API backend.
+ * Serves the read-only commands it understands directly from the Director over a pooled,
+ * keep-alive {@link HttpClient} and shapes the responses like the CLI's {@code --json} output
+ * ({@code Tables/Rows/Header}), so services see the same {@link JsonNode} structure either way.
+ * Enabled with {@code bosh.backend=http}; everything else still goes through the CLI.
+ * <p>
+ * Like a CLI invocation, all requests for one command, including waiting for its Director task, share
+ * the timeout of the command's {@link BoshTimeouts} class, fixed by {@link BoshDeadline} on the first
+ * run of the command in the tool call, so a retry only gets what is left of it.
+ */
+@Component
+@ConditionalOnProperty(name = "bosh.backend", havingValue = "http")
+public class BoshDirectorHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshDirectorHttpClient.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final int DEFAULT_DIRECTOR_PORT = 25555;
+    private static final Set<String> SUPPORTED_COMMANDS = Set.of("deployments", "vms", "stemcells", "releases", "tasks");
+    private static final Duration TASK_POLL_INTERVAL = Duration.ofMillis(500);
+    private static final int DEFAULT_RECENT_TASKS = 30;
+
+    /**
+     * The time budget of one command's requests.
+     *
+     * @param command The command the requests serve
+     * @param timeout The timeout of the command's class
+     * @param deadlineNanos When the requests must be done, in {@link System#nanoTime()} terms
+     */
+    private record Budget(BoshCommand command, Duration timeout, long deadlineNanos) {
+    }
+
+    private final BoshCliExecutor cliExecutor;
+    private final Duration requestTimeout;
+    private final Duration connectTimeout;
+    private final Object lock = new Object();
+    private BoshTimeouts timeouts;
+
+    private final ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private HttpClient httpClient;
+    private BoshCliExecutor.InvocationTemplate httpClientTemplate;
+    private BoshCliExecutor.InvocationTemplate authTemplate;
+    private String uaaUrl;
+    private boolean authResolved;
+    private BoshCliExecutor.InvocationTemplate cachedTokenTemplate;
+    private String cachedToken;
+    private long cachedTokenExpiresAt;
+
+    public BoshDirectorHttpClient(BoshCliExecutor cliExecutor,
+                                  @Value("${bosh.connection.timeout:60}") int timeoutSeconds,
+                                  @Value("${bosh.http.connectTimeout:10}") int connectTimeoutSeconds) {
+        this.cliExecutor = cliExecutor;
+        this.requestTimeout = Duration.ofSeconds(timeoutSeconds);
+        this.connectTimeout = Duration.ofSeconds(connectTimeoutSeconds);
+        logger.info("BOSH Director HTTP backend enabled");
+    }
+
+    /**
+     * Set the timeout classes (injected after construction); without them every command gets
+     * {@code bosh.connection.timeout}.
+     */
+    public void setTimeouts(BoshTimeouts timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpExecutor.shutdownNow();
+    }
+
+    /**
+     * Check whether a CLI command can be answered through the Director REST API.
+     *
+     * @param command The BOSH command without the {@code --json} flag (e.g., "vms -d cf")
+     * @return true if this backend can serve the command
+     */
+    public boolean supports(String command) {
+        List<String> parts = tokenize(command);
+        if (parts.isEmpty() || !SUPPORTED_COMMANDS.contains(parts.get(0))) {
+            return false;
+        }
+        for (String part : parts.subList(1, parts.size())) {
+            if (part.startsWith("-") && !isKnownFlag(part)) {
+                return false;
+            }
+        }
+        return !parts.get(0).equals("vms") || flagValue(parts, "-d") != null;
+    }
+
+    /**
+     * Execute a read-only BOSH command against the Director REST API.
+     *
+     * @param command The BOSH command without the {@code --json} flag
+     * @return JSON shaped like the CLI's {@code --json} output
+     * @throws RuntimeException if the request fails
+     */
+    public JsonNode executeJson(String command) {
+        List<String> parts = tokenize(command);
+        logger.debug("Executing BOSH command via Director API: {}", command);
+        Budget budget = budget(command);
+        return switch (parts.get(0)) {
+            case "deployments" -> listDeployments(budget);
+            case "vms" -> listVms(flagValue(parts, "-d"), parts.contains("--details"), budget);
+            case "stemcells" -> listStemcells(budget);
+            case "releases" -> listReleases(budget);
+            case "tasks" -> listTasks(recentTasks(parts), flagValue(parts, "-d"), budget);
+            default -> throw new IllegalArgumentException("Unsupported Director API command: " + command);
+        };
+    }
+
+    /**
+     * Fetch a single Director task as returned by {@code GET /tasks/{id}}.
+     *
+     * @param taskId The task ID
+     * @return Raw task JSON
+     */
+    public JsonNode getTask(String taskId) {
+        return getJson("/tasks/" + encode(taskId), budget("task " + taskId));
+    }
+
+    /**
+     * Task output read from a byte offset.
+     *
+     * @param text Complete lines read, each terminated by a newline
+     * @param nextOffset Byte offset to continue from
+     */
+    public record TaskOutputChunk(String text, long nextOffset) {
+    }
+
+    /**
+     * Read task output ({@code GET /tasks/{id}/output}) from a byte offset with a {@code Range} request,
+     * so only output produced since the previous read is transferred. A trailing partial line is left
+     * for the next read unless {@code includePartialLine} is set.
+     *
+     * @param taskId The task ID
+     * @param type Output type ({@code event}, {@code debug} or {@code result})
+     * @param offset Byte offset to read from
+     * @param includePartialLine Whether to return a trailing line without a newline (e.g., once the task finished)
+     * @return The new output and the offset to continue from
+     */
+    public TaskOutputChunk getTaskOutput(String taskId, String type, long offset, boolean includePartialLine) {
+        String path = "/tasks/" + encode(taskId) + "/output?type=" + encode(type);
+        Map<String, String> headers = offset > 0 ? Map.of("Range", "bytes=" + offset + "-") : Map.of();
+        Budget budget = budget("task " + taskId + " --" + type);
+        HttpResponse<byte[]> response = send(path, headers, HttpResponse.BodyHandlers.ofByteArray(), budget);
+        if (response.statusCode() == 401) {
+            synchronized (lock) {
+                cachedToken = null;
+            }
+            response = send(path, headers, HttpResponse.BodyHandlers.ofByteArray(), budget);
+        }
+        if (response.statusCode() == 416) {
+            // Nothing past the offset yet
+            return new TaskOutputChunk("", offset);
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw BoshCommandException.forStatus(response.statusCode(),
+                    "BOSH Director request " + path + " failed with HTTP " + response.statusCode() + ": "
+                            + new String(response.body(), StandardCharsets.UTF_8));
+        }
+
+        byte[] body = response.body();
+        // A Director that ignores the Range header answers 200 with the whole output
+        int start = response.statusCode() == 206 ? 0 : (int) Math.min(offset, body.length);
+        int end = body.length;
+        if (!includePartialLine) {
+            while (end > start && body[end - 1] != '\n') {
+                end--;
+            }
+        }
+        return new TaskOutputChunk(new String(body, start, end - start, StandardCharsets.UTF_8), offset + (end - start));
+    }
+
+    private JsonNode listDeployments(Budget budget) {
+        ArrayNode rows = objectMapper.createArrayNode();
+        for (JsonNode deployment : getJson("/deployments?exclude_configs=true&exclude_lock=true", budget)) {
+            ObjectNode row = rows.addObject();
+            row.put("name", deployment.path("name").asText());
+            row.put("release_s", joinNameVersions(deployment.path("releases")));
+            row.put("stemcell_s", joinNameVersions(deployment.path("stemcells")));
+            row.put("team_s", joinText(deployment.path("teams")));
+        }
+        return table("deployments", header("name", "Name", "release_s", "Release(s)",
+                "stemcell_s", "Stemcell(s)", "team_s", "Team(s)"), rows);
+    }
+
+    private JsonNode listVms(String deploymentName, boolean details, Budget budget) {
+        String taskId = startTask("/deployments/" + encode(deploymentName) + "/vms?format=full", budget);
+        awaitTask(taskId, budget);
+        String output = getText("/tasks/" + taskId + "/output?type=result", budget);
+
+        ArrayNode rows = objectMapper.createArrayNode();
+        for (String line : output.split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode vm = readTree(line);
+            ObjectNode row = rows.addObject();
+            row.put("instance", vm.path("job_name").asText() + "/" + vm.path("id").asText());
+            row.put("process_state", vm.path("job_state").asText());
+            row.put("az", vm.path("az").asText(""));
+            row.put("ips", joinText(vm.path("ips")));
+            row.put("vm_cid", vm.path("vm_cid").asText(""));
+            row.put("vm_type", vm.path("vm_type").asText(vm.path("resource_pool").asText("")));
+            row.put("active", vm.path("active").asText(""));
+            if (details) {
+                row.put("vm_created_at", vm.path("vm_created_at").asText(""));
+                row.put("disk_cids", joinText(vm.path("disk_cids")));
+                row.put("agent_id", vm.path("agent_id").asText(""));
+                row.put("resurrection", vm.path("resurrection_paused").asBoolean() ? "paused" : "active");
+                row.put("bootstrap", vm.path("bootstrap").asBoolean() ? "true" : "false");
+                row.put("ignore", vm.path("ignore").asBoolean() ? "true" : "false");
+            }
+        }
+
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("instance", "Instance");
+        columns.put("process_state", "Process State");
+        columns.put("az", "AZ");
+        columns.put("ips", "IPs");
+        columns.put("vm_cid", "VM CID");
+        columns.put("vm_type", "VM Type");
+        columns.put("active", "Active");
+        if (details) {
+            columns.put("vm_created_at", "VM Created At");
+            columns.put("disk_cids", "Disk CIDs");
+            columns.put("agent_id", "Agent ID");
+            columns.put("resurrection", "Resurrection\nPaused");
+            columns.put("bootstrap", "Bootstrap");
+            columns.put("ignore", "Ignore");
+        }
+        return table("Deployment '" + deploymentName + "'", header(columns), rows);
+    }
+
+    private JsonNode listStemcells(Budget budget) {
+        ArrayNode rows = objectMapper.createArrayNode();
+        for (JsonNode stemcell : getJson("/stemcells", budget)) {
+            ObjectNode row = rows.addObject();
+            boolean inUse = stemcell.path("deployments").size() > 0;
+            row.put("name", stemcell.path("name").asText());
+            row.put("os", stemcell.path("operating_system").asText(""));
+            row.put("version", stemcell.path("version").asText() + (inUse ? "*" : ""));
+            row.put("api_version", stemcell.path("api_version").asText(""));
+            row.put("cid", stemcell.path("cid").asText(""));
+            row.put("cpi", stemcell.path("cpi").asText(""));
+        }
+        return table("stemcells", header("name", "Name", "version", "Version", "os", "OS",
+                "api_version", "API Version", "cpi", "CPI", "cid", "CID"), rows);
+    }
+
+    private JsonNode listReleases(Budget budget) {
+        ArrayNode rows = objectMapper.createArrayNode();
+        for (JsonNode release : getJson("/releases", budget)) {
+            for (JsonNode version : release.path("release_versions")) {
+                ObjectNode row = rows.addObject();
+                String suffix = (version.path("currently_deployed").asBoolean() ? "*" : "")
+                        + (version.path("uncommitted_changes").asBoolean() ? "+" : "");
+                row.put("name", release.path("name").asText());
+                row.put("version", version.path("version").asText() + suffix);
+                row.put("commit_hash", version.path("commit_hash").asText(""));
+            }
+        }
+        return table("releases", header("name", "Name", "version", "Version", "commit_hash", "Commit Hash"), rows);
+    }
+
+    /**
+     * @param recent How many recent tasks to list, or null for the running ones
+     */
+    private JsonNode listTasks(Integer recent, String deploymentName, Budget budget) {
+        StringBuilder path = new StringBuilder("/tasks?verbose=1");
+        if (recent != null) {
+            path.append("&limit=").append(recent);
+        } else {
+            path.append("&state=processing,cancelling,queued");
+        }
+        if (deploymentName != null) {
+            path.append("&deployment=").append(encode(deploymentName));
+        }
+
+        ArrayNode rows = objectMapper.createArrayNode();
+        for (JsonNode task : getJson(path.toString(), budget)) {
+            ObjectNode row = rows.addObject();
+            row.put("id", task.path("id").asText());
+            row.put("state", task.path("state").asText());
+            row.put("started_at", task.path("started_at").asText(""));
+            row.put("last_activity_at", task.path("timestamp").asText(""));
+            row.put("user", task.path("user").asText(""));
+            row.put("deployment", task.path("deployment").asText(""));
+            row.put("description", task.path("description").asText(""));
+            row.put("result", task.path("result").asText(""));
+        }
+        return table("tasks", header("id", "ID", "state", "State", "started_at", "Started At",
+                "last_activity_at", "Last Activity At", "user", "User", "deployment", "Deployment",
+                "description", "Description", "result", "Result"), rows);
+    }
+
+    /**
+     * Issue a request that the Director answers with a redirect to a task, and return the task ID.
+     */
+    private String startTask(String path, Budget budget) {
+        HttpResponse<String> response = send(path, budget);
+        if (response.statusCode() / 100 != 2 && response.statusCode() / 100 != 3) {
+            throw BoshCommandException.forStatus(response.statusCode(), "BOSH Director did not start a task for "
+                    + path + " (HTTP " + response.statusCode() + "): " + response.body());
+        }
+        if (response.statusCode() != 302) {
+            throw new BoshCommandException(BoshCommandException.Category.UNAVAILABLE, "BOSH Director did not start a task for "
+                    + path + " (HTTP " + response.statusCode() + "): " + response.body());
+        }
+        String location = response.headers().firstValue("Location")
+                .orElseThrow(() -> new BoshCommandException(BoshCommandException.Category.UNAVAILABLE,
+                        "BOSH Director task redirect without Location header"));
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+
+    private void awaitTask(String taskId, Budget budget) {
+        while (true) {
+            JsonNode task = getJson("/tasks/" + encode(taskId), budget);
+            String state = task.path("state").asText();
+            switch (state) {
+                case "done":
+                    return;
+                case "error", "cancelled", "timeout":
+                    throw BoshCommandException.taskFailed("BOSH Director task " + taskId + " " + state + ": "
+                            + task.path("result").asText());
+                default:
+                    break;
+            }
+            long remainingNanos = budget.deadlineNanos() - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw timedOut(budget);
+            }
+            try {
+                Thread.sleep(Duration.ofNanos(Math.min(remainingNanos, TASK_POLL_INTERVAL.toNanos())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BoshCommandException(BoshCommandException.Category.INTERNAL,
+                        "Interrupted while waiting for BOSH task " + taskId, e);
+            }
+        }
+    }
+
+    private JsonNode getJson(String path, Budget budget) {
+        return readTree(getText(path, budget));
+    }
+
+    private String getText(String path, Budget budget) {
+        HttpResponse<String> response = send(path, budget);
+        if (response.statusCode() == 401) {
+            // Token may have been revoked before its advertised expiry; retry once with a fresh one
+            synchronized (lock) {
+                cachedToken = null;
+            }
+            response = send(path, budget);
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw BoshCommandException.forStatus(response.statusCode(),
+                    "BOSH Director request " + path + " failed with HTTP " + response.statusCode() + ": "
+                            + response.body());
+        }
+        return response.body();
+    }
+
+    private HttpResponse<String> send(String path, Budget budget) {
+        return send(path, Map.of(), HttpResponse.BodyHandlers.ofString(), budget);
+    }
+
+    private <T> HttpResponse<T> send(String path, Map<String, String> headers, HttpResponse.BodyHandler<T> bodyHandler,
+                                     Budget budget) {
+        String authorization = authorizationHeader(budget);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(directorUrl() + path))
+                .timeout(remaining(budget))
+                .header("Accept", "application/json")
+                .header("Authorization", authorization)
+                .GET();
+        headers.forEach(builder::header);
+        try {
+            return httpClient().send(builder.build(), bodyHandler);
+        } catch (HttpTimeoutException e) {
+            throw timedOut(budget);
+        } catch (IOException e) {
+            throw new BoshCommandException(BoshCommandException.categorize(e),
+                    "BOSH Director connection failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BoshCommandException(BoshCommandException.Category.INTERNAL, "BOSH Director request interrupted", e);
+        }
+    }
+
+    /**
+     * Build the Authorization header, using a cached UAA client-credentials token when the
+     * Director delegates authentication to UAA and basic auth otherwise.
+     * The authentication type is looked up once per invocation template, not on every request.
+     */
+    private String authorizationHeader(Budget budget) {
+        BoshCliExecutor.InvocationTemplate template = cliExecutor.getInvocationTemplate();
+        String uaaUrl;
+        boolean authKnown;
+        synchronized (lock) {
+            // A reloaded configuration may carry new credentials, so the token is only valid for the template it was issued under
+            if (cachedToken != null && System.currentTimeMillis() < cachedTokenExpiresAt
+                    && cachedTokenTemplate == template) {
+                return "Bearer " + cachedToken;
+            }
+            authKnown = authResolved && authTemplate == template;
+            uaaUrl = this.uaaUrl;
+        }
+
+        if (!authKnown) {
+            JsonNode info = readTree(sendUnauthenticated(HttpRequest.newBuilder(URI.create(directorUrl() + "/info"))
+                    .timeout(remaining(budget)).GET().build(), budget));
+            JsonNode auth = info.path("user_authentication");
+            uaaUrl = "uaa".equals(auth.path("type").asText()) ? auth.path("options").path("url").asText() : null;
+            synchronized (lock) {
+                this.uaaUrl = uaaUrl;
+                authTemplate = template;
+                authResolved = true;
+            }
+        }
+        if (uaaUrl == null) {
+            String credentials = cliExecutor.getClient() + ":" + cliExecutor.getClientSecret();
+            return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String form = "grant_type=client_credentials&client_id=" + encode(cliExecutor.getClient())
+                + "&client_secret=" + encode(cliExecutor.getClientSecret());
+        JsonNode token = readTree(sendUnauthenticated(HttpRequest.newBuilder(URI.create(uaaUrl + "/oauth/token"))
+                .timeout(remaining(budget))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(), budget));
+
+        String accessToken = token.path("access_token").asText(null);
+        if (accessToken == null) {
+            throw new BoshCommandException(BoshCommandException.Category.AUTH, "UAA token response did not contain an access token");
+        }
+        // Renew a minute early so an in-flight request never carries an expired token
+        long expiresInSeconds = Math.max(0, token.path("expires_in").asLong(0) - 60);
+        synchronized (lock) {
+            cachedToken = accessToken;
+            cachedTokenTemplate = template;
+            cachedTokenExpiresAt = System.currentTimeMillis() + expiresInSeconds * 1000;
+        }
+        logger.debug("Obtained UAA access token for client {} (expires in {}s)", cliExecutor.getClient(), expiresInSeconds);
+        return "Bearer " + accessToken;
+    }
+
+    private String sendUnauthenticated(HttpRequest request, Budget budget) {
+        try {
+            HttpResponse<String> response = httpClient().send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw BoshCommandException.forStatus(response.statusCode(),
+                        "Request to " + request.uri() + " failed with HTTP " + response.statusCode() + ": "
+                                + response.body());
+            }
+            return response.body();
+        } catch (HttpTimeoutException e) {
+            throw timedOut(budget);
+        } catch (IOException e) {
+            throw new BoshCommandException(BoshCommandException.categorize(e),
+                    "BOSH Director connection failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BoshCommandException(BoshCommandException.Category.INTERNAL, "BOSH Director request interrupted", e);
+        }
+    }
+
+    /**
+     * Fix the deadline of a command's requests from its timeout class, the first time it runs in the tool call.
+     */
+    private Budget budget(String command) {
+        BoshCommand parsed = BoshCommand.parse(command);
+        Duration timeout = timeouts != null ? timeouts.timeout(parsed) : requestTimeout;
+        return new Budget(parsed, timeout, BoshDeadline.deadlineNanos(parsed, timeout));
+    }
+
+    /**
+     * Time left for a request of the command.
+     *
+     * @throws BoshCommandException with {@code TIMEOUT}, or {@code DEADLINE} for the caller's deadline, once it is used up
+     */
+    private static Duration remaining(Budget budget) {
+        long remainingNanos = budget.deadlineNanos() - System.nanoTime();
+        if (remainingNanos <= 0) {
+            throw timedOut(budget);
+        }
+        return Duration.ofNanos(remainingNanos);
+    }
+
+    private static BoshCommandException timedOut(Budget budget) {
+        if (BoshDeadline.isCallerDeadline(budget.deadlineNanos())) {
+            return BoshDeadline.expired();
+        }
+        return BoshCommandException.timedOut(budget.command(), "BOSH Director request for '"
+                + budget.command().normalized() + "' timed out after " + budget.timeout().toSeconds() + " seconds");
+    }
+
+    /**
+     * Get the shared HTTP client, rebuilding it when the configuration, and with it possibly the CA certificate, was reloaded.
+     * The client keeps connections alive and reuses them across requests; every client built shares one executor.
+     */
+    private HttpClient httpClient() {
+        synchronized (lock) {
+            BoshCliExecutor.InvocationTemplate template = cliExecutor.getInvocationTemplate();
+            if (httpClient == null || template != httpClientTemplate) {
+                String caCertPath = cliExecutor.getCaCertPath();
+                HttpClient.Builder builder = HttpClient.newBuilder()
+                        .connectTimeout(connectTimeout)
+                        .followRedirects(HttpClient.Redirect.NEVER)
+                        .executor(httpExecutor);
+                SSLContext sslContext = buildSslContext(caCertPath);
+                if (sslContext != null) {
+                    builder.sslContext(sslContext);
+                }
+                httpClient = builder.build();
+                httpClientTemplate = template;
+            }
+            return httpClient;
+        }
+    }
+
+    /**
+     * Build an SSL context trusting the BOSH CA certificate, or null when none is configured.
+     */
+    static SSLContext buildSslContext(String caCertPath) {
+        if (!StringUtils.hasText(caCertPath)) {
+            return null;
+        }
+        Path certFile = Paths.get(caCertPath);
+        if (!Files.exists(certFile)) {
+            logger.warn("CA certificate file not found: {}", caCertPath);
+            return null;
+        }
+        try {
+            CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+            Collection<? extends Certificate> certificates =
+                    certificateFactory.generateCertificates(new ByteArrayInputStream(Files.readAllBytes(certFile)));
+            KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            trustStore.load(null, null);
+            int index = 0;
+            for (Certificate certificate : certificates) {
+                trustStore.setCertificateEntry("bosh-ca-" + index++, certificate);
+            }
+            TrustManagerFactory trustManagerFactory =
+                    TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(trustStore);
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+            return sslContext;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load BOSH CA certificate from " + caCertPath, e);
+        }
+    }
+
+    private String directorUrl() {
+        return directorUrl(cliExecutor.getDirector());
+    }
+
+    /**
+     * Normalize a Director address to a base URL (default scheme https, port 25555).
+     */
+    static String directorUrl(String director) {
+        if (!StringUtils.hasText(director)) {
+            throw new IllegalStateException("BOSH Director is not configured");
+        }
+        String url = director.contains("://") ? director : "https://" + director;
+        URI uri = URI.create(url);
+        if (uri.getPort() == -1) {
+            url = uri.getScheme() + "://" + uri.getHost() + ":" + DEFAULT_DIRECTOR_PORT;
+        }
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static JsonNode table(String content, ObjectNode header, ArrayNode rows) {
+        ObjectNode result = objectMapper.createObjectNode();
+        ObjectNode table = result.putArray("Tables").addObject();
+        table.put("Content", content);
+        table.set("Header", header);
+        table.set("Rows", rows);
+        table.putArray("Notes");
+        result.putNull("Blocks");
+        result.putArray("Lines").add("Succeeded");
+        return result;
+    }
+
+    private static ObjectNode header(String... keysAndTitles) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndTitles.length; i += 2) {
+            columns.put(keysAndTitles[i], keysAndTitles[i + 1]);
+        }
+        return header(columns);
+    }
+
+    private static ObjectNode header(Map<String, String> columns) {
+        ObjectNode header = objectMapper.createObjectNode();
+        columns.forEach(header::put);
+        return header;
+    }
+
+    private static String joinNameVersions(JsonNode items) {
+        List<String> values = new ArrayList<>();
+        for (JsonNode item : items) {
+            values.add(item.path("name").asText() + "/" + item.path("version").asText());
+        }
+        return String.join("\n", values);
+    }
+
+    private static String joinText(JsonNode items) {
+        List<String> values = new ArrayList<>();
+        for (JsonNode item : items) {
+            values.add(item.asText());
+        }
+        return String.join("\n", values);
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new BoshCommandException(BoshCommandException.Category.INTERNAL, "Failed to parse BOSH Director response", e);
+        }
+    }
+
+    private static boolean isKnownFlag(String flag) {
+        return flag.equals("-d") || flag.equals("--details") || flag.equals("-r") || flag.equals("--recent")
+                || flag.startsWith("-r=") || flag.startsWith("--recent=");
+    }
+
+    /**
+     * Get how many tasks {@code -r}/{@code --recent} asks for, with or without a value.
+     *
+     * @return The number of tasks, or null without the flag
+     */
+    private static Integer recentTasks(List<String> parts) {
+        for (int i = 0; i < parts.size(); i++) {
+            String part = parts.get(i);
+            String value;
+            if (part.equals("-r") || part.equals("--recent")) {
+                value = i + 1 < parts.size() ? parts.get(i + 1) : "";
+            } else if (part.startsWith("-r=") || part.startsWith("--recent=")) {
+                value = part.substring(part.indexOf('=') + 1);
+            } else {
+                continue;
+            }
+            return value.matches("\\d{1,6}") && Integer.parseInt(value) > 0 ? Integer.parseInt(value) : DEFAULT_RECENT_TASKS;
+        }
+        return null;
+    }
+
+    private static String flagValue(List<String> parts, String flag) {
+        int index = parts.indexOf(flag);
+        return index >= 0 && index + 1 < parts.size() ? parts.get(index + 1) : null;
+    }
+
+    private static List<String> tokenize(String command) {
+        return BoshCommand.parse(command).arguments();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -11,11 +11,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Reads BOSH configuration from .env folder.
  * Supports reading from .env/bosh-env.ini (shell export format) and .env/bosh.pem (certificate file).
+ * {@link #reload()} picks up rotated credentials.
  */
 @Component
 public class BoshEnvConfigReader {
@@ -26,9 +29,9 @@ public class BoshEnvConfigReader {
     private static final String ENV_INI_FILE = ENV_DIR + "/bosh-env.ini";
     private static final String CERT_FILE = ENV_DIR + "/bosh.pem";
     
-    private Map<String, String> config = new HashMap<>();
-    private String certificateContent;
-    private boolean initialized = false;
+    private volatile Map<String, String> config = Map.of();
+    private volatile String certificateContent;
+    private volatile boolean initialized = false;
 
     /**
      * Initialize and read configuration from .env folder.
@@ -40,30 +43,57 @@ public class BoshEnvConfigReader {
         }
         
         logger.info("Reading BOSH configuration from .env folder...");
-        
+        read();
+        initialized = true;
+        logger.info("BOSH configuration from .env folder loaded successfully");
+    }
+
+    /**
+     * Read the .env folder again, replacing the configuration as a whole.
+     * Readers see either the old or the new configuration, never a mix.
+     *
+     * @return true if the configuration or certificate changed
+     */
+    public synchronized boolean reload() {
+        Map<String, String> previousConfig = config;
+        String previousCertificate = certificateContent;
+        read();
+        initialized = true;
+        return !config.equals(previousConfig) || !Objects.equals(certificateContent, previousCertificate);
+    }
+
+    /**
+     * The files the configuration is read from.
+     */
+    public List<Path> getFiles() {
+        return List.of(Paths.get(ENV_INI_FILE), Paths.get(CERT_FILE));
+    }
+
+    private void read() {
         // Read bosh-env.ini file
+        Map<String, String> values = new HashMap<>();
         Path envIniPath = Paths.get(ENV_INI_FILE);
         if (Files.exists(envIniPath)) {
             logger.info("Found .env/bosh-env.ini, reading configuration...");
-            readEnvIni(envIniPath);
+            readEnvIni(envIniPath, values);
         } else {
             logger.debug(".env/bosh-env.ini not found, skipping...");
         }
         
         // Read certificate file
+        String certificate = null;
         Path certPath = Paths.get(CERT_FILE);
         if (Files.exists(certPath)) {
             logger.info("Found .env/bosh.pem, reading certificate...");
-            readCertificate(certPath);
+            certificate = readCertificate(certPath);
         } else {
             logger.debug(".env/bosh.pem not found, skipping...");
         }
-        
-        initialized = true;
-        logger.info("BOSH configuration from .env folder loaded successfully");
+        config = Map.copyOf(values);
+        certificateContent = certificate;
     }
 
-    private void readEnvIni(Path envIniPath) {
+    private void readEnvIni(Path envIniPath, Map<String, String> values) {
         try (BufferedReader reader = new BufferedReader(new FileReader(envIniPath.toFile()))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -86,7 +116,7 @@ public class BoshEnvConfigReader {
                             value = value.substring(1, value.length() - 1);
                         }
                         
-                        config.put(key, value);
+                        values.put(key, value);
                         logger.debug("Loaded config: {} = {}", key, 
                                    key.contains("SECRET") ? "***" : value);
                     }
@@ -97,12 +127,14 @@ public class BoshEnvConfigReader {
         }
     }
 
-    private void readCertificate(Path certPath) {
+    private String readCertificate(Path certPath) {
         try {
-            certificateContent = Files.readString(certPath).trim();
-            logger.info("Certificate loaded from .env/bosh.pem ({} bytes)", certificateContent.length());
+            String certificate = Files.readString(certPath).trim();
+            logger.info("Certificate loaded from .env/bosh.pem ({} bytes)", certificate.length());
+            return certificate;
         } catch (IOException e) {
             logger.warn("Failed to read .env/bosh.pem: {}", e.getMessage());
+            return null;
         }
     }
 
@@ -1,6 +1,7 @@
 package org.tanzu.boshpulse.bosh;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.annotation.Tool;
@@ -8,11 +9,13 @@ import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
 
 @Service
 public class BoshErrandService extends BoshBaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(BoshErrandService.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final String LIST_ERRANDS = "List all errands for a BOSH deployment";
     private static final String RUN_ERRAND = "Run an errand for a BOSH deployment";
@@ -30,18 +33,19 @@ public class BoshErrandService extends BoshBaseService {
             throw new IllegalArgumentException("Deployment name is required");
         }
         
-        return executeWithRetry(() -> {
+        return cached(Region.ERRANDS, deploymentName, () -> executeWithRetry(() -> {
             logger.info("Listing errands for deployment: {}", deploymentName);
             JsonNode result = cliExecutor.executeJson("errands -d " + deploymentName);
             logger.info("Retrieved errand list for deployment: {}", deploymentName);
             return result;
-        }, "listErrands");
+        }, "listErrands"));
     }
 
     @Tool(description = RUN_ERRAND)
     public JsonNode runErrand(
             @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
-            @ToolParam(description = "Name of the errand to run") String errandName) {
+            @ToolParam(description = "Name of the errand to run") String errandName,
+            @ToolParam(description = ASYNC_PARAM, required = false) Boolean async) {
         
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
@@ -50,12 +54,25 @@ public class BoshErrandService extends BoshBaseService {
             throw new IllegalArgumentException("Errand name is required");
         }
         
-        return executeWithRetry(() -> {
-            logger.info("Running errand: {} for deployment: {}", errandName, deploymentName);
-            JsonNode result = cliExecutor.executeJson("run-errand -d " + deploymentName + " " + errandName);
-            logger.info("Errand {} executed successfully for deployment: {}", errandName, deploymentName);
-            return result;
-        }, "runErrand");
+        String command = "run-errand -d " + deploymentName + " " + errandName;
+        // Errands create and delete VMs in the deployment
+        Runnable invalidation = () -> invalidate(Region.VMS, deploymentName);
+        if (Boolean.TRUE.equals(async)) {
+            logger.info("Starting errand: {} for deployment: {}", errandName, deploymentName);
+            return objectMapper.valueToTree(startTask(command,
+                    "Run errand " + errandName + " in deployment " + deploymentName, "runErrand", invalidation));
+        }
+        
+        try {
+            return executeWithRetry(() -> {
+                logger.info("Running errand: {} for deployment: {}", errandName, deploymentName);
+                JsonNode result = cliExecutor.executeJson(command);
+                logger.info("Errand {} executed successfully for deployment: {}", errandName, deploymentName);
+                return result;
+            }, "runErrand");
+        } finally {
+            invalidation.run();
+        }
     }
 
     @Tool(description = GET_ERRAND_STATUS)
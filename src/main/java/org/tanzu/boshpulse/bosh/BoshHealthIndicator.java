@@ -1,85 +1,177 @@
 package org.tanzu.boshpulse.bosh;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Health indicator for BOSH Director connectivity.
- * Tests the connection to the BOSH Director and reports health status.
+ * A background prober lists deployments every {@code bosh.health.probeInterval} and caches the outcome,
+ * so {@code /actuator/health} and liveness/readiness probes never call the Director themselves.
+ * The details include the latency of the last {@code bosh.health.historySize} probes.
  */
 @Component
-public class BoshHealthIndicator {
+public class BoshHealthIndicator implements HealthIndicator {
 
     private static final Logger logger = LoggerFactory.getLogger(BoshHealthIndicator.class);
-    
+
+    /**
+     * Outcome of one probe.
+     */
+    private record Probe(boolean healthy, Instant checkedAt, Duration latency, String error) {
+    }
+
     private final BoshCliExecutor cliExecutor;
     private final String director;
+    private final Duration probeInterval;
+    private final int historySize;
     private final AtomicLong lastSuccessfulCheck = new AtomicLong(0);
     private final AtomicLong lastFailedCheck = new AtomicLong(0);
     private final AtomicLong failureCount = new AtomicLong(0);
+    private final Deque<Probe> history = new ArrayDeque<>();
+    private volatile Probe lastProbe;
+    private final ScheduledExecutorService prober =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("bosh-health").factory());
 
     public BoshHealthIndicator(BoshCliExecutor cliExecutor,
-                              @Value("${bosh.director}") String director) {
+                              @Value("${bosh.director}") String director,
+                              @Value("${bosh.health.probeInterval:30}") int probeIntervalSeconds,
+                              @Value("${bosh.health.historySize:20}") int historySize) {
         this.cliExecutor = cliExecutor;
         this.director = director;
+        this.probeInterval = Duration.ofSeconds(Math.max(1, probeIntervalSeconds));
+        this.historySize = Math.max(1, historySize);
     }
 
     /**
-     * Perform a health check for BOSH Director connectivity.
-     * 
-     * @return true if the connection is healthy, false otherwise
+     * Start probing once the CLI is installed and the configuration validated.
      */
-    public boolean isHealthy() {
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(4)
+    public void start() {
+        prober.scheduleWithFixedDelay(this::probe, 0, probeInterval.toSeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+
+    /**
+     * Report the cached result of the last probe; never calls the Director.
+     * A result older than three probe intervals is reported as UNKNOWN, since the prober itself is stuck.
+     */
+    @Override
+    public Health health() {
+        Probe probe = lastProbe;
+        if (probe == null) {
+            return Health.unknown().withDetail("director", director).withDetail("reason", "First probe pending").build();
+        }
+        boolean stale = Duration.between(probe.checkedAt(), Instant.now()).compareTo(probeInterval.multipliedBy(3)) > 0;
+        Health.Builder builder = stale ? Health.unknown() : probe.healthy() ? Health.up() : Health.down();
+        builder.withDetail("director", director)
+                .withDetail("lastChecked", probe.checkedAt().toString())
+                .withDetail("lastLatencyMs", probe.latency().toMillis())
+                .withDetail("consecutiveFailures", failureCount.get());
+        if (lastSuccessfulCheck.get() > 0) {
+            builder.withDetail("lastSuccess", Instant.ofEpochMilli(lastSuccessfulCheck.get()).toString());
+        }
+        if (probe.error() != null) {
+            builder.withDetail("error", probe.error());
+        }
+        if (stale) {
+            builder.withDetail("reason", "No probe since " + probe.checkedAt());
+        }
+        List<Long> latencies = new ArrayList<>();
+        synchronized (history) {
+            history.forEach(p -> latencies.add(p.latency().toMillis()));
+        }
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("historyMs", latencies);
+        latency.put("maxMs", latencies.stream().mapToLong(Long::longValue).max().orElse(0));
+        latency.put("avgMs", Math.round(latencies.stream().mapToLong(Long::longValue).average().orElse(0)));
+        builder.withDetail("probeLatency", latency);
+        return builder.build();
+    }
+
+    /**
+     * Probe the Director once and cache the outcome.
+     * Listing deployments exercises the CLI, authentication and the Director; CLI availability is
+     * only checked after a failure, to tell the two causes apart.
+     */
+    void probe() {
+        long started = System.nanoTime();
+        String error = null;
         try {
-            logger.debug("Performing BOSH Director health check for: {}", director);
-            
-            // Test BOSH connectivity by listing deployments (lightweight operation)
-            if (!cliExecutor.isCliAvailable()) {
-                logger.warn("BOSH CLI is not available");
-                return false;
-            }
-            
-            cliExecutor.testConnection();
-            
-            // Update success metrics
+            cliExecutor.executeJson("deployments");
+        } catch (Exception e) {
+            error = cliExecutor.isCliAvailable() ? e.getMessage() : "BOSH CLI is not available";
+        }
+        Probe probe = new Probe(error == null, Instant.now(), Duration.ofNanos(System.nanoTime() - started), error);
+        if (probe.healthy()) {
             lastSuccessfulCheck.set(System.currentTimeMillis());
             failureCount.set(0); // Reset failure count on success
-            
-            logger.debug("BOSH Director health check successful");
-            return true;
-                
-        } catch (Exception e) {
-            // Update failure metrics
+            logger.debug("BOSH Director health probe succeeded in {} ms", probe.latency().toMillis());
+        } else {
             lastFailedCheck.set(System.currentTimeMillis());
             failureCount.incrementAndGet();
-            
-            logger.warn("BOSH Director health check failed: {}", e.getMessage());
-            return false;
+            logger.warn("BOSH Director health probe failed: {}", error);
         }
+        synchronized (history) {
+            history.addLast(probe);
+            if (history.size() > historySize) {
+                history.removeFirst();
+            }
+        }
+        lastProbe = probe;
     }
-    
+
+    /**
+     * Whether the last probe succeeded.
+     *
+     * @return true if the connection is healthy, false otherwise
+     */
+    public boolean isHealthy() {
+        Probe probe = lastProbe;
+        return probe != null && probe.healthy();
+    }
+
     /**
      * Get detailed health information.
-     * 
+     *
      * @return Health information as a string
      */
     public String getHealthInfo() {
-        boolean healthy = isHealthy();
-        return String.format("BOSH Health: %s, Director: %s, Last Success: %d, Failures: %d", 
-                           healthy ? "UP" : "DOWN", 
-                           director, 
-                           lastSuccessfulCheck.get(), 
+        return String.format("BOSH Health: %s, Director: %s, Last Success: %d, Failures: %d",
+                           health().getStatus(),
+                           director,
+                           lastSuccessfulCheck.get(),
                            failureCount.get());
     }
-    
+
     /**
      * Get the time since the last successful health check.
-     * 
+     *
      * @return Duration since last successful check, or null if never successful
      */
     public Duration getTimeSinceLastSuccess() {
@@ -89,19 +181,19 @@ public class BoshHealthIndicator {
         }
         return Duration.ofMillis(System.currentTimeMillis() - lastSuccess);
     }
-    
+
     /**
      * Get the number of consecutive failures.
-     * 
+     *
      * @return Number of consecutive failures
      */
     public long getFailureCount() {
         return failureCount.get();
     }
-    
+
     /**
      * Check if the BOSH Director connection has been healthy recently.
-     * 
+     *
      * @param maxAge Maximum age for a successful check to be considered recent
      * @return true if the connection was healthy within the specified time
      */
@@ -0,0 +1,285 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Hedges slow reads: when a call for one of {@code bosh.hedge.subcommands} has not returned by the
+ * {@code bosh.hedge.percentile} of the recent latencies of the same command (so {@code vms -d cf} and
+ * {@code vms -d mysql} are timed apart), an identical second call is started, the first to succeed wins,
+ * and the other is cancelled (which kills its CLI process). Until a command has {@code bosh.hedge.minSamples}
+ * latencies of its own, those of its subcommand are used. A cancelled original is recorded with the time
+ * it had run, a lower bound of its latency, so slow attempts are not dropped from the history; a cancelled
+ * hedge is not, as it started late and its running time would only pull the percentile down.
+ * <p>
+ * Hedges are paid for from a budget: every hedgeable call earns {@code bosh.hedge.budgetRatio} of a
+ * token, up to {@code bosh.hedge.maxBurst}, and every hedge spends one, so hedging adds at most that
+ * fraction of extra load on the Director. Only read-only commands are ever hedged.
+ */
+@Component
+public class BoshHedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshHedger.class);
+
+    /**
+     * The most recent latencies of one command.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+
+    /**
+     * One attempt at a call, timed from its submission. Its latency is recorded once, in the command's and
+     * the subcommand's windows: when it succeeds, or, for the original attempt, when it loses the race and
+     * is cancelled, as a censored sample of the time it had run.
+     */
+    private static final class Attempt<T> implements Callable<T> {
+        private final List<LatencyWindow> latencies;
+        private final Supplier<T> call;
+        private final boolean primary;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        Attempt(List<LatencyWindow> latencies, Supplier<T> call, boolean primary) {
+            this.latencies = latencies;
+            this.call = call;
+            this.primary = primary;
+        }
+
+        @Override
+        public T call() {
+            boolean succeeded = false;
+            try {
+                T result = call.get();
+                succeeded = true;
+                return result;
+            } finally {
+                settle(succeeded);
+            }
+        }
+
+        /**
+         * Record the time a losing original attempt has run so far, unless it already finished.
+         */
+        void censor() {
+            settle(primary);
+        }
+
+        private void settle(boolean record) {
+            if (settled.compareAndSet(false, true) && record) {
+                long nanos = System.nanoTime() - startNanos;
+                latencies.forEach(latency -> latency.record(nanos));
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private final Set<String> subcommands;
+    private final double percentile;
+    private final int window;
+    private final int minSamples;
+    private final Duration minDelay;
+    private final double budgetRatio;
+    private final double maxBurst;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LatencyWindow> subcommandLatencies = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private double tokens;
+
+    public BoshHedger(@Value("${bosh.hedge.enabled:false}") boolean enabled,
+                      @Value("${bosh.hedge.subcommands:vms,deployments,deployment}") String subcommands,
+                      @Value("${bosh.hedge.percentile:95}") double percentile,
+                      @Value("${bosh.hedge.window:200}") int window,
+                      @Value("${bosh.hedge.minSamples:20}") int minSamples,
+                      @Value("${bosh.hedge.minDelayMillis:100}") int minDelayMillis,
+                      @Value("${bosh.hedge.budgetRatio:0.1}") double budgetRatio,
+                      @Value("${bosh.hedge.maxBurst:10}") int maxBurst,
+                      MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.subcommands = new LinkedHashSet<>();
+        for (String subcommand : subcommands.split(",")) {
+            if (!subcommand.isBlank()) {
+                this.subcommands.add(subcommand.trim());
+            }
+        }
+        this.percentile = percentile;
+        this.window = Math.max(1, window);
+        this.minSamples = Math.max(1, minSamples);
+        this.minDelay = Duration.ofMillis(minDelayMillis);
+        this.budgetRatio = budgetRatio;
+        this.maxBurst = maxBurst;
+        this.meterRegistry = meterRegistry;
+        if (enabled) {
+            logger.info("BOSH request hedging for {} at p{} of recent latency, budget {}%",
+                    this.subcommands, percentile, Math.round(budgetRatio * 100));
+        }
+    }
+
+    /**
+     * Run a call, hedging it if it is slow.
+     *
+     * @param command The command the call runs
+     * @param call Runs the command; must be safe to run twice concurrently and to interrupt
+     * @param <T> The result type
+     * @return The result of whichever attempt succeeded first
+     */
+    public <T> T execute(BoshCommand command, Supplier<T> call) {
+        if (!enabled || !command.isReadOnly() || !subcommands.contains(command.subcommand())) {
+            return call.get();
+        }
+        String subcommand = command.subcommand();
+        List<LatencyWindow> latency = List.of(
+                latencies.computeIfAbsent(command.normalized(), k -> new LatencyWindow(window)),
+                subcommandLatencies.computeIfAbsent(subcommand, k -> new LatencyWindow(window)));
+        earn();
+        long threshold = threshold(command);
+        if (threshold < 0) {
+            // Not enough history to know what slow means yet
+            return new Attempt<>(latency, call, true).call();
+        }
+        long delayNanos = Math.max(threshold, minDelay.toNanos());
+
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bosh-hedge-", 0).factory());
+        List<Attempt<T>> attempts = new ArrayList<>(2);
+        try {
+            CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+            Future<T> primary = completion.submit(attempt(attempts, latency, call));
+            Future<T> done = completion.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (done != null) {
+                return result(done);
+            }
+            if (!spend()) {
+                count("bosh.hedge.skipped", "Slow BOSH calls not hedged because the hedging budget was empty", subcommand);
+                return result(primary);
+            }
+            logger.debug("BOSH '{}' slower than p{} ({} ms), sending a hedged request",
+                    subcommand, percentile, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+            count("bosh.hedge.sent", "Hedged BOSH calls sent", subcommand);
+            Future<T> hedge = completion.submit(attempt(attempts, latency, call));
+            Future<T> first = completion.take();
+            try {
+                T result = result(first);
+                if (first == hedge) {
+                    count("bosh.hedge.won", "Hedged BOSH calls that finished before the original", subcommand);
+                }
+                return result;
+            } catch (RuntimeException e) {
+                // One attempt failed; the other may still succeed
+                return result(completion.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BoshCommandException(BoshCommandException.Category.INTERNAL, "Interrupted while waiting for BOSH '"
+                    + subcommand + "'", e);
+        } finally {
+            attempts.forEach(Attempt::censor);
+            // Interrupts the losing attempt, whose process tree is then killed
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The current hedging delay for a command, or null while there is too little history.
+     */
+    Duration hedgeDelay(BoshCommand command) {
+        long threshold = threshold(command);
+        return threshold < 0 ? null : Duration.ofNanos(Math.max(threshold, minDelay.toNanos()));
+    }
+
+    /**
+     * The latency percentile of a command, or of its subcommand while the command has too few samples;
+     * -1 while both have too few.
+     */
+    private long threshold(BoshCommand command) {
+        LatencyWindow own = latencies.get(command.normalized());
+        long threshold = own != null ? own.percentile(percentile, minSamples) : -1;
+        if (threshold < 0) {
+            LatencyWindow shared = subcommandLatencies.get(command.subcommand());
+            threshold = shared != null ? shared.percentile(percentile, minSamples) : -1;
+        }
+        return threshold;
+    }
+
+    private static <T> Attempt<T> attempt(List<Attempt<T>> attempts, List<LatencyWindow> latency, Supplier<T> call) {
+        Attempt<T> attempt = new Attempt<>(latency, call, attempts.isEmpty());
+        attempts.add(attempt);
+        return attempt;
+    }
+
+    private static <T> T result(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BoshCommandException(BoshCommandException.categorize(e.getCause()),
+                    e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private synchronized void earn() {
+        tokens = Math.min(maxBurst, tokens + budgetRatio);
+    }
+
+    private synchronized boolean spend() {
+        if (tokens >= 1) {
+            tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    private void count(String name, String description, String subcommand) {
+        Counter.builder(name)
+                .tag("subcommand", subcommand)
+                .description(description)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,299 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory snapshot of the Director's inventory: the deployment list, the stemcell and release lists,
+ * and the VMs of deployments that clients have read.
+ * A background refresher keeps each part current on its own adaptive interval: a part that changed
+ * is fetched again after {@code bosh.inventory.minInterval}, and every unchanged fetch doubles its
+ * interval up to {@code bosh.inventory.maxInterval}, so quiet deployments cost little while busy ones
+ * stay fresh. Read tools answer from a snapshot as long as it is no older than
+ * {@code bosh.inventory.maxStaleness}; mutations drop the affected snapshots until they are fetched again.
+ * A deployment's VMs are only polled once a client reads them, and polling stops when nobody has read
+ * them for {@code bosh.inventory.maxStaleness}. Snapshots are handed out as copies.
+ */
+@Component
+public class BoshInventory {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshInventory.class);
+
+    private static final class Tracked {
+        final Region region;
+        final String name;
+        final String key;
+        final String command;
+        final ReentrantLock fetchLock = new ReentrantLock();
+        volatile JsonNode value;
+        volatile long fetchedAtNanos;
+        volatile Duration interval;
+        volatile long dueAtNanos;
+        volatile long generation;
+        volatile long readAtNanos;
+        JsonNode baseline;
+
+        Tracked(Region region, String name, String command, Duration interval) {
+            this.region = region;
+            this.name = name;
+            this.key = key(region, name);
+            this.command = command;
+            this.interval = interval;
+            this.dueAtNanos = System.nanoTime();
+            this.readAtNanos = dueAtNanos;
+        }
+    }
+
+    private final BoshCliExecutor cliExecutor;
+    private final boolean enabled;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final Duration maxStaleness;
+    private final int parallelism;
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("bosh-inventory").factory());
+    private BoshChangeFeed changeFeed;
+
+    public BoshInventory(BoshCliExecutor cliExecutor,
+                         @Value("${bosh.inventory.enabled:false}") boolean enabled,
+                         @Value("${bosh.inventory.minInterval:10}") int minIntervalSeconds,
+                         @Value("${bosh.inventory.maxInterval:60}") int maxIntervalSeconds,
+                         @Value("${bosh.inventory.maxStaleness:120}") int maxStalenessSeconds,
+                         @Value("${bosh.inventory.parallelism:2}") int parallelism) {
+        this.cliExecutor = cliExecutor;
+        this.enabled = enabled;
+        this.minInterval = Duration.ofSeconds(minIntervalSeconds);
+        this.maxInterval = Duration.ofSeconds(Math.max(minIntervalSeconds, maxIntervalSeconds));
+        this.maxStaleness = Duration.ofSeconds(maxStalenessSeconds);
+        this.parallelism = Math.max(1, parallelism);
+        if (enabled) {
+            for (Region region : List.of(Region.DEPLOYMENTS, Region.STEMCELLS, Region.RELEASES)) {
+                track(region, "");
+            }
+        }
+    }
+
+    /**
+     * Set the feed that turns changed fetches into change events (absent when constructed directly).
+     */
+    @Autowired(required = false)
+    public void setChangeFeed(BoshChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Start refreshing once the CLI is installed and the configuration validated.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(3)
+    public void start() {
+        if (enabled) {
+            logger.info("BOSH inventory refresh every {}-{}, served up to {} old", minInterval, maxInterval, maxStaleness);
+            refresher.scheduleWithFixedDelay(this::refreshDue, 0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Get the snapshot of a listing if it is within the staleness bound.
+     *
+     * @param region The region ({@code DEPLOYMENTS}, {@code STEMCELLS}, {@code RELEASES} or {@code VMS})
+     * @param key The deployment for {@code VMS}, otherwise ""
+     * @return A copy of the CLI-shaped JSON listing, or empty if there is no sufficiently recent snapshot
+     */
+    public Optional<JsonNode> get(Region region, String key) {
+        // A deployment's VMs are polled from the first time a client asks for them
+        Tracked entry = enabled && region == Region.VMS ? track(region, key) : tracked.get(key(region, key));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        entry.readAtNanos = System.nanoTime();
+        JsonNode value = entry.value;
+        if (value == null || System.nanoTime() - entry.fetchedAtNanos > maxStaleness.toNanos()) {
+            return Optional.empty();
+        }
+        return Optional.of(value.deepCopy());
+    }
+
+    /**
+     * Fetch a listing from the Director now and update its snapshot.
+     *
+     * @param region The region ({@code DEPLOYMENTS}, {@code STEMCELLS}, {@code RELEASES} or {@code VMS})
+     * @param key The deployment for {@code VMS}, otherwise ""
+     * @return A copy of the fresh listing, or null if the region is not part of the inventory
+     * @throws RuntimeException if the fetch fails
+     */
+    public JsonNode refresh(Region region, String key) {
+        Tracked entry = enabled ? track(region, key) : null;
+        if (entry == null) {
+            return null;
+        }
+        entry.readAtNanos = System.nanoTime();
+        entry.fetchLock.lock();
+        try {
+            return fetch(entry).deepCopy();
+        } finally {
+            entry.fetchLock.unlock();
+        }
+    }
+
+    /**
+     * Drop a snapshot after a mutation and fetch it again on the next refresh cycle.
+     *
+     * @param region The affected region
+     * @param key The affected key, or null for the whole region
+     */
+    public void invalidate(Region region, String key) {
+        String prefix = region.getTag() + ":";
+        for (Tracked entry : tracked.values()) {
+            if (key == null ? entry.key.startsWith(prefix) : entry.key.equals(prefix + key)) {
+                entry.generation++;
+                entry.value = null;
+                entry.interval = minInterval;
+                entry.dueAtNanos = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Refresh every part of the inventory whose interval has elapsed, at most
+     * {@code bosh.inventory.parallelism} at a time, and wait for them to finish.
+     * VMs nobody has read for {@code bosh.inventory.maxStaleness} are no longer polled.
+     */
+    void refreshDue() {
+        long now = System.nanoTime();
+        tracked.values().removeIf(entry -> entry.region == Region.VMS
+                && now - entry.readAtNanos > maxStaleness.toNanos());
+        List<Tracked> due = new ArrayList<>();
+        for (Tracked entry : tracked.values()) {
+            if (now - entry.dueAtNanos >= 0) {
+                due.add(entry);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        Semaphore permits = new Semaphore(parallelism);
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bosh-inventory-", 0).factory())) {
+            for (Tracked entry : due) {
+                executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        if (entry.fetchLock.tryLock()) {
+                            // Skipped if a fresh read is already bringing this entry up to date
+                            try {
+                                fetch(entry);
+                            } finally {
+                                entry.fetchLock.unlock();
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        // Keep serving the last snapshot until it goes stale, and retry less often
+                        logger.debug("Refreshing BOSH inventory {} failed: {}", entry.key, e.getMessage());
+                        entry.interval = backOff(entry.interval);
+                        entry.dueAtNanos = System.nanoTime() + entry.interval.toNanos();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Current refresh interval of a part of the inventory, or null if it is not tracked.
+     */
+    Duration interval(Region region, String key) {
+        Tracked entry = tracked.get(key(region, key));
+        return entry != null ? entry.interval : null;
+    }
+
+    /**
+     * Fetch one part of the inventory; callers hold its fetch lock.
+     */
+    private JsonNode fetch(Tracked entry) {
+        long generation = entry.generation;
+        JsonNode previous = entry.value;
+        JsonNode current = cliExecutor.executeJson(entry.command);
+        // Changes are reported against the last fetch, which invalidation does not clear
+        JsonNode baseline = entry.baseline;
+        entry.baseline = current;
+        if (changeFeed != null && baseline != null && !current.equals(baseline)) {
+            changeFeed.publish(entry.region, entry.name, baseline, current);
+        }
+        if (entry.generation != generation) {
+            // A mutation invalidated the entry while it was loading; the next cycle fetches it again
+            return current;
+        }
+        entry.value = current;
+        entry.fetchedAtNanos = System.nanoTime();
+        entry.interval = current.equals(previous) ? backOff(entry.interval) : minInterval;
+        entry.dueAtNanos = entry.fetchedAtNanos + entry.interval.toNanos();
+        if (entry.key.equals(key(Region.DEPLOYMENTS, ""))) {
+            syncDeployments(current);
+        }
+        return current;
+    }
+
+    /**
+     * Forget the VMs of deleted deployments.
+     */
+    private void syncDeployments(JsonNode deployments) {
+        Set<String> names = new HashSet<>();
+        for (Map<String, String> row : BoshJsonRowExtractor.extractRows(deployments, Set.of("name"), null)) {
+            names.add(row.get("name"));
+        }
+        String prefix = Region.VMS.getTag() + ":";
+        tracked.keySet().removeIf(k -> k.startsWith(prefix) && !names.contains(k.substring(prefix.length())));
+    }
+
+    private Tracked track(Region region, String key) {
+        String command = switch (region) {
+            case DEPLOYMENTS -> "deployments";
+            case STEMCELLS -> "stemcells";
+            case RELEASES -> "releases";
+            case VMS -> "vms -d " + key;
+            default -> null;
+        };
+        return command == null ? null
+                : tracked.computeIfAbsent(key(region, key), k -> new Tracked(region, key, command, minInterval));
+    }
+
+    private Duration backOff(Duration interval) {
+        Duration doubled = interval.multipliedBy(2);
+        return doubled.compareTo(maxInterval) > 0 ? maxInterval : doubled;
+    }
+
+    private static String key(Region region, String key) {
+        return region.getTag() + ":" + key;
+    }
+}
@@ -0,0 +1,129 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Extracts table rows from BOSH CLI {@code --json} output ({@code Tables[].Rows[]}).
+ * The streaming variant walks the document token by token and only materializes the
+ * requested fields of each row, so large outputs never exist as a string or a full tree.
+ */
+public final class BoshJsonRowExtractor {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BoshJsonRowExtractor() {
+    }
+
+    /**
+     * Stream rows out of CLI JSON output.
+     *
+     * @param json The CLI stdout
+     * @param fields Row fields to keep, or null to keep every field
+     * @param filter Predicate a row must satisfy to be kept, or null to keep every row
+     * @return The matching rows, each holding only the requested fields
+     * @throws RuntimeException if the output is not valid JSON
+     */
+    public static List<Map<String, String>> extractRows(InputStream json, Set<String> fields,
+                                                        Predicate<Map<String, String>> filter) {
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return rows;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("Tables".equals(name) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readTable(parser, fields, filter, rows);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return rows;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to parse BOSH CLI JSON output", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read BOSH CLI JSON output: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extract rows from an already parsed result, e.g. one served by the Director HTTP backend.
+     *
+     * @param result Parsed CLI-shaped JSON
+     * @param fields Row fields to keep, or null to keep every field
+     * @param filter Predicate a row must satisfy to be kept, or null to keep every row
+     * @return The matching rows, each holding only the requested fields
+     */
+    public static List<Map<String, String>> extractRows(JsonNode result, Set<String> fields,
+                                                        Predicate<Map<String, String>> filter) {
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (JsonNode table : result.path("Tables")) {
+            for (JsonNode node : table.path("Rows")) {
+                Map<String, String> row = new LinkedHashMap<>();
+                Iterator<Map.Entry<String, JsonNode>> entries = node.fields();
+                while (entries.hasNext()) {
+                    Map.Entry<String, JsonNode> entry = entries.next();
+                    if (fields == null || fields.contains(entry.getKey())) {
+                        JsonNode value = entry.getValue();
+                        row.put(entry.getKey(), value.isNull() ? "" : value.isValueNode() ? value.asText() : value.toString());
+                    }
+                }
+                if (filter == null || filter.test(row)) {
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void readTable(JsonParser parser, Set<String> fields, Predicate<Map<String, String>> filter,
+                                  List<Map<String, String>> rows) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("Rows".equals(name) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Map<String, String> row = readRow(parser, fields);
+                    if (filter == null || filter.test(row)) {
+                        rows.add(row);
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static Map<String, String> readRow(JsonParser parser, Set<String> fields) throws IOException {
+        Map<String, String> row = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (fields != null && !fields.contains(name)) {
+                parser.skipChildren();
+            } else if (value.isScalarValue()) {
+                row.put(name, parser.getValueAsString(""));
+            } else {
+                row.put(name, parser.readValueAsTree().toString());
+            }
+        }
+        return row;
+    }
+}
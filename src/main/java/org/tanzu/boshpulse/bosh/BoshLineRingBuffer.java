@@ -0,0 +1,130 @@
+package org.tanzu.boshpulse.bosh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded buffer of the most recent output lines, addressed by absolute line offsets.
+ * Offsets keep counting when old lines are overwritten, so a reader's cursor stays valid
+ * and a reader that fell behind can tell how many lines it missed. Uses a lock rather than
+ * monitors so waiting readers on virtual threads do not pin their carriers.
+ */
+public class BoshLineRingBuffer {
+
+    /**
+     * Lines read from the buffer.
+     *
+     * @param lines The lines, oldest first
+     * @param nextOffset Offset to pass to the next read
+     * @param skipped Lines between the requested offset and the first returned line that were already overwritten
+     */
+    public record Slice(List<String> lines, long nextOffset, long skipped) {
+    }
+
+    private final String[] lines;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private long nextOffset;
+
+    public BoshLineRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ring buffer capacity must be positive");
+        }
+        this.lines = new String[capacity];
+    }
+
+    /**
+     * Append a line, overwriting the oldest one when the buffer is full.
+     */
+    public void append(String line) {
+        lock.lock();
+        try {
+            lines[(int) (nextOffset % lines.length)] = line;
+            nextOffset++;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read up to {@code maxLines} lines starting at an offset.
+     *
+     * @param fromOffset Offset of the first line wanted; offsets before the oldest buffered line are clamped
+     * @param maxLines Maximum number of lines to return
+     * @return The lines and the cursor for the next read
+     */
+    public Slice read(long fromOffset, int maxLines) {
+        long from = Math.max(0, fromOffset);
+        lock.lock();
+        try {
+            long start = Math.max(from, oldestOffset());
+            long end = Math.min(nextOffset, start + Math.max(0, maxLines));
+            List<String> slice = new ArrayList<>();
+            for (long offset = start; offset < end; offset++) {
+                slice.add(lines[(int) (offset % lines.length)]);
+            }
+            return new Slice(slice, Math.max(end, from), start - from);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until a line at or after the offset exists, or the timeout elapses.
+     *
+     * @return true if lines at or after the offset are available
+     */
+    public boolean awaitLines(long fromOffset, long timeoutMillis) throws InterruptedException {
+        return awaitLines(fromOffset, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wait until a line at or after the offset exists, or the timeout elapses.
+     *
+     * @return true if lines at or after the offset are available
+     */
+    public boolean awaitLines(long fromOffset, long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (nextOffset <= fromOffset && remainingNanos > 0) {
+                remainingNanos = appended.awaitNanos(remainingNanos);
+            }
+            return nextOffset > fromOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the offset of the oldest line still buffered.
+     */
+    public long firstOffset() {
+        lock.lock();
+        try {
+            return oldestOffset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the offset the next appended line will get, i.e. the total number of lines appended.
+     */
+    public long nextOffset() {
+        lock.lock();
+        try {
+            return nextOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long oldestOffset() {
+        return Math.max(0, nextOffset - lines.length);
+    }
+}
@@ -0,0 +1,492 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.tanzu.boshpulse.bosh.BoshLogIndex.IndexBuilder;
+import org.tanzu.boshpulse.bosh.BoshTarInputStream.Entry;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Downloads {@code bosh logs} tarballs into a spool directory and filters them as a stream.
+ * The gzip and tar layers (including the per-instance tarballs nested inside a deployment's
+ * archive, and rotated {@code .gz} files) are decompressed on the fly and read line by line,
+ * so memory use stays constant however large the archive is; lines are matched on their first
+ * 64K characters, and the rest of a longer line is skipped. Only matching lines are kept,
+ * {@code bosh.logs.archive.maxMatches} unless the caller asks for more, up to
+ * {@code bosh.logs.archive.matchLimit}, together with their file and line number.
+ */
+@Component
+public class BoshLogArchiveScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshLogArchiveScanner.class);
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final int TIMESTAMP_SEARCH_CHARS = 64;
+    // Lines are matched and indexed on at most this many characters, so one huge line cannot exhaust the heap
+    private static final int MATCH_WINDOW_CHARS = 64 * 1024;
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile(
+            "(\\d{4})[-/](\\d{2})[-/](\\d{2})[T ](\\d{2}):(\\d{2}):(\\d{2})(\\.\\d{1,9})?\\s?(Z|[+-]\\d{2}:?\\d{2})?");
+    private static final Pattern INSTANCE_TIMESTAMP_PATTERN = Pattern.compile("\\.\\d{4}-\\d{2}-\\d{2}[-\\d]*$");
+    private static final Pattern RELATIVE_TIME_PATTERN = Pattern.compile("(\\d+)([smhd])");
+
+    /**
+     * A matching log line.
+     *
+     * @param file Path of the file inside the archive; files from nested archives are prefixed with the archive name
+     * @param line 1-based line number within the file
+     * @param text The line, truncated to {@code bosh.logs.archive.maxLineLength} after it was matched
+     */
+    public record LogMatch(String file, long line, String text) {
+    }
+
+    /**
+     * Result of filtering a logs archive.
+     *
+     * @param matches Matching lines in archive order
+     * @param filesScanned Number of files whose lines were read
+     * @param linesScanned Number of lines read
+     * @param archiveBytes Compressed size of the downloaded archive(s)
+     * @param truncated Whether scanning stopped at the match limit
+     */
+    public record LogSearchResult(List<LogMatch> matches, int filesScanned, long linesScanned, long archiveBytes,
+                                  boolean truncated) {
+    }
+
+    /**
+     * Line filters. Null fields do not filter.
+     *
+     * @param pattern Lines must contain a match of this pattern
+     * @param since Lines must be timestamped at or after this instant
+     * @param until Lines must be timestamped before this instant
+     * @param fileGlob Glob matched against each file's path in the archive, or its name for globs without {@code /}
+     * @param maxMatches Maximum matches to return, or 0 for {@code bosh.logs.archive.maxMatches};
+     *                   capped at {@code bosh.logs.archive.matchLimit}
+     */
+    public record LogFilter(Pattern pattern, Instant since, Instant until, String fileGlob, int maxMatches) {
+    }
+
+    private static final class ScanState {
+        private final LogFilter filter;
+        private final PathMatcher fileMatcher;
+        private final IndexBuilder index;
+        private final boolean collect;
+        private final List<LogMatch> matches = new ArrayList<>();
+        private int filesScanned;
+        private long linesScanned;
+        private boolean truncated;
+
+        private ScanState(LogFilter filter, IndexBuilder index, boolean collect) {
+            this.filter = filter;
+            this.index = index;
+            this.collect = collect;
+            this.fileMatcher = filter.fileGlob() != null
+                    ? FileSystems.getDefault().getPathMatcher("glob:" + filter.fileGlob()) : null;
+        }
+
+        /**
+         * Whether reading can stop: no more matches are wanted and nothing is being indexed.
+         */
+        private boolean done() {
+            return (truncated || !collect) && index == null;
+        }
+    }
+
+    private final BoshCliExecutor cliExecutor;
+    private final Path spoolDir;
+    private final int defaultMaxMatches;
+    private final int matchLimit;
+    private final int maxLineLength;
+    private BoshLogIndex logIndex;
+
+    public BoshLogArchiveScanner(BoshCliExecutor cliExecutor,
+                                 @Value("${bosh.logs.spoolDir:${java.io.tmpdir}/bosh-mcp-logs}") String spoolDir,
+                                 @Value("${bosh.logs.archive.maxMatches:500}") int defaultMaxMatches,
+                                 @Value("${bosh.logs.archive.matchLimit:10000}") int matchLimit,
+                                 @Value("${bosh.logs.archive.maxLineLength:4096}") int maxLineLength) {
+        if (spoolDir.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("bosh.logs.spoolDir must not contain whitespace: " + spoolDir);
+        }
+        this.cliExecutor = cliExecutor;
+        this.spoolDir = Path.of(spoolDir);
+        this.defaultMaxMatches = defaultMaxMatches;
+        this.matchLimit = Math.max(defaultMaxMatches, matchLimit);
+        this.maxLineLength = maxLineLength;
+        cleanSpool();
+    }
+
+    /**
+     * Set the index that {@link #fetchAndIndex} adds logs to (absent when the scanner is constructed directly).
+     */
+    @Autowired(required = false)
+    public void setLogIndex(BoshLogIndex logIndex) {
+        this.logIndex = logIndex;
+    }
+
+    /**
+     * Download logs with {@code bosh logs --dir} and filter them. Nothing is indexed, so reading
+     * stops as soon as the match limit is reached.
+     *
+     * @param deploymentName The deployment
+     * @param target Instance group or {@code group/id}, or null for the whole deployment
+     * @param filter Line filters
+     * @return Matching lines with provenance
+     */
+    public LogSearchResult fetchAndScan(String deploymentName, String target, LogFilter filter) {
+        return fetch(deploymentName, target, filter, false);
+    }
+
+    /**
+     * Download logs with {@code bosh logs --dir} only to (re)index them.
+     *
+     * @param deploymentName The deployment
+     * @param target Instance group or {@code group/id}, or null for the whole deployment
+     * @return Scan counts, without matches
+     * @throws IllegalStateException if no log index is configured
+     */
+    public LogSearchResult fetchAndIndex(String deploymentName, String target) {
+        if (logIndex == null) {
+            throw new IllegalStateException("Log index is not available");
+        }
+        return fetch(deploymentName, target, null, true);
+    }
+
+    private LogSearchResult fetch(String deploymentName, String target, LogFilter filter, boolean indexed) {
+        Path downloadDir = null;
+        try {
+            Files.createDirectories(spoolDir);
+            downloadDir = Files.createTempDirectory(spoolDir, "logs-");
+            String command = "logs -d " + deploymentName + (target != null ? " " + target : "") + " --dir " + downloadDir;
+            cliExecutor.execute(command);
+
+            List<Path> archives;
+            try (Stream<Path> files = Files.list(downloadDir)) {
+                archives = files.filter(this::isTarball).sorted().toList();
+            }
+            if (archives.isEmpty()) {
+                throw new RuntimeException("bosh logs did not download a logs archive for " + deploymentName);
+            }
+
+            long archiveBytes = 0;
+            ScanState state;
+            try (IndexBuilder index = indexed ? logIndex.builder(deploymentName, target) : null) {
+                state = filter != null ? new ScanState(withDefaults(filter), index, true)
+                        : new ScanState(new LogFilter(null, null, null, null, 0), index, false);
+                for (Path archive : archives) {
+                    archiveBytes += Files.size(archive);
+                    scan(archive, state);
+                }
+                if (index != null) {
+                    index.commit();
+                }
+            }
+            logger.info("Scanned {} files ({} lines, {} bytes compressed) of {} logs, {} matches",
+                    state.filesScanned, state.linesScanned, archiveBytes, deploymentName, state.matches.size());
+            return new LogSearchResult(List.copyOf(state.matches), state.filesScanned, state.linesScanned,
+                    archiveBytes, state.truncated);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to process logs of " + deploymentName + ": " + e.getMessage(), e);
+        } finally {
+            deleteRecursively(downloadDir);
+        }
+    }
+
+    /**
+     * Filter a {@code .tgz} logs archive that is already on disk.
+     */
+    public LogSearchResult scan(Path archive, LogFilter filter) throws IOException {
+        ScanState state = new ScanState(withDefaults(filter), null, true);
+        scan(archive, state);
+        return new LogSearchResult(List.copyOf(state.matches), state.filesScanned, state.linesScanned,
+                Files.size(archive), state.truncated);
+    }
+
+    /**
+     * Parse a point in time: an ISO-8601 timestamp, or a duration such as {@code 15m}, {@code 2h} or
+     * {@code 1d} meaning that long ago.
+     *
+     * @return The instant, or null for a blank value
+     * @throws IllegalArgumentException if the value is neither
+     */
+    public static Instant parseTime(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        Matcher relative = RELATIVE_TIME_PATTERN.matcher(trimmed);
+        if (relative.matches()) {
+            long amount = Long.parseLong(relative.group(1));
+            Duration ago = switch (relative.group(2)) {
+                case "s" -> Duration.ofSeconds(amount);
+                case "m" -> Duration.ofMinutes(amount);
+                case "h" -> Duration.ofHours(amount);
+                default -> Duration.ofDays(amount);
+            };
+            return Instant.now().minus(ago);
+        }
+        try {
+            return OffsetDateTime.parse(trimmed).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(trimmed).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException ignored) {
+                throw new IllegalArgumentException("Invalid time '" + value
+                        + "': expected ISO-8601 (e.g. 2024-05-01T10:00:00Z) or a duration ago (e.g. 30m, 2h, 1d)");
+            }
+        }
+    }
+
+    /**
+     * Extract the timestamp near the start of a log line, assuming UTC when the line has no offset.
+     *
+     * @return The timestamp, or null if the line does not start with one
+     */
+    static Instant parseLineTimestamp(CharSequence line) {
+        Matcher matcher = TIMESTAMP_PATTERN.matcher(line);
+        matcher.region(0, Math.min(line.length(), TIMESTAMP_SEARCH_CHARS));
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            String fraction = matcher.group(7);
+            int nanos = fraction == null ? 0
+                    : Integer.parseInt((fraction.substring(1) + "000000000").substring(0, 9));
+            LocalDateTime local = LocalDateTime.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                    Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(4)),
+                    Integer.parseInt(matcher.group(5)), Integer.parseInt(matcher.group(6)), nanos);
+            String zone = matcher.group(8);
+            ZoneOffset offset = zone == null || zone.equals("Z") ? ZoneOffset.UTC
+                    : ZoneOffset.of(zone.length() == 5 ? zone.substring(0, 3) + ":" + zone.substring(3) : zone);
+            return local.toInstant(offset);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private LogFilter withDefaults(LogFilter filter) {
+        int maxMatches = filter.maxMatches() > 0 ? Math.min(filter.maxMatches(), matchLimit) : defaultMaxMatches;
+        return new LogFilter(filter.pattern(), filter.since(), filter.until(), filter.fileGlob(), maxMatches);
+    }
+
+    private void scan(Path archive, ScanState state) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(archive), IO_BUFFER_SIZE);
+             BoshTarInputStream tar = new BoshTarInputStream(new GZIPInputStream(file, IO_BUFFER_SIZE))) {
+            scanTar(tar, "", null, state);
+        }
+    }
+
+    private void scanTar(BoshTarInputStream tar, String prefix, String instance, ScanState state) throws IOException {
+        Entry entry;
+        while (!state.done() && (entry = tar.getNextEntry()) != null) {
+            if (!entry.regularFile() || entry.size() == 0) {
+                continue;
+            }
+            String name = entry.name().startsWith("./") ? entry.name().substring(2) : entry.name();
+            if (isTarball(name)) {
+                // Deployment archives contain one tarball per instance
+                try (BoshTarInputStream nested = new BoshTarInputStream(
+                        new GZIPInputStream(new NonClosingInputStream(tar), IO_BUFFER_SIZE))) {
+                    String nestedName = stripTarballExtension(name);
+                    scanTar(nested, prefix + nestedName + "/",
+                            instance != null ? instance : INSTANCE_TIMESTAMP_PATTERN.matcher(nestedName).replaceFirst(""), state);
+                }
+            } else if (state.index != null || fileMatches(name, state)) {
+                InputStream content = new NonClosingInputStream(tar);
+                if (name.endsWith(".gz")) {
+                    content = new GZIPInputStream(content, IO_BUFFER_SIZE);
+                }
+                try (Reader reader = new InputStreamReader(content, StandardCharsets.UTF_8)) {
+                    scanLines(reader, prefix + name, instance, fileMatches(name, state), state);
+                }
+            }
+        }
+    }
+
+    private void scanLines(Reader reader, String file, String instance, boolean matchable, ScanState state)
+            throws IOException {
+        state.filesScanned++;
+        LineFilter lineFilter = new LineFilter(file, instance, matchable, state, maxLineLength);
+        int window = Math.max(maxLineLength, MATCH_WINDOW_CHARS);
+        StringBuilder line = new StringBuilder();
+        char[] buffer = new char[8192];
+        boolean pending = false;
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    if (!lineFilter.accept(line)) {
+                        return;
+                    }
+                    line.setLength(0);
+                    pending = false;
+                } else {
+                    // The line is matched on its match window; only the returned text is cut to maxLineLength.
+                    // The rest of an over-long line is read past without being kept
+                    if (line.length() < window) {
+                        line.append(buffer[i]);
+                    }
+                    pending = true;
+                }
+            }
+        }
+        if (pending) {
+            lineFilter.accept(line);
+        }
+    }
+
+    /**
+     * Indexes the lines of one file and applies the time and pattern filters to them.
+     */
+    private static final class LineFilter {
+        private final String file;
+        private final String instance;
+        private final boolean matchable;
+        private final ScanState state;
+        private final boolean timeFiltered;
+        private final int maxLineLength;
+        private Instant lastTimestamp;
+        private long lineNumber;
+
+        private LineFilter(String file, String instance, boolean matchable, ScanState state, int maxLineLength) {
+            this.file = file;
+            this.instance = instance;
+            this.matchable = matchable;
+            this.state = state;
+            this.maxLineLength = maxLineLength;
+            this.timeFiltered = state.filter.since() != null || state.filter.until() != null;
+        }
+
+        /**
+         * @return false once the match limit is reached and scanning should stop
+         */
+        private boolean accept(StringBuilder line) throws IOException {
+            lineNumber++;
+            state.linesScanned++;
+            int end = line.length();
+            if (end > 0 && line.charAt(end - 1) == '\r') {
+                line.setLength(end - 1);
+            }
+            LogFilter filter = state.filter;
+            if (timeFiltered || state.index != null) {
+                // Continuation lines (stack traces etc.) belong to the last timestamped line
+                Instant timestamp = parseLineTimestamp(line);
+                if (timestamp != null) {
+                    lastTimestamp = timestamp;
+                }
+            }
+            if (state.index != null) {
+                state.index.add(instance, file, lineNumber, lastTimestamp, line);
+            }
+            if (!matchable || !state.collect || state.truncated) {
+                return !state.done();
+            }
+            if (timeFiltered) {
+                if (lastTimestamp == null
+                        || (filter.since() != null && lastTimestamp.isBefore(filter.since()))
+                        || (filter.until() != null && !lastTimestamp.isBefore(filter.until()))) {
+                    return true;
+                }
+            }
+            if (filter.pattern() != null && !filter.pattern().matcher(line).find()) {
+                return true;
+            }
+            if (state.matches.size() >= filter.maxMatches()) {
+                state.truncated = true;
+                return !state.done();
+            }
+            state.matches.add(new LogMatch(file, lineNumber, line.substring(0, Math.min(line.length(), maxLineLength))));
+            return true;
+        }
+    }
+
+    private boolean fileMatches(String name, ScanState state) {
+        if (state.fileMatcher == null) {
+            return true;
+        }
+        Path path = Path.of(name);
+        Path matched = state.filter.fileGlob().contains("/") ? path : path.getFileName();
+        return matched != null && state.fileMatcher.matches(matched);
+    }
+
+    private boolean isTarball(Path path) {
+        return Files.isRegularFile(path) && isTarball(path.getFileName().toString());
+    }
+
+    private static boolean isTarball(String name) {
+        return name.endsWith(".tgz") || name.endsWith(".tar.gz");
+    }
+
+    private static String stripTarballExtension(String name) {
+        return name.endsWith(".tgz") ? name.substring(0, name.length() - 4) : name.substring(0, name.length() - 7);
+    }
+
+    private void cleanSpool() {
+        if (!Files.isDirectory(spoolDir)) {
+            return;
+        }
+        // Downloads left behind by a previous run that was killed mid-request
+        try (Stream<Path> leftovers = Files.list(spoolDir)) {
+            leftovers.filter(path -> path.getFileName().toString().startsWith("logs-"))
+                    .forEach(BoshLogArchiveScanner::deleteRecursively);
+        } catch (IOException e) {
+            logger.warn("Failed to clean log spool directory {}: {}", spoolDir, e.getMessage());
+        }
+    }
+
+    private static void deleteRecursively(Path path) {
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete spooled log file {}: {}", p, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Failed to delete spooled logs {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Lets a nested decompressor be closed without closing the enclosing archive stream.
+     */
+    private static final class NonClosingInputStream extends FilterInputStream {
+        private NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // The enclosing archive stays open
+        }
+    }
+}
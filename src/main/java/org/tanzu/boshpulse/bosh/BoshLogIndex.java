@@ -0,0 +1,790 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.tanzu.boshpulse.bosh.BoshLogArchiveScanner.LogMatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk index of fetched instance logs, so repeated searches during an incident do not
+ * download and scan the tarball again.
+ * <p>
+ * There is one segment per deployment and instance, written while {@link BoshLogArchiveScanner}
+ * streams a tarball. A segment holds the line text, a fixed-width line table (offset, timestamp,
+ * file, line number), an inverted index from lower-cased terms to line ordinals, and the line
+ * ordinals of each time bucket. Segments are replaced when an instance's logs are fetched again
+ * and evicted least recently used first once they exceed {@code bosh.logs.index.maxBytes}.
+ * Each deployment also records which fetch targets (the whole deployment, an instance group or one
+ * instance) produced which segments, so a search is only answered from the index when its exact
+ * target was fetched. Segments are built under {@code .builds} and moved into place on commit.
+ */
+@Component
+public class BoshLogIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshLogIndex.class);
+
+    private static final Pattern TERM_PATTERN = Pattern.compile("[\\p{L}\\p{N}_]+");
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int LINE_ENTRY_BYTES = 28;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final String LINES_FILE = "lines.dat";
+    private static final String LINE_TABLE_FILE = "lines.idx";
+    private static final String POSTINGS_FILE = "postings.dat";
+    private static final String TERMS_FILE = "terms.dict";
+    private static final String BUCKETS_FILE = "buckets.dict";
+    private static final String FILES_FILE = "files.txt";
+    private static final String META_FILE = "segment.properties";
+    private static final String COVERAGE_FILE = "coverage.properties";
+    private static final String BUILDS_DIR = ".builds";
+    private static final String WHOLE_DEPLOYMENT = "*";
+
+    /**
+     * Result of an index search.
+     *
+     * @param matches Matching lines, by instance and then in log order
+     * @param segmentsSearched Number of instance segments searched
+     * @param candidates Lines that contained every query term before time and substring checks
+     * @param truncated Whether more lines matched than were returned
+     * @param indexedAt When the oldest searched segment was indexed, i.e. how stale the answer may be
+     */
+    public record IndexSearchResult(List<LogMatch> matches, int segmentsSearched, long candidates, boolean truncated,
+                                    String indexedAt) {
+    }
+
+    private final Path indexDir;
+    private final Path buildsDir;
+    private final long maxBytes;
+    private final Duration bucketSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LinkedHashMap<Path, Segment> segments;
+
+    public BoshLogIndex(@Value("${bosh.logs.index.dir:${java.io.tmpdir}/bosh-mcp-index}") String indexDir,
+                        @Value("${bosh.logs.index.maxBytes:536870912}") long maxBytes,
+                        @Value("${bosh.logs.index.bucketSeconds:300}") int bucketSeconds,
+                        @Value("${bosh.logs.index.loadedSegments:16}") int maxLoadedSegments) {
+        this.indexDir = Path.of(indexDir);
+        this.buildsDir = this.indexDir.resolve(BUILDS_DIR);
+        this.maxBytes = maxBytes;
+        this.bucketSize = Duration.ofSeconds(Math.max(1, bucketSeconds));
+        this.segments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Segment> eldest) {
+                return size() > maxLoadedSegments;
+            }
+        };
+        // Builds left behind by a crash are never committed
+        deleteRecursively(buildsDir);
+    }
+
+    /**
+     * Start indexing a fetched logs archive. Nothing becomes visible until {@link IndexBuilder#commit()}.
+     *
+     * @param deployment The deployment
+     * @param target Instance group or {@code group/id} the logs were fetched for, or null for the whole
+     *               deployment; lines that are not inside a per-instance tarball belong to it
+     */
+    public IndexBuilder builder(String deployment, String target) {
+        return new IndexBuilder(deployment, target);
+    }
+
+    /**
+     * Check whether the logs of a deployment, instance group or instance have been fetched into the
+     * index and all of the segments that fetch produced are still there. Logs fetched for the whole
+     * deployment cover every target; otherwise the target must have been fetched itself, so a group
+     * is not covered by one of its instances.
+     *
+     * @param deployment The deployment
+     * @param target Instance group or {@code group/id}, or null for the whole deployment
+     */
+    public boolean isIndexed(String deployment, String target) {
+        lock.readLock().lock();
+        try {
+            Properties coverage = readCoverage(indexDir.resolve(sanitize(deployment)));
+            return covered(deployment, coverage.getProperty(coverageKey(target)))
+                    || (target != null && covered(deployment, coverage.getProperty(WHOLE_DEPLOYMENT)));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read log index of " + deployment + ": " + e.getMessage(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search indexed logs.
+     *
+     * @param deployment The deployment
+     * @param instance Instance group or {@code group/id} to restrict the search to, or null
+     * @param query Whitespace-separated keywords; every keyword must occur in a line (case-insensitive), or null
+     * @param since Only lines timestamped at or after this instant, or null
+     * @param until Only lines timestamped before this instant, or null
+     * @param maxResults Maximum matches to return
+     * @return The matching lines
+     */
+    public IndexSearchResult search(String deployment, String instance, String query, Instant since, Instant until,
+                                    int maxResults) {
+        List<String> keywords = query == null ? List.of()
+                : Arrays.stream(query.trim().split("\\s+")).filter(k -> !k.isEmpty())
+                        .map(k -> k.toLowerCase(Locale.ROOT)).toList();
+        if (keywords.isEmpty() && since == null && until == null) {
+            throw new IllegalArgumentException("A query or a time range is required");
+        }
+        List<String> terms = keywords.stream().flatMap(k -> terms(k).stream()).distinct().toList();
+
+        List<LogMatch> matches = new ArrayList<>();
+        long candidates = 0;
+        boolean truncated = false;
+        Instant oldest = null;
+        lock.readLock().lock();
+        try {
+            List<Path> dirs = segmentDirs(deployment, instance);
+            for (Path dir : dirs) {
+                Segment segment = segment(dir);
+                oldest = oldest == null || segment.indexedAt.isBefore(oldest) ? segment.indexedAt : oldest;
+                try (SegmentReader reader = new SegmentReader(dir)) {
+                    int[] ordinals = terms.isEmpty()
+                            ? segment.bucketOrdinals(reader, since, until, bucketSize.toMillis())
+                            : segment.termOrdinals(reader, terms);
+                    candidates += ordinals.length;
+                    for (int ordinal : ordinals) {
+                        LineEntry entry = reader.line(ordinal);
+                        if (!inRange(entry.timestamp, since, until)) {
+                            continue;
+                        }
+                        String text = reader.text(entry);
+                        String lower = text.toLowerCase(Locale.ROOT);
+                        // Keywords are tokenized for lookup, so "10.0.0.1" or "exit status" must still appear as typed
+                        if (!keywords.stream().allMatch(lower::contains)) {
+                            continue;
+                        }
+                        if (matches.size() >= maxResults) {
+                            truncated = true;
+                            break;
+                        }
+                        matches.add(new LogMatch(segment.files.get(entry.fileIndex), entry.lineNumber, text));
+                    }
+                }
+                touch(dir);
+                if (truncated) {
+                    break;
+                }
+            }
+            return new IndexSearchResult(matches, dirs.size(), candidates, truncated,
+                    oldest != null ? oldest.toString() : null);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to search log index of " + deployment + ": " + e.getMessage(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects the lines of one fetched archive into new segments, one per instance.
+     * Lines are written to disk as they arrive; only the term postings are kept in memory until
+     * the instance is finished.
+     */
+    public final class IndexBuilder implements Closeable {
+        private final String deployment;
+        private final String target;
+        private final String defaultInstance;
+        private final Map<String, SegmentWriter> finished = new LinkedHashMap<>();
+        private SegmentWriter current;
+
+        private IndexBuilder(String deployment, String target) {
+            this.deployment = deployment;
+            this.target = target;
+            // e.g. router/abc -> router.abc, as instance tarballs are named
+            this.defaultInstance = target != null ? target.replace('/', '.') : deployment;
+        }
+
+        /**
+         * Add a line.
+         *
+         * @param instance Instance the line belongs to, or null for the default instance
+         * @param file File path (with provenance prefix) the line was read from
+         * @param lineNumber 1-based line number
+         * @param timestamp Timestamp of the line (or the last timestamped line before it), or null
+         * @param text The line
+         */
+        public void add(String instance, String file, long lineNumber, Instant timestamp, CharSequence text)
+                throws IOException {
+            String name = instance != null ? instance : defaultInstance;
+            if (current == null || !current.instance.equals(name)) {
+                if (current != null) {
+                    current.finish();
+                    finished.put(current.instance, current);
+                    current = null;
+                }
+                if (finished.containsKey(name)) {
+                    // Instances arrive one tarball at a time; a repeat would need a merge, so it is not indexed
+                    return;
+                }
+                Files.createDirectories(buildsDir);
+                current = new SegmentWriter(deployment, name,
+                        Files.createTempDirectory(buildsDir, "segment-"));
+            }
+            current.add(file, lineNumber, timestamp, text);
+        }
+
+        /**
+         * Publish the new segments, replacing older ones for the same instances, record that the target
+         * is covered by them, then enforce the disk budget.
+         */
+        public void commit() throws IOException {
+            if (current != null) {
+                current.finish();
+                finished.put(current.instance, current);
+                current = null;
+            }
+            lock.writeLock().lock();
+            try {
+                Path deploymentDir = indexDir.resolve(sanitize(deployment));
+                Files.createDirectories(deploymentDir);
+                for (SegmentWriter writer : finished.values()) {
+                    Path target = segmentDir(writer.deployment, writer.instance);
+                    Files.createDirectories(target.getParent());
+                    forget(target);
+                    deleteRecursively(target);
+                    Files.move(writer.dir, target, StandardCopyOption.ATOMIC_MOVE);
+                    touch(target);
+                }
+                Properties coverage = readCoverage(deploymentDir);
+                coverage.setProperty(coverageKey(this.target), finished.keySet().stream()
+                        .map(BoshLogIndex::sanitize).collect(Collectors.joining(",")));
+                try (OutputStream out = Files.newOutputStream(deploymentDir.resolve(COVERAGE_FILE))) {
+                    coverage.store(out, null);
+                }
+                logger.info("Indexed logs of {} instance(s) of deployment {}", finished.size(), deployment);
+                finished.clear();
+                evict();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            // Discard whatever was not committed
+            if (current != null) {
+                current.abort();
+                current = null;
+            }
+            finished.values().forEach(SegmentWriter::abort);
+            finished.clear();
+        }
+    }
+
+    private final class SegmentWriter {
+        private final String deployment;
+        private final String instance;
+        private final Path dir;
+        private final DataOutputStream text;
+        private final DataOutputStream lineTable;
+        private final Map<String, Integer> fileIndexes = new LinkedHashMap<>();
+        private final Map<String, IntList> postings = new HashMap<>();
+        private final TreeMap<Long, IntList> buckets = new TreeMap<>();
+        private long textOffset;
+        private int lines;
+
+        private SegmentWriter(String deployment, String instance, Path dir) throws IOException {
+            this.deployment = deployment;
+            this.instance = instance;
+            this.dir = dir;
+            this.text = output(dir.resolve(LINES_FILE));
+            this.lineTable = output(dir.resolve(LINE_TABLE_FILE));
+        }
+
+        private void add(String file, long lineNumber, Instant timestamp, CharSequence line) throws IOException {
+            int ordinal = lines++;
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            text.write(bytes);
+            int fileIndex = fileIndexes.computeIfAbsent(file, f -> fileIndexes.size());
+            long millis = timestamp != null ? timestamp.toEpochMilli() : NO_TIMESTAMP;
+            lineTable.writeLong(textOffset);
+            lineTable.writeInt(bytes.length);
+            lineTable.writeLong(millis);
+            lineTable.writeInt(fileIndex);
+            lineTable.writeInt((int) Math.min(lineNumber, Integer.MAX_VALUE));
+            textOffset += bytes.length;
+
+            for (String term : terms(line)) {
+                IntList list = postings.computeIfAbsent(term, t -> new IntList());
+                if (list.size == 0 || list.values[list.size - 1] != ordinal) {
+                    list.add(ordinal);
+                }
+            }
+            if (millis != NO_TIMESTAMP) {
+                buckets.computeIfAbsent(bucketOf(millis), b -> new IntList()).add(ordinal);
+            }
+        }
+
+        private void finish() throws IOException {
+            text.close();
+            lineTable.close();
+            try (DataOutputStream postingsOut = output(dir.resolve(POSTINGS_FILE));
+                 DataOutputStream termsOut = output(dir.resolve(TERMS_FILE));
+                 DataOutputStream bucketsOut = output(dir.resolve(BUCKETS_FILE))) {
+                long offset = 0;
+                termsOut.writeInt(postings.size());
+                for (Map.Entry<String, IntList> entry : new TreeMap<>(postings).entrySet()) {
+                    termsOut.writeUTF(entry.getKey());
+                    termsOut.writeLong(offset);
+                    termsOut.writeInt(entry.getValue().size);
+                    offset += entry.getValue().writeTo(postingsOut);
+                }
+                bucketsOut.writeInt(buckets.size());
+                for (Map.Entry<Long, IntList> entry : buckets.entrySet()) {
+                    bucketsOut.writeLong(entry.getKey());
+                    bucketsOut.writeLong(offset);
+                    bucketsOut.writeInt(entry.getValue().size);
+                    offset += entry.getValue().writeTo(postingsOut);
+                }
+            }
+            postings.clear();
+            buckets.clear();
+            Files.write(dir.resolve(FILES_FILE), fileIndexes.keySet(), StandardCharsets.UTF_8);
+            Properties meta = new Properties();
+            meta.setProperty("deployment", deployment);
+            meta.setProperty("instance", instance);
+            meta.setProperty("lines", Integer.toString(lines));
+            meta.setProperty("indexedAt", Instant.now().toString());
+            try (OutputStream out = Files.newOutputStream(dir.resolve(META_FILE))) {
+                meta.store(out, null);
+            }
+        }
+
+        private void abort() {
+            try {
+                text.close();
+                lineTable.close();
+            } catch (IOException ignored) {
+                // Deleted below
+            }
+            deleteRecursively(dir);
+        }
+    }
+
+    private record LineEntry(long offset, int length, long timestamp, int fileIndex, int lineNumber) {
+    }
+
+    /**
+     * The in-memory part of a segment: term and bucket dictionaries and the file table.
+     */
+    private static final class Segment {
+        private final Map<String, long[]> terms;
+        private final NavigableMap<Long, long[]> buckets;
+        private final List<String> files;
+        private final Instant indexedAt;
+
+        private Segment(Path dir) throws IOException {
+            this.terms = new HashMap<>();
+            try (DataInputStream in = input(dir.resolve(TERMS_FILE))) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    terms.put(in.readUTF(), new long[]{in.readLong(), in.readInt()});
+                }
+            }
+            this.buckets = new TreeMap<>();
+            try (DataInputStream in = input(dir.resolve(BUCKETS_FILE))) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    buckets.put(in.readLong(), new long[]{in.readLong(), in.readInt()});
+                }
+            }
+            this.files = Files.readAllLines(dir.resolve(FILES_FILE), StandardCharsets.UTF_8);
+            this.indexedAt = Instant.parse(readMeta(dir).getProperty("indexedAt"));
+        }
+
+        /**
+         * Ordinals of lines containing every term, ascending.
+         */
+        private int[] termOrdinals(SegmentReader reader, List<String> queryTerms) throws IOException {
+            List<long[]> lists = new ArrayList<>();
+            for (String term : queryTerms) {
+                long[] posting = terms.get(term);
+                if (posting == null) {
+                    return new int[0];
+                }
+                lists.add(posting);
+            }
+            if (lists.isEmpty()) {
+                // Only keywords too short to index: every line is a candidate
+                return reader.allOrdinals();
+            }
+            // Intersect starting from the rarest term
+            lists.sort(Comparator.comparingLong(p -> p[1]));
+            int[] result = reader.postings(lists.get(0));
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                result = intersect(result, reader.postings(lists.get(i)));
+            }
+            return result;
+        }
+
+        /**
+         * Ordinals of lines in the time buckets overlapping a range, ascending.
+         */
+        private int[] bucketOrdinals(SegmentReader reader, Instant since, Instant until, long bucketMillis)
+                throws IOException {
+            long from = since != null ? Math.floorDiv(since.toEpochMilli(), bucketMillis) * bucketMillis : Long.MIN_VALUE;
+            long to = until != null ? until.toEpochMilli() : Long.MAX_VALUE;
+            IntList merged = new IntList();
+            for (long[] posting : buckets.subMap(from, true, to, false).values()) {
+                for (int ordinal : reader.postings(posting)) {
+                    merged.add(ordinal);
+                }
+            }
+            int[] ordinals = Arrays.copyOf(merged.values, merged.size);
+            // Lines of several files interleave in time, so bucket lists are not globally ordered
+            Arrays.sort(ordinals);
+            return ordinals;
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] result = new int[Math.min(a.length, b.length)];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, n);
+        }
+    }
+
+    /**
+     * Positional reads from a segment's files, open for the duration of one search.
+     */
+    private static final class SegmentReader implements Closeable {
+        private final FileChannel text;
+        private final FileChannel lineTable;
+        private final FileChannel postings;
+
+        private SegmentReader(Path dir) throws IOException {
+            this.text = FileChannel.open(dir.resolve(LINES_FILE), StandardOpenOption.READ);
+            this.lineTable = FileChannel.open(dir.resolve(LINE_TABLE_FILE), StandardOpenOption.READ);
+            this.postings = FileChannel.open(dir.resolve(POSTINGS_FILE), StandardOpenOption.READ);
+        }
+
+        private int[] allOrdinals() throws IOException {
+            int count = (int) (lineTable.size() / LINE_ENTRY_BYTES);
+            int[] ordinals = new int[count];
+            for (int i = 0; i < count; i++) {
+                ordinals[i] = i;
+            }
+            return ordinals;
+        }
+
+        private int[] postings(long[] posting) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) posting[1] * Integer.BYTES);
+            readFully(postings, buffer, posting[0]);
+            int[] ordinals = new int[(int) posting[1]];
+            buffer.asIntBuffer().get(ordinals);
+            return ordinals;
+        }
+
+        private LineEntry line(int ordinal) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(LINE_ENTRY_BYTES);
+            readFully(lineTable, buffer, (long) ordinal * LINE_ENTRY_BYTES);
+            return new LineEntry(buffer.getLong(), buffer.getInt(), buffer.getLong(), buffer.getInt(), buffer.getInt());
+        }
+
+        private String text(LineEntry entry) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+            readFully(text, buffer, entry.offset);
+            return new String(buffer.array(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            text.close();
+            lineTable.close();
+            postings.close();
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            long at = position;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, at);
+                if (read < 0) {
+                    throw new IOException("Log index segment is truncated");
+                }
+                at += read;
+            }
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Growable list of ints, to keep postings compact while a segment is built.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private long writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(values[i]);
+            }
+            return (long) size * Integer.BYTES;
+        }
+    }
+
+    /**
+     * Split text into the lower-cased terms used by the index.
+     */
+    static List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        Matcher matcher = TERM_PATTERN.matcher(text);
+        while (matcher.find()) {
+            int length = matcher.end() - matcher.start();
+            if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                terms.add(matcher.group().toLowerCase(Locale.ROOT));
+            }
+        }
+        return terms;
+    }
+
+    private long bucketOf(long millis) {
+        long bucketMillis = bucketSize.toMillis();
+        return Math.floorDiv(millis, bucketMillis) * bucketMillis;
+    }
+
+    private static boolean inRange(long timestamp, Instant since, Instant until) {
+        if (since == null && until == null) {
+            return true;
+        }
+        if (timestamp == NO_TIMESTAMP) {
+            return false;
+        }
+        return (since == null || timestamp >= since.toEpochMilli()) && (until == null || timestamp < until.toEpochMilli());
+    }
+
+    private Segment segment(Path dir) throws IOException {
+        synchronized (segments) {
+            Segment segment = segments.get(dir);
+            if (segment == null) {
+                segment = new Segment(dir);
+                segments.put(dir, segment);
+            }
+            return segment;
+        }
+    }
+
+    private void forget(Path dir) {
+        synchronized (segments) {
+            segments.remove(dir);
+        }
+    }
+
+    /**
+     * Delete least recently used segments until the index fits the disk budget. Caller holds the write lock.
+     */
+    private void evict() {
+        List<Path> dirs = new ArrayList<>(allSegmentDirs());
+        long total = 0;
+        Map<Path, Long> sizes = new HashMap<>();
+        for (Path dir : dirs) {
+            long size = size(dir);
+            sizes.put(dir, size);
+            total += size;
+        }
+        // allSegmentDirs lists most recently used first
+        for (int i = dirs.size() - 1; i > 0 && total > maxBytes; i--) {
+            Path dir = dirs.get(i);
+            forget(dir);
+            deleteRecursively(dir);
+            if (segmentDirs(dir.getParent()).isEmpty()) {
+                deleteRecursively(dir.getParent().resolve(COVERAGE_FILE));
+                deleteIfEmpty(dir.getParent());
+            }
+            total -= sizes.get(dir);
+            logger.info("Evicted log index segment {} to stay within {} bytes", indexDir.relativize(dir), maxBytes);
+        }
+    }
+
+    private List<Path> segmentDirs(String deployment, String instance) {
+        // Instance tarballs are named <group>.<id>, so "router" selects router.abc but not router_worker.abc
+        String name = instance != null ? sanitize(instance.replace('/', '.')) : null;
+        return segmentDirs(indexDir.resolve(sanitize(deployment))).stream()
+                .filter(dir -> name == null || dir.getFileName().toString().equals(name)
+                        || dir.getFileName().toString().startsWith(name + "."))
+                .toList();
+    }
+
+    private static List<Path> segmentDirs(Path deploymentDir) {
+        if (!Files.isDirectory(deploymentDir)) {
+            return List.of();
+        }
+        try (Stream<Path> dirs = Files.list(deploymentDir)) {
+            return dirs.filter(dir -> Files.exists(dir.resolve(META_FILE))).sorted().toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list log index " + deploymentDir + ": " + e.getMessage(), e);
+        }
+    }
+
+    private List<Path> allSegmentDirs() {
+        if (!Files.isDirectory(indexDir)) {
+            return List.of();
+        }
+        // Segments still being built are not part of the index yet
+        try (Stream<Path> dirs = Files.find(indexDir, 2, (path, attributes) -> attributes.isDirectory()
+                && !path.startsWith(buildsDir) && Files.exists(path.resolve(META_FILE)))) {
+            return dirs.sorted(Comparator.comparing(BoshLogIndex::lastUsed).reversed()).toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list log index: " + e.getMessage(), e);
+        }
+    }
+
+    private Path segmentDir(String deployment, String instance) {
+        return indexDir.resolve(sanitize(deployment)).resolve(sanitize(instance));
+    }
+
+    /**
+     * Whether a coverage entry (comma-separated segment names) exists and all of its segments are still there.
+     */
+    private boolean covered(String deployment, String segmentNames) {
+        if (segmentNames == null) {
+            return false;
+        }
+        return Arrays.stream(segmentNames.split(",")).filter(name -> !name.isEmpty())
+                .allMatch(name -> Files.exists(segmentDir(deployment, name).resolve(META_FILE)));
+    }
+
+    private static Properties readCoverage(Path deploymentDir) throws IOException {
+        Properties coverage = new Properties();
+        Path file = deploymentDir.resolve(COVERAGE_FILE);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                coverage.load(in);
+            }
+        }
+        return coverage;
+    }
+
+    private static String coverageKey(String target) {
+        return target != null ? sanitize(target.replace('/', '.')) : WHOLE_DEPLOYMENT;
+    }
+
+    private static void touch(Path dir) {
+        try {
+            Files.setLastModifiedTime(dir, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            logger.debug("Failed to record use of log index segment {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static FileTime lastUsed(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long size(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static Properties readMeta(Path dir) throws IOException {
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(dir.resolve(META_FILE))) {
+            meta.load(in);
+        }
+        return meta;
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static void deleteIfEmpty(Path dir) {
+        try (Stream<Path> entries = Files.list(dir)) {
+            if (entries.findAny().isEmpty()) {
+                Files.deleteIfExists(dir);
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to remove empty log index directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static DataOutputStream output(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+    }
+
+    private static DataInputStream input(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+    }
+
+    private static void deleteRecursively(Path path) {
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete log index file {}: {}", p, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Failed to delete log index segment {}: {}", path, e.getMessage());
+        }
+    }
+}
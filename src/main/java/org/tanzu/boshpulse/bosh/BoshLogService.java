@@ -1,60 +1,110 @@
 package org.tanzu.boshpulse.bosh;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.tanzu.boshpulse.bosh.BoshLogArchiveScanner.LogFilter;
+import org.tanzu.boshpulse.bosh.BoshLogIndex.IndexSearchResult;
+import org.tanzu.boshpulse.bosh.BoshLogArchiveScanner.LogSearchResult;
+import org.tanzu.boshpulse.bosh.BoshLogStreamManager.FollowerInfo;
+import org.tanzu.boshpulse.bosh.BoshLogStreamManager.LogStreamPage;
+import org.tanzu.boshpulse.bosh.BoshTaskOutputReader.TaskOutputPage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @Service
 public class BoshLogService extends BoshBaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(BoshLogService.class);
 
-    private static final String GET_DEPLOYMENT_LOGS = "Get logs from a BOSH deployment";
-    private static final String GET_VM_LOGS = "Get logs from a specific VM in a BOSH deployment";
-    private static final String GET_TASK_LOGS = "Get logs from a BOSH task";
-    private static final String STREAM_LOGS = "Stream logs from a BOSH deployment in real-time";
+    private static final String GET_DEPLOYMENT_LOGS = "Get logs from a BOSH deployment. Downloads the logs archive and returns only the lines matching the filters, each with its file and line number";
+    private static final String GET_VM_LOGS = "Get logs from a specific VM in a BOSH deployment. Returns only the lines matching the filters, each with its file and line number";
+    private static final String GET_TASK_LOGS = "Get logs from a BOSH task. Returns only lines after the given cursor; pass the returned cursor on the next call to poll a running task for new output";
+    private static final String GREP_PARAM = "Regular expression; only lines containing a match are returned (optional)";
+    private static final String SINCE_PARAM = "Only lines logged at or after this time: ISO-8601 timestamp or a duration ago such as 30m, 2h, 1d (optional)";
+    private static final String UNTIL_PARAM = "Only lines logged before this time: ISO-8601 timestamp or a duration ago (optional)";
+    private static final String FILES_PARAM = "Glob selecting log files, e.g. *.stderr.log or router/** (optional)";
+    private static final String MAX_MATCHES_PARAM = "Maximum number of matching lines to return (optional, default 500)";
+    private static final String SEARCH_LOGS = "Search a BOSH deployment's logs by keyword and time range from a local index. The logs are downloaded and indexed on first use (or with refresh=true); later searches answer from the index without downloading again";
+    private static final String STREAM_LOGS = "Stream logs from a BOSH deployment in real-time. A shared background follower buffers recent lines; pass the returned cursor on the next call to get only new lines";
+    private static final String STOP_LOG_STREAM = "Stop the background log follower of a BOSH deployment";
+    private static final String LIST_LOG_STREAMS = "List background log followers and how long they have been idle";
+
+    private static final int DEFAULT_SEARCH_MATCHES = 500;
+
+    private final BoshTaskOutputReader taskOutputReader;
+    private final BoshLogStreamManager logStreamManager;
+    private final BoshLogArchiveScanner logArchiveScanner;
+    private final BoshLogIndex logIndex;
 
     public BoshLogService(BoshCliExecutor cliExecutor,
+                         BoshTaskOutputReader taskOutputReader,
+                         BoshLogStreamManager logStreamManager,
+                         BoshLogArchiveScanner logArchiveScanner,
+                         BoshLogIndex logIndex,
                          @Value("${bosh.retry.maxAttempts:3}") int maxRetries,
                          @Value("${bosh.retry.delay:2}") int retryDelaySeconds) {
         super(cliExecutor, maxRetries, retryDelaySeconds);
+        this.taskOutputReader = taskOutputReader;
+        this.logStreamManager = logStreamManager;
+        this.logArchiveScanner = logArchiveScanner;
+        this.logIndex = logIndex;
     }
 
     @Tool(description = GET_DEPLOYMENT_LOGS)
-    public String getDeploymentLogs(
+    public LogSearchResult getDeploymentLogs(
             @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
             @ToolParam(description = "Instance group/job name", required = false) String instanceGroup,
-            @ToolParam(description = "Instance ID (optional)", required = false) String instanceId) {
+            @ToolParam(description = "Instance ID (optional)", required = false) String instanceId,
+            @ToolParam(description = GREP_PARAM, required = false) String grep,
+            @ToolParam(description = SINCE_PARAM, required = false) String since,
+            @ToolParam(description = UNTIL_PARAM, required = false) String until,
+            @ToolParam(description = FILES_PARAM, required = false) String files,
+            @ToolParam(description = MAX_MATCHES_PARAM, required = false) Integer maxMatches) {
         
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
         }
+        LogFilter filter = logFilter(grep, since, until, files, maxMatches);
         
         return executeWithRetry(() -> {
             logger.info("Getting logs for deployment: {}", deploymentName);
-            String command = "logs -d " + deploymentName;
+            String target = null;
             if (StringUtils.hasText(instanceGroup)) {
-                command += " " + instanceGroup;
+                target = instanceGroup;
                 if (StringUtils.hasText(instanceId)) {
-                    command += "/" + instanceId;
+                    target += "/" + instanceId;
                 }
             }
-            String logs = cliExecutor.execute(command);
-            logger.info("Retrieved logs for deployment: {}", deploymentName);
-            return logs;
+            LogSearchResult result = logArchiveScanner.fetchAndScan(deploymentName, target, filter);
+            logger.info("Retrieved {} matching log lines for deployment: {}", result.matches().size(), deploymentName);
+            return result;
         }, "getDeploymentLogs");
     }
 
     @Tool(description = GET_VM_LOGS)
-    public String getVmLogs(
+    public LogSearchResult getVmLogs(
             @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
             @ToolParam(description = "Instance group/job name") String instanceGroup,
-            @ToolParam(description = "Instance ID (optional)", required = false) String instanceId) {
+            @ToolParam(description = "Instance ID (optional)", required = false) String instanceId,
+            @ToolParam(description = GREP_PARAM, required = false) String grep,
+            @ToolParam(description = SINCE_PARAM, required = false) String since,
+            @ToolParam(description = UNTIL_PARAM, required = false) String until,
+            @ToolParam(description = FILES_PARAM, required = false) String files,
+            @ToolParam(description = MAX_MATCHES_PARAM, required = false) Integer maxMatches) {
         
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
@@ -62,52 +112,124 @@ public class BoshLogService extends BoshBaseService {
         if (!StringUtils.hasText(instanceGroup)) {
             throw new IllegalArgumentException("Instance group is required");
         }
+        LogFilter filter = logFilter(grep, since, until, files, maxMatches);
         
         return executeWithRetry(() -> {
             logger.info("Getting logs for VM: {} in deployment: {}", instanceGroup, deploymentName);
-            String command = "logs -d " + deploymentName + " " + instanceGroup;
+            String target = instanceGroup;
             if (StringUtils.hasText(instanceId)) {
-                command += "/" + instanceId;
+                target += "/" + instanceId;
             }
-            String logs = cliExecutor.execute(command);
-            logger.info("Retrieved logs for VM: {} in deployment: {}", instanceGroup, deploymentName);
-            return logs;
+            LogSearchResult result = logArchiveScanner.fetchAndScan(deploymentName, target, filter);
+            logger.info("Retrieved {} matching log lines for VM: {} in deployment: {}",
+                    result.matches().size(), instanceGroup, deploymentName);
+            return result;
         }, "getVmLogs");
     }
 
     @Tool(description = GET_TASK_LOGS)
-    public String getTaskLogs(@ToolParam(description = TASK_PARAM) String taskId) {
+    public TaskOutputPage getTaskLogs(
+            @ToolParam(description = TASK_PARAM) String taskId,
+            @ToolParam(description = "Output type: debug (default) or event", required = false) String type,
+            @ToolParam(description = "Cursor returned by the previous call (optional, default 0 = from the start)", required = false) Long cursor,
+            @ToolParam(description = "Maximum number of lines to return (optional, default 1000)", required = false) Integer maxLines) {
         if (!StringUtils.hasText(taskId)) {
             throw new IllegalArgumentException("Task ID is required");
         }
         
+        String outputType = StringUtils.hasText(type) ? type.trim().toLowerCase() : "debug";
         return executeWithRetry(() -> {
-            logger.info("Getting logs for task: {}", taskId);
-            String logs = cliExecutor.execute("task " + taskId + " --debug");
-            logger.info("Retrieved logs for task: {}", taskId);
-            return logs;
+            logger.info("Getting {} logs for task: {} from cursor {}", outputType, taskId, cursor);
+            TaskOutputPage page = taskOutputReader.read(taskId, outputType, cursor != null ? cursor : 0,
+                    maxLines != null ? maxLines : Integer.MAX_VALUE);
+            logger.info("Retrieved {} log lines for task: {}", page.lineCount(), taskId);
+            return page;
         }, "getTaskLogs");
     }
 
+    @Tool(description = SEARCH_LOGS)
+    public IndexSearchResult searchLogs(
+            @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
+            @ToolParam(description = "Instance group or group/id to search (optional, default all indexed instances)", required = false) String instance,
+            @ToolParam(description = "Keywords that must all occur in a line, case-insensitive (optional if since or until is given)", required = false) String query,
+            @ToolParam(description = SINCE_PARAM, required = false) String since,
+            @ToolParam(description = UNTIL_PARAM, required = false) String until,
+            @ToolParam(description = MAX_MATCHES_PARAM, required = false) Integer maxMatches,
+            @ToolParam(description = "Download and re-index the logs before searching (optional, default false)", required = false) Boolean refresh) {
+
+        if (!StringUtils.hasText(deploymentName)) {
+            throw new IllegalArgumentException("Deployment name is required");
+        }
+        String target = StringUtils.hasText(instance) ? instance.trim() : null;
+        Instant from = BoshLogArchiveScanner.parseTime(since);
+        Instant to = BoshLogArchiveScanner.parseTime(until);
+
+        if (Boolean.TRUE.equals(refresh) || !logIndex.isIndexed(deploymentName, target)) {
+            executeWithRetry(() -> {
+                logger.info("Indexing logs for deployment: {}", deploymentName);
+                return logArchiveScanner.fetchAndIndex(deploymentName, target);
+            }, "searchLogs");
+        }
+        IndexSearchResult result = logIndex.search(deploymentName, target, query, from, to,
+                maxMatches != null && maxMatches > 0 ? maxMatches : DEFAULT_SEARCH_MATCHES);
+        logger.info("Found {} indexed log lines for deployment: {}", result.matches().size(), deploymentName);
+        return result;
+    }
+
     @Tool(description = STREAM_LOGS)
-    public String streamLogs(
+    public LogStreamPage streamLogs(
             @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
-            @ToolParam(description = "Instance group/job name (optional)", required = false) String instanceGroup) {
-        
+            @ToolParam(description = "Instance group/job name (optional)", required = false) String instanceGroup,
+            @ToolParam(description = "Cursor returned by the previous call; omit to start at the oldest buffered line", required = false) Long cursor,
+            @ToolParam(description = "Maximum number of lines to return (optional)", required = false) Integer maxLines,
+            @ToolParam(description = "Seconds to wait for new lines; while waiting, new lines are also sent as MCP logging notifications (optional, default 0)", required = false) Integer waitSeconds,
+            ToolContext toolContext) {
+
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
         }
-        
-        return executeWithRetry(() -> {
-            logger.info("Streaming logs for deployment: {}", deploymentName);
-            String command = "logs -d " + deploymentName + " --follow";
-            if (StringUtils.hasText(instanceGroup)) {
-                command += " " + instanceGroup;
+        String group = StringUtils.hasText(instanceGroup) ? instanceGroup : null;
+        long from = cursor != null ? cursor : 0;
+        Duration wait = Duration.ofSeconds(waitSeconds != null ? waitSeconds : 0);
+
+        Optional<McpSyncServerExchange> exchange = toolContext != null
+                ? McpToolUtils.getMcpExchange(toolContext) : Optional.empty();
+        if (exchange.isPresent() && !wait.isZero()) {
+            // Return what is buffered, then push new lines to the client as they arrive
+            LogStreamPage page = logStreamManager.read(deploymentName, group, from,
+                    maxLines != null ? maxLines : Integer.MAX_VALUE, Duration.ZERO);
+            LogStreamPage last = logStreamManager.stream(deploymentName, group, page.cursor(), wait,
+                    chunk -> exchange.get().loggingNotification(new McpSchema.LoggingMessageNotification(
+                            McpSchema.LoggingLevel.INFO, "bosh.logs." + chunk.streamId(), chunk.output())));
+            return new LogStreamPage(page.streamId(), page.output(), page.lineCount(), last.cursor(),
+                    page.skippedLines(), last.active(), last.error());
+        }
+        return logStreamManager.read(deploymentName, group, from,
+                maxLines != null ? maxLines : Integer.MAX_VALUE, wait);
+    }
+
+    @Tool(description = STOP_LOG_STREAM)
+    public boolean stopLogStream(
+            @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
+            @ToolParam(description = "Instance group/job name (optional)", required = false) String instanceGroup) {
+        return logStreamManager.stop(deploymentName, StringUtils.hasText(instanceGroup) ? instanceGroup : null);
+    }
+
+    @Tool(description = LIST_LOG_STREAMS)
+    public List<FollowerInfo> listLogStreams() {
+        return logStreamManager.list();
+    }
+
+    private static LogFilter logFilter(String grep, String since, String until, String files, Integer maxMatches) {
+        Pattern pattern = null;
+        if (StringUtils.hasText(grep)) {
+            try {
+                pattern = Pattern.compile(grep);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid grep pattern: " + e.getDescription());
             }
-            // Note: This will return recent logs, true streaming would require async handling
-            String logs = cliExecutor.execute(command);
-            logger.info("Retrieved stream logs for deployment: {}", deploymentName);
-            return logs;
-        }, "streamLogs");
+        }
+        return new LogFilter(pattern, BoshLogArchiveScanner.parseTime(since), BoshLogArchiveScanner.parseTime(until),
+                StringUtils.hasText(files) ? files.trim() : null, maxMatches != null ? maxMatches : 0);
     }
 }
@@ -0,0 +1,318 @@
+package org.tanzu.boshpulse.bosh;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.tanzu.boshpulse.bosh.BoshLineRingBuffer.Slice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Manages background {@code bosh logs --follow} processes.
+ * There is at most one follower per deployment and instance group; it feeds a bounded
+ * {@link BoshLineRingBuffer} that every client reads with its own cursor. Followers nobody has
+ * read from for {@code bosh.logs.follow.idleTimeout} are stopped, and at most
+ * {@code bosh.logs.follow.maxFollowers} run at once. Followers run outside the scheduler lanes
+ * because they never finish on their own.
+ */
+@Component
+public class BoshLogStreamManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshLogStreamManager.class);
+
+    /**
+     * A page of followed log output.
+     *
+     * @param streamId Identifies the follower (deployment, optionally with instance group)
+     * @param output New lines, newline-separated
+     * @param lineCount Number of lines in this page
+     * @param cursor Cursor to pass to the next read
+     * @param skippedLines Lines before this page that had already left the buffer
+     * @param active Whether the follower process is still running
+     * @param error Last error reported by the follower, if any
+     */
+    public record LogStreamPage(String streamId, String output, int lineCount, long cursor, long skippedLines,
+                                boolean active, String error) {
+    }
+
+    /**
+     * State of a follower, as listed by {@link #list()}.
+     */
+    public record FollowerInfo(String streamId, boolean active, long lines, String startedAt, long idleSeconds) {
+    }
+
+    private final class LogFollower {
+        private final String streamId;
+        private final String command;
+        private final BoshLineRingBuffer buffer;
+        private final Instant startedAt = Instant.now();
+        private final ReentrantLock processLock = new ReentrantLock();
+        private volatile Process process;
+        private volatile long lastReadNanos = System.nanoTime();
+        private volatile String error;
+
+        private LogFollower(String streamId, String command) {
+            this.streamId = streamId;
+            this.command = command;
+            this.buffer = new BoshLineRingBuffer(bufferLines);
+        }
+
+        private boolean isActive() {
+            Process current = process;
+            return current != null && current.isAlive();
+        }
+
+        /**
+         * Start (or restart after it died) the CLI process; new lines continue at the buffer's next offset.
+         */
+        private void ensureRunning() {
+            processLock.lock();
+            try {
+                if (isActive()) {
+                    return;
+                }
+                Process started = cliExecutor.startStreaming(command);
+                process = started;
+                error = null;
+                Thread.ofVirtual().name("bosh-logs-" + streamId).start(() -> pump(started.getInputStream(), buffer::append));
+                Thread.ofVirtual().name("bosh-logs-err-" + streamId).start(() -> pump(started.getErrorStream(), line -> {
+                    if (!line.isBlank()) {
+                        error = line;
+                    }
+                }));
+                logger.info("Started log follower {}", streamId);
+            } catch (IOException e) {
+                error = e.getMessage();
+                throw new RuntimeException("Failed to start log follower for " + streamId + ": " + e.getMessage(), e);
+            } finally {
+                processLock.unlock();
+            }
+        }
+
+        private void stop() {
+            processLock.lock();
+            try {
+                Process current = process;
+                if (current != null && current.isAlive()) {
+                    cliExecutor.killProcessTree(current);
+                }
+            } finally {
+                processLock.unlock();
+            }
+        }
+    }
+
+    private final BoshCliExecutor cliExecutor;
+    private final int maxFollowers;
+    private final int bufferLines;
+    private final int pageLines;
+    private final Duration idleTimeout;
+    private final Duration maxWait;
+    private final Map<String, LogFollower> followers = new LinkedHashMap<>();
+    private final ScheduledExecutorService reaper =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("bosh-log-reaper").factory());
+
+    public BoshLogStreamManager(BoshCliExecutor cliExecutor,
+                                @Value("${bosh.logs.follow.maxFollowers:4}") int maxFollowers,
+                                @Value("${bosh.logs.follow.bufferLines:10000}") int bufferLines,
+                                @Value("${bosh.logs.follow.pageLines:1000}") int pageLines,
+                                @Value("${bosh.logs.follow.idleTimeout:300}") int idleTimeoutSeconds,
+                                @Value("${bosh.logs.follow.maxWait:60}") int maxWaitSeconds) {
+        this.cliExecutor = cliExecutor;
+        this.maxFollowers = maxFollowers;
+        this.bufferLines = bufferLines;
+        this.pageLines = pageLines;
+        this.idleTimeout = Duration.ofSeconds(idleTimeoutSeconds);
+        this.maxWait = Duration.ofSeconds(maxWaitSeconds);
+        long reapPeriod = Math.max(1, Math.min(30, idleTimeoutSeconds / 2));
+        reaper.scheduleWithFixedDelay(this::reapIdle, reapPeriod, reapPeriod, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Read followed log lines after a cursor, starting the follower if needed.
+     *
+     * @param deploymentName The deployment
+     * @param instanceGroup The instance group, or null for the whole deployment
+     * @param cursor Cursor from the previous page, or 0 for the oldest buffered line
+     * @param maxLines Maximum lines to return, capped at {@code bosh.logs.follow.pageLines}
+     * @param wait How long to wait for new lines when the caller is caught up, capped at {@code bosh.logs.follow.maxWait}
+     * @return The lines after the cursor and the next cursor
+     * @throws RuntimeException if a new follower is needed but the follower limit is reached
+     */
+    public LogStreamPage read(String deploymentName, String instanceGroup, long cursor, int maxLines, Duration wait) {
+        LogFollower follower = follower(deploymentName, instanceGroup);
+        try {
+            follower.buffer.awaitLines(cursor, cap(wait).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        follower.lastReadNanos = System.nanoTime();
+        return page(follower, follower.buffer.read(cursor, Math.max(1, Math.min(maxLines, pageLines))));
+    }
+
+    /**
+     * Stream followed log lines to a consumer as they arrive, for up to {@code duration}.
+     * Used to push chunks to MCP clients as notifications while a tool call is open.
+     *
+     * @param deploymentName The deployment
+     * @param instanceGroup The instance group, or null for the whole deployment
+     * @param cursor Cursor to start from
+     * @param duration How long to stream, capped at {@code bosh.logs.follow.maxWait}
+     * @param chunkConsumer Receives each chunk of new lines
+     * @return The cursor after the last streamed line, with no output
+     */
+    public LogStreamPage stream(String deploymentName, String instanceGroup, long cursor, Duration duration,
+                                Consumer<LogStreamPage> chunkConsumer) {
+        LogFollower follower = follower(deploymentName, instanceGroup);
+        long deadline = System.nanoTime() + cap(duration).toNanos();
+        long position = cursor;
+        try {
+            // Block on the buffer for the rest of the duration; a wait that times out ends the stream
+            while (deadline - System.nanoTime() > 0
+                    && follower.buffer.awaitLines(position, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                follower.lastReadNanos = System.nanoTime();
+                LogStreamPage chunk = page(follower, follower.buffer.read(position, pageLines));
+                position = chunk.cursor();
+                chunkConsumer.accept(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        follower.lastReadNanos = System.nanoTime();
+        return new LogStreamPage(follower.streamId, "", 0, position, 0, follower.isActive(), follower.error);
+    }
+
+    /**
+     * Stop a follower and discard its buffer.
+     *
+     * @return true if a follower was stopped
+     */
+    public boolean stop(String deploymentName, String instanceGroup) {
+        LogFollower follower;
+        synchronized (followers) {
+            follower = followers.remove(streamId(deploymentName, instanceGroup));
+        }
+        if (follower == null) {
+            return false;
+        }
+        follower.stop();
+        logger.info("Stopped log follower {}", follower.streamId);
+        return true;
+    }
+
+    /**
+     * List the current followers, most recently read first.
+     */
+    public List<FollowerInfo> list() {
+        long now = System.nanoTime();
+        synchronized (followers) {
+            return followers.values().stream()
+                    .sorted(Comparator.comparingLong((LogFollower f) -> f.lastReadNanos).reversed())
+                    .map(f -> new FollowerInfo(f.streamId, f.isActive(), f.buffer.nextOffset(), f.startedAt.toString(),
+                            TimeUnit.NANOSECONDS.toSeconds(now - f.lastReadNanos)))
+                    .toList();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reaper.shutdownNow();
+        List<LogFollower> running;
+        synchronized (followers) {
+            running = List.copyOf(followers.values());
+            followers.clear();
+        }
+        running.forEach(LogFollower::stop);
+    }
+
+    private LogFollower follower(String deploymentName, String instanceGroup) {
+        String streamId = streamId(deploymentName, instanceGroup);
+        LogFollower follower;
+        boolean created = false;
+        synchronized (followers) {
+            follower = followers.get(streamId);
+            if (follower == null) {
+                if (followers.size() >= maxFollowers) {
+                    throw new RuntimeException("Log follower limit reached (" + maxFollowers
+                            + " running); stop one with stopLogStream or wait for idle followers to be reaped");
+                }
+                String command = "logs -d " + deploymentName + " --follow"
+                        + (instanceGroup != null ? " " + instanceGroup : "");
+                follower = new LogFollower(streamId, command);
+                followers.put(streamId, follower);
+                created = true;
+            }
+        }
+        try {
+            follower.ensureRunning();
+        } catch (RuntimeException e) {
+            if (created) {
+                // A follower that never ran must not hold one of the maxFollowers slots
+                synchronized (followers) {
+                    followers.remove(streamId, follower);
+                }
+            }
+            throw e;
+        }
+        return follower;
+    }
+
+    private void reapIdle() {
+        long now = System.nanoTime();
+        List<LogFollower> idle;
+        synchronized (followers) {
+            idle = followers.values().stream()
+                    .filter(follower -> now - follower.lastReadNanos >= idleTimeout.toNanos())
+                    .toList();
+            idle.forEach(follower -> followers.remove(follower.streamId));
+        }
+        for (LogFollower follower : idle) {
+            follower.stop();
+            logger.info("Reaped idle log follower {}", follower.streamId);
+        }
+    }
+
+    private LogStreamPage page(LogFollower follower, Slice slice) {
+        return new LogStreamPage(follower.streamId, String.join("\n", slice.lines()), slice.lines().size(),
+                slice.nextOffset(), slice.skipped(), follower.isActive(), follower.error);
+    }
+
+    private Duration cap(Duration duration) {
+        if (duration == null || duration.isNegative()) {
+            return Duration.ZERO;
+        }
+        return duration.compareTo(maxWait) > 0 ? maxWait : duration;
+    }
+
+    private static String streamId(String deploymentName, String instanceGroup) {
+        return instanceGroup != null ? deploymentName + "/" + instanceGroup : deploymentName;
+    }
+
+    private static void pump(InputStream stream, Consumer<String> lineConsumer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineConsumer.accept(line);
+            }
+        } catch (IOException ignored) {
+            // Stream closed because the follower was stopped
+        }
+    }
+}
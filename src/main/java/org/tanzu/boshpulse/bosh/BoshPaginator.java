@@ -0,0 +1,156 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Splits large tool results into pages.
+ * The first call loads the full result; if it does not fit in one page it is kept server-side for
+ * {@code bosh.pagination.cursorTtl} and the caller gets an opaque cursor for the next page, so later
+ * pages are served without running the CLI again. Pages are bounded both by item count and by
+ * approximate size ({@code bosh.pagination.maxPageChars}), so a few huge items cannot blow the
+ * MCP message size either.
+ */
+@Component
+public class BoshPaginator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshPaginator.class);
+
+    /**
+     * One page of a larger result.
+     *
+     * @param items Items on this page
+     * @param offset Index of the first item within the full result
+     * @param total Number of items in the full result
+     * @param hasMore Whether more pages follow
+     * @param nextCursor Cursor for the next page, or null on the last page
+     */
+    public record Page<T>(List<T> items, int offset, int total, boolean hasMore, String nextCursor) {
+    }
+
+    private record Entry(String scope, List<?> items, long expiresAtNanos) {
+    }
+
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxPageChars;
+    private final Duration cursorTtl;
+    private final LinkedHashMap<String, Entry> results;
+
+    public BoshPaginator(@Value("${bosh.pagination.pageSize:100}") int defaultPageSize,
+                         @Value("${bosh.pagination.maxPageSize:1000}") int maxPageSize,
+                         @Value("${bosh.pagination.maxPageChars:200000}") int maxPageChars,
+                         @Value("${bosh.pagination.cursorTtl:300}") int cursorTtlSeconds,
+                         @Value("${bosh.pagination.maxResults:50}") int maxResults) {
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxPageChars = maxPageChars;
+        this.cursorTtl = Duration.ofSeconds(cursorTtlSeconds);
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxResults;
+            }
+        };
+    }
+
+    /**
+     * Get a page of a result.
+     *
+     * @param scope Identifies the tool call (tool name and arguments); a cursor is only valid for the same scope
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @param pageSize Requested items per page, or null for {@code bosh.pagination.pageSize}
+     * @param loader Loads the full result; only called for the first page
+     * @return The page
+     * @throws IllegalArgumentException if the cursor is malformed, expired or belongs to another call
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Page<T> page(String scope, String cursor, Integer pageSize, Supplier<List<T>> loader) {
+        int size = pageSize == null || pageSize <= 0 ? defaultPageSize : Math.min(pageSize, maxPageSize);
+        if (cursor == null || cursor.isBlank()) {
+            List<T> items = loader.get();
+            int count = fit(items, 0, size);
+            if (count == items.size()) {
+                return new Page<>(items, 0, items.size(), false, null);
+            }
+            String id = UUID.randomUUID().toString();
+            synchronized (results) {
+                results.put(id, new Entry(scope, List.copyOf(items), expiry()));
+            }
+            logger.debug("Paginating {} items of {}", items.size(), scope);
+            return new Page<>(items.subList(0, count), 0, items.size(), true, encode(id, count));
+        }
+
+        String[] decoded = decode(cursor);
+        String id = decoded[0];
+        int offset = Integer.parseInt(decoded[1]);
+        Entry entry;
+        synchronized (results) {
+            entry = results.get(id);
+            if (entry == null || entry.expiresAtNanos - System.nanoTime() < 0) {
+                results.remove(id);
+                throw new IllegalArgumentException("Cursor has expired; call again without a cursor to start over");
+            }
+            if (!entry.scope.equals(scope)) {
+                throw new IllegalArgumentException("Cursor belongs to a different call: " + entry.scope);
+            }
+            // Sliding expiry, so a caller walking the pages keeps the result alive
+            results.put(id, new Entry(entry.scope, entry.items, expiry()));
+        }
+        List<T> items = (List<T>) entry.items;
+        int start = Math.min(offset, items.size());
+        int count = fit(items, start, size);
+        int end = start + count;
+        boolean hasMore = end < items.size();
+        return new Page<>(items.subList(start, end), start, items.size(), hasMore, hasMore ? encode(id, end) : null);
+    }
+
+    /**
+     * Count how many items from {@code start} fit in a page: at most {@code maxItems} and, beyond
+     * the first item, at most {@code bosh.pagination.maxPageChars} of their string form.
+     */
+    public int fit(List<?> items, int start, int maxItems) {
+        int count = 0;
+        long chars = 0;
+        for (int i = start; i < items.size() && count < maxItems; i++) {
+            chars += String.valueOf(items.get(i)).length() + 1;
+            if (count > 0 && chars > maxPageChars) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private long expiry() {
+        return System.nanoTime() + cursorTtl.toNanos();
+    }
+
+    private static String encode(String id, int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + ":" + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8).split(":");
+            if (parts.length == 2 && Integer.parseInt(parts[1]) >= 0) {
+                return parts;
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+}
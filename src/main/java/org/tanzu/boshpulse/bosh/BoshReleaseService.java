@@ -8,17 +8,27 @@ import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+import org.tanzu.boshpulse.bosh.BoshRowQuery.Listing;
+import org.tanzu.boshpulse.bosh.BoshTaskTracker.TaskStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 @Service
 public class BoshReleaseService extends BoshBaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(BoshReleaseService.class);
 
-    private static final String LIST_RELEASES = "List all available BOSH releases";
+    private static final String LIST_RELEASES = "List all available BOSH releases. The full table is returned in table; pass fields and/or where to get only selected columns of matching releases in rows instead";
     private static final String UPLOAD_RELEASE = "Upload a new BOSH release";
     private static final String DELETE_RELEASE = "Delete a BOSH release";
     private static final String GET_RELEASE_VERSIONS = "Get versions of a BOSH release";
 
+    private static final Set<String> RELEASE_VERSION_FIELDS = Set.of("name", "version", "commit_hash");
+
     public BoshReleaseService(BoshCliExecutor cliExecutor,
                              @Value("${bosh.retry.maxAttempts:3}") int maxRetries,
                              @Value("${bosh.retry.delay:2}") int retryDelaySeconds) {
@@ -26,27 +36,50 @@ public class BoshReleaseService extends BoshBaseService {
     }
 
     @Tool(description = LIST_RELEASES)
-    public JsonNode listReleases() {
-        return executeWithRetry(() -> {
-            logger.info("Listing BOSH releases");
-            JsonNode result = cliExecutor.executeJson("releases");
-            logger.info("Retrieved release list");
-            return result;
-        }, "listReleases");
+    public Listing listReleases(
+            @ToolParam(description = FIELDS_PARAM, required = false) String fields,
+            @ToolParam(description = WHERE_PARAM, required = false) String where,
+            @ToolParam(description = FRESH_PARAM, required = false) Boolean fresh) {
+        BoshRowQuery query = BoshRowQuery.parse(fields, where);
+        if (!query.isEmpty()) {
+            return Listing.ofRows(fromInventory(Region.RELEASES, "", fresh, query::apply,
+                    () -> queried(Region.RELEASES, "", "releases", query, "listReleases")));
+        }
+        return Listing.ofTable(fromInventory(Region.RELEASES, "", fresh, listing -> listing,
+                () -> cached(Region.RELEASES, "", () -> executeWithRetry(() -> {
+                    logger.info("Listing BOSH releases");
+                    JsonNode result = cliExecutor.executeJson("releases");
+                    logger.info("Retrieved release list");
+                    return result;
+                }, "listReleases"))));
     }
 
     @Tool(description = UPLOAD_RELEASE)
-    public void uploadRelease(@ToolParam(description = "Path to the release file or URL") String releasePath) {
+    public TaskStatus uploadRelease(
+            @ToolParam(description = "Path to the release file or URL") String releasePath,
+            @ToolParam(description = ASYNC_PARAM, required = false) Boolean async) {
         if (!StringUtils.hasText(releasePath)) {
             throw new IllegalArgumentException("Release path is required");
         }
         
-        executeWithRetry(() -> {
-            logger.info("Uploading release: {}", releasePath);
-            cliExecutor.execute("upload-release " + releasePath);
-            logger.info("Release {} uploaded successfully", releasePath);
-            return null;
-        }, "uploadRelease");
+        String command = "upload-release " + releasePath;
+        String description = "Upload release " + releasePath;
+        Runnable invalidation = () -> invalidate(Region.RELEASES);
+        if (Boolean.TRUE.equals(async)) {
+            logger.info("Starting upload of release: {}", releasePath);
+            return startTask(command, description, "uploadRelease", invalidation);
+        }
+        
+        try {
+            return executeWithRetry(() -> {
+                logger.info("Uploading release: {}", releasePath);
+                String output = cliExecutor.execute(command);
+                logger.info("Release {} uploaded successfully", releasePath);
+                return completedTask(output, description, null);
+            }, "uploadRelease");
+        } finally {
+            invalidation.run();
+        }
     }
 
     @Tool(description = DELETE_RELEASE)
@@ -58,30 +91,36 @@ public class BoshReleaseService extends BoshBaseService {
             throw new IllegalArgumentException("Release name is required");
         }
         
-        executeWithRetry(() -> {
-            String command = "delete-release " + releaseName;
-            if (StringUtils.hasText(version)) {
-                command += "/" + version;
-            }
-            logger.warn("Deleting release: {}", releaseName);
-            cliExecutor.execute(command + " --force");
-            logger.info("Release {} deleted successfully", releaseName);
-            return null;
-        }, "deleteRelease");
+        try {
+            executeWithRetry(() -> {
+                String command = "delete-release " + releaseName;
+                if (StringUtils.hasText(version)) {
+                    command += "/" + version;
+                }
+                logger.warn("Deleting release: {}", releaseName);
+                cliExecutor.execute(command + " --force");
+                logger.info("Release {} deleted successfully", releaseName);
+                return null;
+            }, "deleteRelease");
+        } finally {
+            invalidate(Region.RELEASES);
+        }
     }
 
     @Tool(description = GET_RELEASE_VERSIONS)
-    public JsonNode getReleaseVersions(@ToolParam(description = RELEASE_PARAM) String releaseName) {
+    public List<Map<String, String>> getReleaseVersions(@ToolParam(description = RELEASE_PARAM) String releaseName) {
         if (!StringUtils.hasText(releaseName)) {
             throw new IllegalArgumentException("Release name is required");
         }
         
-        return executeWithRetry(() -> {
-            logger.info("Getting versions for release: {}", releaseName);
-            JsonNode result = cliExecutor.executeJson("releases");
-            // Filter for the specific release
-            logger.info("Retrieved versions for release: {}", releaseName);
-            return result;
-        }, "getReleaseVersions");
+        Predicate<Map<String, String>> ofRelease = row -> releaseName.equals(row.get("name"));
+        return fromInventory(Region.RELEASES, "", null,
+                listing -> BoshJsonRowExtractor.extractRows(listing, RELEASE_VERSION_FIELDS, ofRelease),
+                () -> cached(Region.RELEASES, "versions:" + releaseName, () -> executeWithRetry(() -> {
+                    logger.info("Getting versions for release: {}", releaseName);
+                    List<Map<String, String>> versions = cliExecutor.executeTableRows("releases", RELEASE_VERSION_FIELDS, ofRelease);
+                    logger.info("Retrieved {} versions for release: {}", versions.size(), releaseName);
+                    return versions;
+                }, "getReleaseVersions")));
     }
 }
@@ -0,0 +1,224 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.tanzu.boshpulse.bosh.BoshCommandException.Category;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy shared by every tool: decorrelated-jitter backoff, a token-bucket retry budget, and a
+ * circuit breaker for the Director.
+ * <p>
+ * The budget holds up to {@code bosh.retry.budget.capacity} retries and refills at
+ * {@code bosh.retry.budget.refillPerSecond}, so when the Director is down the server adds a bounded
+ * trickle of retries instead of multiplying its load. After {@code bosh.circuit.failureThreshold}
+ * consecutive Director failures (timeouts or unavailability) the circuit opens and calls fail fast
+ * for {@code bosh.circuit.openSeconds}; it then half-opens and lets {@code bosh.circuit.halfOpenProbes}
+ * calls through as probes, closing on the first success and reopening on a Director failure.
+ */
+@Component
+public class BoshResilience {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshResilience.class);
+
+    /**
+     * Circuit breaker state.
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    /**
+     * Admission of one call; pass it back to {@link #onSuccess}, {@link #onFailure} or {@link #release}.
+     *
+     * @param probe Whether the call is a half-open probe
+     */
+    public record Permit(boolean probe) {
+    }
+
+    private final String director;
+    private final Duration maxDelay;
+    private final double budgetCapacity;
+    private final double refillPerNano;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final int halfOpenProbes;
+    private final Counter budgetExhausted;
+    private final Counter circuitRejections;
+
+    private double tokens;
+    private long refilledAtNanos = System.nanoTime();
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private int probesInFlight;
+
+    public BoshResilience(@Value("${bosh.director:}") String director,
+                          @Value("${bosh.retry.maxDelay:20}") int maxDelaySeconds,
+                          @Value("${bosh.retry.budget.capacity:10}") int budgetCapacity,
+                          @Value("${bosh.retry.budget.refillPerSecond:0.5}") double refillPerSecond,
+                          @Value("${bosh.circuit.failureThreshold:5}") int failureThreshold,
+                          @Value("${bosh.circuit.openSeconds:30}") int openSeconds,
+                          @Value("${bosh.circuit.halfOpenProbes:1}") int halfOpenProbes,
+                          MeterRegistry meterRegistry) {
+        this.director = director;
+        this.maxDelay = Duration.ofSeconds(maxDelaySeconds);
+        this.budgetCapacity = budgetCapacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000.0;
+        this.tokens = budgetCapacity;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = Duration.ofSeconds(openSeconds);
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        Gauge.builder("bosh.circuit.state", this, r -> r.getState().ordinal())
+                .description("Director circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        Gauge.builder("bosh.retry.budget.tokens", this, BoshResilience::getBudgetTokens)
+                .description("Retries currently available in the shared retry budget")
+                .register(meterRegistry);
+        this.budgetExhausted = Counter.builder("bosh.retry.budget.exhausted")
+                .description("Retries skipped because the shared retry budget was empty")
+                .register(meterRegistry);
+        this.circuitRejections = Counter.builder("bosh.circuit.rejected")
+                .description("Calls failed fast because the Director circuit was open")
+                .register(meterRegistry);
+        logger.info("BOSH retry budget {} (+{}/s), circuit opens after {} failures for {}",
+                budgetCapacity, refillPerSecond, this.failureThreshold, openDuration);
+    }
+
+    /**
+     * Admit a call to the Director.
+     *
+     * @return The permit
+     * @throws BoshCommandException with {@code CIRCUIT_OPEN} while the circuit is open or its probes are in flight
+     */
+    public synchronized Permit admit() {
+        if (state == State.OPEN) {
+            long remaining = openedAtNanos + openDuration.toNanos() - System.nanoTime();
+            if (remaining > 0) {
+                throw rejected("for another " + Duration.ofNanos(remaining).toSeconds() + " seconds");
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            logger.info("BOSH Director circuit half-open, probing {}", director);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= halfOpenProbes) {
+                throw rejected("until the probe in flight completes");
+            }
+            probesInFlight++;
+            return new Permit(true);
+        }
+        return new Permit(false);
+    }
+
+    /**
+     * Record a call that succeeded.
+     */
+    public synchronized void onSuccess(Permit permit) {
+        if (permit.probe()) {
+            probesInFlight--;
+        }
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            logger.info("BOSH Director circuit closed, {} is reachable again", director);
+        }
+    }
+
+    /**
+     * Record a call that failed. Only Director faults count; a call the Director answered with an
+     * error still shows it is reachable. Failures raised locally, such as an invalid argument, tell
+     * nothing about the Director and leave the circuit as it is.
+     */
+    public synchronized void onFailure(Permit permit, RuntimeException failure) {
+        if (permit.probe()) {
+            probesInFlight--;
+        }
+        Category category = BoshCommandException.categorize(failure);
+        if (!category.isDirectorFault()) {
+            if (BoshCommandException.isDirectorAnswer(failure)) {
+                consecutiveFailures = 0;
+                if (state == State.HALF_OPEN) {
+                    state = State.CLOSED;
+                }
+            }
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                logger.warn("BOSH Director circuit opened after {} consecutive failures ({}), failing fast for {}",
+                        consecutiveFailures, category, openDuration);
+            }
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Return the permit of an attempt that is about to be retried, without recording an outcome,
+     * so a call counts once towards the circuit however many attempts it takes.
+     */
+    public synchronized void release(Permit permit) {
+        if (permit.probe()) {
+            probesInFlight--;
+        }
+    }
+
+    /**
+     * Take one retry from the shared budget.
+     *
+     * @return true if a retry is allowed
+     */
+    public synchronized boolean tryAcquireRetry() {
+        refill();
+        if (tokens >= 1) {
+            tokens--;
+            return true;
+        }
+        budgetExhausted.increment();
+        return false;
+    }
+
+    /**
+     * Decorrelated-jitter backoff: a random delay between the base delay and three times the previous
+     * one, capped at {@code bosh.retry.maxDelay}, so concurrent callers spread out instead of retrying in lockstep.
+     *
+     * @param base The minimum delay
+     * @param previous The previous delay, or the base delay before the first retry
+     * @return The delay before the next attempt
+     */
+    public Duration backoff(Duration base, Duration previous) {
+        long low = base.toMillis();
+        long high = Math.max(low, Math.min(maxDelay.toMillis(), previous.toMillis() * 3));
+        return Duration.ofMillis(high > low ? ThreadLocalRandom.current().nextLong(low, high + 1) : low);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized double getBudgetTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(budgetCapacity, tokens + (now - refilledAtNanos) * refillPerNano);
+        refilledAtNanos = now;
+    }
+
+    private BoshCommandException rejected(String detail) {
+        circuitRejections.increment();
+        return new BoshCommandException(Category.CIRCUIT_OPEN, "BOSH Director " + director
+                + " is unavailable after repeated failures; failing fast " + detail);
+    }
+}
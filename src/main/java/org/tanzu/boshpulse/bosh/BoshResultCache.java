@@ -0,0 +1,231 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for read-only BOSH tool results.
+ * Each {@link Region} has its own TTL; the cache as a whole is bounded by {@code bosh.cache.maxEntries}
+ * with least-recently-used eviction. Mutation tools invalidate the regions they affect.
+ * Cached JSON trees, lists and maps are copied on the way in and out, so a caller that changes its
+ * result cannot change the entry seen by everyone else.
+ */
+@Component
+public class BoshResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshResultCache.class);
+
+    /**
+     * Groups of cached results, one per read-only tool family.
+     */
+    public enum Region {
+        DEPLOYMENTS("deployments"),
+        STEMCELLS("stemcells"),
+        RELEASES("releases"),
+        CLOUD_CONFIG("cloud-config"),
+        VMS("vms"),
+        ERRANDS("errands");
+
+        private final String tag;
+
+        Region(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private record Entry(Object value, long expiresAtNanos) {
+    }
+
+    private final boolean enabled;
+    private final Map<Region, Duration> ttls = new EnumMap<>(Region.class);
+    private final Map<Region, AtomicLong> hits = new EnumMap<>(Region.class);
+    private final Map<Region, AtomicLong> misses = new EnumMap<>(Region.class);
+    private final Map<Region, AtomicLong> generations = new EnumMap<>(Region.class);
+    private final LinkedHashMap<String, Entry> entries;
+
+    public BoshResultCache(@Value("${bosh.cache.enabled:true}") boolean enabled,
+                           @Value("${bosh.cache.maxEntries:500}") int maxEntries,
+                           @Value("${bosh.cache.ttl.deployments:30}") int deploymentsTtlSeconds,
+                           @Value("${bosh.cache.ttl.stemcells:300}") int stemcellsTtlSeconds,
+                           @Value("${bosh.cache.ttl.releases:300}") int releasesTtlSeconds,
+                           @Value("${bosh.cache.ttl.cloudConfig:300}") int cloudConfigTtlSeconds,
+                           @Value("${bosh.cache.ttl.vms:15}") int vmsTtlSeconds,
+                           @Value("${bosh.cache.ttl.errands:120}") int errandsTtlSeconds,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        ttls.put(Region.DEPLOYMENTS, Duration.ofSeconds(deploymentsTtlSeconds));
+        ttls.put(Region.STEMCELLS, Duration.ofSeconds(stemcellsTtlSeconds));
+        ttls.put(Region.RELEASES, Duration.ofSeconds(releasesTtlSeconds));
+        ttls.put(Region.CLOUD_CONFIG, Duration.ofSeconds(cloudConfigTtlSeconds));
+        ttls.put(Region.VMS, Duration.ofSeconds(vmsTtlSeconds));
+        ttls.put(Region.ERRANDS, Duration.ofSeconds(errandsTtlSeconds));
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        for (Region region : Region.values()) {
+            hits.put(region, new AtomicLong());
+            misses.put(region, new AtomicLong());
+            generations.put(region, new AtomicLong());
+            FunctionCounter.builder("bosh.cache.requests", hits.get(region), AtomicLong::get)
+                    .tag("region", region.getTag()).tag("result", "hit")
+                    .description("BOSH tool result cache lookups")
+                    .register(meterRegistry);
+            FunctionCounter.builder("bosh.cache.requests", misses.get(region), AtomicLong::get)
+                    .tag("region", region.getTag()).tag("result", "miss")
+                    .description("BOSH tool result cache lookups")
+                    .register(meterRegistry);
+            Gauge.builder("bosh.cache.hit.ratio", region, this::getHitRatio)
+                    .tag("region", region.getTag())
+                    .description("Fraction of BOSH tool result cache lookups served from the cache")
+                    .register(meterRegistry);
+        }
+        Gauge.builder("bosh.cache.size", this, BoshResultCache::size)
+                .description("Number of cached BOSH tool results")
+                .register(meterRegistry);
+
+        logger.info("BOSH result cache {} (max entries: {}, TTLs: {})", enabled ? "enabled" : "disabled", maxEntries, ttls);
+    }
+
+    /**
+     * Return the cached value for a key, loading and caching it on a miss or after expiry.
+     *
+     * @param region The cache region, which determines the TTL
+     * @param key The key within the region (e.g., a deployment name), or "" for singletons
+     * @param loader Loads the value on a miss; exceptions propagate and nothing is cached
+     * @param <T> The value type
+     * @return The cached or freshly loaded value, which the caller may change
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Region region, String key, Supplier<T> loader) {
+        Duration ttl = ttls.get(region);
+        if (!enabled || ttl.isZero() || ttl.isNegative()) {
+            return loader.get();
+        }
+
+        String cacheKey = cacheKey(region, key);
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(cacheKey);
+            if (entry != null && now - entry.expiresAtNanos() < 0) {
+                hits.get(region).incrementAndGet();
+                return (T) copy(entry.value());
+            }
+            if (entry != null) {
+                entries.remove(cacheKey);
+            }
+        }
+
+        misses.get(region).incrementAndGet();
+        long generation = generations.get(region).get();
+        T value = loader.get();
+        synchronized (entries) {
+            // Drop the result if a mutation invalidated the region while it was loading
+            if (generations.get(region).get() == generation) {
+                entries.put(cacheKey, new Entry(copy(value), System.nanoTime() + ttl.toNanos()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Invalidate a single key in a region, along with projections of it cached as {@code key?...}.
+     */
+    public void invalidate(Region region, String key) {
+        String cacheKey = cacheKey(region, key);
+        synchronized (entries) {
+            generations.get(region).incrementAndGet();
+            entries.remove(cacheKey);
+            // Projections of the same result are cached under "key?..." and go stale with it
+            entries.keySet().removeIf(k -> k.startsWith(cacheKey + "?"));
+        }
+        logger.debug("Invalidated BOSH result cache entry {}", cacheKey(region, key));
+    }
+
+    /**
+     * Invalidate every key in a region.
+     */
+    public void invalidate(Region region) {
+        String prefix = region.getTag() + ":";
+        synchronized (entries) {
+            generations.get(region).incrementAndGet();
+            entries.keySet().removeIf(k -> k.startsWith(prefix));
+        }
+        logger.debug("Invalidated BOSH result cache region {}", region.getTag());
+    }
+
+    /**
+     * Get the fraction of lookups in a region that were served from the cache.
+     *
+     * @return Hit ratio between 0 and 1, or 0 if the region has not been used
+     */
+    public double getHitRatio(Region region) {
+        long regionHits = hits.get(region).get();
+        long total = regionHits + misses.get(region).get();
+        return total == 0 ? 0.0 : (double) regionHits / total;
+    }
+
+    public long getHitCount(Region region) {
+        return hits.get(region).get();
+    }
+
+    public long getMissCount(Region region) {
+        return misses.get(region).get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Deep-copy the mutable parts of a result; strings and records are shared as they are immutable.
+     */
+    static Object copy(Object value) {
+        if (value instanceof JsonNode node) {
+            return node.deepCopy();
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copy.add(copy(item));
+            }
+            return copy;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> item : map.entrySet()) {
+                copy.put(item.getKey(), copy(item.getValue()));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    private static String cacheKey(Region region, String key) {
+        return region.getTag() + ":" + key;
+    }
+}
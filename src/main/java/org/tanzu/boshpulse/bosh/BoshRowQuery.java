@@ -0,0 +1,217 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Column projection and row filtering for BOSH table output, parsed from the {@code fields} and
+ * {@code where} tool parameters.
+ * <p>
+ * {@code fields} is a comma separated list of column names. {@code where} is a list of clauses
+ * separated by commas or {@code and}, all of which must hold; each clause is
+ * {@code column=value}, {@code column!=value}, {@code column~regex} or {@code column!~regex}.
+ * A comma or {@code and} only separates clauses when another clause follows it and it is not inside
+ * a quoted value, so values such as {@code ~a{1,3}} or {@code ='a, b'} are kept whole.
+ * Comparisons are case-sensitive and a missing column compares as the empty string.
+ * The filter is applied while rows are extracted, so rows that do not match are never materialized.
+ */
+public final class BoshRowQuery {
+
+    /**
+     * Result of a listing tool that accepts {@code fields} and {@code where}. Exactly one part is set.
+     *
+     * @param table The CLI's full {@code Tables}/{@code Rows} document, when neither parameter was passed
+     * @param rows The projected columns of the matching rows, when either parameter was passed
+     */
+    public record Listing(JsonNode table, List<Map<String, String>> rows) {
+
+        public static Listing ofTable(JsonNode table) {
+            return new Listing(table, null);
+        }
+
+        public static Listing ofRows(List<Map<String, String>> rows) {
+            return new Listing(null, rows);
+        }
+    }
+
+    private static final Pattern CLAUSE_PATTERN = Pattern.compile("\\s*([A-Za-z0-9_.]+)\\s*(!=|!~|=|~)\\s*(.*?)\\s*");
+    private static final Pattern CLAUSE_SEPARATOR =
+            Pattern.compile("(?:\\s*,\\s*|\\s+(?i:and)\\s+)(?=[A-Za-z0-9_.]+\\s*(?:!=|!~|=|~))");
+    private static final Pattern QUOTED_VALUE = Pattern.compile("\\s*[A-Za-z0-9_.]+\\s*(?:!=|!~|=|~)\\s*(['\"])");
+
+    private final Set<String> fields;
+    private final Set<String> readFields;
+    private final Predicate<Map<String, String>> filter;
+    private final String key;
+
+    private BoshRowQuery(Set<String> fields, Set<String> readFields, Predicate<Map<String, String>> filter, String key) {
+        this.fields = fields;
+        this.readFields = readFields;
+        this.filter = filter;
+        this.key = key;
+    }
+
+    /**
+     * Parse the {@code fields} and {@code where} tool parameters.
+     *
+     * @param fields Comma separated columns to return, or null/blank for every column
+     * @param where Row filter, or null/blank for every row
+     * @return The query
+     * @throws IllegalArgumentException if a clause or regex is malformed
+     */
+    public static BoshRowQuery parse(String fields, String where) {
+        Set<String> projection = null;
+        if (fields != null && !fields.isBlank()) {
+            projection = new LinkedHashSet<>();
+            for (String field : fields.split(",")) {
+                if (!field.isBlank()) {
+                    projection.add(field.trim());
+                }
+            }
+        }
+
+        Predicate<Map<String, String>> filter = null;
+        Set<String> filterFields = new LinkedHashSet<>();
+        if (where != null && !where.isBlank()) {
+            for (String clause : splitClauses(where.trim())) {
+                Predicate<Map<String, String>> predicate = parseClause(clause, filterFields);
+                filter = filter == null ? predicate : filter.and(predicate);
+            }
+        }
+
+        Set<String> readFields = projection;
+        if (projection != null && !projection.containsAll(filterFields)) {
+            readFields = new LinkedHashSet<>(projection);
+            readFields.addAll(filterFields);
+        }
+        String key = (projection == null ? "*" : String.join(",", projection)) + "|" + (filter == null ? "" : where.trim());
+        return new BoshRowQuery(projection, readFields, filter, key);
+    }
+
+    /**
+     * Split a {@code where} value at the separators that are followed by another clause and are
+     * not inside a quoted value.
+     */
+    private static List<String> splitClauses(String where) {
+        List<String> clauses = new ArrayList<>();
+        Matcher separator = CLAUSE_SEPARATOR.matcher(where);
+        int start = 0;
+        while (separator.find()) {
+            if (!inQuotedValue(where.substring(start, separator.start()))) {
+                clauses.add(where.substring(start, separator.start()));
+                start = separator.end();
+            }
+        }
+        clauses.add(where.substring(start));
+        return clauses;
+    }
+
+    /**
+     * Whether a clause so far has a value that opened a quote without closing it.
+     */
+    private static boolean inQuotedValue(String clause) {
+        Matcher matcher = QUOTED_VALUE.matcher(clause);
+        return matcher.lookingAt() && clause.indexOf(matcher.group(1), matcher.end()) < 0;
+    }
+
+    private static Predicate<Map<String, String>> parseClause(String clause, Set<String> filterFields) {
+        Matcher matcher = CLAUSE_PATTERN.matcher(clause);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid where clause '" + clause
+                    + "'; expected column=value, column!=value, column~regex or column!~regex");
+        }
+        String field = matcher.group(1);
+        String operator = matcher.group(2);
+        String value = unquote(matcher.group(3));
+        filterFields.add(field);
+        return switch (operator) {
+            case "=" -> row -> value.equals(row.getOrDefault(field, ""));
+            case "!=" -> row -> !value.equals(row.getOrDefault(field, ""));
+            default -> {
+                Pattern pattern;
+                try {
+                    pattern = Pattern.compile(value);
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid regex in where clause '" + clause + "': " + e.getDescription());
+                }
+                Predicate<Map<String, String>> found = row -> pattern.matcher(row.getOrDefault(field, "")).find();
+                yield "~".equals(operator) ? found : found.negate();
+            }
+        };
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.startsWith("'") && value.endsWith("'") || value.startsWith("\"") && value.endsWith("\""))) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * Whether the query neither projects nor filters, i.e. the full table is wanted.
+     */
+    public boolean isEmpty() {
+        return fields == null && filter == null;
+    }
+
+    /**
+     * Columns to extract from each row: the projection plus any columns the filter needs,
+     * or null for every column.
+     */
+    public Set<String> readFields() {
+        return readFields;
+    }
+
+    /**
+     * Predicate a row must satisfy, or null to keep every row.
+     */
+    public Predicate<Map<String, String>> filter() {
+        return filter;
+    }
+
+    /**
+     * A stable key for caching the result of this query.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Run the query against an already parsed listing, such as an inventory snapshot.
+     *
+     * @param listing CLI-shaped JSON with {@code Tables[].Rows[]}
+     * @return Matching rows holding only the projected columns
+     */
+    public List<Map<String, String>> apply(JsonNode listing) {
+        return project(BoshJsonRowExtractor.extractRows(listing, readFields, filter));
+    }
+
+    /**
+     * Drop the columns that were only read for filtering.
+     *
+     * @param rows Rows extracted with {@link #readFields()} and {@link #filter()}
+     * @return Rows holding only the projected columns
+     */
+    public List<Map<String, String>> project(List<Map<String, String>> rows) {
+        if (readFields == fields) {
+            return rows;
+        }
+        List<Map<String, String>> projected = new ArrayList<>(rows.size());
+        for (Map<String, String> row : rows) {
+            Map<String, String> kept = new LinkedHashMap<>(row);
+            kept.keySet().retainAll(fields);
+            projected.add(kept);
+        }
+        return projected;
+    }
+}
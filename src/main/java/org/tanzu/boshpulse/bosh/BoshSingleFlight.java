@@ -0,0 +1,112 @@
+package org.tanzu.boshpulse.bosh;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: the first caller for a key runs the call and every
+ * caller that arrives while it is in flight waits for and shares the same result or failure.
+ * A caller that joins waits only as long as its own {@link BoshDeadline} allows, and does not share
+ * a failure that belongs to the first caller alone, its deadline or an interrupt; it runs the call
+ * again instead. Nothing is remembered once the call completes.
+ */
+public class BoshSingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Run the call, or join an identical one already in flight.
+     *
+     * @param key Identifies identical calls
+     * @param call The call to run if none is in flight
+     * @param <T> The result type
+     * @return The shared result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            try {
+                return (T) await(existing);
+            } catch (LeaderFailure e) {
+                // The first caller ran out of its own time; that says nothing about the call itself
+                return execute(key, call);
+            }
+        }
+
+        try {
+            T result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Get the number of calls that were served by joining an in-flight call.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Get the number of distinct calls currently in flight.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Thrown by {@link #await} when the shared call failed for a reason of the caller that ran it.
+     */
+    private static final class LeaderFailure extends Exception {
+    }
+
+    private static Object await(CompletableFuture<Object> future) throws LeaderFailure {
+        Duration remaining = BoshDeadline.remaining();
+        try {
+            return remaining == null ? future.get() : future.get(remaining.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw BoshDeadline.expired();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a shared BOSH CLI command", e);
+        } catch (ExecutionException e) {
+            if (isLeaderFailure(e.getCause())) {
+                throw new LeaderFailure();
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static boolean isLeaderFailure(Throwable failure) {
+        if (BoshCommandException.categorize(failure) == BoshCommandException.Category.DEADLINE) {
+            return true;
+        }
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
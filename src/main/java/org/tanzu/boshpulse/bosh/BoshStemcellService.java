@@ -8,6 +8,9 @@ import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+import org.tanzu.boshpulse.bosh.BoshRowQuery.Listing;
+import org.tanzu.boshpulse.bosh.BoshTaskTracker.TaskStatus;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -17,7 +20,7 @@ public class BoshStemcellService extends BoshBaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(BoshStemcellService.class);
 
-    private static final String LIST_STEMCELLS = "List all available BOSH stemcells";
+    private static final String LIST_STEMCELLS = "List all available BOSH stemcells. The full table is returned in table; pass fields and/or where to get only selected columns of matching stemcells in rows instead";
     private static final String UPLOAD_STEMCELL = "Upload a new BOSH stemcell";
     private static final String DELETE_STEMCELL = "Delete a BOSH stemcell";
 
@@ -28,27 +31,50 @@ public class BoshStemcellService extends BoshBaseService {
     }
 
     @Tool(description = LIST_STEMCELLS)
-    public JsonNode listStemcells() {
-        return executeWithRetry(() -> {
-            logger.info("Listing BOSH stemcells");
-            JsonNode result = cliExecutor.executeJson("stemcells");
-            logger.info("Retrieved stemcell list");
-            return result;
-        }, "listStemcells");
+    public Listing listStemcells(
+            @ToolParam(description = FIELDS_PARAM, required = false) String fields,
+            @ToolParam(description = WHERE_PARAM, required = false) String where,
+            @ToolParam(description = FRESH_PARAM, required = false) Boolean fresh) {
+        BoshRowQuery query = BoshRowQuery.parse(fields, where);
+        if (!query.isEmpty()) {
+            return Listing.ofRows(fromInventory(Region.STEMCELLS, "", fresh, query::apply,
+                    () -> queried(Region.STEMCELLS, "", "stemcells", query, "listStemcells")));
+        }
+        return Listing.ofTable(fromInventory(Region.STEMCELLS, "", fresh, listing -> listing,
+                () -> cached(Region.STEMCELLS, "", () -> executeWithRetry(() -> {
+                    logger.info("Listing BOSH stemcells");
+                    JsonNode result = cliExecutor.executeJson("stemcells");
+                    logger.info("Retrieved stemcell list");
+                    return result;
+                }, "listStemcells"))));
     }
 
     @Tool(description = UPLOAD_STEMCELL)
-    public void uploadStemcell(@ToolParam(description = "Path to the stemcell file or URL") String stemcellPath) {
+    public TaskStatus uploadStemcell(
+            @ToolParam(description = "Path to the stemcell file or URL") String stemcellPath,
+            @ToolParam(description = ASYNC_PARAM, required = false) Boolean async) {
         if (!StringUtils.hasText(stemcellPath)) {
             throw new IllegalArgumentException("Stemcell path is required");
         }
         
-        executeWithRetry(() -> {
-            logger.info("Uploading stemcell: {}", stemcellPath);
-            cliExecutor.execute("upload-stemcell " + stemcellPath);
-            logger.info("Stemcell {} uploaded successfully", stemcellPath);
-            return null;
-        }, "uploadStemcell");
+        String command = "upload-stemcell " + stemcellPath;
+        String description = "Upload stemcell " + stemcellPath;
+        Runnable invalidation = () -> invalidate(Region.STEMCELLS);
+        if (Boolean.TRUE.equals(async)) {
+            logger.info("Starting upload of stemcell: {}", stemcellPath);
+            return startTask(command, description, "uploadStemcell", invalidation);
+        }
+        
+        try {
+            return executeWithRetry(() -> {
+                logger.info("Uploading stemcell: {}", stemcellPath);
+                String output = cliExecutor.execute(command);
+                logger.info("Stemcell {} uploaded successfully", stemcellPath);
+                return completedTask(output, description, null);
+            }, "uploadStemcell");
+        } finally {
+            invalidation.run();
+        }
     }
 
     @Tool(description = DELETE_STEMCELL)
@@ -60,15 +86,19 @@ public class BoshStemcellService extends BoshBaseService {
             throw new IllegalArgumentException("Stemcell name is required");
         }
         
-        executeWithRetry(() -> {
-            String command = "delete-stemcell " + stemcellName;
-            if (StringUtils.hasText(version)) {
-                command += "/" + version;
-            }
-            logger.warn("Deleting stemcell: {}", stemcellName);
-            cliExecutor.execute(command + " --force");
-            logger.info("Stemcell {} deleted successfully", stemcellName);
-            return null;
-        }, "deleteStemcell");
+        try {
+            executeWithRetry(() -> {
+                String command = "delete-stemcell " + stemcellName;
+                if (StringUtils.hasText(version)) {
+                    command += "/" + version;
+                }
+                logger.warn("Deleting stemcell: {}", stemcellName);
+                cliExecutor.execute(command + " --force");
+                logger.info("Stemcell {} deleted successfully", stemcellName);
+                return null;
+            }, "deleteStemcell");
+        } finally {
+            invalidate(Region.STEMCELLS);
+        }
     }
 }
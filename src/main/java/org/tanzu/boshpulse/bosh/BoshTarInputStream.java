@@ -0,0 +1,238 @@
+package org.tanzu.boshpulse.bosh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal streaming reader for tar archives as produced by {@code bosh logs}.
+ * Understands ustar headers, GNU long names ({@code L}) and pax {@code path} records.
+ * Entries are read sequentially straight from the underlying stream and never buffered,
+ * so memory use does not depend on entry or archive size.
+ */
+public class BoshTarInputStream extends FilterInputStream {
+
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * An archive entry.
+     *
+     * @param name Path of the entry inside the archive
+     * @param size Size in bytes
+     * @param regularFile Whether the entry is a regular file (as opposed to a directory, link, ...)
+     */
+    public record Entry(String name, long size, boolean regularFile) {
+    }
+
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long remaining;
+    private long padding;
+    private boolean finished;
+
+    public BoshTarInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Advance to the next entry, skipping whatever was not read of the current one.
+     *
+     * @return The next entry, or null at the end of the archive
+     */
+    public Entry getNextEntry() throws IOException {
+        String longName = null;
+        while (true) {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+            if (finished || !readBlock()) {
+                finished = true;
+                return null;
+            }
+            if (isZeroBlock()) {
+                // End-of-archive marker
+                finished = true;
+                return null;
+            }
+
+            long size = parseOctal(header, 124, 12);
+            char type = (char) header[156];
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+            if (type == 'L') {
+                longName = trimNul(new String(readEntryBytes(), StandardCharsets.UTF_8));
+                continue;
+            }
+            if (type == 'x') {
+                String paxPath = parsePaxPath(new String(readEntryBytes(), StandardCharsets.UTF_8));
+                if (paxPath != null) {
+                    longName = paxPath;
+                }
+                continue;
+            }
+            if (type == 'g') {
+                continue;
+            }
+
+            String name = longName != null ? longName : headerName();
+            return new Entry(name, size, type == '0' || type == '\0' || type == '7');
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated tar entry");
+        }
+        remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+        if (read < 0) {
+            throw new EOFException("Truncated tar entry");
+        }
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private byte[] readEntryBytes() throws IOException {
+        if (remaining > 1024 * 1024) {
+            throw new IOException("Tar extended header too large: " + remaining + " bytes");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) remaining);
+        byte[] buffer = new byte[BLOCK_SIZE];
+        int read;
+        while ((read = read(buffer, 0, buffer.length)) > 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private String headerName() {
+        String name = field(0, 100);
+        String magic = field(257, 6);
+        if (magic.startsWith("ustar")) {
+            String prefix = field(345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    private String field(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private boolean readBlock() throws IOException {
+        int read = 0;
+        while (read < BLOCK_SIZE) {
+            int n = in.read(header, read, BLOCK_SIZE - read);
+            if (n < 0) {
+                if (read == 0) {
+                    return false;
+                }
+                throw new EOFException("Truncated tar header");
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    private boolean isZeroBlock() {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipFully(long bytes) throws IOException {
+        long left = bytes;
+        while (left > 0) {
+            long skipped = in.skip(left);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                skipped = 1;
+            }
+            left -= skipped;
+        }
+    }
+
+    static long parseOctal(byte[] buffer, int offset, int length) {
+        if ((buffer[offset] & 0x80) != 0) {
+            // GNU base-256 encoding for sizes of 8 GiB and more
+            long value = buffer[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (buffer[i] & 0xff);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = buffer[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private static String parsePaxPath(String records) {
+        // Records look like "<length> <key>=<value>\n"
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            int equals = record.indexOf('=');
+            if (space > 0 && equals > space && record.substring(space + 1, equals).equals("path")) {
+                return record.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    private static String trimNul(String value) {
+        int nul = value.indexOf('\0');
+        return nul >= 0 ? value.substring(0, nul) : value;
+    }
+}
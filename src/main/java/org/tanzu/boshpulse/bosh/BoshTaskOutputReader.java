@@ -0,0 +1,313 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.tanzu.boshpulse.bosh.BoshDirectorHttpClient.TaskOutputChunk;
+import org.tanzu.boshpulse.bosh.BoshLineRingBuffer.Slice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental reader for Director task output ({@code --event} or {@code --debug}).
+ * Recent lines of each task are kept in a bounded {@link BoshLineRingBuffer}, and callers page
+ * through them with line cursors, so polling a running task only returns what is new.
+ * <p>
+ * With the Director HTTP backend, new output is fetched with {@code Range} requests from the last
+ * byte offset at most once per {@code bosh.taskOutput.refreshInterval}. Otherwise one background
+ * {@code bosh task <id> --<type>} process per task follows the output into the buffer, and polls
+ * just read the buffer. Followers run as streaming commands outside the scheduler lanes, so a long
+ * task does not hold a read slot; one is stopped when its task leaves the cache or nobody has read
+ * it for {@code bosh.taskOutput.idleTimeout}, and the next read starts it again. What the CLI prints
+ * around the output (environment, task header and summary) is left out, and whether a follower has
+ * read everything is decided from the task state, not from the CLI exit code.
+ * Once a task has finished its output is final and never fetched again.
+ */
+@Component
+public class BoshTaskOutputReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshTaskOutputReader.class);
+
+    private static final Set<String> OUTPUT_TYPES = Set.of("event", "debug");
+
+    /**
+     * A page of task output.
+     *
+     * @param taskId The task ID
+     * @param type Output type
+     * @param output New lines, newline-separated
+     * @param lineCount Number of lines in this page
+     * @param cursor Cursor to pass to the next read
+     * @param skippedLines Lines before this page that had already left the buffer
+     * @param complete Whether the task has finished and all of its output has been read into the buffer
+     */
+    public record TaskOutputPage(String taskId, String type, String output, int lineCount, long cursor,
+                                 long skippedLines, boolean complete) {
+    }
+
+    private static final class TaskOutput {
+        private final String taskId;
+        private final String type;
+        private final BoshLineRingBuffer buffer;
+        private final ReentrantLock refreshLock = new ReentrantLock();
+        private volatile boolean complete;
+        private volatile boolean following;
+        private volatile Process follower;
+        private volatile long lastReadNanos = System.nanoTime();
+        private long byteOffset;
+        private long lastRefreshNanos;
+
+        private TaskOutput(String taskId, String type, int capacity) {
+            this.taskId = taskId;
+            this.type = type;
+            this.buffer = new BoshLineRingBuffer(capacity);
+        }
+    }
+
+    private final BoshCliExecutor cliExecutor;
+    private final ObjectProvider<BoshDirectorHttpClient> directorHttpClient;
+    private final BoshTaskTracker taskTracker;
+    private final BoshPaginator paginator;
+    private final int bufferLines;
+    private final int pageLines;
+    private final Duration refreshInterval;
+    private final Duration pollWait;
+    private final Duration idleTimeout;
+    private final LinkedHashMap<String, TaskOutput> outputs;
+
+    public BoshTaskOutputReader(BoshCliExecutor cliExecutor,
+                                ObjectProvider<BoshDirectorHttpClient> directorHttpClient,
+                                BoshTaskTracker taskTracker,
+                                BoshPaginator paginator,
+                                @Value("${bosh.taskOutput.bufferLines:5000}") int bufferLines,
+                                @Value("${bosh.taskOutput.maxTasks:32}") int maxTasks,
+                                @Value("${bosh.taskOutput.pageLines:1000}") int pageLines,
+                                @Value("${bosh.taskOutput.refreshInterval:2}") int refreshIntervalSeconds,
+                                @Value("${bosh.taskOutput.pollWait:2}") int pollWaitSeconds,
+                                @Value("${bosh.taskOutput.idleTimeout:300}") int idleTimeoutSeconds) {
+        this.cliExecutor = cliExecutor;
+        this.directorHttpClient = directorHttpClient;
+        this.taskTracker = taskTracker;
+        this.paginator = paginator;
+        this.bufferLines = bufferLines;
+        this.pageLines = pageLines;
+        this.refreshInterval = Duration.ofSeconds(refreshIntervalSeconds);
+        this.pollWait = Duration.ofSeconds(pollWaitSeconds);
+        this.idleTimeout = Duration.ofSeconds(idleTimeoutSeconds);
+        this.outputs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TaskOutput> eldest) {
+                if (size() <= maxTasks) {
+                    return false;
+                }
+                stopFollower(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Read task output after a cursor.
+     *
+     * @param taskId The task ID
+     * @param type Output type, {@code event} or {@code debug}
+     * @param cursor Line cursor from the previous page, or 0 to start at the oldest buffered line
+     * @param maxLines Maximum lines to return, capped at {@code bosh.taskOutput.pageLines}
+     * @return The lines after the cursor and the next cursor
+     * @throws IllegalArgumentException if the output type is not supported
+     */
+    public TaskOutputPage read(String taskId, String type, long cursor, int maxLines) {
+        if (!OUTPUT_TYPES.contains(type)) {
+            throw new IllegalArgumentException("Unsupported task output type: " + type + " (expected event or debug)");
+        }
+        TaskOutput output = outputFor(taskId, type);
+        output.lastReadNanos = System.nanoTime();
+        refresh(output);
+
+        if (!output.complete && output.following && output.buffer.nextOffset() <= cursor) {
+            // Long-poll briefly so a caller that is caught up gets the next lines without another round trip
+            try {
+                output.buffer.awaitLines(cursor, pollWait.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean complete = output.complete;
+        Slice slice = output.buffer.read(cursor, Math.max(1, Math.min(maxLines, pageLines)));
+        // Debug logs can have very long lines; keep the page within the paginator's size cap too
+        List<String> lines = slice.lines();
+        int fitting = paginator.fit(lines, 0, lines.size());
+        long nextOffset = slice.nextOffset() - (lines.size() - fitting);
+        lines = lines.subList(0, fitting);
+        return new TaskOutputPage(taskId, type, String.join("\n", lines), lines.size(),
+                nextOffset, slice.skipped(), complete && nextOffset >= output.buffer.nextOffset());
+    }
+
+    private TaskOutput outputFor(String taskId, String type) {
+        synchronized (outputs) {
+            return outputs.computeIfAbsent(taskId + ":" + type, key -> new TaskOutput(taskId, type, bufferLines));
+        }
+    }
+
+    private void refresh(TaskOutput output) {
+        if (output.complete) {
+            return;
+        }
+        BoshDirectorHttpClient httpClient = directorHttpClient.getIfAvailable();
+        if (httpClient != null) {
+            fetchRange(httpClient, output);
+        } else if (!output.following) {
+            startFollower(output);
+        }
+    }
+
+    private void fetchRange(BoshDirectorHttpClient httpClient, TaskOutput output) {
+        output.refreshLock.lock();
+        try {
+            long now = System.nanoTime();
+            if (output.complete || (output.lastRefreshNanos != 0 && now - output.lastRefreshNanos < refreshInterval.toNanos())) {
+                return;
+            }
+            // Read the state first: output fetched after a terminal state is final
+            boolean finished = BoshTaskTracker.isTerminal(httpClient.getTask(output.taskId).path("state").asText());
+            TaskOutputChunk chunk = httpClient.getTaskOutput(output.taskId, output.type, output.byteOffset, finished);
+            String text = chunk.text().endsWith("\n") ? chunk.text().substring(0, chunk.text().length() - 1) : chunk.text();
+            if (!text.isEmpty()) {
+                for (String line : text.split("\n", -1)) {
+                    output.buffer.append(line);
+                }
+            }
+            output.byteOffset = chunk.nextOffset();
+            output.lastRefreshNanos = System.nanoTime();
+            output.complete = finished;
+        } finally {
+            output.refreshLock.unlock();
+        }
+    }
+
+    private void startFollower(TaskOutput output) {
+        output.refreshLock.lock();
+        try {
+            if (output.following || output.complete) {
+                return;
+            }
+            output.following = true;
+        } finally {
+            output.refreshLock.unlock();
+        }
+
+        Thread.ofVirtual().name("bosh-task-output-" + output.taskId).start(() -> follow(output));
+
+        // Give a fresh follower a moment to produce its first lines
+        try {
+            output.buffer.awaitLines(0, Math.max(TimeUnit.SECONDS.toMillis(1), pollWait.toMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void follow(TaskOutput output) {
+        // A restarted follower re-reads the output from the beginning; skip what is already buffered
+        long alreadyBuffered = output.buffer.nextOffset();
+        long[] seen = {0};
+        Process process = null;
+        boolean stopped = false;
+        try {
+            process = cliExecutor.startStreaming("task " + output.taskId + " --" + output.type);
+            output.follower = process;
+            Process started = process;
+            Thread reader = Thread.ofVirtual().name("bosh-task-output-out-" + output.taskId).start(() ->
+                    pump(started.getInputStream(), taskLines(output.taskId, line -> {
+                        if (seen[0]++ >= alreadyBuffered) {
+                            output.buffer.append(line);
+                        }
+                    })));
+            Thread.ofVirtual().name("bosh-task-output-err-" + output.taskId).start(() ->
+                    pump(started.getErrorStream(), line -> { }));
+
+            long checkNanos = Math.max(TimeUnit.SECONDS.toNanos(1), pollWait.toNanos());
+            while (!BoshCliExecutor.awaitExit(process, checkNanos)) {
+                if (output.follower != process || System.nanoTime() - output.lastReadNanos >= idleTimeout.toNanos()) {
+                    stopped = true;
+                    cliExecutor.killProcessTree(process);
+                    break;
+                }
+            }
+            reader.join();
+            // The CLI exits non-zero for failed tasks too, and when it fails itself; only a finished task has all its output
+            output.complete = !stopped && taskTracker.isFinished(output.taskId);
+            logger.debug("Following output of BOSH task {} ended with exit code {}", output.taskId, process.exitValue());
+        } catch (IOException e) {
+            logger.debug("Following output of BOSH task {} failed: {}", output.taskId, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (process != null) {
+                cliExecutor.killProcessTree(process);
+            }
+        } finally {
+            output.follower = null;
+            output.following = false;
+        }
+    }
+
+    private void stopFollower(TaskOutput output) {
+        // The follower notices within a second or one poll wait and kills its process
+        output.follower = null;
+    }
+
+    /**
+     * Drop what the CLI prints around task output: the {@code Using environment} and {@code Task <id>} header,
+     * the {@code Task <id> Started/Finished/Duration/done} summary and the closing {@code Succeeded}.
+     * Blank lines are held back until more output follows, so the ones framing the summary are dropped too.
+     */
+    static Consumer<String> taskLines(String taskId, Consumer<String> lineConsumer) {
+        Pattern frame = Pattern.compile("Task " + Pattern.quote(taskId)
+                + "( (Started|Finished|Duration|done|error|cancelled|timeout)\\b.*)?");
+        boolean[] started = {false};
+        int[] blankLines = {0};
+        return line -> {
+            if (line.isBlank()) {
+                if (started[0]) {
+                    blankLines[0]++;
+                }
+                return;
+            }
+            if ((!started[0] && line.startsWith("Using environment ")) || line.equals("Succeeded")
+                    || frame.matcher(line).matches()) {
+                return;
+            }
+            started[0] = true;
+            for (; blankLines[0] > 0; blankLines[0]--) {
+                lineConsumer.accept("");
+            }
+            lineConsumer.accept(line);
+        };
+    }
+
+    private static void pump(InputStream stream, Consumer<String> lineConsumer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineConsumer.accept(line);
+            }
+        } catch (IOException ignored) {
+            // Stream closed because the follower was stopped
+        }
+    }
+}
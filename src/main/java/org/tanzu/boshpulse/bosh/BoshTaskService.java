@@ -0,0 +1,67 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.tanzu.boshpulse.bosh.BoshTaskTracker.TaskStatus;
+
+import java.time.Duration;
+import java.util.List;
+
+@Service
+public class BoshTaskService extends BoshBaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshTaskService.class);
+
+    private static final String GET_TASK_STATUS = "Get the current state of a BOSH Director task, e.g. one started by a tool with async=true";
+    private static final String AWAIT_TASK = "Wait for a BOSH Director task to finish and return its final state, or its current state if it is still running when the wait times out";
+    private static final String LIST_TRACKED_TASKS = "List BOSH Director tasks started in async mode and tracked by this server";
+
+    private static final int DEFAULT_AWAIT_SECONDS = 60;
+
+    private final BoshTaskTracker taskTracker;
+
+    public BoshTaskService(BoshCliExecutor cliExecutor,
+                           BoshTaskTracker taskTracker,
+                           @Value("${bosh.retry.maxAttempts:3}") int maxRetries,
+                           @Value("${bosh.retry.delay:2}") int retryDelaySeconds) {
+        super(cliExecutor, maxRetries, retryDelaySeconds);
+        this.taskTracker = taskTracker;
+    }
+
+    @Tool(description = GET_TASK_STATUS)
+    public TaskStatus getTaskStatus(@ToolParam(description = TASK_PARAM) String taskId) {
+        if (!StringUtils.hasText(taskId)) {
+            throw new IllegalArgumentException("Task ID is required");
+        }
+
+        return executeWithRetry(() -> {
+            logger.info("Getting status of task: {}", taskId);
+            return taskTracker.getStatus(taskId);
+        }, "getTaskStatus");
+    }
+
+    @Tool(description = AWAIT_TASK)
+    public TaskStatus awaitTask(
+            @ToolParam(description = TASK_PARAM) String taskId,
+            @ToolParam(description = "Maximum seconds to wait (optional, default 60)", required = false) Integer timeoutSeconds) {
+        if (!StringUtils.hasText(taskId)) {
+            throw new IllegalArgumentException("Task ID is required");
+        }
+
+        Duration timeout = Duration.ofSeconds(timeoutSeconds != null && timeoutSeconds > 0 ? timeoutSeconds : DEFAULT_AWAIT_SECONDS);
+        logger.info("Waiting up to {} for task: {}", timeout, taskId);
+        TaskStatus status = taskTracker.await(taskId, timeout);
+        logger.info("Task {} is {}", taskId, status.state());
+        return status;
+    }
+
+    @Tool(description = LIST_TRACKED_TASKS)
+    public List<TaskStatus> listTrackedTasks() {
+        return taskTracker.list();
+    }
+}
@@ -0,0 +1,386 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks Director tasks started in asynchronous mode.
+ * Each tracked task is polled on its own virtual thread with an adaptive interval: polling starts at
+ * {@code bosh.tasks.poll.minInterval}, doubles while the state is unchanged up to
+ * {@code bosh.tasks.poll.maxInterval}, and drops back to the minimum whenever the state changes.
+ * State comes from {@code GET /tasks/{id}} when the Director HTTP backend is enabled, and otherwise
+ * from {@code bosh tasks --recent}, which concurrent pollers share through invocation coalescing.
+ * Commands that may run several tasks, such as a {@code deploy} that uploads releases first, keep their
+ * CLI attached instead: the tracked task moves on to each task the CLI reports and finishes with the
+ * state the CLI reports for the last one.
+ */
+@Component
+public class BoshTaskTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshTaskTracker.class);
+
+    private static final Set<String> TERMINAL_STATES = Set.of("done", "error", "cancelled", "timeout");
+    private static final int MAX_POLL_FAILURES = 10;
+    private static final int MAX_LOOKUP_MISSES = 3;
+    private static final int LOOKUP_WINDOW = 1000;
+    private static final Set<String> TASK_FIELDS = Set.of("id", "state", "started_at", "deployment", "description", "result");
+
+    /**
+     * Snapshot of a Director task.
+     */
+    public record TaskStatus(String taskId, String state, String description, String deployment,
+                             String startedAt, String finishedAt, String result) {
+
+        /**
+         * Check whether the task has reached a terminal state.
+         */
+        public boolean finished() {
+            return isTerminal(state);
+        }
+    }
+
+    /**
+     * Check whether a Director task state is terminal ({@code done}, {@code error}, {@code cancelled} or {@code timeout}).
+     */
+    static boolean isTerminal(String state) {
+        return state != null && TERMINAL_STATES.contains(state);
+    }
+
+    private static final class TrackedTask {
+        private volatile String taskId;
+        private final String description;
+        private final String deployment;
+        private final String startedAt;
+        private final Runnable onFinish;
+        private final CompletableFuture<TaskStatus> completion = new CompletableFuture<>();
+        private volatile String state = "queued";
+        private volatile String result;
+        private volatile Instant finishedAt;
+
+        private TrackedTask(String taskId, String description, String deployment, String startedAt, Runnable onFinish) {
+            this.taskId = taskId;
+            this.description = description;
+            this.deployment = deployment;
+            this.startedAt = startedAt;
+            this.onFinish = onFinish;
+        }
+
+        private TaskStatus snapshot() {
+            return new TaskStatus(taskId, state, description, deployment, startedAt,
+                    finishedAt != null ? finishedAt.toString() : null, result);
+        }
+    }
+
+    private final BoshCliExecutor cliExecutor;
+    private final ObjectProvider<BoshDirectorHttpClient> directorHttpClient;
+    private final Duration minPollInterval;
+    private final Duration maxPollInterval;
+    private final Duration retention;
+    private final Duration maxAwait;
+    private final Map<String, TrackedTask> tasks = new ConcurrentHashMap<>();
+
+    public BoshTaskTracker(BoshCliExecutor cliExecutor,
+                           ObjectProvider<BoshDirectorHttpClient> directorHttpClient,
+                           @Value("${bosh.tasks.poll.minInterval:2}") int minPollIntervalSeconds,
+                           @Value("${bosh.tasks.poll.maxInterval:30}") int maxPollIntervalSeconds,
+                           @Value("${bosh.tasks.retention:3600}") int retentionSeconds,
+                           @Value("${bosh.tasks.maxAwait:300}") int maxAwaitSeconds) {
+        this.cliExecutor = cliExecutor;
+        this.directorHttpClient = directorHttpClient;
+        this.minPollInterval = Duration.ofSeconds(Math.max(1, minPollIntervalSeconds));
+        this.maxPollInterval = Duration.ofSeconds(Math.max(this.minPollInterval.toSeconds(), maxPollIntervalSeconds));
+        this.retention = Duration.ofSeconds(retentionSeconds);
+        this.maxAwait = Duration.ofSeconds(maxAwaitSeconds);
+    }
+
+    /**
+     * Start a command as a Director task without waiting for it, and track it in the background.
+     *
+     * @param command The BOSH command
+     * @param description Human-readable description of the operation
+     * @param onFinish Called once when the task reaches a terminal state (e.g., cache invalidation), or null
+     * @return The status of the newly started task
+     * @throws RuntimeException if the command fails before the Director starts a task
+     */
+    public TaskStatus start(String command, String description, Runnable onFinish) {
+        evictExpired();
+        if (BoshCliExecutor.runsSeveralTasks(command)) {
+            return startAttached(command, description, onFinish);
+        }
+        String taskId = cliExecutor.startTask(command);
+        TrackedTask task = new TrackedTask(taskId, description, BoshCommand.parse(command).deployment(),
+                Instant.now().toString(), onFinish);
+        tasks.put(taskId, task);
+        Thread.ofVirtual().name("bosh-task-" + taskId).start(() -> poll(task));
+        return task.snapshot();
+    }
+
+    /**
+     * Run a multi-task command with its CLI attached on a virtual thread, and return once it reports its first task.
+     * Later tasks are tracked under the same entry, which is also registered under their IDs.
+     */
+    private TaskStatus startAttached(String command, String description, Runnable onFinish) {
+        String deployment = BoshCommand.parse(command).deployment();
+        String startedAt = Instant.now().toString();
+        CompletableFuture<TrackedTask> started = new CompletableFuture<>();
+        Thread.ofVirtual().name("bosh-cli-task").start(() -> {
+            AtomicReference<TrackedTask> tracked = new AtomicReference<>();
+            try {
+                BoshCliExecutor.TaskOutcome outcome = cliExecutor.runTask(command, taskId -> {
+                    TrackedTask task = tracked.get();
+                    if (task == null) {
+                        task = new TrackedTask(taskId, description, deployment, startedAt, onFinish);
+                        tracked.set(task);
+                    } else {
+                        // A later task of the same command, e.g. the deploy after its release uploads
+                        logger.info("BOSH command '{}' moved on to Director task {}", command, taskId);
+                        task.taskId = taskId;
+                    }
+                    task.state = "processing";
+                    tasks.put(taskId, task);
+                    started.complete(task);
+                });
+                TrackedTask task = tracked.get();
+                if (task == null) {
+                    started.completeExceptionally(new RuntimeException("BOSH CLI command '"
+                            + BoshCommand.parse(command).subcommand() + "' finished without starting a Director task"));
+                    return;
+                }
+                // The CLI exited successfully, so a task it did not report a state for is done
+                task.state = outcome.state() != null ? outcome.state() : "done";
+                finish(task);
+            } catch (RuntimeException e) {
+                TrackedTask task = tracked.get();
+                if (task == null) {
+                    started.completeExceptionally(e);
+                    return;
+                }
+                task.state = "error";
+                task.result = e.getMessage();
+                finish(task);
+            }
+        });
+        try {
+            TrackedTask task = started.get();
+            logger.info("BOSH command '{}' started Director task {}", command, task.taskId);
+            return task.snapshot();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Failed to start BOSH command '" + command + "'", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while starting BOSH command '" + command + "'", e);
+        }
+    }
+
+    /**
+     * Get the current status of a task. Tracked tasks are answered from memory; others are polled once.
+     *
+     * @param taskId The Director task ID
+     * @return The task status
+     * @throws RuntimeException if the task is unknown to the Director
+     */
+    public TaskStatus getStatus(String taskId) {
+        TrackedTask task = tasks.get(taskId);
+        if (task != null) {
+            return task.snapshot();
+        }
+        TaskStatus status = fetch(taskId);
+        if (status == null) {
+            throw new RuntimeException("BOSH task " + taskId + " not found");
+        }
+        return status;
+    }
+
+    /**
+     * Wait until a task finishes or the timeout elapses, whichever comes first.
+     * Tasks that are not tracked yet (e.g., started outside this server) are adopted and polled.
+     *
+     * @param taskId The Director task ID
+     * @param timeout How long to wait, capped at {@code bosh.tasks.maxAwait}
+     * @return The final status, or the current one if the task is still running
+     */
+    public TaskStatus await(String taskId, Duration timeout) {
+        TrackedTask task = tasks.get(taskId);
+        if (task == null) {
+            TaskStatus status = getStatus(taskId);
+            if (status.finished()) {
+                return status;
+            }
+            task = adopt(status);
+        }
+
+        Duration wait = timeout.compareTo(maxAwait) > 0 ? maxAwait : timeout;
+        try {
+            return task.completion.get(wait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return task.snapshot();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to track BOSH task " + taskId, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for BOSH task " + taskId, e);
+        }
+    }
+
+    /**
+     * Whether a task has reached a terminal state. Unless it is tracked as finished, the Director is asked.
+     *
+     * @return false if the task is still running, or the Director does not know it or cannot be reached
+     */
+    boolean isFinished(String taskId) {
+        TrackedTask task = tasks.get(taskId);
+        if (task != null && task.finishedAt != null && isTerminal(task.state)) {
+            return true;
+        }
+        try {
+            TaskStatus status = fetch(taskId);
+            return status != null && status.finished();
+        } catch (RuntimeException e) {
+            logger.debug("Looking up BOSH task {} failed: {}", taskId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * List the tasks currently tracked, most recent first.
+     */
+    public List<TaskStatus> list() {
+        return tasks.values().stream()
+                .distinct()
+                .map(TrackedTask::snapshot)
+                .sorted(Comparator.comparing(TaskStatus::startedAt, Comparator.nullsLast(Comparator.reverseOrder())))
+                .toList();
+    }
+
+    private TrackedTask adopt(TaskStatus status) {
+        TrackedTask adopted = new TrackedTask(status.taskId(), status.description(), status.deployment(),
+                status.startedAt(), null);
+        adopted.state = status.state();
+        TrackedTask existing = tasks.putIfAbsent(status.taskId(), adopted);
+        if (existing != null) {
+            return existing;
+        }
+        Thread.ofVirtual().name("bosh-task-" + status.taskId()).start(() -> poll(adopted));
+        return adopted;
+    }
+
+    private void poll(TrackedTask task) {
+        Duration interval = minPollInterval;
+        int failures = 0;
+        int misses = 0;
+        while (true) {
+            try {
+                Thread.sleep(interval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            TaskStatus status;
+            try {
+                status = fetch(task.taskId);
+                failures = 0;
+                misses = status == null ? misses + 1 : 0;
+            } catch (RuntimeException e) {
+                // Transient Director or CLI failures only slow polling down
+                logger.debug("Polling BOSH task {} failed: {}", task.taskId, e.getMessage());
+                status = null;
+                failures++;
+            }
+
+            if (status != null && !Objects.equals(status.state(), task.state)) {
+                logger.debug("BOSH task {} is now {}", task.taskId, status.state());
+                task.state = status.state();
+                task.result = status.result();
+                interval = minPollInterval;
+            } else {
+                Duration doubled = interval.multipliedBy(2);
+                interval = doubled.compareTo(maxPollInterval) > 0 ? maxPollInterval : doubled;
+            }
+
+            if (status != null && status.finished()) {
+                finish(task);
+                return;
+            }
+            if (misses >= MAX_LOOKUP_MISSES || failures >= MAX_POLL_FAILURES) {
+                // The Director no longer lists the task, or cannot be reached
+                logger.warn("Lost track of BOSH task {} after {} failed poll(s); stopped tracking it", task.taskId,
+                        Math.max(misses, failures));
+                task.state = "unknown";
+                finish(task);
+                return;
+            }
+        }
+    }
+
+    private void finish(TrackedTask task) {
+        task.finishedAt = Instant.now();
+        logger.info("BOSH task {} ({}) finished: {}", task.taskId, task.description, task.state);
+        if (task.onFinish != null) {
+            try {
+                task.onFinish.run();
+            } catch (RuntimeException e) {
+                logger.warn("Finish callback for BOSH task {} failed: {}", task.taskId, e.getMessage());
+            }
+        }
+        task.completion.complete(task.snapshot());
+    }
+
+    /**
+     * Fetch a task from the Director. Without the HTTP backend the task is looked up in the recent
+     * task list, and if it is not there, among the last {@value #LOOKUP_WINDOW} tasks of all types.
+     *
+     * @return The task status, or null if the Director does not list it
+     */
+    private TaskStatus fetch(String taskId) {
+        BoshDirectorHttpClient httpClient = directorHttpClient.getIfAvailable();
+        if (httpClient != null) {
+            JsonNode task = httpClient.getTask(taskId);
+            long startedAt = task.path("started_at").asLong(0);
+            return new TaskStatus(taskId, task.path("state").asText(), task.path("description").asText(""),
+                    task.path("deployment").asText(""),
+                    startedAt > 0 ? Instant.ofEpochSecond(startedAt).toString() : null, null,
+                    task.path("result").asText(""));
+        }
+
+        // Unfiltered so identical concurrent polls share one CLI invocation
+        TaskStatus status = find(taskId, "tasks --recent");
+        return status != null ? status : find(taskId, "tasks --recent=" + LOOKUP_WINDOW + " --all");
+    }
+
+    private TaskStatus find(String taskId, String command) {
+        for (Map<String, String> row : cliExecutor.executeTableRows(command, TASK_FIELDS, null)) {
+            if (taskId.equals(row.get("id"))) {
+                return new TaskStatus(taskId, row.get("state"), row.get("description"), row.get("deployment"),
+                        row.get("started_at"), null, row.get("result"));
+            }
+        }
+        return null;
+    }
+
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        tasks.values().removeIf(task -> task.finishedAt != null && task.finishedAt.isBefore(cutoff));
+    }
+}
@@ -0,0 +1,67 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Timeout classes for BOSH commands: listings get {@code bosh.timeout.fast}, commands that run a
+ * Director task or move large files get {@code bosh.timeout.long}, and everything else gets
+ * {@code bosh.timeout.standard}, which defaults to {@code bosh.connection.timeout}.
+ */
+@Component
+public class BoshTimeouts {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshTimeouts.class);
+
+    /**
+     * How long a command is expected to take.
+     */
+    public enum TimeoutClass {
+        FAST, STANDARD, LONG
+    }
+
+    private final Map<TimeoutClass, Duration> timeouts = new HashMap<>();
+    private final Map<String, TimeoutClass> classes = new HashMap<>();
+
+    public BoshTimeouts(@Value("${bosh.timeout.fast:15}") int fastSeconds,
+                        @Value("${bosh.timeout.standard:${bosh.connection.timeout:60}}") int standardSeconds,
+                        @Value("${bosh.timeout.long:1800}") int longSeconds,
+                        @Value("${bosh.timeout.fastSubcommands:deployments,deployment,releases,stemcells,tasks,errands,instances,env,environment,locks,events,manifest,cloud-config}") String fastSubcommands,
+                        @Value("${bosh.timeout.longSubcommands:deploy,delete-deployment,recreate,restart,start,stop,run-errand,upload-stemcell,upload-release,delete-stemcell,delete-release,logs}") String longSubcommands) {
+        timeouts.put(TimeoutClass.FAST, Duration.ofSeconds(fastSeconds));
+        timeouts.put(TimeoutClass.STANDARD, Duration.ofSeconds(standardSeconds));
+        timeouts.put(TimeoutClass.LONG, Duration.ofSeconds(longSeconds));
+        assign(fastSubcommands, TimeoutClass.FAST);
+        assign(longSubcommands, TimeoutClass.LONG);
+        logger.info("BOSH command timeouts: fast {}, standard {}, long {}",
+                timeouts.get(TimeoutClass.FAST), timeouts.get(TimeoutClass.STANDARD), timeouts.get(TimeoutClass.LONG));
+    }
+
+    /**
+     * Get the timeout class of a command.
+     */
+    public TimeoutClass classOf(BoshCommand command) {
+        return classes.getOrDefault(command.subcommand(), TimeoutClass.STANDARD);
+    }
+
+    /**
+     * Get the timeout of a command.
+     */
+    public Duration timeout(BoshCommand command) {
+        return timeouts.get(classOf(command));
+    }
+
+    private void assign(String subcommands, TimeoutClass timeoutClass) {
+        for (String subcommand : subcommands.split(",")) {
+            if (!subcommand.isBlank()) {
+                classes.put(subcommand.trim(), timeoutClass);
+            }
+        }
+    }
+}
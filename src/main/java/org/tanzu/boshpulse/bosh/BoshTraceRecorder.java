@@ -0,0 +1,198 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory exporter for the {@code bosh.*} observations: each tool call becomes a span tree
+ * (tool, retry attempts, CLI invocations and their queue, spawn, wait and parse phases), and the
+ * last {@code bosh.tracing.maxTraces} trees are kept for the {@code boshtraces} Actuator endpoint.
+ * Observations without an enclosing tool call, such as background inventory refreshes, are not kept.
+ */
+@Component
+public class BoshTraceRecorder implements ObservationHandler<Observation.Context> {
+
+    static final String TOOL_OBSERVATION = "bosh.tool";
+
+    /**
+     * One finished span.
+     *
+     * @param name The phase: tool, attempt, cli, queue, spawn, wait or parse
+     * @param description The contextual name, e.g. the tool name or {@code vms spawn}
+     * @param tags The observation's key values
+     * @param start When the span started
+     * @param durationMs Wall-clock duration
+     * @param error The error message, if the span failed
+     * @param children Nested spans in start order
+     */
+    public record Span(String name, String description, Map<String, String> tags, String start, double durationMs,
+                       String error, List<Span> children) {
+    }
+
+    /**
+     * Latency of one phase across the kept traces.
+     *
+     * @param phase The phase
+     * @param count Number of spans
+     * @param totalMs Summed duration
+     * @param selfMs Summed duration not covered by child spans
+     * @param avgMs Mean duration
+     * @param maxMs Longest duration
+     */
+    public record PhaseStats(String phase, long count, double totalMs, double selfMs, double avgMs, double maxMs) {
+    }
+
+    private static final class Node {
+        final Instant start = Instant.now();
+        final long startNanos = System.nanoTime();
+        final List<Node> children = new ArrayList<>();
+        volatile Observation.ContextView context;
+        volatile long durationNanos;
+        volatile String error;
+    }
+
+    private final int maxTraces;
+    private final Deque<Span> traces = new ArrayDeque<>();
+
+    public BoshTraceRecorder(@Value("${bosh.tracing.maxTraces:200}") int maxTraces) {
+        this.maxTraces = maxTraces;
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context.getName() != null && context.getName().startsWith("bosh.");
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(Node.class, new Node());
+    }
+
+    @Override
+    public void onError(Observation.Context context) {
+        Node node = context.get(Node.class);
+        if (node != null && context.getError() != null) {
+            node.error = String.valueOf(context.getError().getMessage());
+        }
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Node node = context.get(Node.class);
+        if (node == null) {
+            return;
+        }
+        node.durationNanos = System.nanoTime() - node.startNanos;
+        node.context = context;
+        ObservationView parent = context.getParentObservation();
+        Node parentNode = parent != null ? parent.getContextView().get(Node.class) : null;
+        if (parentNode != null) {
+            synchronized (parentNode.children) {
+                parentNode.children.add(node);
+            }
+        } else if (TOOL_OBSERVATION.equals(context.getName())) {
+            Span trace = freeze(node);
+            synchronized (traces) {
+                traces.addFirst(trace);
+                if (traces.size() > maxTraces) {
+                    traces.removeLast();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the most recent traces, newest first.
+     *
+     * @param tool Only traces of this tool, or null for every tool
+     * @param limit Maximum number of traces
+     * @return The traces
+     */
+    public List<Span> traces(String tool, int limit) {
+        List<Span> result = new ArrayList<>();
+        synchronized (traces) {
+            for (Iterator<Span> it = traces.iterator(); it.hasNext() && result.size() < limit; ) {
+                Span trace = it.next();
+                if (tool == null || tool.equals(trace.description())) {
+                    result.add(trace);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Break the kept traces down by phase, outermost phase first.
+     *
+     * @param tool Only traces of this tool, or null for every tool
+     * @return Latency per phase
+     */
+    public List<PhaseStats> breakdown(String tool) {
+        Map<String, double[]> phases = new LinkedHashMap<>();
+        for (Span trace : traces(tool, Integer.MAX_VALUE)) {
+            accumulate(trace, phases);
+        }
+        List<PhaseStats> stats = new ArrayList<>(phases.size());
+        phases.forEach((phase, s) -> stats.add(new PhaseStats(phase, (long) s[0], round(s[1]), round(s[2]),
+                round(s[1] / s[0]), round(s[3]))));
+        return stats;
+    }
+
+    private static void accumulate(Span span, Map<String, double[]> phases) {
+        // [count, total, self, max]
+        double[] s = phases.computeIfAbsent(span.name(), k -> new double[4]);
+        double childMs = 0;
+        for (Span child : span.children()) {
+            childMs += child.durationMs();
+        }
+        s[0]++;
+        s[1] += span.durationMs();
+        // Parse overlaps wait, so children can add up to more than their parent
+        s[2] += Math.max(0, span.durationMs() - childMs);
+        s[3] = Math.max(s[3], span.durationMs());
+        for (Span child : span.children()) {
+            accumulate(child, phases);
+        }
+    }
+
+    private static Span freeze(Node node) {
+        Observation.ContextView context = node.context;
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (KeyValue keyValue : context.getAllKeyValues()) {
+            tags.put(keyValue.getKey(), keyValue.getValue());
+        }
+        List<Node> children;
+        synchronized (node.children) {
+            children = new ArrayList<>(node.children);
+        }
+        children.sort((a, b) -> Long.compare(a.startNanos, b.startNanos));
+        List<Span> spans = new ArrayList<>(children.size());
+        for (Node child : children) {
+            spans.add(freeze(child));
+        }
+        return new Span(phase(context, tags), context.getContextualName(), tags, node.start.toString(),
+                round(node.durationNanos / 1_000_000.0), node.error, spans);
+    }
+
+    private static String phase(Observation.ContextView context, Map<String, String> tags) {
+        String phase = tags.get("phase");
+        return phase != null ? phase : context.getName().substring("bosh.".length());
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,44 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint over the traces kept by {@link BoshTraceRecorder}:
+ * {@code /actuator/boshtraces} breaks all recent tool calls down by phase and lists the latest ones,
+ * {@code /actuator/boshtraces/{tool}} does the same for one tool.
+ */
+@Component
+@Endpoint(id = "boshtraces")
+public class BoshTracesEndpoint {
+
+    private static final int RECENT_TRACES = 20;
+
+    private final BoshTraceRecorder recorder;
+
+    public BoshTracesEndpoint(BoshTraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @ReadOperation
+    public Map<String, Object> traces() {
+        return report(null);
+    }
+
+    @ReadOperation
+    public Map<String, Object> tool(@Selector String tool) {
+        return report(tool);
+    }
+
+    private Map<String, Object> report(String tool) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("phases", recorder.breakdown(tool));
+        report.put("traces", recorder.traces(tool, RECENT_TRACES));
+        return report;
+    }
+}
@@ -1,61 +1,131 @@
 package org.tanzu.boshpulse.bosh;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.observation.Observation;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.tanzu.boshpulse.bosh.BoshPaginator.Page;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+import org.tanzu.boshpulse.bosh.BoshRowQuery.Listing;
+import org.tanzu.boshpulse.bosh.BoshTaskTracker.TaskStatus;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 @Service
 public class BoshVmService extends BoshBaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(BoshVmService.class);
 
-    private static final String LIST_VMS = "List all VMs in a BOSH deployment";
-    private static final String GET_VM_STATUS = "Get status and details of VMs in a BOSH deployment";
+    private static final String LIST_VMS = "List all VMs in a BOSH deployment. The full table is returned in table; pass fields and/or where to get only selected columns of matching VMs in rows instead";
+    private static final String GET_VM_STATUS = "Get status and details of VMs in a BOSH deployment. Large deployments are returned in pages; pass nextCursor to get the next page";
     private static final String START_VM = "Start a VM in a BOSH deployment";
     private static final String STOP_VM = "Stop a VM in a BOSH deployment";
     private static final String RESTART_VM = "Restart a VM in a BOSH deployment";
     private static final String RECREATE_VM = "Recreate a VM in a BOSH deployment";
+    private static final String SCAN_FLEET = "Scan the VMs of every BOSH deployment in parallel and return one health summary: VM counts by process state and the VMs that are not running. Each deployment's result is also sent as an MCP logging notification as soon as it completes";
+
+    private static final Set<String> FLEET_FIELDS = Set.of("instance", "process_state", "az", "ips", "vm_cid");
+
+    /**
+     * VM health of one deployment within a fleet scan.
+     *
+     * @param deployment The deployment name
+     * @param vms Number of VMs
+     * @param running Number of VMs whose processes are running
+     * @param notRunning The VMs whose process state is anything but running
+     * @param error Why the deployment could not be scanned, or null
+     */
+    public record DeploymentHealth(String deployment, int vms, int running, List<Map<String, String>> notRunning,
+                                   String error) {
+    }
+
+    /**
+     * Aggregated VM health of the fleet.
+     *
+     * @param deploymentsScanned Number of deployments scanned successfully
+     * @param deploymentsFailed Number of deployments that could not be scanned
+     * @param vms Number of VMs across the fleet
+     * @param running Number of VMs whose processes are running
+     * @param processStates VM counts by process state
+     * @param unhealthy Deployments with VMs that are not running or that could not be scanned
+     * @param elapsedMillis Wall-clock duration of the scan
+     */
+    public record FleetHealth(int deploymentsScanned, int deploymentsFailed, int vms, int running,
+                              Map<String, Integer> processStates, List<DeploymentHealth> unhealthy,
+                              long elapsedMillis) {
+    }
+
+    private final int fleetParallelism;
 
     public BoshVmService(BoshCliExecutor cliExecutor,
                          @Value("${bosh.retry.maxAttempts:3}") int maxRetries,
-                         @Value("${bosh.retry.delay:2}") int retryDelaySeconds) {
+                         @Value("${bosh.retry.delay:2}") int retryDelaySeconds,
+                         @Value("${bosh.fleet.parallelism:6}") int fleetParallelism) {
         super(cliExecutor, maxRetries, retryDelaySeconds);
+        this.fleetParallelism = Math.max(1, fleetParallelism);
     }
 
     @Tool(description = LIST_VMS)
-    public JsonNode listVms(@ToolParam(description = DEPLOYMENT_PARAM) String deploymentName) {
+    public Listing listVms(
+            @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
+            @ToolParam(description = FIELDS_PARAM, required = false) String fields,
+            @ToolParam(description = WHERE_PARAM, required = false) String where,
+            @ToolParam(description = FRESH_PARAM, required = false) Boolean fresh) {
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
         }
         
-        return executeWithRetry(() -> {
-            logger.info("Listing VMs for deployment: {}", deploymentName);
-            JsonNode result = cliExecutor.executeJson("vms -d " + deploymentName);
-            logger.info("Retrieved VM list for deployment: {}", deploymentName);
-            return result;
-        }, "listVms");
+        BoshRowQuery query = BoshRowQuery.parse(fields, where);
+        if (!query.isEmpty()) {
+            return Listing.ofRows(fromInventory(Region.VMS, deploymentName, fresh, query::apply,
+                    () -> queried(Region.VMS, deploymentName, "vms -d " + deploymentName, query, "listVms")));
+        }
+        return Listing.ofTable(fromInventory(Region.VMS, deploymentName, fresh, listing -> listing,
+                () -> cached(Region.VMS, deploymentName, () -> executeWithRetry(() -> {
+                    logger.info("Listing VMs for deployment: {}", deploymentName);
+                    JsonNode result = cliExecutor.executeJson("vms -d " + deploymentName);
+                    logger.info("Retrieved VM list for deployment: {}", deploymentName);
+                    return result;
+                }, "listVms"))));
     }
 
     @Tool(description = GET_VM_STATUS)
-    public JsonNode getVmStatus(@ToolParam(description = DEPLOYMENT_PARAM) String deploymentName) {
+    public Page<Map<String, String>> getVmStatus(
+            @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
+            @ToolParam(description = CURSOR_PARAM, required = false) String cursor,
+            @ToolParam(description = PAGE_SIZE_PARAM, required = false) Integer pageSize) {
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
         }
         
-        return executeWithRetry(() -> {
+        return paged("getVmStatus:" + deploymentName, cursor, pageSize, () -> executeWithRetry(() -> {
             logger.info("Getting VM status for deployment: {}", deploymentName);
-            JsonNode result = cliExecutor.executeJson("vms -d " + deploymentName + " --details");
-            logger.info("Retrieved VM status for deployment: {}", deploymentName);
-            return result;
-        }, "getVmStatus");
+            List<Map<String, String>> rows = cliExecutor.executeTableRows("vms -d " + deploymentName + " --details", null, null);
+            logger.info("Retrieved VM status for {} VMs in deployment: {}", rows.size(), deploymentName);
+            return rows;
+        }, "getVmStatus"));
     }
 
     @Tool(description = START_VM)
@@ -71,16 +141,20 @@ public class BoshVmService extends BoshBaseService {
             throw new IllegalArgumentException("Instance group is required");
         }
         
-        executeWithRetry(() -> {
-            String command = "start -d " + deploymentName + " " + instanceGroup;
-            if (StringUtils.hasText(instanceId)) {
-                command += "/" + instanceId;
-            }
-            logger.info("Starting VM: {} in deployment: {}", instanceGroup, deploymentName);
-            cliExecutor.execute(command);
-            logger.info("VM {} started successfully", instanceGroup);
-            return null;
-        }, "startVm");
+        try {
+            executeWithRetry(() -> {
+                String command = "start -d " + deploymentName + " " + instanceGroup;
+                if (StringUtils.hasText(instanceId)) {
+                    command += "/" + instanceId;
+                }
+                logger.info("Starting VM: {} in deployment: {}", instanceGroup, deploymentName);
+                cliExecutor.execute(command);
+                logger.info("VM {} started successfully", instanceGroup);
+                return null;
+            }, "startVm");
+        } finally {
+            invalidate(Region.VMS, deploymentName);
+        }
     }
 
     @Tool(description = STOP_VM)
@@ -96,16 +170,20 @@ public class BoshVmService extends BoshBaseService {
             throw new IllegalArgumentException("Instance group is required");
         }
         
-        executeWithRetry(() -> {
-            String command = "stop -d " + deploymentName + " " + instanceGroup;
-            if (StringUtils.hasText(instanceId)) {
-                command += "/" + instanceId;
-            }
-            logger.info("Stopping VM: {} in deployment: {}", instanceGroup, deploymentName);
-            cliExecutor.execute(command);
-            logger.info("VM {} stopped successfully", instanceGroup);
-            return null;
-        }, "stopVm");
+        try {
+            executeWithRetry(() -> {
+                String command = "stop -d " + deploymentName + " " + instanceGroup;
+                if (StringUtils.hasText(instanceId)) {
+                    command += "/" + instanceId;
+                }
+                logger.info("Stopping VM: {} in deployment: {}", instanceGroup, deploymentName);
+                cliExecutor.execute(command);
+                logger.info("VM {} stopped successfully", instanceGroup);
+                return null;
+            }, "stopVm");
+        } finally {
+            invalidate(Region.VMS, deploymentName);
+        }
     }
 
     @Tool(description = RESTART_VM)
@@ -121,23 +199,28 @@ public class BoshVmService extends BoshBaseService {
             throw new IllegalArgumentException("Instance group is required");
         }
         
-        executeWithRetry(() -> {
-            String command = "restart -d " + deploymentName + " " + instanceGroup;
-            if (StringUtils.hasText(instanceId)) {
-                command += "/" + instanceId;
-            }
-            logger.info("Restarting VM: {} in deployment: {}", instanceGroup, deploymentName);
-            cliExecutor.execute(command);
-            logger.info("VM {} restarted successfully", instanceGroup);
-            return null;
-        }, "restartVm");
+        try {
+            executeWithRetry(() -> {
+                String command = "restart -d " + deploymentName + " " + instanceGroup;
+                if (StringUtils.hasText(instanceId)) {
+                    command += "/" + instanceId;
+                }
+                logger.info("Restarting VM: {} in deployment: {}", instanceGroup, deploymentName);
+                cliExecutor.execute(command);
+                logger.info("VM {} restarted successfully", instanceGroup);
+                return null;
+            }, "restartVm");
+        } finally {
+            invalidate(Region.VMS, deploymentName);
+        }
     }
 
     @Tool(description = RECREATE_VM)
-    public void recreateVm(
+    public TaskStatus recreateVm(
             @ToolParam(description = DEPLOYMENT_PARAM) String deploymentName,
             @ToolParam(description = "Instance group/job name") String instanceGroup,
-            @ToolParam(description = "Instance ID (optional)", required = false) String instanceId) {
+            @ToolParam(description = "Instance ID (optional)", required = false) String instanceId,
+            @ToolParam(description = ASYNC_PARAM, required = false) Boolean async) {
         
         if (!StringUtils.hasText(deploymentName)) {
             throw new IllegalArgumentException("Deployment name is required");
@@ -146,15 +229,139 @@ public class BoshVmService extends BoshBaseService {
             throw new IllegalArgumentException("Instance group is required");
         }
         
-        executeWithRetry(() -> {
-            String command = "recreate -d " + deploymentName + " " + instanceGroup;
-            if (StringUtils.hasText(instanceId)) {
-                command += "/" + instanceId;
+        String instance = StringUtils.hasText(instanceId) ? instanceGroup + "/" + instanceId : instanceGroup;
+        String command = "recreate -d " + deploymentName + " " + instance;
+        String description = "Recreate " + instance + " in deployment " + deploymentName;
+        Runnable invalidation = () -> invalidate(Region.VMS, deploymentName);
+        if (Boolean.TRUE.equals(async)) {
+            logger.info("Starting recreate of VM: {} in deployment: {}", instanceGroup, deploymentName);
+            return startTask(command, description, "recreateVm", invalidation);
+        }
+        
+        try {
+            return executeWithRetry(() -> {
+                logger.info("Recreating VM: {} in deployment: {}", instanceGroup, deploymentName);
+                String output = cliExecutor.execute(command);
+                logger.info("VM {} recreated successfully", instanceGroup);
+                return completedTask(output, description, deploymentName);
+            }, "recreateVm");
+        } finally {
+            invalidation.run();
+        }
+    }
+
+    @Tool(description = SCAN_FLEET)
+    public FleetHealth scanFleet(
+            @ToolParam(description = "Comma separated deployments to scan (optional, default every deployment)", required = false) String deployments,
+            ToolContext toolContext) {
+        List<String> names = new ArrayList<>();
+        if (StringUtils.hasText(deployments)) {
+            for (String name : deployments.split(",")) {
+                if (StringUtils.hasText(name)) {
+                    names.add(name.trim());
+                }
             }
-            logger.info("Recreating VM: {} in deployment: {}", instanceGroup, deploymentName);
-            cliExecutor.execute(command);
-            logger.info("VM {} recreated successfully", instanceGroup);
-            return null;
-        }, "recreateVm");
+        } else {
+            for (Map<String, String> row : executeWithRetry(
+                    () -> cliExecutor.executeTableRows("deployments", Set.of("name"), null), "scanFleet")) {
+                names.add(row.get("name"));
+            }
+        }
+
+        Optional<McpSyncServerExchange> exchange = toolContext != null
+                ? McpToolUtils.getMcpExchange(toolContext) : Optional.empty();
+        logger.info("Scanning VMs of {} deployments, {} at a time", names.size(), fleetParallelism);
+        long started = System.nanoTime();
+        List<DeploymentHealth> results = new ArrayList<>(names.size());
+        // Permits rather than a fixed pool: each scan parks a virtual thread on the CLI, so only the fan-out needs bounding
+        Semaphore permits = new Semaphore(fleetParallelism);
+        Observation scan = currentObservation();
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bosh-fleet-", 0).factory())) {
+            CompletionService<DeploymentHealth> completion = new ExecutorCompletionService<>(executor);
+            for (String name : names) {
+                Supplier<DeploymentHealth> task = BoshDeadline.propagate(
+                        () -> Observation.tryScoped(scan, () -> scanDeployment(name)));
+                completion.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return task.get();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            for (int i = 0; i < names.size(); i++) {
+                DeploymentHealth health = completion.take().get();
+                results.add(health);
+                exchange.ifPresent(e -> e.loggingNotification(new McpSchema.LoggingMessageNotification(
+                        health.error() != null || !health.notRunning().isEmpty()
+                                ? McpSchema.LoggingLevel.WARNING : McpSchema.LoggingLevel.INFO,
+                        "bosh.fleet", progress(results.size(), names.size(), health))));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Fleet scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Fleet scan failed: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        FleetHealth fleet = summarize(results, (System.nanoTime() - started) / 1_000_000);
+        logger.info("Scanned {} deployments ({} failed): {} of {} VMs running in {} ms", fleet.deploymentsScanned(),
+                fleet.deploymentsFailed(), fleet.running(), fleet.vms(), fleet.elapsedMillis());
+        return fleet;
+    }
+
+    private DeploymentHealth scanDeployment(String deployment) {
+        try {
+            List<Map<String, String>> rows = executeWithRetry(() -> cliExecutor.executeTableRows(
+                    "vms -d " + deployment + " --details", FLEET_FIELDS, null), "scanFleet");
+            List<Map<String, String>> notRunning = new ArrayList<>();
+            for (Map<String, String> row : rows) {
+                if (!"running".equals(row.get("process_state"))) {
+                    notRunning.add(row);
+                }
+            }
+            return new DeploymentHealth(deployment, rows.size(), rows.size() - notRunning.size(), notRunning, null);
+        } catch (RuntimeException e) {
+            // One unreachable deployment must not sink the whole scan
+            return new DeploymentHealth(deployment, 0, 0, List.of(), e.getMessage());
+        }
+    }
+
+    private static String progress(int done, int total, DeploymentHealth health) {
+        String prefix = "[" + done + "/" + total + "] " + health.deployment() + ": ";
+        if (health.error() != null) {
+            return prefix + "scan failed: " + health.error();
+        }
+        return prefix + health.running() + "/" + health.vms() + " VMs running"
+                + (health.notRunning().isEmpty() ? "" : ", not running: " + health.notRunning().stream()
+                        .map(row -> row.get("instance") + " (" + row.get("process_state") + ")").toList());
+    }
+
+    private static FleetHealth summarize(List<DeploymentHealth> results, long elapsedMillis) {
+        int failed = 0;
+        int vms = 0;
+        int running = 0;
+        Map<String, Integer> processStates = new TreeMap<>();
+        List<DeploymentHealth> unhealthy = new ArrayList<>();
+        for (DeploymentHealth health : results) {
+            if (health.error() != null) {
+                failed++;
+            }
+            vms += health.vms();
+            running += health.running();
+            if (health.running() > 0) {
+                processStates.merge("running", health.running(), Integer::sum);
+            }
+            for (Map<String, String> row : health.notRunning()) {
+                String state = row.get("process_state");
+                processStates.merge(StringUtils.hasText(state) ? state : "unknown", 1, Integer::sum);
+            }
+            if (health.error() != null || !health.notRunning().isEmpty()) {
+                unhealthy.add(health);
+            }
+        }
+        unhealthy.sort(Comparator.comparing(DeploymentHealth::deployment));
+        return new FleetHealth(results.size() - failed, failed, vms, running, processStates, unhealthy, elapsedMillis);
     }
 }
@@ -0,0 +1,170 @@
+package org.tanzu.boshpulse;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures how many long-running tool calls one instance runs concurrently, with request handling
+ * on platform threads and on virtual threads. Every call blocks in a fake BOSH CLI for a few seconds.
+ * Run with {@code ./mvnw test -Dtest=BoshToolConcurrencyLoadTest -DloadTest=true}.
+ */
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class BoshToolConcurrencyLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoshToolConcurrencyLoadTest.class);
+
+    private static final int CALLS = Integer.getInteger("loadTest.calls", 600);
+    private static final int CLI_SECONDS = Integer.getInteger("loadTest.cliSeconds", 20);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConcurrentLongRunningToolCalls() throws Exception {
+        Path cli = tempDir.resolve("bosh");
+        Path running = Files.createDirectories(tempDir.resolve("running"));
+        Files.writeString(cli, """
+            #!/bin/sh
+            case "$*" in *--version*) echo "version 7.9.5"; exit 0;; esac
+            case "$*" in *vms*) touch %1$s/$$; sleep %2$d; rm -f %1$s/$$;; esac
+            echo '{"Tables":[{"Rows":[]}]}'
+            """.formatted(running, CLI_SECONDS));
+        assertTrue(cli.toFile().setExecutable(true));
+
+        Result platform = run(cli, running, false);
+        Result virtual = run(cli, running, true);
+
+        logger.info("{} concurrent listVms calls, CLI blocks {}s per call", CALLS, CLI_SECONDS);
+        for (Result result : List.of(platform, virtual)) {
+            logger.info("{}: peak {} CLI processes in flight, {}/{} succeeded, wall {}s, mean concurrency {}",
+                    result.mode(), result.peak(), result.succeeded(), CALLS, String.format("%.1f", result.wallSeconds()),
+                    Math.round(CALLS * CLI_SECONDS / result.wallSeconds()));
+        }
+
+        assertEquals(CALLS, virtual.succeeded());
+        assertTrue(virtual.peak() > platform.peak());
+        assertTrue(virtual.wallSeconds() < platform.wallSeconds());
+    }
+
+    private record Result(String mode, int peak, int succeeded, double wallSeconds) {
+    }
+
+    private Result run(Path cli, Path running, boolean virtualThreads) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BoshPulseMcpApplication.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--bosh.director=127.0.0.1",
+                        "--bosh.client=admin",
+                        "--bosh.clientSecret=secret",
+                        "--bosh.cliPath=" + cli,
+                        "--bosh.cli.install.enabled=false",
+                        "--bosh.cache.enabled=false",
+                        "--bosh.inventory.enabled=false",
+                        "--bosh.scheduler.read.maxConcurrent=" + CALLS,
+                        "--bosh.scheduler.read.maxQueue=" + CALLS,
+                        "--bosh.scheduler.maxWait=300",
+                        "--bosh.connection.timeout=300",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.tanzu.boshpulse.BoshToolConcurrencyLoadTest=INFO",
+                        "--logging.level.io.modelcontextprotocol=WARN",
+                        "--logging.level.org.springframework.ai.mcp=WARN");
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI endpoint = URI.create("http://localhost:" + port + "/mcp");
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            String sessionId = initialize(client, endpoint);
+
+            AtomicBoolean sampling = new AtomicBoolean(true);
+            AtomicInteger peak = new AtomicInteger();
+            // A platform thread, so pinned carriers cannot starve the sampler
+            Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+                while (sampling.get()) {
+                    try (Stream<Path> files = Files.list(running)) {
+                        peak.accumulateAndGet((int) files.count(), Math::max);
+                        Thread.sleep(100);
+                    } catch (IOException | InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+
+            long start = System.nanoTime();
+            List<Future<Boolean>> calls = new ArrayList<>();
+            try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < CALLS; i++) {
+                    String body = """
+                        {"jsonrpc":"2.0","id":%d,"method":"tools/call","params":{"name":"listVms","arguments":{"deploymentName":"dep-%d"}}}
+                        """.formatted(i + 10, i);
+                    calls.add(callers.submit(() -> post(client, endpoint, sessionId, body).contains("\"isError\":false")));
+                }
+            }
+            double wallSeconds = (System.nanoTime() - start) / 1e9;
+            sampling.set(false);
+            sampler.join();
+
+            int succeeded = 0;
+            for (Future<Boolean> call : calls) {
+                if (call.state() == Future.State.SUCCESS && call.resultNow()) {
+                    succeeded++;
+                }
+            }
+            return new Result(virtualThreads ? "virtual threads" : "platform threads", peak.get(), succeeded, wallSeconds);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static String initialize(HttpClient client, URI endpoint) throws Exception {
+        HttpResponse<String> response = client.send(request(endpoint, null, """
+            {"jsonrpc":"2.0","id":1,"method":"initialize","params":{"protocolVersion":"2025-03-26","capabilities":{},"clientInfo":{"name":"load-test","version":"1"}}}
+            """), HttpResponse.BodyHandlers.ofString());
+        String sessionId = response.headers().firstValue("Mcp-Session-Id").orElseThrow();
+        post(client, endpoint, sessionId, "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}");
+        return sessionId;
+    }
+
+    private static String post(HttpClient client, URI endpoint, String sessionId, String body) throws Exception {
+        return client.send(request(endpoint, sessionId, body), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static HttpRequest request(URI endpoint, String sessionId, String body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(endpoint)
+                .timeout(Duration.ofMinutes(5))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json, text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (sessionId != null) {
+            builder.header("Mcp-Session-Id", sessionId);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,84 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.server.McpSyncServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.tanzu.boshpulse.bosh.BoshChangeFeed.ChangeEvent;
+import org.tanzu.boshpulse.bosh.BoshChangeFeed.ChangePage;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class BoshChangeFeedTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testPublish_RecordsVmAndStemcellChanges() throws Exception {
+        // Given: A feed and two fetches of a deployment's VMs and of the stemcells
+        @SuppressWarnings("unchecked")
+        BoshChangeFeed feed = new BoshChangeFeed(100, 100, mock(ObjectProvider.class));
+        JsonNode vmsBefore = table("{\"instance\": \"router/a1\", \"process_state\": \"running\", \"vm_cid\": \"vm-1\"}",
+                "{\"instance\": \"router/b2\", \"process_state\": \"running\", \"vm_cid\": \"vm-2\"}");
+        JsonNode vmsAfter = table("{\"instance\": \"router/a1\", \"process_state\": \"failing\", \"vm_cid\": \"vm-1\"}",
+                "{\"instance\": \"router/c3\", \"process_state\": \"running\", \"vm_cid\": \"vm-3\"}");
+        JsonNode stemcellsBefore = table("{\"name\": \"ubuntu-jammy\", \"version\": \"1.1*\"}");
+        JsonNode stemcellsAfter = table("{\"name\": \"ubuntu-jammy\", \"version\": \"1.1\"}",
+                "{\"name\": \"ubuntu-jammy\", \"version\": \"1.2\"}");
+
+        // When: Publishing both changes
+        feed.publish(Region.VMS, "cf", vmsBefore, vmsAfter);
+        feed.publish(Region.STEMCELLS, "", stemcellsBefore, stemcellsAfter);
+        ChangePage page = feed.since(0, 0);
+
+        // Then: State transitions, instance churn and new versions are reported; a dropped '*' is not a change
+        assertEquals(List.of("vm_state router/a1 running>failing", "instance_added router/c3 null>running",
+                        "instance_removed router/b2 running>null", "stemcell_added ubuntu-jammy/1.2 null>null"),
+                page.changes().stream().map(BoshChangeFeedTest::describe).toList());
+        assertEquals("cf", page.changes().get(0).deployment());
+        assertEquals(4, page.cursor());
+        assertFalse(page.truncated());
+    }
+
+    @Test
+    void testSince_PagesWithCursorsAndReportsDroppedChanges() throws Exception {
+        // Given: A feed that keeps three events, after five VM CID changes
+        @SuppressWarnings("unchecked")
+        ObjectProvider<McpSyncServer> server = mock(ObjectProvider.class);
+        BoshChangeFeed feed = new BoshChangeFeed(3, 2, server);
+        for (int i = 0; i < 5; i++) {
+            feed.publish(Region.VMS, "cf", table("{\"instance\": \"db/0\", \"vm_cid\": \"vm-" + i + "\"}"),
+                    table("{\"instance\": \"db/0\", \"vm_cid\": \"vm-" + (i + 1) + "\"}"));
+        }
+
+        // When: Reading from the start, then from the returned cursor
+        ChangePage first = feed.since(0, 10);
+        ChangePage second = feed.since(first.cursor(), 10);
+
+        // Then: Pages are capped, dropped events are flagged, and the cursor resumes where the last page ended
+        assertTrue(first.truncated());
+        assertEquals(List.of(3L, 4L), first.changes().stream().map(ChangeEvent::sequence).toList());
+        assertEquals(List.of(5L), second.changes().stream().map(ChangeEvent::sequence).toList());
+        assertFalse(second.truncated());
+        assertTrue(feed.since(second.cursor(), 10).changes().isEmpty());
+
+        // Then: The latest page holds the newest events, with a cursor at the end of the log
+        ChangePage latest = feed.latest(0);
+        assertEquals(List.of(4L, 5L), latest.changes().stream().map(ChangeEvent::sequence).toList());
+        assertEquals(5, latest.cursor());
+        assertTrue(latest.truncated());
+    }
+
+    private static String describe(ChangeEvent event) {
+        return event.type() + " " + event.subject() + " " + event.from() + ">" + event.to();
+    }
+
+    private static JsonNode table(String... rows) throws Exception {
+        return objectMapper.readTree("{\"Tables\": [{\"Rows\": [" + String.join(",", rows) + "]}]}");
+    }
+}
@@ -0,0 +1,131 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshCliConfigTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testExecute_UsesCachedTokenInsteadOfClientCredentials() throws IOException {
+        // Given: A UAA Director and an executor whose CLI prints its config and client
+        String director = startDirector("uaa", 3600);
+        BoshCliExecutor executor = executorFor(director);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoshCliConfig cliConfig = new BoshCliConfig(executor, tempDir.resolve("config").toString(), 120, 5, registry);
+        executor.setCliConfig(cliConfig);
+
+        // When: A token is fetched and a command runs
+        Duration next = cliConfig.refresh();
+        String output = executor.execute("env");
+
+        // Then: The CLI runs against the managed config without the client credentials
+        assertEquals(Duration.ofSeconds(3480), next);
+        assertEquals(cliConfig.getConfigFile() + ":", output);
+        String config = Files.readString(cliConfig.getConfigFile());
+        assertTrue(config.contains("\"access_token\" : \"tok\""));
+        assertTrue(config.contains("\"alias\" : \"" + director + "\""));
+        assertEquals(1, tokenRequests.get());
+        assertEquals(1, registry.counter("bosh.uaa.token.reused").count());
+        assertEquals(1, registry.timer("bosh.uaa.token.fetches", "outcome", "success").count());
+    }
+
+    @Test
+    void testExecute_FallsBackWhenTokenIsAboutToExpire() throws IOException {
+        // Given: A UAA Director issuing tokens that are nearly expired
+        String director = startDirector("uaa", 10);
+        BoshCliExecutor executor = executorFor(director);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoshCliConfig cliConfig = new BoshCliConfig(executor, tempDir.resolve("config").toString(), 120, 5, registry);
+        executor.setCliConfig(cliConfig);
+
+        // When: A token is fetched and a command runs
+        cliConfig.refresh();
+        String output = executor.execute("env");
+
+        // Then: The CLI authenticates with the client credentials itself, and the miss is counted
+        assertEquals(":admin", output);
+        assertEquals(1, registry.counter("bosh.uaa.token.missed").count());
+        assertEquals(0, registry.counter("bosh.uaa.token.reused").count());
+    }
+
+    @Test
+    void testExecute_KeepsClientCredentialsForCommandsThatMayOutliveTheToken() throws IOException {
+        // Given: A token valid for an hour, and deploys that may run for two
+        String director = startDirector("uaa", 3600);
+        BoshCliExecutor executor = executorFor(director);
+        executor.setTimeouts(new BoshTimeouts(15, 60, 7200, "cloud-config", "deploy"));
+        BoshCliConfig cliConfig = new BoshCliConfig(executor, tempDir.resolve("config").toString(), 120, 5,
+                new SimpleMeterRegistry());
+        executor.setCliConfig(cliConfig);
+        cliConfig.refresh();
+
+        // When: A standard command, a deploy and a streaming command run
+        String standard = executor.execute("env");
+        String deploy = executor.execute("deploy -d cf");
+        Process process = executor.startStreaming("logs -d cf --follow");
+        String streaming = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        // Then: Only the standard command uses the token; the others authenticate with the client credentials
+        assertEquals(cliConfig.getConfigFile() + ":", standard);
+        assertEquals(":admin", deploy);
+        assertEquals(":admin", streaming);
+    }
+
+    private String startDirector(String authType, int expiresIn) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        server.createContext("/info", exchange -> respond(exchange,
+                "{\"user_authentication\":{\"type\":\"" + authType + "\",\"options\":{\"url\":\"" + url + "\"}}}"));
+        server.createContext("/oauth/token", exchange -> {
+            tokenRequests.incrementAndGet();
+            respond(exchange, "{\"access_token\":\"tok\",\"token_type\":\"bearer\",\"expires_in\":" + expiresIn + "}");
+        });
+        server.start();
+        return url;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private BoshCliExecutor executorFor(String director) throws IOException {
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\nprintf '%s:%s' \"$BOSH_CONFIG\" \"$BOSH_CLIENT\"\n");
+        assertTrue(cli.toFile().setExecutable(true));
+        return new BoshCliExecutor(director, "admin", "secret", "", "",
+                cli.toString(), 10, new BoshEnvConfigReader());
+    }
+}
@@ -0,0 +1,153 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshCliExecutorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testExecute_ChattyStderrDoesNotDeadlock() throws IOException {
+        // Given: A CLI that fills the stderr pipe before writing stdout
+        BoshCliExecutor executor = executorFor("""
+            head -c 1048576 /dev/zero | tr '\\0' 'x' >&2
+            echo '{"Tables":[]}'
+            """, 10);
+
+        // When/Then: Output is returned instead of blocking until the timeout
+        assertEquals("{\"Tables\":[]}", executor.execute("deployments --json"));
+    }
+
+    @Test
+    void testExecute_HungProcessIsKilledAtDeadline() throws IOException {
+        // Given: A CLI that never exits
+        BoshCliExecutor executor = executorFor("sleep 30", 1);
+
+        // When: Executing a command
+        long start = System.nanoTime();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> executor.execute("deployments"));
+
+        // Then: The deadline fires and the process tree is killed
+        assertTrue(e.getMessage().contains("timed out"));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 10_000);
+        assertTrue(executor.getKilledProcessCount() >= 1);
+    }
+
+    @Test
+    void testExecute_FailureReportsStderr() throws IOException {
+        // Given: A CLI that fails
+        BoshCliExecutor executor = executorFor("echo 'Director unreachable' >&2; exit 1", 10);
+
+        // When/Then: The error message carries stderr
+        RuntimeException e = assertThrows(RuntimeException.class, () -> executor.execute("deployments"));
+        assertTrue(e.getMessage().contains("Director unreachable"));
+    }
+
+    @Test
+    void testExecute_CoalescesIdenticalReadOnlyCommands() throws Exception {
+        // Given: A slow CLI that records each invocation
+        Path invocations = tempDir.resolve("invocations");
+        BoshCliExecutor executor = executorFor("echo x >> " + invocations + "; sleep 1; echo ok", 10);
+
+        // When: Identical reads and identical mutations run concurrently
+        runConcurrently(5, () -> executor.execute("vms -d cf  --details"));
+        long reads = Files.readAllLines(invocations).size();
+        runConcurrently(3, () -> executor.execute("recreate -d cf router"));
+        long total = Files.readAllLines(invocations).size();
+
+        // Then: Reads share one process, mutations each get their own
+        assertEquals(1, reads);
+        assertEquals(4, total);
+        assertEquals(4, executor.getCoalescedCount());
+    }
+
+    @Test
+    void testStartTask_DetachesOnceTaskIdIsReported() throws IOException {
+        // Given: A CLI that starts a task and then follows it for a long time
+        BoshCliExecutor executor = executorFor("""
+            echo 'Using environment director.example.com'
+            echo 'Task 4711'
+            sleep 30
+            """, 20);
+
+        // When: Starting the command as a task
+        long start = System.nanoTime();
+        String taskId = executor.startTask("recreate -d cf");
+
+        // Then: The task ID is returned without waiting for the CLI to finish
+        assertEquals("4711", taskId);
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 10_000);
+    }
+
+    @Test
+    void testRunTask_ReportsEveryTaskAndEndsWithTheLast() throws IOException {
+        // Given: A deploy that uploads a release as one task before running the deploy as another
+        BoshCliExecutor executor = executorFor("""
+            echo 'Task 41'
+            echo 'Task 41 | 10:00:00 | Extracting release: Extracting release (00:00:01)'
+            echo 'Task 41 done'
+            echo 'Task 42'
+            echo 'Task 42 | 10:00:05 | Preparing deployment: Preparing deployment (00:00:01)'
+            echo 'Task 42 error'
+            """, 10);
+        List<String> reported = new ArrayList<>();
+
+        // When: Running the deploy attached
+        BoshCliExecutor.TaskOutcome outcome = executor.runTask("deploy -d cf manifest.yml", reported::add);
+
+        // Then: Both tasks are reported, and the outcome is the last task in its real state
+        assertEquals(List.of("41", "42"), reported);
+        assertEquals(new BoshCliExecutor.TaskOutcome("42", "error"), outcome);
+        assertEquals(outcome, BoshCliExecutor.parseTaskOutcome(
+                "Task 41\nTask 41 done\nTask 42\nTask 42 | 10:00:05 | Preparing deployment\nTask 42 error\n"));
+        assertThrows(IllegalArgumentException.class, () -> executor.startTask("deploy -d cf manifest.yml"));
+    }
+
+    @Test
+    void testStartTask_FailsWhenNoTaskIsStarted() throws IOException {
+        // Given: A CLI that exits cleanly without starting a task
+        BoshCliExecutor executor = executorFor("echo 'Nothing to do'", 10);
+
+        // When/Then: Starting the command fails
+        RuntimeException e = assertThrows(RuntimeException.class, () -> executor.startTask("recreate -d cf"));
+        assertTrue(e.getMessage().contains("without starting a Director task"));
+    }
+
+    private static void runConcurrently(int callers, Runnable call) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                call.run();
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private BoshCliExecutor executorFor(String script, int timeoutSeconds) throws IOException {
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\n" + script);
+        assertTrue(cli.toFile().setExecutable(true));
+        return new BoshCliExecutor("director.example.com", "admin", "secret", "", "",
+                cli.toString(), timeoutSeconds, new BoshEnvConfigReader());
+    }
+}
@@ -0,0 +1,62 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoshCliMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testExecute_RecordsLatencyExitCodeAndStdoutBytes() throws IOException {
+        // Given: An instrumented CLI that prints 12 bytes and fails for mutations
+        MeterRegistry registry = new SimpleMeterRegistry();
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\nprintf 'hello world\\n'\ncase \"$3\" in recreate) exit 2;; esac\n");
+        assertTrue(cli.toFile().setExecutable(true));
+        BoshCliExecutor executor = new BoshCliExecutor("director.example.com", "admin", "secret", "", "",
+                cli.toString(), 10, new BoshEnvConfigReader());
+        executor.setMetrics(new BoshCliMetrics(registry));
+
+        // When: Running a successful read and a failing mutation
+        assertEquals("hello world", executor.execute("vms -d cf"));
+        assertThrows(RuntimeException.class, () -> executor.execute("recreate -d cf"));
+
+        // Then: Both are timed by subcommand and outcome, with exit codes and stdout size
+        assertEquals(1, registry.get("bosh.cli.invocations").tags("subcommand", "vms", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("bosh.cli.invocations").tags("subcommand", "recreate", "outcome", "failure").timer().count());
+        assertEquals(1, registry.get("bosh.cli.exits").tags("subcommand", "recreate", "code", "2").counter().count());
+        assertEquals(12, registry.get("bosh.cli.stdout").tags("subcommand", "vms").summary().totalAmount());
+        assertEquals(0, registry.get("bosh.cli.inflight").gauge().value());
+    }
+
+    @Test
+    void testExecuteWithRetry_CountsAttemptsAndRetries() {
+        // Given: A service whose first call fails with a transient error
+        MeterRegistry registry = new SimpleMeterRegistry();
+        BoshCliExecutor cliExecutor = mock(BoshCliExecutor.class);
+        when(cliExecutor.execute("cloud-config"))
+                .thenThrow(new BoshCommandException(BoshCommandException.Category.UNAVAILABLE, "connection refused"))
+                .thenReturn("azs: []");
+        BoshCloudConfigService service = new BoshCloudConfigService(cliExecutor, 3, 0);
+        service.setMetrics(new BoshCliMetrics(registry));
+
+        // When: Calling the tool
+        assertEquals("azs: []", service.getCloudConfig());
+
+        // Then: One failed and one successful attempt are timed, and one retry is counted
+        assertEquals(1, registry.get("bosh.operation.attempts").tags("operation", "getCloudConfig", "outcome", "failure").timer().count());
+        assertEquals(1, registry.get("bosh.operation.attempts").tags("operation", "getCloudConfig", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("bosh.operation.retries").tags("operation", "getCloudConfig").counter().count());
+    }
+}
@@ -0,0 +1,69 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.tanzu.boshpulse.bosh.BoshCommandScheduler.Lane;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshCommandSchedulerTest {
+
+    @Test
+    void testRun_SlowMutationDoesNotBlockReads() throws Exception {
+        BoshCommandScheduler scheduler = new BoshCommandScheduler(1, 1, 1, 0, 1, new SimpleMeterRegistry());
+        CountDownLatch deployRunning = new CountDownLatch(1);
+        CountDownLatch releaseDeploy = new CountDownLatch(1);
+
+        Thread deploy = Thread.ofVirtual().start(() -> scheduler.run(BoshCommand.parse("deploy -d cf m.yml"), () -> {
+            deployRunning.countDown();
+            await(releaseDeploy);
+            return null;
+        }));
+        deployRunning.await();
+
+        // A read still gets its own slot while the mutation lane is full
+        assertEquals("ok", scheduler.run(BoshCommand.parse("vms -d cf"), () -> "ok"));
+
+        // A second mutation finds no slot and no queue capacity
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> scheduler.run(BoshCommand.parse("recreate -d cf"), () -> "ok"));
+        assertTrue(e.getMessage().contains("rejected"));
+        assertEquals(1, scheduler.getRunningCount(Lane.MUTATION));
+
+        releaseDeploy.countDown();
+        deploy.join();
+        assertEquals(0, scheduler.getRunningCount(Lane.MUTATION));
+    }
+
+    @Test
+    void testRun_QueuedCallerRejectedAfterMaxWait() throws Exception {
+        BoshCommandScheduler scheduler = new BoshCommandScheduler(1, 4, 1, 1, 1, new SimpleMeterRegistry());
+        CountDownLatch readRunning = new CountDownLatch(1);
+        CountDownLatch releaseRead = new CountDownLatch(1);
+
+        Thread slowRead = Thread.ofVirtual().start(() -> scheduler.run(BoshCommand.parse("deployments"), () -> {
+            readRunning.countDown();
+            await(releaseRead);
+            return null;
+        }));
+        readRunning.await();
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> scheduler.run(BoshCommand.parse("stemcells"), () -> "ok"));
+        assertTrue(e.getMessage().contains("within 1 seconds"));
+        assertEquals(0, scheduler.getQueueDepth(Lane.READ));
+
+        releaseRead.countDown();
+        slowRead.join();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoshConfigWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testExecute_UsesPrecomputedTemplateUntilReloaded() throws IOException {
+        // Given: An executor whose CLI prints the CA certificate it was given
+        Path ca = tempDir.resolve("ca.pem");
+        Files.writeString(ca, "first-ca\n");
+        BoshCliExecutor executor = executorFor(ca, "printf '%s' \"$BOSH_CA_CERT\"\n");
+
+        // When: The certificate file is deleted between invocations
+        Files.delete(ca);
+
+        // Then: Invocations keep the certificate read at startup, and a reload only swaps the template on a change
+        assertEquals("first-ca", executor.execute("env"));
+        BoshCliExecutor.InvocationTemplate template = executor.getInvocationTemplate();
+        assertTrue(template.arguments().contains("--ca-cert"));
+        Files.writeString(ca, "first-ca");
+        assertFalse(executor.reload());
+        assertSame(template, executor.getInvocationTemplate());
+        Files.writeString(ca, "second-ca");
+        assertTrue(executor.reload());
+        assertEquals("second-ca", executor.execute("env"));
+    }
+
+    @Test
+    void testWatcher_ReloadsWhenCertificateIsReplaced() throws IOException, InterruptedException {
+        // Given: A watcher on the CA certificate file
+        Path ca = tempDir.resolve("ca.pem");
+        Files.writeString(ca, "first-ca");
+        BoshCliExecutor executor = executorFor(ca, "exit 0\n");
+        BoshConfigWatcher watcher = new BoshConfigWatcher(executor, new BoshEnvConfigReader(), ca.toString(), true, 50);
+        watcher.start();
+
+        try {
+            // When: The certificate is rotated by writing a new file and moving it into place
+            Path rotated = tempDir.resolve("ca.pem.new");
+            Files.writeString(rotated, "second-ca");
+            Files.move(rotated, ca, StandardCopyOption.REPLACE_EXISTING);
+
+            // Then: The executor picks up the new certificate without a restart
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (!"second-ca".equals(executor.getInvocationTemplate().caCert()) && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals("second-ca", executor.getInvocationTemplate().caCert());
+            assertEquals("second-ca", executor.getInvocationTemplate().environment().get("BOSH_CA_CERT"));
+        } finally {
+            watcher.shutdown();
+        }
+    }
+
+    @Test
+    void testReload_OverwritesOneManagedCaFile() throws IOException {
+        // Given: CA certificate content from the .env folder that is rotated once
+        BoshEnvConfigReader envConfigReader = mock(BoshEnvConfigReader.class);
+        when(envConfigReader.getCaCert()).thenReturn("first-ca", "second-ca");
+        BoshCliExecutor executor = new BoshCliExecutor("director.example.com", "admin", "secret", "", "",
+                "bosh", 10, envConfigReader);
+        Path first = Path.of(executor.getInvocationTemplate().caCertPath());
+
+        // When: Reloading after the rotation
+        assertTrue(executor.reload());
+
+        // Then: The new certificate replaced the old one in the same file instead of a new temp file
+        assertEquals(first, Path.of(executor.getInvocationTemplate().caCertPath()));
+        assertEquals("second-ca", Files.readString(first));
+        try (Stream<Path> staged = Files.list(first.getParent())) {
+            assertTrue(staged.map(path -> path.getFileName().toString())
+                    .noneMatch(name -> name.startsWith("bosh-ca-cert") && name.endsWith(".pem.tmp")));
+        }
+    }
+
+    private BoshCliExecutor executorFor(Path ca, String script) throws IOException {
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\n" + script);
+        assertTrue(cli.toFile().setExecutable(true));
+        return new BoshCliExecutor("director.example.com", "admin", "secret", "", ca.toString(),
+                cli.toString(), 10, new BoshEnvConfigReader());
+    }
+}
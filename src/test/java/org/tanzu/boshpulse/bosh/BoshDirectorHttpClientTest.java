@@ -0,0 +1,198 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BoshDirectorHttpClientTest {
+
+    @Mock
+    private BoshCliExecutor cliExecutor;
+
+    private final AtomicInteger infoRequests = new AtomicInteger();
+    private final AtomicReference<String> tasksQuery = new AtomicReference<>();
+    private HttpServer server;
+    private BoshDirectorHttpClient directorClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/info", exchange -> {
+            infoRequests.incrementAndGet();
+            respond(exchange, 200, "{\"user_authentication\":{\"type\":\"basic\",\"options\":{}}}");
+        });
+        server.createContext("/deployments", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/deployments/cf/vms")) {
+                exchange.getResponseHeaders().add("Location", "/tasks/42");
+                respond(exchange, 302, "");
+            } else if (path.equals("/deployments/broken/vms")) {
+                exchange.getResponseHeaders().add("Location", "/tasks/45");
+                respond(exchange, 302, "");
+            } else if (path.equals("/deployments/slow/vms")) {
+                exchange.getResponseHeaders().add("Location", "/tasks/44");
+                respond(exchange, 302, "");
+            } else {
+                respond(exchange, 200, """
+                    [{"name":"cf","releases":[{"name":"capi","version":"1.2"}],
+                      "stemcells":[{"name":"ubuntu-jammy","version":"1.1"}],"teams":[]}]
+                    """);
+            }
+        });
+        server.createContext("/tasks/43", exchange -> {
+            // Honours Range requests like the Director does for task output
+            byte[] output = "line one\nline two\nline thr".getBytes(StandardCharsets.UTF_8);
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = range == null ? 0 : Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            if (start >= output.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            respond(exchange, range == null ? 200 : 206,
+                    new String(output, start, output.length - start, StandardCharsets.UTF_8));
+        });
+        server.createContext("/tasks", exchange -> {
+            tasksQuery.set(exchange.getRequestURI().getQuery());
+            respond(exchange, 200, "[{\"id\":45,\"state\":\"error\",\"description\":\"scan vms\"}]");
+        });
+        server.createContext("/tasks/45", exchange -> respond(exchange, 200, "{\"id\":45,\"state\":\"error\",\"result\":\"boom\"}"));
+        server.createContext("/tasks/44", exchange -> respond(exchange, 200, "{\"id\":44,\"state\":\"processing\"}"));
+        server.createContext("/tasks/42", exchange -> {
+            if (exchange.getRequestURI().getPath().endsWith("/output")) {
+                respond(exchange, 200, """
+                    {"job_name":"router","id":"abc","job_state":"running","az":"z1","ips":["10.0.0.5"],"vm_cid":"vm-1","vm_type":"small","active":true}
+                    {"job_name":"api","id":"def","job_state":"failing","az":"z2","ips":["10.0.0.6"],"vm_cid":"vm-2","vm_type":"large","active":true}
+                    """);
+            } else {
+                respond(exchange, 200, "{\"id\":42,\"state\":\"done\"}");
+            }
+        });
+        server.start();
+
+        when(cliExecutor.getDirector()).thenReturn("http://127.0.0.1:" + server.getAddress().getPort());
+        when(cliExecutor.getClient()).thenReturn("admin");
+        when(cliExecutor.getClientSecret()).thenReturn("secret");
+        directorClient = new BoshDirectorHttpClient(cliExecutor, 10, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        directorClient.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void testSupports() {
+        assertTrue(directorClient.supports("deployments"));
+        assertTrue(directorClient.supports("vms -d cf --details"));
+        assertFalse(directorClient.supports("vms"));
+        assertFalse(directorClient.supports("vms -d cf --vitals"));
+        assertFalse(directorClient.supports("deploy -d cf manifest.yml"));
+    }
+
+    @Test
+    void testListDeployments_MatchesCliShape() {
+        JsonNode result = directorClient.executeJson("deployments");
+
+        JsonNode row = result.get("Tables").get(0).get("Rows").get(0);
+        assertEquals("cf", row.get("name").asText());
+        assertEquals("capi/1.2", row.get("release_s").asText());
+        assertEquals("ubuntu-jammy/1.1", row.get("stemcell_s").asText());
+    }
+
+    @Test
+    void testBasicAuth_LooksUpAuthenticationTypeOnce() {
+        directorClient.executeJson("deployments");
+        directorClient.executeJson("deployments");
+
+        assertEquals(1, infoRequests.get());
+    }
+
+    @Test
+    void testListVms_FollowsTaskRedirect() {
+        JsonNode result = directorClient.executeJson("vms -d cf");
+
+        JsonNode rows = result.get("Tables").get(0).get("Rows");
+        assertEquals(2, rows.size());
+        assertEquals("router/abc", rows.get(0).get("instance").asText());
+        assertEquals("failing", rows.get(1).get("process_state").asText());
+        assertEquals("10.0.0.6", rows.get(1).get("ips").asText());
+    }
+
+    @Test
+    void testListVms_FailedTaskIsTheDirectorsAnswer() {
+        BoshCommandException e = assertThrows(BoshCommandException.class,
+                () -> directorClient.executeJson("vms -d broken"));
+
+        assertEquals(BoshCommandException.Category.INVALID, e.getCategory());
+        assertTrue(BoshCommandException.isDirectorAnswer(e));
+    }
+
+    @Test
+    void testListTasks_HonoursTheRecentCount() {
+        directorClient.executeJson("tasks -r 50");
+        assertTrue(tasksQuery.get().contains("limit=50"));
+
+        directorClient.executeJson("tasks --recent");
+        assertTrue(tasksQuery.get().contains("limit=30"));
+    }
+
+    @Test
+    void testListVms_WaitsForTheTaskOnlyForTheCommandTimeout() {
+        // Given: vms is a fast command, and the Director never finishes its task
+        directorClient.setTimeouts(new BoshTimeouts(1, 10, 10, "vms", "deploy"));
+
+        // When
+        long start = System.nanoTime();
+        BoshCommandException e = assertThrows(BoshCommandException.class,
+                () -> directorClient.executeJson("vms -d slow"));
+
+        // Then: The wait ends with the fast timeout instead of bosh.connection.timeout
+        assertEquals(BoshCommandException.Category.TIMEOUT, e.getCategory());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void testGetTaskOutput_ReadsCompleteLinesFromOffset() {
+        // When: Reading from the start, then continuing from the returned offset
+        var first = directorClient.getTaskOutput("43", "debug", 0, false);
+        var second = directorClient.getTaskOutput("43", "debug", first.nextOffset(), true);
+        var third = directorClient.getTaskOutput("43", "debug", second.nextOffset(), true);
+
+        // Then: The partial last line is held back until requested, and nothing is read twice
+        assertEquals("line one\nline two\n", first.text());
+        assertEquals("line thr", second.text());
+        assertEquals("", third.text());
+        assertEquals(second.nextOffset(), third.nextOffset());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
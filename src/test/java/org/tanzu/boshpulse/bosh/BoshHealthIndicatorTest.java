@@ -0,0 +1,64 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BoshHealthIndicatorTest {
+
+    @Mock
+    private BoshCliExecutor cliExecutor;
+
+    @Test
+    void testHealth_ServesCachedProbeWithLatencyHistory() {
+        // Given: A reachable Director and a history of two probes
+        BoshHealthIndicator indicator = new BoshHealthIndicator(cliExecutor, "10.0.0.6", 30, 2);
+        assertEquals(Status.UNKNOWN, indicator.health().getStatus());
+
+        // When: Probing three times, then reading health repeatedly
+        indicator.probe();
+        indicator.probe();
+        indicator.probe();
+        Health health = indicator.health();
+        indicator.health();
+
+        // Then: Health is UP, keeps the last two latencies, and only the probes called the Director
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(2, ((List<?>) ((Map<?, ?>) health.getDetails().get("probeLatency")).get("historyMs")).size());
+        assertTrue(indicator.isHealthy());
+        verify(cliExecutor, times(3)).executeJson("deployments");
+        verifyNoMoreInteractions(cliExecutor);
+    }
+
+    @Test
+    void testHealth_ReportsFailuresAndTheirCause() {
+        // Given: A Director that cannot be reached with a working CLI
+        BoshHealthIndicator indicator = new BoshHealthIndicator(cliExecutor, "10.0.0.6", 30, 20);
+        when(cliExecutor.executeJson("deployments")).thenThrow(new RuntimeException("connection refused"));
+        when(cliExecutor.isCliAvailable()).thenReturn(true);
+
+        // When: Probing twice
+        indicator.probe();
+        indicator.probe();
+        Health health = indicator.health();
+
+        // Then: Health is DOWN with the error and the consecutive failure count
+        assertEquals(Status.DOWN, health.getStatus());
+        assertEquals("connection refused", health.getDetails().get("error"));
+        assertEquals(2L, health.getDetails().get("consecutiveFailures"));
+        assertFalse(indicator.isHealthy());
+    }
+}
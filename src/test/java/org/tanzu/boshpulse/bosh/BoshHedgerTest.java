@@ -0,0 +1,153 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshHedgerTest {
+
+    @Test
+    void testExecute_HedgesSlowCallAndCancelsTheLoser() throws InterruptedException {
+        // Given: A hedger with budget for one hedge and a history of fast 'vms' calls
+        MeterRegistry registry = new SimpleMeterRegistry();
+        BoshHedger hedger = new BoshHedger(true, "vms", 95, 10, 3, 50, 1.0, 1, registry);
+        BoshCommand vms = BoshCommand.parse("vms -d cf");
+        for (int i = 0; i < 3; i++) {
+            assertEquals("fast", hedger.execute(vms, () -> "fast"));
+        }
+        assertEquals(50, hedger.hedgeDelay(vms).toMillis());
+
+        // When: The first attempt hangs and the hedge returns at once
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicBoolean primaryInterrupted = new AtomicBoolean();
+        CountDownLatch primaryDone = new CountDownLatch(1);
+        String result = hedger.execute(vms, () -> {
+            if (attempts.getAndIncrement() == 0) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    primaryInterrupted.set(true);
+                } finally {
+                    primaryDone.countDown();
+                }
+                return "slow";
+            }
+            return "hedged";
+        });
+
+        // Then: The hedge wins and the hung attempt is interrupted
+        assertEquals("hedged", result);
+        assertTrue(primaryDone.await(5, TimeUnit.SECONDS));
+        assertTrue(primaryInterrupted.get());
+        assertEquals(1, registry.get("bosh.hedge.sent").tags("subcommand", "vms").counter().count());
+        assertEquals(1, registry.get("bosh.hedge.won").tags("subcommand", "vms").counter().count());
+    }
+
+    @Test
+    void testExecute_NeverHedgesMutationsOrBeyondBudget() {
+        // Given: A hedger whose budget never reaches one hedge
+        MeterRegistry registry = new SimpleMeterRegistry();
+        BoshHedger hedger = new BoshHedger(true, "vms,recreate", 95, 10, 1, 10, 0.1, 1, registry);
+        BoshCommand vms = BoshCommand.parse("vms -d cf");
+        hedger.execute(vms, () -> "warm");
+
+        // When: A read and a mutation are both slower than the hedging delay
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals("slow", hedger.execute(vms, () -> sleepThen(calls, "slow")));
+        assertEquals("done", hedger.execute(BoshCommand.parse("recreate -d cf"), () -> sleepThen(calls, "done")));
+
+        // Then: Each ran once; the read was skipped for lack of budget and the mutation not considered
+        assertEquals(2, calls.get());
+        assertEquals(1, registry.get("bosh.hedge.skipped").tags("subcommand", "vms").counter().count());
+        assertNull(registry.find("bosh.hedge.sent").counter());
+        assertNull(hedger.hedgeDelay(BoshCommand.parse("recreate -d cf")));
+    }
+
+    @Test
+    void testExecute_RecordsTheCancelledAttemptPerCommand() {
+        // Given: A history of two 20 ms 'vms -d cf' calls
+        BoshHedger hedger = new BoshHedger(true, "vms", 60, 10, 2, 0, 1.0, 1, new SimpleMeterRegistry());
+        BoshCommand vms = BoshCommand.parse("vms -d cf");
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            hedger.execute(vms, () -> sleepFor(calls, 20));
+        }
+
+        // When: The first attempt hangs and the hedge takes 100 ms
+        AtomicInteger attempts = new AtomicInteger();
+        hedger.execute(vms, () -> attempts.getAndIncrement() == 0 ? sleepFor(calls, 10_000) : sleepFor(calls, 100));
+
+        // Then: The hung attempt counts with the time it ran, so the delay moves up
+        assertTrue(hedger.hedgeDelay(vms).toMillis() >= 100);
+    }
+
+    @Test
+    void testExecute_UsesTheSubcommandUntilACommandHasItsOwnHistory() {
+        // Given: A history of two 20 ms 'vms -d cf' calls
+        BoshHedger hedger = new BoshHedger(true, "vms", 50, 10, 2, 0, 1.0, 1, new SimpleMeterRegistry());
+        BoshCommand cf = BoshCommand.parse("vms -d cf");
+        BoshCommand mysql = BoshCommand.parse("vms -d mysql");
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            hedger.execute(cf, () -> sleepFor(calls, 20));
+        }
+
+        // Then: A deployment without history is timed like all 'vms' calls
+        assertNotNull(hedger.hedgeDelay(mysql));
+        assertTrue(hedger.hedgeDelay(mysql).toMillis() < 200);
+
+        // When: It has enough history of its own
+        for (int i = 0; i < 2; i++) {
+            hedger.execute(mysql, () -> sleepFor(calls, 300));
+        }
+
+        // Then: Its own latencies count, apart from the other deployment's
+        assertTrue(hedger.hedgeDelay(mysql).toMillis() >= 300);
+        assertTrue(hedger.hedgeDelay(cf).toMillis() < 200);
+    }
+
+    @Test
+    void testExecute_DoesNotRecordACancelledHedge() {
+        // Given: A history of two 50 ms 'vms -d cf' calls
+        BoshHedger hedger = new BoshHedger(true, "vms", 60, 10, 2, 0, 1.0, 1, new SimpleMeterRegistry());
+        BoshCommand vms = BoshCommand.parse("vms -d cf");
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            hedger.execute(vms, () -> sleepFor(calls, 50));
+        }
+
+        // When: The original takes 300 ms and wins against a hung hedge
+        AtomicInteger attempts = new AtomicInteger();
+        hedger.execute(vms, () -> attempts.getAndIncrement() == 0 ? sleepFor(calls, 300) : sleepFor(calls, 10_000));
+
+        // Then: Only the original's latency is added, so the short time the hedge ran does not count
+        assertTrue(hedger.hedgeDelay(vms).toMillis() < 200);
+    }
+
+    private static String sleepFor(AtomicInteger calls, long millis) {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+
+    private static String sleepThen(AtomicInteger calls, String result) {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BoshInventoryTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private BoshCliExecutor cliExecutor;
+
+    @Test
+    void testRefreshDue_ServesSnapshotsUntilInvalidated() throws Exception {
+        // Given: A Director with one deployment, and services reading through the inventory
+        BoshInventory inventory = new BoshInventory(cliExecutor, true, 10, 60, 120, 2);
+        when(cliExecutor.executeJson("deployments")).thenReturn(table("{\"name\": \"cf\"}"));
+        when(cliExecutor.executeJson("stemcells")).thenReturn(table("{\"name\": \"ubuntu-jammy\", \"version\": \"1.1\"}"));
+        when(cliExecutor.executeJson("releases")).thenReturn(table("{\"name\": \"capi\", \"version\": \"1.2\"}"));
+        when(cliExecutor.executeJson("vms -d cf")).thenReturn(table(
+                "{\"instance\": \"router/a1\", \"process_state\": \"running\"}",
+                "{\"instance\": \"router/b2\", \"process_state\": \"failing\"}"));
+        BoshVmService vmService = new BoshVmService(cliExecutor, 1, 0, 2);
+        vmService.setInventory(inventory);
+        BoshDeploymentService deploymentService = new BoshDeploymentService(cliExecutor, 1, 0);
+        deploymentService.setInventory(inventory);
+
+        // When: A refresh cycle runs before anyone has read the deployment's VMs
+        inventory.refreshDue();
+
+        // Then: The VMs are not polled until a client asks for them
+        verify(cliExecutor, never()).executeJson("vms -d cf");
+        assertTrue(inventory.get(Region.VMS, "cf").isEmpty());
+        inventory.refreshDue();
+
+        // Then: Reads are answered from the snapshot, including filtered ones
+        assertEquals(List.of("cf"), deploymentService.listDeployments(null));
+        assertEquals(List.of(Map.of("instance", "router/b2")),
+                vmService.listVms("cf", "instance", "process_state!=running", null).rows());
+        assertTrue(inventory.get(Region.VMS, "cf").isPresent());
+        verify(cliExecutor, never()).executeTableRows("deployments", Set.of("name"), null);
+
+        // Then: Callers get copies, so changing one does not change the snapshot
+        ((ObjectNode) inventory.get(Region.VMS, "cf").orElseThrow()).removeAll();
+        assertTrue(inventory.get(Region.VMS, "cf").orElseThrow().has("Tables"));
+
+        // When: A mutation invalidates the deployment's VMs
+        inventory.invalidate(Region.VMS, "cf");
+
+        // Then: The snapshot is no longer served until it is fetched again
+        assertTrue(inventory.get(Region.VMS, "cf").isEmpty());
+        inventory.refreshDue();
+        assertTrue(inventory.get(Region.VMS, "cf").isPresent());
+    }
+
+    @Test
+    void testRefresh_BacksOffWhileUnchangedAndBoundsStaleness() throws Exception {
+        // Given: Stemcells that do not change, and a zero staleness bound
+        BoshInventory inventory = new BoshInventory(cliExecutor, true, 1, 4, 0, 1);
+        when(cliExecutor.executeJson("stemcells")).thenReturn(table("{\"name\": \"ubuntu-jammy\", \"version\": \"1.1\"}"));
+
+        // When: Fetching the stemcells repeatedly
+        inventory.refresh(Region.STEMCELLS, "");
+        Duration afterChange = inventory.interval(Region.STEMCELLS, "");
+        inventory.refresh(Region.STEMCELLS, "");
+        inventory.refresh(Region.STEMCELLS, "");
+        inventory.refresh(Region.STEMCELLS, "");
+
+        // Then: The interval doubles up to the maximum, and snapshots past the bound are not served
+        assertEquals(Duration.ofSeconds(1), afterChange);
+        assertEquals(Duration.ofSeconds(4), inventory.interval(Region.STEMCELLS, ""));
+        Thread.sleep(5);
+        assertTrue(inventory.get(Region.STEMCELLS, "").isEmpty());
+    }
+
+    private static JsonNode table(String... rows) throws Exception {
+        return objectMapper.readTree("{\"Tables\": [{\"Rows\": [" + String.join(",", rows) + "]}]}");
+    }
+}
@@ -0,0 +1,75 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshJsonRowExtractorTest {
+
+    @Test
+    void testExtractRows_OnlyRequestedFields() {
+        // Given: CLI output with extra tables, headers and columns
+        String json = """
+            {
+              "Tables": [
+                {
+                  "Content": "releases",
+                  "Header": {"name": "Name", "version": "Version", "commit_hash": "Commit Hash"},
+                  "Rows": [
+                    {"name": "capi", "version": "1.2*", "commit_hash": "abc", "nested": {"a": [1, 2]}},
+                    {"name": "uaa", "version": "76", "commit_hash": "def"},
+                    {"name": "capi", "version": "1.1", "commit_hash": "ghi"}
+                  ],
+                  "Notes": ["(*) Currently deployed"]
+                }
+              ],
+              "Blocks": null,
+              "Lines": ["Succeeded"]
+            }
+            """;
+
+        // When: Extracting versions of one release
+        List<Map<String, String>> rows = BoshJsonRowExtractor.extractRows(stream(json),
+                Set.of("name", "version"), row -> "capi".equals(row.get("name")));
+
+        // Then: Only matching rows with the projected fields are returned
+        assertEquals(List.of(Map.of("name", "capi", "version", "1.2*"),
+                Map.of("name", "capi", "version", "1.1")), rows);
+    }
+
+    @Test
+    void testExtractRows_AllFields() {
+        String json = """
+            {"Tables": [{"Rows": [{"name": "cf", "ips": null, "vitals": {"load": ["0.1"]}}]}]}
+            """;
+
+        List<Map<String, String>> rows = BoshJsonRowExtractor.extractRows(stream(json), null, null);
+
+        assertEquals(1, rows.size());
+        assertEquals("", rows.get(0).get("ips"));
+        assertEquals("{\"load\":[\"0.1\"]}", rows.get(0).get("vitals"));
+    }
+
+    @Test
+    void testExtractRows_NoTables() {
+        assertTrue(BoshJsonRowExtractor.extractRows(stream("{}"), Set.of("name"), null).isEmpty());
+        assertTrue(BoshJsonRowExtractor.extractRows(stream("{\"Tables\": [{\"Rows\": []}]}"), Set.of("name"), null).isEmpty());
+    }
+
+    @Test
+    void testExtractRows_InvalidJson() {
+        assertThrows(RuntimeException.class,
+                () -> BoshJsonRowExtractor.extractRows(stream("{\"Tables\": [{"), null, null));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
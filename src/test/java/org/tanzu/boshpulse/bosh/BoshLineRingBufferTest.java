@@ -0,0 +1,69 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+import org.tanzu.boshpulse.bosh.BoshLineRingBuffer.Slice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshLineRingBufferTest {
+
+    @Test
+    void testRead_ReturnsOnlyLinesAfterCursor() {
+        // Given: A buffer with three lines
+        BoshLineRingBuffer buffer = new BoshLineRingBuffer(10);
+        buffer.append("a");
+        buffer.append("b");
+        buffer.append("c");
+
+        // When: Reading from the start, then from the returned cursor after more output
+        Slice first = buffer.read(0, 100);
+        buffer.append("d");
+        Slice second = buffer.read(first.nextOffset(), 100);
+
+        // Then: The second read only sees the new line
+        assertEquals(List.of("a", "b", "c"), first.lines());
+        assertEquals(List.of("d"), second.lines());
+        assertEquals(4, second.nextOffset());
+        assertEquals(0, second.skipped());
+    }
+
+    @Test
+    void testRead_ReportsLinesOverwrittenBeforeCursorCaughtUp() {
+        // Given: A full buffer that wrapped around
+        BoshLineRingBuffer buffer = new BoshLineRingBuffer(3);
+        for (int i = 0; i < 5; i++) {
+            buffer.append("line-" + i);
+        }
+
+        // When: Reading from a cursor older than the oldest buffered line
+        Slice slice = buffer.read(1, 2);
+
+        // Then: Missed lines are counted and the page size is respected
+        assertEquals(List.of("line-2", "line-3"), slice.lines());
+        assertEquals(1, slice.skipped());
+        assertEquals(4, slice.nextOffset());
+        assertEquals(2, buffer.firstOffset());
+    }
+
+    @Test
+    void testAwaitLines_WakesOnAppend() throws InterruptedException {
+        // Given: An empty buffer and a writer that appends shortly
+        BoshLineRingBuffer buffer = new BoshLineRingBuffer(3);
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            buffer.append("late");
+        });
+
+        // When/Then: A waiting reader is released by the append
+        assertTrue(buffer.awaitLines(0, 5000));
+        assertFalse(buffer.awaitLines(1, 10));
+        assertFalse(buffer.awaitLines(1, 500, TimeUnit.MICROSECONDS));
+    }
+}
@@ -0,0 +1,183 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tanzu.boshpulse.bosh.BoshLogArchiveScanner.LogFilter;
+import org.tanzu.boshpulse.bosh.BoshLogArchiveScanner.LogMatch;
+import org.tanzu.boshpulse.bosh.BoshLogArchiveScanner.LogSearchResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshLogArchiveScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testScan_FiltersNestedArchivesWithProvenance() throws Exception {
+        // Given: A deployment archive holding one instance tarball with a plain and a rotated log
+        Path archive = deploymentArchive();
+        BoshLogArchiveScanner scanner = new BoshLogArchiveScanner(null, tempDir.resolve("spool").toString(), 500, 10000, 4096);
+
+        // When: Filtering for errors after 10:00 in router logs
+        LogSearchResult result = scanner.scan(archive, new LogFilter(Pattern.compile("ERROR"),
+                Instant.parse("2024-05-01T10:00:00Z"), null, "*.log*", 0));
+
+        // Then: Only matching lines come back, with nested file path and line number
+        assertEquals(Set.of(
+                new LogMatch("router.abc123/router/router.stdout.log", 3, "2024-05-01T10:05:00Z ERROR upstream timeout"),
+                new LogMatch("router.abc123/router/router.stdout.log.1.gz", 1, "2024-05-01T10:30:00.5+00:00 ERROR rotated")),
+                Set.copyOf(result.matches()));
+        assertEquals(2, result.filesScanned());
+        assertEquals(5, result.linesScanned());
+        assertFalse(result.truncated());
+    }
+
+    @Test
+    void testScan_StopsAtMatchLimit() throws Exception {
+        // Given: An archive with five lines, a default of two matches and a hard limit of four
+        Path archive = deploymentArchive();
+        BoshLogArchiveScanner scanner = new BoshLogArchiveScanner(null, tempDir.resolve("spool").toString(), 2, 4, 4096);
+
+        // When: Scanning without filters, with the default, with more than the default, and with more than the limit
+        LogSearchResult byDefault = scanner.scan(archive, new LogFilter(null, null, null, null, 0));
+        LogSearchResult asked = scanner.scan(archive, new LogFilter(null, null, null, null, 3));
+        LogSearchResult capped = scanner.scan(archive, new LogFilter(null, null, null, null, 100));
+
+        // Then: The default only applies when unset, the hard limit always applies, and truncation is reported
+        assertEquals(2, byDefault.matches().size());
+        assertTrue(byDefault.truncated());
+        assertEquals(3, asked.matches().size());
+        assertEquals(4, capped.matches().size());
+        assertTrue(capped.truncated());
+    }
+
+    @Test
+    void testScan_MatchesWholeLineAndTruncatesOnlyTheText() throws Exception {
+        // Given: A maximum line length that cuts lines before the word being searched for
+        Path archive = deploymentArchive();
+        BoshLogArchiveScanner scanner = new BoshLogArchiveScanner(null, tempDir.resolve("spool").toString(), 500, 10000, 20);
+
+        // When: Grepping for a word near the end of a line
+        LogSearchResult result = scanner.scan(archive, new LogFilter(Pattern.compile("upstream timeout"), null, null, null, 0));
+
+        // Then: The line matches, and only the returned text is truncated
+        assertEquals(List.of(new LogMatch("router.abc123/router/router.stdout.log", 3, "2024-05-01T10:05:00Z")),
+                result.matches());
+    }
+
+    @Test
+    void testScan_KeepsOnlyTheMatchWindowOfAnOverlongLine() throws Exception {
+        // Given: A log whose first two lines are far longer than the match window
+        Path logs = Files.createDirectories(tempDir.resolve("long"));
+        String filler = "x".repeat(200_000);
+        Files.writeString(logs.resolve("api.log"), "ERROR " + filler + "\n" + filler + " ERROR hidden\nERROR last\n");
+        Path archive = tempDir.resolve("long.tgz");
+        tar(logs, archive);
+        BoshLogArchiveScanner scanner = new BoshLogArchiveScanner(null, tempDir.resolve("spool").toString(), 500, 10000, 20);
+
+        // When
+        LogSearchResult result = scanner.scan(archive, new LogFilter(Pattern.compile("ERROR"), null, null, null, 0));
+
+        // Then: Text past the window is not matched, and the lines after it keep their numbers
+        assertEquals(List.of(new LogMatch("api.log", 1, "ERROR xxxxxxxxxxxxxx"), new LogMatch("api.log", 3, "ERROR last")),
+                result.matches());
+        assertEquals(3, result.linesScanned());
+    }
+
+    @Test
+    void testFetchAndScan_DownloadsIntoSpoolWithoutIndexingAndCleansUp() throws Exception {
+        // Given: A CLI that drops the archive into the --dir it is given
+        Path spool = tempDir.resolve("spool");
+        BoshLogArchiveScanner scanner = new BoshLogArchiveScanner(archiveCli(), spool.toString(), 500, 10000, 4096);
+        BoshLogIndex index = new BoshLogIndex(tempDir.resolve("index").toString(), 1 << 30, 300, 4);
+        scanner.setLogIndex(index);
+
+        // When: Grepping the deployment's logs
+        LogSearchResult result = scanner.fetchAndScan("cf", "router",
+                new LogFilter(Pattern.compile("timeout"), null, null, null, 0));
+
+        // Then: The match is returned, nothing was indexed, and nothing is left in the spool directory
+        assertEquals(1, result.matches().size());
+        assertTrue(result.archiveBytes() > 0);
+        assertFalse(index.isIndexed("cf", "router"));
+        try (Stream<Path> left = Files.list(spool)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void testFetchAndIndex_IndexesEveryLineUnderItsInstance() throws Exception {
+        // Given: A CLI that drops the archive into the --dir it is given
+        Path spool = tempDir.resolve("spool");
+        BoshLogArchiveScanner scanner = new BoshLogArchiveScanner(archiveCli(), spool.toString(), 500, 10000, 4096);
+        BoshLogIndex index = new BoshLogIndex(tempDir.resolve("index").toString(), 1 << 30, 300, 4);
+        scanner.setLogIndex(index);
+
+        // When: Indexing the deployment's logs
+        LogSearchResult result = scanner.fetchAndIndex("cf", "router");
+
+        // Then: Every line was indexed under its instance, and nothing is left in the spool directory
+        assertEquals(5, result.linesScanned());
+        assertEquals(List.of(new LogMatch("router.abc123/router/router.stdout.log.1.gz", 2, "2024-05-01T10:31:00Z INFO ok")),
+                index.search("cf", "router/abc123", "info ok", null, null, 10).matches());
+        try (Stream<Path> left = Files.list(spool)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void testParseLineTimestamp_ReadsCommonLogFormats() {
+        assertEquals(Instant.parse("2024-05-01T10:05:00Z"),
+                BoshLogArchiveScanner.parseLineTimestamp("2024-05-01T10:05:00Z INFO started"));
+        assertEquals(Instant.parse("2024-05-01T08:05:00.123456Z"),
+                BoshLogArchiveScanner.parseLineTimestamp("I, [2024-05-01T10:05:00.123456 +0200 #42] INFO"));
+        assertEquals(Instant.parse("2024-05-01T10:05:00Z"),
+                BoshLogArchiveScanner.parseLineTimestamp("2024/05/01 10:05:00 agent heartbeat"));
+        assertNull(BoshLogArchiveScanner.parseLineTimestamp("    at com.example.Foo.bar(Foo.java:42)"));
+    }
+
+    private BoshCliExecutor archiveCli() throws Exception {
+        Path archive = deploymentArchive();
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\nfor a; do dir=$a; done\ncp " + archive + " $dir/cf-20240501.tgz\n");
+        assertTrue(cli.toFile().setExecutable(true));
+        return new BoshCliExecutor("director.example.com", "admin", "secret", "", "",
+                cli.toString(), 10, new BoshEnvConfigReader());
+    }
+
+    private Path deploymentArchive() throws Exception {
+        Path instance = Files.createDirectories(tempDir.resolve("instance/router"));
+        Files.writeString(instance.resolve("router.stdout.log"), """
+                2024-05-01T09:55:00Z ERROR before the window
+                2024-05-01T10:01:00Z INFO request served
+                2024-05-01T10:05:00Z ERROR upstream timeout
+                """);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(instance.resolve("router.stdout.log.1.gz")))) {
+            out.write("2024-05-01T10:30:00.5+00:00 ERROR rotated\n2024-05-01T10:31:00Z INFO ok".getBytes(StandardCharsets.UTF_8));
+        }
+        Path outer = Files.createDirectories(tempDir.resolve("outer"));
+        tar(tempDir.resolve("instance"), outer.resolve("router.abc123.tgz"));
+        Path archive = tempDir.resolve("cf.tgz");
+        tar(outer, archive);
+        return archive;
+    }
+
+    private static void tar(Path directory, Path archive) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("tar", "czf", archive.toString(), "-C", directory.toString(), ".")
+                .inheritIO().start();
+        assertEquals(0, process.waitFor());
+    }
+}
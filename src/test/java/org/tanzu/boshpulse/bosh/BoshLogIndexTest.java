@@ -0,0 +1,124 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tanzu.boshpulse.bosh.BoshLogArchiveScanner.LogMatch;
+import org.tanzu.boshpulse.bosh.BoshLogIndex.IndexBuilder;
+import org.tanzu.boshpulse.bosh.BoshLogIndex.IndexSearchResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshLogIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSearch_AnswersKeywordAndTimeQueriesFromIndex() throws IOException {
+        // Given: Indexed logs of two router instances
+        BoshLogIndex index = new BoshLogIndex(tempDir.toString(), 1 << 30, 60, 4);
+        try (IndexBuilder builder = index.builder("cf", null)) {
+            builder.add("router.a1", "router.a1/router/router.log", 1, Instant.parse("2024-05-01T10:00:00Z"), "INFO backend 10.0.0.1 ok");
+            builder.add("router.a1", "router.a1/router/router.log", 2, Instant.parse("2024-05-01T10:05:00Z"), "ERROR backend 10.0.0.1 timeout");
+            builder.add("router.b2", "router.b2/router/router.log", 1, Instant.parse("2024-05-01T11:00:00Z"), "ERROR backend 10.0.0.11 timeout");
+            builder.commit();
+        }
+
+        // When: Searching by keyword, by keyword with a dotted term, and by time only
+        IndexSearchResult errors = index.search("cf", null, "error TIMEOUT", null, null, 10);
+        IndexSearchResult exactIp = index.search("cf", null, "10.0.0.1 timeout", null, null, 10);
+        IndexSearchResult window = index.search("cf", "router/a1", null,
+                Instant.parse("2024-05-01T10:01:00Z"), Instant.parse("2024-05-01T12:00:00Z"), 10);
+
+        // Then: Keywords are ANDed case-insensitively, as typed, and time ranges use the buckets
+        assertEquals(2, errors.matches().size());
+        assertEquals(2, errors.segmentsSearched());
+        assertEquals(List.of(new LogMatch("router.a1/router/router.log", 2, "ERROR backend 10.0.0.1 timeout"),
+                new LogMatch("router.b2/router/router.log", 1, "ERROR backend 10.0.0.11 timeout")), exactIp.matches());
+        assertEquals(List.of(new LogMatch("router.a1/router/router.log", 2, "ERROR backend 10.0.0.1 timeout")),
+                window.matches());
+        assertTrue(index.isIndexed("cf", "router"));
+        assertFalse(index.isIndexed("mysql", null));
+    }
+
+    @Test
+    void testIsIndexed_RequiresTheFetchedTargetAndSearchMatchesWholeGroupNames() throws IOException {
+        // Given: One router instance fetched on its own, and a deployment whose groups share a name prefix
+        BoshLogIndex index = new BoshLogIndex(tempDir.toString(), 1 << 30, 60, 4);
+        try (IndexBuilder builder = index.builder("cf", "router/a1")) {
+            builder.add(null, "router/router.log", 1, Instant.parse("2024-05-01T10:00:00Z"), "ERROR router");
+            builder.commit();
+        }
+        try (IndexBuilder builder = index.builder("mysql", null)) {
+            builder.add("router.c3", "router.c3/router/router.log", 1, Instant.parse("2024-05-01T10:00:00Z"), "ERROR router");
+            builder.add("router_worker.d4", "router_worker.d4/worker/worker.log", 1, Instant.parse("2024-05-01T10:00:00Z"), "ERROR worker");
+            builder.commit();
+        }
+
+        // When: Searching the router group of the second deployment
+        IndexSearchResult routers = index.search("mysql", "router", "error", null, null, 10);
+
+        // Then: Only the fetched instance is covered, not its group or deployment, and router does not select router_worker
+        assertTrue(index.isIndexed("cf", "router/a1"));
+        assertFalse(index.isIndexed("cf", "router"));
+        assertFalse(index.isIndexed("cf", null));
+        assertTrue(index.isIndexed("mysql", "router"));
+        assertEquals(List.of(new LogMatch("router.c3/router/router.log", 1, "ERROR router")), routers.matches());
+    }
+
+    @Test
+    void testBuilds_AreSweptAtStartupAndNeverEvicted() throws IOException {
+        // Given: A build left behind by a crash, and a tiny budget
+        Path leftover = Files.createDirectories(tempDir.resolve(".builds/segment-1"));
+        Files.writeString(leftover.resolve("segment.properties"), "instance=router.a1\n");
+        BoshLogIndex index = new BoshLogIndex(tempDir.toString(), 1, 60, 4);
+
+        // When: A build finishes one instance while another deployment is committed
+        try (IndexBuilder builder = index.builder("cf", null)) {
+            builder.add("router.a1", "router.a1/job.log", 1, Instant.parse("2024-05-01T10:00:00Z"), "router started");
+            builder.add("router.b2", "router.b2/job.log", 1, Instant.parse("2024-05-01T10:00:00Z"), "router started");
+            indexLine(index, "mysql", "mysql.c3", "database started");
+
+            // Then: The finished instance of the running build was not evicted, so it can still be published
+            assertDoesNotThrow(builder::commit);
+        }
+
+        // Then: The leftover is gone
+        assertFalse(Files.exists(leftover));
+    }
+
+    @Test
+    void testCommit_ReplacesInstanceAndEvictsLeastRecentlyUsed() throws IOException {
+        // Given: A budget that only fits about one segment
+        BoshLogIndex index = new BoshLogIndex(tempDir.toString(), 1000, 60, 4);
+        indexLine(index, "cf", "router.a1", "first fetch");
+        indexLine(index, "cf", "router.a1", "second fetch");
+
+        IndexSearchResult refetched = index.search("cf", null, "fetch", null, null, 100);
+
+        // When: Another deployment is indexed
+        indexLine(index, "mysql", "mysql.c3", "database started");
+
+        // Then: Re-fetching replaced the instance, and the older deployment was evicted
+        assertEquals(10, refetched.matches().size());
+        assertTrue(refetched.matches().stream().allMatch(match -> match.text().startsWith("second")));
+        assertFalse(index.isIndexed("cf", null));
+        assertEquals("database started 0",
+                index.search("mysql", null, "database", null, null, 10).matches().get(0).text());
+    }
+
+    private static void indexLine(BoshLogIndex index, String deployment, String instance, String line) throws IOException {
+        try (IndexBuilder builder = index.builder(deployment, null)) {
+            for (int i = 0; i < 10; i++) {
+                builder.add(instance, instance + "/job.log", i + 1, Instant.parse("2024-05-01T10:00:00Z"), line + " " + i);
+            }
+            builder.commit();
+        }
+    }
+}
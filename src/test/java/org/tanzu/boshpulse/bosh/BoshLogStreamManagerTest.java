@@ -0,0 +1,93 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tanzu.boshpulse.bosh.BoshLogStreamManager.LogStreamPage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshLogStreamManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BoshLogStreamManager manager;
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    void testRead_ClientsShareOneFollowerAndReadByCursor() throws IOException {
+        // Given: A CLI that keeps printing log lines and records each start
+        Path invocations = tempDir.resolve("invocations");
+        manager = managerFor("echo x >> " + invocations + "; i=0; while true; do echo \"line $i\"; i=$((i+1)); sleep 0.1; done", 2);
+
+        // When: Two clients read the same deployment, the first one twice
+        LogStreamPage first = manager.read("cf", "router", 0, 100, Duration.ofSeconds(5));
+        LogStreamPage other = manager.read("cf", "router", 0, 100, Duration.ofSeconds(5));
+        LogStreamPage next = manager.read("cf", "router", first.cursor(), 100, Duration.ofSeconds(5));
+
+        // Then: One process serves both, and the second page continues after the first
+        assertEquals(1, Files.readAllLines(invocations).size());
+        assertTrue(first.lineCount() > 0);
+        assertTrue(other.lineCount() > 0);
+        assertEquals("line 0", first.output().split("\n")[0]);
+        assertEquals("line " + first.cursor(), next.output().split("\n")[0]);
+        assertTrue(next.active());
+        assertEquals("cf/router", next.streamId());
+    }
+
+    @Test
+    void testRead_RefusesFollowersBeyondLimit() throws IOException {
+        // Given: A limit of two followers, both in use
+        manager = managerFor("while true; do echo tick; sleep 1; done", 2);
+        manager.read("cf", null, 0, 10, Duration.ZERO);
+        manager.read("cf", "router", 0, 10, Duration.ZERO);
+
+        // When/Then: A third follower is refused until one is stopped
+        RuntimeException e = assertThrows(RuntimeException.class, () -> manager.read("mysql", null, 0, 10, Duration.ZERO));
+        assertTrue(e.getMessage().contains("limit reached"));
+        assertTrue(manager.stop("cf", null));
+        assertEquals("mysql", manager.read("mysql", null, 0, 10, Duration.ZERO).streamId());
+        assertEquals(2, manager.list().size());
+    }
+
+    @Test
+    void testRead_FollowerThatFailsToStartIsNotKept() throws IOException {
+        // Given: A CLI that cannot be executed
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\n");
+        manager = managerFor(cli, 1);
+
+        // When
+        assertThrows(RuntimeException.class, () -> manager.read("cf", null, 0, 10, Duration.ZERO));
+
+        // Then: It does not hold the only follower slot
+        assertTrue(manager.list().isEmpty());
+        assertTrue(cli.toFile().setExecutable(true));
+        assertEquals("mysql", manager.read("mysql", null, 0, 10, Duration.ZERO).streamId());
+    }
+
+    private BoshLogStreamManager managerFor(String script, int maxFollowers) throws IOException {
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\n" + script);
+        assertTrue(cli.toFile().setExecutable(true));
+        return managerFor(cli, maxFollowers);
+    }
+
+    private BoshLogStreamManager managerFor(Path cli, int maxFollowers) {
+        BoshCliExecutor executor = new BoshCliExecutor("director.example.com", "admin", "secret", "", "",
+                cli.toString(), 10, new BoshEnvConfigReader());
+        return new BoshLogStreamManager(executor, maxFollowers, 1000, 1000, 300, 10);
+    }
+}
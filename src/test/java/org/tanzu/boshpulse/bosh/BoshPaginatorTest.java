@@ -0,0 +1,62 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+import org.tanzu.boshpulse.bosh.BoshPaginator.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshPaginatorTest {
+
+    @Test
+    void testPage_WalksCachedResultWithCursors() {
+        // Given: A result of 25 items and pages of 10
+        BoshPaginator paginator = new BoshPaginator(10, 100, 100_000, 60, 10);
+        AtomicInteger loads = new AtomicInteger();
+        List<Integer> items = IntStream.range(0, 25).boxed().toList();
+
+        // When: Walking all pages
+        List<Integer> seen = new ArrayList<>();
+        Page<Integer> page = paginator.page("getVmStatus:cf", null, null, () -> {
+            loads.incrementAndGet();
+            return items;
+        });
+        seen.addAll(page.items());
+        while (page.hasMore()) {
+            page = paginator.page("getVmStatus:cf", page.nextCursor(), null, () -> {
+                loads.incrementAndGet();
+                return items;
+            });
+            seen.addAll(page.items());
+        }
+
+        // Then: Every item is returned once, the result was loaded once, and totals are reported
+        assertEquals(items, seen);
+        assertEquals(1, loads.get());
+        assertEquals(20, page.offset());
+        assertEquals(25, page.total());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void testPage_CapsPageSizeAndRejectsForeignCursors() {
+        // Given: Items of 10 characters and a 35 character page cap
+        BoshPaginator paginator = new BoshPaginator(100, 100, 35, 60, 10);
+        List<String> items = IntStream.range(0, 5).mapToObj(i -> "item-" + "x".repeat(5)).toList();
+
+        // When: Fetching the first page
+        Page<String> page = paginator.page("getVmStatus:cf", null, null, () -> items);
+
+        // Then: The size cap ends the page early, and the cursor only works for the same call
+        assertEquals(3, page.items().size());
+        assertTrue(page.hasMore());
+        assertThrows(IllegalArgumentException.class,
+                () -> paginator.page("getVmStatus:mysql", page.nextCursor(), null, List::of));
+        assertThrows(IllegalArgumentException.class,
+                () -> paginator.page("getVmStatus:cf", "not-a-cursor", null, List::of));
+    }
+}
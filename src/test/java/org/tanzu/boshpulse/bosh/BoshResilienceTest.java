@@ -0,0 +1,78 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.tanzu.boshpulse.bosh.BoshCommandException.Category;
+import org.tanzu.boshpulse.bosh.BoshResilience.Permit;
+import org.tanzu.boshpulse.bosh.BoshResilience.State;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoshResilienceTest {
+
+    @Test
+    void testCircuit_OpensOnDirectorFaultsAndClosesAfterProbe() {
+        // Given: A breaker that opens after two Director faults and half-opens right away
+        BoshResilience resilience = new BoshResilience("director.example.com", 20, 10, 0, 2, 0, 1, new SimpleMeterRegistry());
+
+        // When: Two calls time out, after an error the Director answered
+        resilience.onFailure(resilience.admit(), new BoshCommandException(Category.NOT_FOUND, 1, "Deployment 'cf' doesn't exist", null));
+        resilience.onFailure(resilience.admit(), new BoshCommandException(Category.TIMEOUT, "BOSH command timed out"));
+        assertEquals(State.CLOSED, resilience.getState());
+        resilience.onFailure(resilience.admit(), BoshCommandException.forStatus(503, "Service Unavailable"));
+
+        // Then: The circuit opens, admits a single probe, and closes once the probe succeeds
+        assertEquals(State.OPEN, resilience.getState());
+        Permit probe = resilience.admit();
+        assertTrue(probe.probe());
+        BoshCommandException e = assertThrows(BoshCommandException.class, resilience::admit);
+        assertEquals(Category.CIRCUIT_OPEN, e.getCategory());
+        resilience.onSuccess(probe);
+        assertEquals(State.CLOSED, resilience.getState());
+        assertFalse(resilience.admit().probe());
+    }
+
+    @Test
+    void testCircuit_IgnoresFailuresRaisedLocally() {
+        // Given: An open breaker that half-opens right away, and a closed one a fault away from opening
+        BoshResilience halfOpen = new BoshResilience("director.example.com", 20, 10, 0, 1, 0, 1, new SimpleMeterRegistry());
+        halfOpen.onFailure(halfOpen.admit(), new BoshCommandException(Category.TIMEOUT, "BOSH command timed out"));
+        BoshResilience closed = new BoshResilience("director.example.com", 20, 10, 0, 2, 0, 1, new SimpleMeterRegistry());
+        closed.onFailure(closed.admit(), new BoshCommandException(Category.TIMEOUT, "BOSH command timed out"));
+
+        // When: A probe and a call fail on an invalid argument before reaching the Director
+        halfOpen.onFailure(halfOpen.admit(), new IllegalArgumentException("Invalid where clause 'az'"));
+        closed.onFailure(closed.admit(), new IllegalArgumentException("Invalid cursor"));
+
+        // Then: Neither the probe closes the circuit nor the call resets the failure count
+        assertEquals(State.HALF_OPEN, halfOpen.getState());
+        closed.onFailure(closed.admit(), new BoshCommandException(Category.TIMEOUT, "BOSH command timed out"));
+        assertEquals(State.OPEN, closed.getState());
+        assertFalse(BoshCommandException.isDirectorAnswer(new BoshCommandException(Category.INTERNAL, 137, "killed", null)));
+        assertTrue(BoshCommandException.isDirectorAnswer(new RuntimeException(BoshCommandException.forStatus(404, "Not Found"))));
+    }
+
+    @Test
+    void testExecuteWithRetry_RetriesOnlyRetryableCategoriesWithinBudget() {
+        // Given: A budget of one retry that does not refill, and a Director that stays unreachable
+        BoshResilience resilience = new BoshResilience("director.example.com", 0, 1, 0, 10, 30, 1, new SimpleMeterRegistry());
+        BoshCliExecutor cliExecutor = mock(BoshCliExecutor.class);
+        when(cliExecutor.execute("cloud-config"))
+                .thenThrow(new BoshCommandException(Category.UNAVAILABLE, "dial tcp: connection refused"));
+        BoshCloudConfigService service = new BoshCloudConfigService(cliExecutor, 5, 0);
+        service.setResilience(resilience);
+
+        // When: Calling the tool
+        assertThrows(BoshCommandException.class, service::getCloudConfig);
+
+        // Then: The budget allows one retry, and a refused login is classified and not retried at all
+        verify(cliExecutor, times(2)).execute("cloud-config");
+        assertEquals(Category.AUTH, BoshCommandException.classifyExit(1, "Error: Unauthorized (invalid_token)"));
+        assertEquals(Category.UNAVAILABLE, BoshCommandException.classifyStatus(503));
+        Duration delay = resilience.backoff(Duration.ofMillis(100), Duration.ofMillis(100));
+        assertTrue(delay.toMillis() >= 0 && delay.toMillis() <= 100);
+    }
+}
@@ -0,0 +1,87 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.tanzu.boshpulse.bosh.BoshResultCache.Region;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshResultCacheTest {
+
+    @Test
+    void testGet_ServesRepeatedReadsFromCache() {
+        BoshResultCache cache = cache(100, 60);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(Region.VMS, "cf", loads::incrementAndGet);
+        Integer second = cache.get(Region.VMS, "cf", loads::incrementAndGet);
+
+        assertEquals(1, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount(Region.VMS));
+        assertEquals(1, cache.getMissCount(Region.VMS));
+        assertEquals(0.5, cache.getHitRatio(Region.VMS));
+    }
+
+    @Test
+    void testGet_CallersCannotChangeTheCachedEntry() {
+        BoshResultCache cache = cache(100, 60);
+        Supplier<List<Map<String, String>>> loader = () -> new ArrayList<>(List.of(new HashMap<>(Map.of("instance", "router/0"))));
+
+        cache.get(Region.VMS, "cf", loader).clear();
+        cache.get(Region.VMS, "cf", loader).get(0).put("instance", "changed");
+
+        assertEquals(List.of(Map.of("instance", "router/0")), cache.get(Region.VMS, "cf", loader));
+        assertEquals(1, cache.getMissCount(Region.VMS));
+    }
+
+    @Test
+    void testInvalidate_TargetsOnlyTheMutatedKey() {
+        BoshResultCache cache = cache(100, 60);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(Region.VMS, "cf", loads::incrementAndGet);
+        cache.get(Region.VMS, "mysql", loads::incrementAndGet);
+
+        cache.invalidate(Region.VMS, "cf");
+
+        cache.get(Region.VMS, "cf", loads::incrementAndGet);
+        cache.get(Region.VMS, "mysql", loads::incrementAndGet);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testGet_EvictsLeastRecentlyUsedBeyondMaxEntries() {
+        BoshResultCache cache = cache(2, 60);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(Region.VMS, "a", loads::incrementAndGet);
+        cache.get(Region.VMS, "b", loads::incrementAndGet);
+        cache.get(Region.VMS, "a", loads::incrementAndGet);
+        cache.get(Region.VMS, "c", loads::incrementAndGet);
+
+        assertEquals(2, cache.size());
+        cache.get(Region.VMS, "a", loads::incrementAndGet);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testGet_ZeroTtlDisablesRegion() {
+        BoshResultCache cache = cache(100, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(Region.VMS, "cf", loads::incrementAndGet);
+        cache.get(Region.VMS, "cf", loads::incrementAndGet);
+
+        assertEquals(2, loads.get());
+    }
+
+    private static BoshResultCache cache(int maxEntries, int vmsTtlSeconds) {
+        return new BoshResultCache(true, maxEntries, 30, 300, 300, 300, vmsTtlSeconds, 120, new SimpleMeterRegistry());
+    }
+}
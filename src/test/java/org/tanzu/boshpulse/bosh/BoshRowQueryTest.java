@@ -0,0 +1,76 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshRowQueryTest {
+
+    private static final String VMS_JSON = """
+        {
+          "Tables": [
+            {
+              "Content": "vms",
+              "Rows": [
+                {"instance": "router/a1", "process_state": "running", "az": "z1", "ips": "10.0.0.1", "vm_cid": "vm-1"},
+                {"instance": "router/b2", "process_state": "failing", "az": "z1", "ips": "10.0.0.2", "vm_cid": "vm-2"},
+                {"instance": "diego_cell/c3", "process_state": "stopped", "az": "z2", "ips": "10.0.1.3", "vm_cid": "vm-3"}
+              ]
+            }
+          ]
+        }
+        """;
+
+    @Test
+    void testParse_ProjectsColumnsOfMatchingRows() {
+        // Given: A query for two columns of non-running VMs in z1, filtering on a column that is not returned
+        BoshRowQuery query = BoshRowQuery.parse("instance, ips", "process_state!=running and az=z1");
+
+        // When: Extracting rows while the output is parsed
+        List<Map<String, String>> rows = query.project(BoshJsonRowExtractor.extractRows(
+                new ByteArrayInputStream(VMS_JSON.getBytes(StandardCharsets.UTF_8)), query.readFields(), query.filter()));
+
+        // Then: Only the projected columns of the matching row are returned
+        assertEquals(List.of(Map.of("instance", "router/b2", "ips", "10.0.0.2")), rows);
+        assertFalse(query.isEmpty());
+        assertTrue(BoshRowQuery.parse(" ", null).isEmpty());
+    }
+
+    @Test
+    void testParse_SupportsRegexAndRejectsMalformedClauses() {
+        // Given: A regex clause, a negated regex clause and a quoted value
+        BoshRowQuery query = BoshRowQuery.parse(null, "instance~^router/, ips!~\\.2$, az='z1'");
+
+        // When: Filtering every column
+        List<Map<String, String>> rows = query.project(BoshJsonRowExtractor.extractRows(
+                new ByteArrayInputStream(VMS_JSON.getBytes(StandardCharsets.UTF_8)), query.readFields(), query.filter()));
+
+        // Then: Clauses are ANDed, all columns are kept, and malformed clauses are rejected
+        assertEquals(1, rows.size());
+        assertEquals("vm-1", rows.get(0).get("vm_cid"));
+        assertThrows(IllegalArgumentException.class, () -> BoshRowQuery.parse(null, "process_state running"));
+        assertThrows(IllegalArgumentException.class, () -> BoshRowQuery.parse(null, "instance~(router"));
+    }
+
+    @Test
+    void testParse_KeepsCommasInsideRegexAndQuotedValues() {
+        // Given: A regex with a counted repetition, and a quoted value holding a comma and an '='
+        BoshRowQuery counted = BoshRowQuery.parse(null, "ips~^10\\.0\\.[0-9]{1,2}\\.3$, az=z2");
+        BoshRowQuery quoted = BoshRowQuery.parse(null, "instance!='a, b=c' and process_state=running");
+
+        // When: Filtering every column
+        List<Map<String, String>> countedRows = counted.project(BoshJsonRowExtractor.extractRows(
+                new ByteArrayInputStream(VMS_JSON.getBytes(StandardCharsets.UTF_8)), counted.readFields(), counted.filter()));
+        List<Map<String, String>> quotedRows = quoted.project(BoshJsonRowExtractor.extractRows(
+                new ByteArrayInputStream(VMS_JSON.getBytes(StandardCharsets.UTF_8)), quoted.readFields(), quoted.filter()));
+
+        // Then: Only separators followed by another clause split, so both values stay whole
+        assertEquals(List.of("vm-3"), countedRows.stream().map(row -> row.get("vm_cid")).toList());
+        assertEquals(List.of("vm-1"), quotedRows.stream().map(row -> row.get("vm_cid")).toList());
+    }
+}
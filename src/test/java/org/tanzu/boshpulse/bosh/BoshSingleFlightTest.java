@@ -0,0 +1,87 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshSingleFlightTest {
+
+    @Test
+    void testExecute_JoinedCallerKeepsItsOwnDeadline() throws InterruptedException {
+        // Given: A shared call that stays in flight for a second
+        BoshSingleFlight singleFlight = new BoshSingleFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread leader = new Thread(() -> singleFlight.execute("vms -d cf", () -> {
+            started.countDown();
+            sleep(1000);
+            return "leader";
+        }));
+        leader.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When: A caller with a 100 ms deadline joins it
+        long start = System.nanoTime();
+        BoshCommandException e = assertThrows(BoshCommandException.class, () -> BoshDeadline.within(Duration.ofMillis(100),
+                () -> singleFlight.execute("vms -d cf", () -> "joined")));
+
+        // Then: It fails with its own deadline instead of waiting for the leader
+        assertEquals(BoshCommandException.Category.DEADLINE, e.getCategory());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+        leader.join();
+    }
+
+    @Test
+    void testExecute_JoinedCallerRunsAgainWhenTheLeaderRanOutOfTime() throws InterruptedException {
+        // Given: A shared call that fails on its caller's deadline
+        BoshSingleFlight singleFlight = new BoshSingleFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        Thread leader = new Thread(() -> assertThrows(BoshCommandException.class, () -> singleFlight.execute("vms -d cf", () -> {
+            started.countDown();
+            await(joined);
+            sleep(100);
+            throw BoshDeadline.expired();
+        })));
+        leader.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When: A caller without a deadline joins it
+        AtomicInteger runs = new AtomicInteger();
+        AtomicReference<String> result = new AtomicReference<>();
+        Thread joiner = new Thread(() -> result.set(singleFlight.execute("vms -d cf", () -> {
+            runs.incrementAndGet();
+            return "joined";
+        })));
+        joiner.start();
+        joined.countDown();
+        leader.join();
+        joiner.join();
+
+        // Then: It does not share the leader's DEADLINE and runs the call itself
+        assertEquals("joined", result.get());
+        assertEquals(1, runs.get());
+        assertEquals(1, singleFlight.getCoalescedCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
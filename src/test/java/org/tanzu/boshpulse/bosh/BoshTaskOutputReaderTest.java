@@ -0,0 +1,28 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BoshTaskOutputReaderTest {
+
+    @Test
+    void testTaskLines_DropsWhatTheCliPrintsAroundTheOutput() {
+        // Given: The stdout of `bosh task 123 --event`
+        List<String> lines = new ArrayList<>();
+        Consumer<String> taskLines = BoshTaskOutputReader.taskLines("123", lines::add);
+
+        // When
+        List.of("Using environment '10.0.0.6' as client 'admin'", "", "Task 123", "",
+                "{\"stage\":\"Preparing deployment\"}", "", "{\"stage\":\"Updating instance\"}", "",
+                "Task 123 Started  Fri Oct 16 10:00:00 UTC 2026", "Task 123 Finished Fri Oct 16 10:01:00 UTC 2026",
+                "Task 123 Duration 00:01:00", "Task 123 done", "", "Succeeded").forEach(taskLines);
+
+        // Then: Only the task output is left, with its inner blank line
+        assertEquals(List.of("{\"stage\":\"Preparing deployment\"}", "", "{\"stage\":\"Updating instance\"}"), lines);
+    }
+}
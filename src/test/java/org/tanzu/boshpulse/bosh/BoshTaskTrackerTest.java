@@ -0,0 +1,125 @@
+package org.tanzu.boshpulse.bosh;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.tanzu.boshpulse.bosh.BoshTaskTracker.TaskStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BoshTaskTrackerTest {
+
+    @Mock
+    private BoshCliExecutor cliExecutor;
+
+    @Mock
+    private ObjectProvider<BoshDirectorHttpClient> directorHttpClient;
+
+    private BoshTaskTracker taskTracker;
+
+    @BeforeEach
+    void setUp() {
+        taskTracker = new BoshTaskTracker(cliExecutor, directorHttpClient, 1, 2, 3600, 30);
+    }
+
+    @Test
+    void testStart_ReturnsImmediatelyAndTracksUntilDone() {
+        // Given: A task that is processing on the first poll and done on the second
+        when(cliExecutor.startTask("recreate -d cf")).thenReturn("42");
+        when(cliExecutor.executeTableRows(eq("tasks --recent"), any(), isNull())).thenReturn(
+                List.of(Map.of("id", "42", "state", "processing")),
+                List.of(Map.of("id", "42", "state", "done", "result", "ok")));
+        AtomicInteger finished = new AtomicInteger();
+
+        // When: Starting the task
+        TaskStatus started = taskTracker.start("recreate -d cf", "Recreate deployment cf", finished::incrementAndGet);
+
+        // Then: The task ID comes back before the task finishes
+        assertEquals("42", started.taskId());
+        assertEquals("cf", started.deployment());
+        assertFalse(started.finished());
+
+        // And: Awaiting it returns the final state and runs the finish callback once
+        TaskStatus done = taskTracker.await("42", Duration.ofSeconds(20));
+        assertEquals("done", done.state());
+        assertEquals("ok", done.result());
+        assertNotNull(done.finishedAt());
+        assertEquals(1, finished.get());
+    }
+
+    @Test
+    void testStart_FollowsEveryTaskOfAMultiTaskCommand() {
+        // Given: A deploy whose CLI uploads a release as task 41 before running the deploy as task 42
+        CountDownLatch deployStarted = new CountDownLatch(1);
+        when(cliExecutor.runTask(eq("deploy -d cf manifest.yml"), any())).thenAnswer(invocation -> {
+            Consumer<String> onTaskStarted = invocation.getArgument(1);
+            onTaskStarted.accept("41");
+            deployStarted.await();
+            onTaskStarted.accept("42");
+            return new BoshCliExecutor.TaskOutcome("42", "error");
+        });
+
+        // When: Starting the deploy
+        TaskStatus started = taskTracker.start("deploy -d cf manifest.yml", "Deploy cf", null);
+
+        // Then: The upload task is reported first, but is not mistaken for the end of the deploy
+        assertEquals("41", started.taskId());
+        assertFalse(taskTracker.getStatus("41").finished());
+        deployStarted.countDown();
+
+        // And: Both IDs resolve to the deploy task, which ends in the state the CLI reported for it
+        TaskStatus done = taskTracker.await("41", Duration.ofSeconds(20));
+        assertEquals("42", done.taskId());
+        assertEquals("error", done.state());
+        assertEquals("42", taskTracker.getStatus("42").taskId());
+        assertEquals(1, taskTracker.list().size());
+    }
+
+    @Test
+    void testAwait_LooksBeyondTheRecentTasksAndKeepsTrackingThroughAMiss() {
+        // Given: A task that has dropped out of the recent list, and is missing once from the wider one
+        when(cliExecutor.startTask("recreate -d cf")).thenReturn("5");
+        when(cliExecutor.executeTableRows(eq("tasks --recent=1000 --all"), any(), isNull())).thenReturn(
+                List.of(),
+                List.of(Map.of("id", "5", "state", "done")));
+        taskTracker.start("recreate -d cf", "Recreate deployment cf", null);
+
+        // When
+        TaskStatus done = taskTracker.await("5", Duration.ofSeconds(20));
+
+        // Then: The task is found there instead of being given up as unknown
+        assertEquals("done", done.state());
+    }
+
+    @Test
+    void testAwait_ReturnsCurrentStateWhenWaitTimesOut() {
+        // Given: A task that keeps processing
+        when(cliExecutor.startTask("stop -d cf")).thenReturn("7");
+        when(cliExecutor.executeTableRows(eq("tasks --recent"), any(), isNull()))
+                .thenReturn(List.of(Map.of("id", "7", "state", "processing")));
+        taskTracker.start("stop -d cf", "Stop cf", null);
+
+        // When: Awaiting it briefly
+        TaskStatus status = taskTracker.await("7", Duration.ofSeconds(2));
+
+        // Then: The current, unfinished state is returned
+        assertEquals("7", status.taskId());
+        assertFalse(status.finished());
+        assertNull(status.finishedAt());
+    }
+}
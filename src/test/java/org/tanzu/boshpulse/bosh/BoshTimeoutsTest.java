@@ -0,0 +1,91 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tanzu.boshpulse.bosh.BoshCommandException.Category;
+import org.tanzu.boshpulse.bosh.BoshTimeouts.TimeoutClass;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoshTimeoutsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testExecuteWithRetry_RetriesShareTheCommandTimeout() throws IOException {
+        // Given: A one second fast class, a cloud-config that takes two seconds, and a circuit that opens after two failures
+        BoshTimeouts timeouts = new BoshTimeouts(1, 10, 10, "cloud-config", "deploy");
+        BoshCliExecutor executor = executorFor("sleep 2\n");
+        executor.setTimeouts(timeouts);
+        BoshCloudConfigService service = new BoshCloudConfigService(executor, 3, 0);
+        BoshResilience resilience = new BoshResilience("director.example.com", 20, 10, 0, 2, 30, 1, new SimpleMeterRegistry());
+        service.setResilience(resilience);
+
+        // When: The tool times out and would retry
+        long start = System.nanoTime();
+        BoshCommandException e = assertThrows(BoshCommandException.class, service::getCloudConfig);
+
+        // Then: The timeout is used up, so the call fails without a retry and counts as a single failure
+        assertEquals(Category.TIMEOUT, e.getCategory());
+        assertEquals(1, executor.getInvocationCount());
+        assertEquals(10, resilience.getBudgetTokens());
+        assertEquals(BoshResilience.State.CLOSED, resilience.getState());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1800);
+        assertEquals(TimeoutClass.FAST, timeouts.classOf(BoshCommand.parse("cloud-config")));
+        assertEquals(TimeoutClass.LONG, timeouts.classOf(BoshCommand.parse("deploy -d cf")));
+        assertEquals(TimeoutClass.STANDARD, timeouts.classOf(BoshCommand.parse("vms -d cf")));
+    }
+
+    @Test
+    void testExecute_CallerDeadlineCutsLongCommandShort() throws IOException {
+        // Given: A deploy in the 10 second long class that takes five seconds
+        BoshCliExecutor executor = executorFor("sleep 5\n");
+        executor.setTimeouts(new BoshTimeouts(1, 10, 10, "cloud-config", "deploy"));
+
+        // When: The caller allows half a second
+        long start = System.nanoTime();
+        BoshCommandException e = assertThrows(BoshCommandException.class,
+                () -> BoshDeadline.within(Duration.ofMillis(500), () -> executor.execute("deploy -d cf")));
+
+        // Then: The process is killed at the caller deadline, which is not retryable
+        assertEquals(Category.DEADLINE, e.getCategory());
+        assertFalse(e.getCategory().isRetryable());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 3000);
+        assertTrue(executor.getKilledProcessCount() > 0);
+    }
+
+    @Test
+    void testCommandDeadlinePassed_OnlyForTheCommandThatTimedOut() {
+        // Given: A tool call that ran two deployments' vms, one with a timeout already spent
+        BoshCommand first = BoshCommand.parse("vms -d a");
+        BoshCommand second = BoshCommand.parse("vms -d b");
+
+        // When: Asking whether each can still be retried
+        boolean[] passed = BoshDeadline.within(null, () -> {
+            BoshDeadline.deadlineNanos(first, Duration.ZERO);
+            BoshDeadline.deadlineNanos(second, Duration.ofSeconds(10));
+            return new boolean[] {BoshDeadline.commandDeadlinePassed(first.normalized()),
+                    BoshDeadline.commandDeadlinePassed(second.normalized()), BoshDeadline.commandDeadlinePassed(null)};
+        });
+
+        // Then: Only the spent command is done; the other keeps its own budget
+        assertArrayEquals(new boolean[] {true, false, false}, passed);
+        assertEquals(first.normalized(), BoshCommandException.timedOutCommand(
+                new RuntimeException(BoshCommandException.timedOut(first, "timed out"))));
+    }
+
+    private BoshCliExecutor executorFor(String script) throws IOException {
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\n" + script);
+        assertTrue(cli.toFile().setExecutable(true));
+        return new BoshCliExecutor("director.example.com", "admin", "secret", "", "",
+                cli.toString(), 60, new BoshEnvConfigReader());
+    }
+}
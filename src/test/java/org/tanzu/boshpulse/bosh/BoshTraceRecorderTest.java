@@ -0,0 +1,79 @@
+package org.tanzu.boshpulse.bosh;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoshTraceRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOnStop_BuildsSpanTreeOfCliPhases() throws IOException {
+        // Given: An observed executor with a scheduler and a CLI that prints its output
+        ObservationRegistry registry = ObservationRegistry.create();
+        BoshTraceRecorder recorder = new BoshTraceRecorder(10);
+        registry.observationConfig().observationHandler(recorder);
+        Path cli = tempDir.resolve("bosh");
+        Files.writeString(cli, "#!/bin/sh\necho 'azs: []'\n");
+        assertTrue(cli.toFile().setExecutable(true));
+        BoshCliExecutor executor = new BoshCliExecutor("director.example.com", "admin", "secret", "", "",
+                cli.toString(), 10, new BoshEnvConfigReader());
+        executor.setObservationRegistry(registry);
+        executor.setCommandScheduler(new BoshCommandScheduler(2, 2, 1, 1, 5, new SimpleMeterRegistry()));
+
+        // When: A tool call runs a CLI command
+        Observation.createNotStarted("bosh.tool", registry).contextualName("getCloudConfig")
+                .observe(() -> executor.execute("cloud-config"));
+
+        // Then: The trace nests the invocation and its phases under the tool call
+        List<BoshTraceRecorder.Span> traces = recorder.traces("getCloudConfig", 10);
+        assertEquals(1, traces.size());
+        BoshTraceRecorder.Span invocation = traces.get(0).children().get(0);
+        assertEquals("cli", invocation.name());
+        assertEquals("success", invocation.tags().get("outcome"));
+        assertEquals(List.of("queue", "spawn", "wait", "parse"),
+                invocation.children().stream().map(BoshTraceRecorder.Span::name).toList());
+        assertEquals(List.of("tool", "cli", "queue", "spawn", "wait", "parse"),
+                recorder.breakdown(null).stream().map(BoshTraceRecorder.PhaseStats::phase).toList());
+    }
+
+    @Test
+    void testOnStop_RecordsFailedAttemptsAndDropsUntracedWork() {
+        // Given: A service whose first attempt fails with a transient error
+        ObservationRegistry registry = ObservationRegistry.create();
+        BoshTraceRecorder recorder = new BoshTraceRecorder(10);
+        registry.observationConfig().observationHandler(recorder);
+        BoshCliExecutor cliExecutor = mock(BoshCliExecutor.class);
+        when(cliExecutor.execute("cloud-config"))
+                .thenThrow(new BoshCommandException(BoshCommandException.Category.UNAVAILABLE, "connection refused"))
+                .thenReturn("azs: []");
+        BoshCloudConfigService service = new BoshCloudConfigService(cliExecutor, 3, 0);
+        service.setObservationRegistry(registry);
+
+        // When: Calling the tool, and running an attempt outside any tool call
+        Observation.createNotStarted("bosh.tool", registry).contextualName("getCloudConfig")
+                .observe(service::getCloudConfig);
+        Observation.createNotStarted("bosh.attempt", registry).observe(() -> { });
+
+        // Then: Only the tool call is kept, with one failed and one successful attempt
+        List<BoshTraceRecorder.Span> traces = recorder.traces(null, 10);
+        assertEquals(1, traces.size());
+        List<BoshTraceRecorder.Span> attempts = traces.get(0).children();
+        assertEquals(2, attempts.size());
+        assertEquals("connection refused", attempts.get(0).error());
+        assertNull(attempts.get(1).error());
+        assertEquals(2, recorder.breakdown("getCloudConfig").get(1).count());
+    }
+}
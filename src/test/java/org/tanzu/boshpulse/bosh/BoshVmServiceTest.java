@@ -0,0 +1,98 @@
+package org.tanzu.boshpulse.bosh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.tanzu.boshpulse.bosh.BoshRowQuery.Listing;
+import org.tanzu.boshpulse.bosh.BoshVmService.FleetHealth;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BoshVmServiceTest {
+
+    @Mock
+    private BoshCliExecutor cliExecutor;
+
+    @Test
+    void testListVms_ReturnsOneShapeWithOrWithoutQuery() {
+        // Given: A deployment whose VMs the CLI lists
+        BoshVmService vmService = new BoshVmService(cliExecutor, 1, 0, 4);
+        JsonNode table = JsonNodeFactory.instance.objectNode().putArray("Tables").addObject();
+        when(cliExecutor.executeJson("vms -d cf")).thenReturn(table);
+        when(cliExecutor.executeTableRows(eq("vms -d cf"), eq(Set.of("instance")), any())).thenReturn(List.of(
+                Map.of("instance", "router/a1")));
+
+        // When: Listing without and with a projection
+        Listing full = vmService.listVms("cf", null, null, null);
+        Listing projected = vmService.listVms("cf", "instance", null, null);
+
+        // Then: The full table and the rows come back in their own fields of the same result type
+        assertEquals(table, full.table());
+        assertNull(full.rows());
+        assertNull(projected.table());
+        assertEquals(List.of(Map.of("instance", "router/a1")), projected.rows());
+    }
+
+    @Test
+    void testScanFleet_AggregatesDeploymentsAndIsolatesFailures() {
+        // Given: Three deployments, one with a failing VM and one the Director cannot list
+        BoshVmService vmService = new BoshVmService(cliExecutor, 1, 0, 4);
+        when(cliExecutor.executeTableRows("deployments", Set.of("name"), null)).thenReturn(List.of(
+                Map.of("name", "cf"), Map.of("name", "mysql"), Map.of("name", "broken")));
+        when(cliExecutor.executeTableRows(eq("vms -d cf --details"), any(), any())).thenReturn(List.of(
+                Map.of("instance", "router/a1", "process_state", "running"),
+                Map.of("instance", "router/b2", "process_state", "failing")));
+        when(cliExecutor.executeTableRows(eq("vms -d mysql --details"), any(), any())).thenReturn(List.of(
+                Map.of("instance", "mysql/c3", "process_state", "running")));
+        when(cliExecutor.executeTableRows(eq("vms -d broken --details"), any(), any()))
+                .thenThrow(new RuntimeException("Deployment 'broken' doesn't exist"));
+
+        // When: Scanning the fleet
+        FleetHealth fleet = vmService.scanFleet(null, null);
+
+        // Then: Healthy deployments are only counted, and the failing VM and the failed deployment are reported
+        assertEquals(2, fleet.deploymentsScanned());
+        assertEquals(1, fleet.deploymentsFailed());
+        assertEquals(3, fleet.vms());
+        assertEquals(2, fleet.running());
+        assertEquals(Map.of("running", 2, "failing", 1), fleet.processStates());
+        assertEquals(List.of("broken", "cf"), fleet.unhealthy().stream().map(h -> h.deployment()).toList());
+        assertEquals("router/b2", fleet.unhealthy().get(1).notRunning().get(0).get("instance"));
+    }
+
+    @Test
+    void testScanFleet_BoundsParallelism() {
+        // Given: Eight deployments whose VM listing takes a while, scanned two at a time
+        BoshVmService vmService = new BoshVmService(cliExecutor, 1, 0, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(cliExecutor.executeTableRows(anyString(), any(), any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return List.of(Map.of("instance", "vm/0", "process_state", "running"));
+        });
+
+        // When: Scanning the given deployments
+        FleetHealth fleet = vmService.scanFleet("d1,d2,d3,d4, d5,d6,d7,d8", null);
+
+        // Then: Every deployment was scanned, never more than two at once
+        assertEquals(8, fleet.deploymentsScanned());
+        assertEquals(8, fleet.running());
+        assertTrue(fleet.unhealthy().isEmpty());
+        assertEquals(2, maxRunning.get());
+    }
+}